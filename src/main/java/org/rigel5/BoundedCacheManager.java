@@ -0,0 +1,594 @@
+/*
+ * Copyright (C) 2020 Nicola De Nisco
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.rigel5;
+
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.rigel5.table.ForeignDataHolder;
+import org.rigel5.table.ForeignDataList;
+
+/**
+ * Cache manager limitato in occupazione e adatto ad accesso concorrente.
+ * A differenza di SimpleCacheManager la mappa è suddivisa in segmenti
+ * indipendenti (lock striping), ognuno con il proprio monitor, per cui
+ * thread diversi che accedono a chiavi diverse raramente si contendono
+ * lo stesso lock.
+ * Ogni segmento mantiene le entry in ordine di accesso (LRU) e rimuove
+ * le meno recenti quando il peso stimato (in bytes) supera la sua quota
+ * del peso massimo configurato.
+ * Le entry scadute vengono rimosse sia in lettura che da un task
+ * periodico in background.
+ * Ogni segmento mantiene inoltre un indice inverso tabella -> chiavi
+ * per cui purgeTabella() rimuove solo le entry interessate.
+ * <code>
+ *  SetupHolder.setCacheManager(new BoundedCacheManager(64 * 1024 * 1024L, 30 * 60 * 1000L));
+ * </code>
+ *
+ * @author Nicola De Nisco
+ */
+public class BoundedCacheManager implements RigelCacheManager
+{
+  /** Logging */
+  private static final Log log = LogFactory.getLog(BoundedCacheManager.class);
+  /**
+   * Peso massimo di default: 64 MB.
+   */
+  public static final long DEFAULT_MAX_WEIGHT = 64 * 1024 * 1024L;
+  /**
+   * Tempo di permanenza di default: 30 minuti.
+   */
+  public static final long DEFAULT_EXPIRE_MILLIS = 30 * 60 * 1000L;
+  /**
+   * Numero di segmenti di default.
+   */
+  public static final int DEFAULT_CONCURRENCY = 16;
+  /**
+   * Intervallo di default per la pulizia in background: 1 minuto.
+   */
+  public static final long DEFAULT_CLEANUP_MILLIS = 60 * 1000L;
+  /**
+   * Scheduler condiviso da tutte le istanze per la pulizia in background.
+   */
+  private static final ScheduledExecutorService cleaner = Executors.newSingleThreadScheduledExecutor((r) ->
+  {
+    Thread t = new Thread(r, "RigelCacheCleaner");
+    t.setDaemon(true);
+    return t;
+  });
+
+  /**
+   * Segnaposto per oggetto nella cache.
+   */
+  public static class CacheHit
+  {
+    public final String chiave;
+    public final Object payload;
+    public final long tCreated;
+    public final long weight;
+
+    public CacheHit(String chiave, Object payload, long weight)
+    {
+      this.chiave = chiave;
+      this.payload = payload;
+      this.weight = weight;
+      this.tCreated = System.currentTimeMillis();
+    }
+  }
+
+  /**
+   * Segmento della cache.
+   * Tutti gli accessi sono sincronizzati sul segmento stesso.
+   */
+  protected static class Segment
+  {
+    public final LinkedHashMap<String, CacheHit> map = new LinkedHashMap<>(64, 0.75f, true);
+    public final CacheTableIndex index = new CacheTableIndex();
+    public long weight = 0;
+  }
+
+  protected final Segment[] segments;
+  protected final int segmentMask;
+  protected long maxWeight;
+  protected long expireMillis;
+  protected ScheduledFuture<?> cleanupTask;
+  //
+  // contatori statistici
+  protected final LongAdder hitCount = new LongAdder();
+  protected final LongAdder missCount = new LongAdder();
+  protected final LongAdder putCount = new LongAdder();
+  protected final LongAdder evictionCount = new LongAdder();
+  protected final LongAdder expiredCount = new LongAdder();
+
+  public BoundedCacheManager()
+  {
+    this(DEFAULT_MAX_WEIGHT, DEFAULT_EXPIRE_MILLIS, DEFAULT_CONCURRENCY, DEFAULT_CLEANUP_MILLIS);
+  }
+
+  public BoundedCacheManager(long maxWeight, long expireMillis)
+  {
+    this(maxWeight, expireMillis, DEFAULT_CONCURRENCY, DEFAULT_CLEANUP_MILLIS);
+  }
+
+  /**
+   * Costruttore completo.
+   * @param maxWeight peso massimo stimato in bytes dei dati in cache
+   * @param expireMillis tempo di permanenza in millisecondi
+   * @param concurrency numero di segmenti (arrotondato alla potenza di 2 superiore)
+   * @param cleanupMillis intervallo della pulizia in background (0 per disattivarla)
+   */
+  public BoundedCacheManager(long maxWeight, long expireMillis, int concurrency, long cleanupMillis)
+  {
+    int numSegments = 1;
+    while(numSegments < concurrency)
+      numSegments <<= 1;
+
+    this.segments = new Segment[numSegments];
+    this.segmentMask = numSegments - 1;
+    this.maxWeight = maxWeight;
+    this.expireMillis = expireMillis;
+
+    for(int i = 0; i < numSegments; i++)
+      segments[i] = new Segment();
+
+    if(cleanupMillis > 0)
+      cleanupTask = scheduleCleanup(this, cleanupMillis);
+  }
+
+  /**
+   * Attiva il task di pulizia.
+   * Il task mantiene solo un riferimento debole alla cache:
+   * quando questa non è più referenziata il task si cancella da solo.
+   */
+  private static ScheduledFuture<?> scheduleCleanup(BoundedCacheManager cm, long cleanupMillis)
+  {
+    final WeakReference<BoundedCacheManager> ref = new WeakReference<>(cm);
+    final ScheduledFuture<?>[] self = new ScheduledFuture<?>[1];
+
+    Runnable r = () ->
+    {
+      BoundedCacheManager c = ref.get();
+      if(c == null)
+      {
+        if(self[0] != null)
+          self[0].cancel(false);
+        return;
+      }
+
+      try
+      {
+        c.purge();
+      }
+      catch(Throwable t)
+      {
+        log.error("Cache cleanup failure.", t);
+      }
+    };
+
+    self[0] = cleaner.scheduleWithFixedDelay(r, cleanupMillis, cleanupMillis, TimeUnit.MILLISECONDS);
+    return self[0];
+  }
+
+  @Override
+  public List<ForeignDataHolder> getForeignDataList(String chiave)
+  {
+    return (List<ForeignDataHolder>) getGenericCachedData("l1:" + chiave);
+  }
+
+  @Override
+  public void putForeignDataList(String chiave, List<ForeignDataHolder> ls)
+  {
+    putGenericCachedData("l1:" + chiave, ls);
+  }
+
+  @Override
+  public List<ForeignDataHolder> getDataComboColonnaAttached(String chiave)
+  {
+    return (List<ForeignDataHolder>) getGenericCachedData("l2:" + chiave);
+  }
+
+  @Override
+  public void putDataComboColonnaAttached(String chiave, List<ForeignDataHolder> ls)
+  {
+    putGenericCachedData("l2:" + chiave, ls);
+  }
+
+  @Override
+  public List<ForeignDataHolder> getDataComboColonnaSelf(String chiave)
+  {
+    return (List<ForeignDataHolder>) getGenericCachedData("l3:" + chiave);
+  }
+
+  @Override
+  public void putDataComboColonnaSelf(String chiave, List<ForeignDataHolder> ls)
+  {
+    putGenericCachedData("l3:" + chiave, ls);
+  }
+
+  @Override
+  public Long getRecordCount(String chiave)
+  {
+    return (Long) getGenericCachedData("l4:" + chiave);
+  }
+
+  @Override
+  public void putRecordCount(String chiave, long value)
+  {
+    putGenericCachedData("l4:" + chiave, value);
+  }
+
+  @Override
+  public Object getGenericCachedData(String chiave)
+  {
+    Segment seg = segmentFor(chiave);
+    CacheHit rv;
+
+    synchronized(seg)
+    {
+      if((rv = seg.map.get(chiave)) != null && isExpired(rv, System.currentTimeMillis()))
+      {
+        removeEntry(seg, chiave);
+        expiredCount.increment();
+        rv = null;
+      }
+    }
+
+    if(rv == null)
+    {
+      missCount.increment();
+      return null;
+    }
+
+    hitCount.increment();
+    return rv.payload;
+  }
+
+  @Override
+  public void putGenericCachedData(String chiave, Object data)
+  {
+    putGenericCachedData(chiave, data, SqlUtils.extractTables(chiave));
+  }
+
+  @Override
+  public void putGenericCachedData(String chiave, Object data, Set<String> tabelle)
+  {
+    Segment seg = segmentFor(chiave);
+
+    if(data == null)
+    {
+      synchronized(seg)
+      {
+        removeEntry(seg, chiave);
+      }
+      return;
+    }
+
+    long weight = estimateWeight(chiave, data);
+    long segMaxWeight = getSegmentMaxWeight();
+
+    synchronized(seg)
+    {
+      removeEntry(seg, chiave);
+
+      // un oggetto più grande dell'intero segmento non viene memorizzato
+      if(weight > segMaxWeight)
+        return;
+
+      seg.map.put(chiave, new CacheHit(chiave, data, weight));
+      seg.index.register(chiave, tabelle);
+      seg.weight += weight;
+      putCount.increment();
+
+      // rimuove le entry meno recentemente usate fino a rientrare nel limite
+      Iterator<CacheHit> itr = seg.map.values().iterator();
+      while(seg.weight > segMaxWeight && itr.hasNext())
+      {
+        CacheHit eldest = itr.next();
+        itr.remove();
+        seg.index.unregister(eldest.chiave);
+        seg.weight -= eldest.weight;
+        evictionCount.increment();
+      }
+    }
+  }
+
+  @Override
+  public void purgeTabella(String nomeTabella)
+  {
+    for(Segment seg : segments)
+    {
+      synchronized(seg)
+      {
+        for(String chiave : seg.index.getChiavi(nomeTabella))
+          removeEntry(seg, chiave);
+      }
+    }
+  }
+
+  @Override
+  public void flushCache()
+  {
+    for(Segment seg : segments)
+    {
+      synchronized(seg)
+      {
+        seg.map.clear();
+        seg.index.clear();
+        seg.weight = 0;
+      }
+    }
+  }
+
+  /**
+   * Rimuove tutti i dati scaduti.
+   * Viene chiamata periodicamente dal task di pulizia.
+   */
+  public void purge()
+  {
+    long now = System.currentTimeMillis();
+
+    for(Segment seg : segments)
+    {
+      synchronized(seg)
+      {
+        Iterator<CacheHit> itr = seg.map.values().iterator();
+        while(itr.hasNext())
+        {
+          CacheHit hit = itr.next();
+          if(isExpired(hit, now))
+          {
+            itr.remove();
+            seg.index.unregister(hit.chiave);
+            seg.weight -= hit.weight;
+            expiredCount.increment();
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Arresta la pulizia in background.
+   * Da chiamare quando la cache viene sostituita o l'applicazione termina.
+   */
+  public void shutdown()
+  {
+    if(cleanupTask != null)
+    {
+      cleanupTask.cancel(false);
+      cleanupTask = null;
+    }
+  }
+
+  protected Segment segmentFor(String chiave)
+  {
+    int h = chiave.hashCode();
+    h ^= (h >>> 16);
+    return segments[h & segmentMask];
+  }
+
+  protected boolean isExpired(CacheHit hit, long now)
+  {
+    return (now - hit.tCreated) > expireMillis;
+  }
+
+  protected long getSegmentMaxWeight()
+  {
+    return Math.max(1, maxWeight / segments.length);
+  }
+
+  /**
+   * Rimuove una entry dal segmento aggiornandone il peso.
+   * Deve essere chiamata con il lock del segmento acquisito.
+   * @param seg segmento
+   * @param chiave chiave da rimuovere
+   * @return la entry rimossa o null
+   */
+  protected CacheHit removeEntry(Segment seg, String chiave)
+  {
+    CacheHit old = seg.map.remove(chiave);
+    if(old != null)
+    {
+      seg.index.unregister(chiave);
+      seg.weight -= old.weight;
+    }
+    return old;
+  }
+
+  /**
+   * Stima l'occupazione in memoria di una entry.
+   * La stima è grossolana ma sufficiente a limitare l'uso di heap;
+   * per le liste di ForeignDataHolder tiene conto delle stringhe contenute.
+   * Le classi derivate possono ridefinirla per tipi di dato specifici.
+   * @param chiave chiave della entry
+   * @param data dato da memorizzare
+   * @return peso stimato in bytes
+   */
+  protected long estimateWeight(String chiave, Object data)
+  {
+    return 64 + weightOf(chiave) + weightOf(data);
+  }
+
+  protected long weightOf(Object data)
+  {
+    if(data == null)
+      return 0;
+
+    if(data instanceof String)
+      return 40 + 2L * ((String) data).length();
+
+    if(data instanceof Number || data instanceof Boolean)
+      return 16;
+
+    if(data instanceof ForeignDataHolder)
+    {
+      ForeignDataHolder fd = (ForeignDataHolder) data;
+      return 24 + weightOf(fd.codice) + weightOf(fd.descrizione) + weightOf(fd.alternateCodice);
+    }
+
+    if(data instanceof Collection)
+    {
+      long w = 40;
+      for(Object o : (Collection) data)
+        w += 8 + weightOf(o);
+
+      // indici per codice e codice alternativo
+      if(data instanceof ForeignDataList)
+        w += 2 * (48 + 40L * ((Collection) data).size());
+
+      return w;
+    }
+
+    if(data instanceof Map)
+    {
+      long w = 48;
+      for(Map.Entry e : ((Map<?, ?>) data).entrySet())
+        w += 32 + weightOf(e.getKey()) + weightOf(e.getValue());
+      return w;
+    }
+
+    return 64;
+  }
+
+  /**
+   * Legge il timeout della cache.
+   * @return millisecondi di permanenza oggetti
+   */
+  public long getExpireMillis()
+  {
+    return expireMillis;
+  }
+
+  /**
+   * Imposta il timeout della cache.
+   * @param expireMillis tempo i permanenza in millisecondi
+   */
+  public void setExpireMillis(long expireMillis)
+  {
+    this.expireMillis = expireMillis;
+  }
+
+  /**
+   * Peso massimo della cache.
+   * @return peso massimo stimato in bytes
+   */
+  public long getMaxWeight()
+  {
+    return maxWeight;
+  }
+
+  /**
+   * Imposta il peso massimo della cache.
+   * Il nuovo limite viene applicato ai successivi inserimenti.
+   * @param maxWeight peso massimo stimato in bytes
+   */
+  public void setMaxWeight(long maxWeight)
+  {
+    this.maxWeight = maxWeight;
+  }
+
+  /**
+   * Peso stimato attuale della cache.
+   * @return somma dei pesi di tutte le entry
+   */
+  public long getWeight()
+  {
+    long rv = 0;
+    for(Segment seg : segments)
+    {
+      synchronized(seg)
+      {
+        rv += seg.weight;
+      }
+    }
+    return rv;
+  }
+
+  /**
+   * Numero di entry attualmente in cache.
+   * @return numero di entry
+   */
+  public int size()
+  {
+    int rv = 0;
+    for(Segment seg : segments)
+    {
+      synchronized(seg)
+      {
+        rv += seg.map.size();
+      }
+    }
+    return rv;
+  }
+
+  public long getHitCount()
+  {
+    return hitCount.sum();
+  }
+
+  public long getMissCount()
+  {
+    return missCount.sum();
+  }
+
+  public long getPutCount()
+  {
+    return putCount.sum();
+  }
+
+  public long getEvictionCount()
+  {
+    return evictionCount.sum();
+  }
+
+  public long getExpiredCount()
+  {
+    return expiredCount.sum();
+  }
+
+  /**
+   * Azzera i contatori statistici.
+   */
+  public void resetStatistics()
+  {
+    hitCount.reset();
+    missCount.reset();
+    putCount.reset();
+    evictionCount.reset();
+    expiredCount.reset();
+  }
+
+  @Override
+  public String toString()
+  {
+    return "BoundedCacheManager{" + "size=" + size() + ", weight=" + getWeight() + "/" + maxWeight
+       + ", hit=" + getHitCount() + ", miss=" + getMissCount() + ", put=" + getPutCount()
+       + ", evicted=" + getEvictionCount() + ", expired=" + getExpiredCount() + '}';
+  }
+}
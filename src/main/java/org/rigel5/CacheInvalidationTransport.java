@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2020 Nicola De Nisco
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.rigel5;
+
+import java.io.Closeable;
+
+/**
+ * Trasporto dei messaggi di invalidazione della cache fra i nodi di un cluster.
+ * Viene usato da ClusteredCacheManager per propagare le chiamate
+ * a purgeTabella() alle cache degli altri nodi.
+ * Il trasporto consegna i messaggi a tutti i nodi in ascolto,
+ * compreso eventualmente il mittente: il filtro dei messaggi
+ * propri è a carico di ClusteredCacheManager.
+ *
+ * @author Nicola De Nisco
+ */
+public interface CacheInvalidationTransport extends Closeable
+{
+  /**
+   * Ricevitore dei messaggi provenienti dal trasporto.
+   */
+  public interface Listener
+  {
+    /**
+     * Messaggio ricevuto da un nodo del cluster.
+     * @param payload contenuto del messaggio
+     */
+    public void onMessage(String payload);
+
+    /**
+     * Il trasporto è stato ricollegato dopo un'interruzione:
+     * eventuali messaggi possono essere andati persi.
+     */
+    public void onResync();
+  }
+
+  /**
+   * Attiva la ricezione dei messaggi.
+   * @param listener destinatario dei messaggi ricevuti
+   * @throws Exception
+   */
+  public void start(Listener listener)
+     throws Exception;
+
+  /**
+   * Invia un messaggio a tutti i nodi in ascolto.
+   * @param payload contenuto del messaggio
+   * @throws Exception
+   */
+  public void publish(String payload)
+     throws Exception;
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2020 Nicola De Nisco
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.rigel5;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Indice inverso tabella -> chiavi della cache.
+ * Ogni entry della cache viene registrata sotto l'insieme delle tabelle
+ * da cui dipende; purgeTabella() può quindi individuare le sole entry
+ * interessate senza scandire tutte le chiavi.
+ * I nomi tabella sono normalizzati con SqlUtils.normalizeTableName().
+ * <b>Non è thread safe: il chiamante deve sincronizzare gli accessi.</b>
+ *
+ * @author Nicola De Nisco
+ */
+public class CacheTableIndex
+{
+  protected final HashMap<String, Set<String>> tab2keys = new HashMap<>();
+  protected final HashMap<String, Collection<String>> key2tabs = new HashMap<>();
+
+  /**
+   * Registra una chiave sotto le tabelle indicate.
+   * Eventuali registrazioni precedenti della stessa chiave vengono sostituite.
+   * @param chiave chiave della cache
+   * @param tabelle nomi tabella normalizzati (può essere null o vuoto)
+   */
+  public void register(String chiave, Collection<String> tabelle)
+  {
+    unregister(chiave);
+
+    if(tabelle == null || tabelle.isEmpty())
+      return;
+
+    for(String t : tabelle)
+      tab2keys.computeIfAbsent(t, (k) -> new HashSet<>()).add(chiave);
+
+    key2tabs.put(chiave, tabelle);
+  }
+
+  /**
+   * Rimuove una chiave dall'indice.
+   * @param chiave chiave della cache
+   */
+  public void unregister(String chiave)
+  {
+    Collection<String> tabelle = key2tabs.remove(chiave);
+    if(tabelle == null)
+      return;
+
+    for(String t : tabelle)
+    {
+      Set<String> keys = tab2keys.get(t);
+      if(keys != null)
+      {
+        keys.remove(chiave);
+        if(keys.isEmpty())
+          tab2keys.remove(t);
+      }
+    }
+  }
+
+  /**
+   * Ritorna le chiavi che dipendono dalla tabella indicata.
+   * Se il nome è qualificato con lo schema vengono considerate
+   * anche le chiavi registrate con il nome semplice.
+   * @param nomeTabella nome della tabella (eventualmente con schema)
+   * @return copia dell'elenco delle chiavi interessate
+   */
+  public List<String> getChiavi(String nomeTabella)
+  {
+    HashSet<String> rv = new HashSet<>();
+    String nome = SqlUtils.normalizeTableName(nomeTabella);
+
+    Set<String> keys = tab2keys.get(nome);
+    if(keys != null)
+      rv.addAll(keys);
+
+    int pos = nome.lastIndexOf('.');
+    if(pos != -1 && (keys = tab2keys.get(nome.substring(pos + 1))) != null)
+      rv.addAll(keys);
+
+    return new ArrayList<>(rv);
+  }
+
+  /**
+   * Svuota l'indice.
+   */
+  public void clear()
+  {
+    tab2keys.clear();
+    key2tabs.clear();
+  }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2020 Nicola De Nisco
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.rigel5;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.rigel5.table.ForeignDataHolder;
+
+/**
+ * Cache manager per installazioni in cluster.
+ * Delega la memorizzazione ad una cache locale e propaga le chiamate
+ * a purgeTabella() e flushCache() agli altri nodi attraverso un
+ * CacheInvalidationTransport; i messaggi ricevuti dagli altri nodi
+ * vengono applicati alla sola cache locale.
+ * In caso di interruzione del trasporto la cache locale viene svuotata,
+ * poichè eventuali invalidazioni potrebbero essere andate perse.
+ * <code>
+ *  SetupHolder.setCacheManager(new ClusteredCacheManager(
+ *     new BoundedCacheManager(), new PostgresNotifyTransport(conProd)));
+ * </code>
+ *
+ * @author Nicola De Nisco
+ */
+public class ClusteredCacheManager implements RigelCacheManager, Closeable
+{
+  /** Logging */
+  private static final Log log = LogFactory.getLog(ClusteredCacheManager.class);
+  /** tabella speciale per indicare lo svuotamento completo */
+  public static final String FLUSH_ALL = "*";
+  protected final RigelCacheManager local;
+  protected final CacheInvalidationTransport transport;
+  protected final String nodeID = UUID.randomUUID().toString();
+
+  public ClusteredCacheManager(RigelCacheManager local, CacheInvalidationTransport transport)
+     throws Exception
+  {
+    this.local = local;
+    this.transport = transport;
+
+    transport.start(new CacheInvalidationTransport.Listener()
+    {
+      @Override
+      public void onMessage(String payload)
+      {
+        receive(payload);
+      }
+
+      @Override
+      public void onResync()
+      {
+        log.info("Invalidation transport reconnected: local cache flushed.");
+        local.flushCache();
+      }
+    });
+  }
+
+  @Override
+  public List<ForeignDataHolder> getForeignDataList(String chiave)
+  {
+    return local.getForeignDataList(chiave);
+  }
+
+  @Override
+  public void putForeignDataList(String chiave, List<ForeignDataHolder> ls)
+  {
+    local.putForeignDataList(chiave, ls);
+  }
+
+  @Override
+  public List<ForeignDataHolder> getDataComboColonnaAttached(String chiave)
+  {
+    return local.getDataComboColonnaAttached(chiave);
+  }
+
+  @Override
+  public void putDataComboColonnaAttached(String chiave, List<ForeignDataHolder> ls)
+  {
+    local.putDataComboColonnaAttached(chiave, ls);
+  }
+
+  @Override
+  public List<ForeignDataHolder> getDataComboColonnaSelf(String chiave)
+  {
+    return local.getDataComboColonnaSelf(chiave);
+  }
+
+  @Override
+  public void putDataComboColonnaSelf(String chiave, List<ForeignDataHolder> ls)
+  {
+    local.putDataComboColonnaSelf(chiave, ls);
+  }
+
+  @Override
+  public Long getRecordCount(String chiave)
+  {
+    return local.getRecordCount(chiave);
+  }
+
+  @Override
+  public void putRecordCount(String chiave, long value)
+  {
+    local.putRecordCount(chiave, value);
+  }
+
+  @Override
+  public Object getGenericCachedData(String chiave)
+  {
+    return local.getGenericCachedData(chiave);
+  }
+
+  @Override
+  public void putGenericCachedData(String chiave, Object data)
+  {
+    local.putGenericCachedData(chiave, data);
+  }
+
+  @Override
+  public void putGenericCachedData(String chiave, Object data, Set<String> tabelle)
+  {
+    local.putGenericCachedData(chiave, data, tabelle);
+  }
+
+  @Override
+  public void purgeTabella(String nomeTabella)
+  {
+    local.purgeTabella(nomeTabella);
+    publish(nomeTabella);
+  }
+
+  @Override
+  public void flushCache()
+  {
+    local.flushCache();
+    publish(FLUSH_ALL);
+  }
+
+  /**
+   * Invia il messaggio agli altri nodi.
+   * Un errore del trasporto non deve interrompere l'operazione
+   * che ha richiesto l'invalidazione: viene solo segnalato nel log.
+   * @param nomeTabella tabella da invalidare
+   */
+  protected void publish(String nomeTabella)
+  {
+    try
+    {
+      transport.publish(nodeID + "|" + nomeTabella);
+    }
+    catch(Exception ex)
+    {
+      log.error("Invalidation of " + nomeTabella + " not published.", ex);
+    }
+  }
+
+  /**
+   * Applica un messaggio ricevuto alla cache locale.
+   * I messaggi inviati da questo stesso nodo vengono ignorati.
+   * @param payload messaggio nella forma nodeID|tabella
+   */
+  protected void receive(String payload)
+  {
+    int pos;
+    if(payload == null || (pos = payload.indexOf('|')) == -1)
+    {
+      log.warn("Invalid invalidation message: " + payload);
+      return;
+    }
+
+    if(payload.regionMatches(0, nodeID, 0, pos) && pos == nodeID.length())
+      return;
+
+    String nomeTabella = payload.substring(pos + 1);
+    if(FLUSH_ALL.equals(nomeTabella))
+      local.flushCache();
+    else
+      local.purgeTabella(nomeTabella);
+  }
+
+  @Override
+  public void close()
+     throws IOException
+  {
+    transport.close();
+  }
+
+  public RigelCacheManager getLocal()
+  {
+    return local;
+  }
+
+  public CacheInvalidationTransport getTransport()
+  {
+    return transport;
+  }
+
+  public String getNodeID()
+  {
+    return nodeID;
+  }
+}
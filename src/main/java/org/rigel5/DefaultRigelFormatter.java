@@ -0,0 +1,285 @@
+/*
+ * Copyright (C) 2020 Nicola De Nisco
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.rigel5;
+
+import java.text.*;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Implementazione di default di RigelFormatter.
+ * Date e ore usano RigelDateFormatter (DateTimeFormatter immutabili);
+ * i numeri usano una istanza di NumberFormat per ogni thread, poichè
+ * DecimalFormat non è thread safe e non esiste un equivalente immutabile.
+ * I formattatori per altri locale vengono creati alla prima richiesta
+ * con gli stessi pattern e mantenuti in memoria.
+ * <code>
+ *  SetupHolder.setFormatter(new DefaultRigelFormatter(Locale.ITALY,
+ *     "dd/MM/yyyy", "HH:mm", "dd/MM/yyyy HH:mm", null, "#,##0.00"));
+ * </code>
+ *
+ * @author Nicola De Nisco
+ */
+public class DefaultRigelFormatter implements RigelFormatter
+{
+  public static final String DATE_PATTERN = "dd/MM/yyyy";
+  public static final String TIME_PATTERN = "HH:mm:ss";
+  public static final String DATETIME_PATTERN = "dd/MM/yyyy HH:mm:ss";
+  //
+  protected final Locale locale;
+  protected final String datePattern, timePattern, dateTimePattern, numberPattern, valutaPattern;
+  protected final DateField date, time, dateTime;
+  protected final ThreadLocal<Format> number, valuta;
+  protected final ConcurrentHashMap<Locale, RigelFormatter> mapLocale = new ConcurrentHashMap<>();
+
+  /**
+   * Formattatore di una data: basato su un pattern (thread safe)
+   * oppure su un java.text.Format clonato per ogni thread.
+   */
+  protected static class DateField
+  {
+    private final RigelDateFormatter formatter;
+    private final ThreadLocal<Format> legacy;
+
+    public DateField(RigelDateFormatter formatter)
+    {
+      this.formatter = formatter;
+      this.legacy = null;
+    }
+
+    public DateField(Format proto)
+    {
+      this.formatter = null;
+      this.legacy = ThreadLocal.withInitial(() -> (Format) proto.clone());
+    }
+
+    public String format(Object value)
+    {
+      return formatter != null ? formatter.format(value) : legacy.get().format(value);
+    }
+
+    public Date parse(String value)
+       throws ParseException
+    {
+      return formatter != null ? formatter.parse(value) : (Date) legacy.get().parseObject(value);
+    }
+  }
+
+  public DefaultRigelFormatter()
+  {
+    this(Locale.getDefault());
+  }
+
+  public DefaultRigelFormatter(Locale locale)
+  {
+    this(locale, DATE_PATTERN, TIME_PATTERN, DATETIME_PATTERN, null, null);
+  }
+
+  /**
+   * Costruttore completo.
+   * @param locale locale di riferimento
+   * @param datePattern pattern per le date
+   * @param timePattern pattern per le ore
+   * @param dateTimePattern pattern per data e ora
+   * @param numberPattern pattern DecimalFormat per i numeri (null per il default del locale)
+   * @param valutaPattern pattern DecimalFormat per le valute (null per il default del locale)
+   */
+  public DefaultRigelFormatter(Locale locale,
+     String datePattern, String timePattern, String dateTimePattern,
+     String numberPattern, String valutaPattern)
+  {
+    ZoneId zone = ZoneId.systemDefault();
+    this.locale = locale;
+    this.datePattern = datePattern;
+    this.timePattern = timePattern;
+    this.dateTimePattern = dateTimePattern;
+    this.numberPattern = numberPattern;
+    this.valutaPattern = valutaPattern;
+    this.date = new DateField(new RigelDateFormatter(datePattern, locale, zone));
+    this.time = new DateField(new RigelDateFormatter(timePattern, locale, zone));
+    this.dateTime = new DateField(new RigelDateFormatter(dateTimePattern, locale, zone));
+    this.number = ThreadLocal.withInitial(makeNumberFormat(numberPattern, locale));
+    this.valuta = ThreadLocal.withInitial(makeNumberFormat(valutaPattern, locale));
+  }
+
+  /**
+   * Costruttore per i formati impostati con i vecchi setter di SetupHolder.
+   * I SimpleDateFormat con pattern compatibili vengono convertiti in
+   * RigelDateFormatter; tutti gli altri formati vengono clonati per ogni thread.
+   * I parametri null assumono il valore di default.
+   */
+  protected DefaultRigelFormatter(Locale locale,
+     Format dateFormat, Format timeFormat, Format dateTimeFormat,
+     Format numberFormat, Format valutaFormat)
+  {
+    this.locale = locale;
+    this.datePattern = this.timePattern = this.dateTimePattern = null;
+    this.numberPattern = this.valutaPattern = null;
+    this.date = makeDateField(dateFormat, DATE_PATTERN, locale);
+    this.time = makeDateField(timeFormat, TIME_PATTERN, locale);
+    this.dateTime = makeDateField(dateTimeFormat, DATETIME_PATTERN, locale);
+    this.number = ThreadLocal.withInitial(makeNumberFormat(numberFormat, locale));
+    this.valuta = ThreadLocal.withInitial(makeNumberFormat(valutaFormat, locale));
+  }
+
+  /**
+   * Costruisce un formattatore dai formati java.text.
+   * @param locale locale di riferimento
+   * @param dateFormat formato per le date (null per il default)
+   * @param timeFormat formato per le ore (null per il default)
+   * @param dateTimeFormat formato per data e ora (null per il default)
+   * @param numberFormat formato per i numeri (null per il default)
+   * @param valutaFormat formato per le valute (null per il default)
+   * @return formattatore thread safe
+   */
+  public static DefaultRigelFormatter fromFormats(Locale locale,
+     Format dateFormat, Format timeFormat, Format dateTimeFormat,
+     Format numberFormat, Format valutaFormat)
+  {
+    return new DefaultRigelFormatter(locale, dateFormat, timeFormat, dateTimeFormat, numberFormat, valutaFormat);
+  }
+
+  protected static DateField makeDateField(Format fmt, String defPattern, Locale locale)
+  {
+    if(fmt == null)
+      return new DateField(new RigelDateFormatter(defPattern, locale, ZoneId.systemDefault()));
+
+    if(fmt instanceof SimpleDateFormat)
+    {
+      SimpleDateFormat sdf = (SimpleDateFormat) fmt;
+      String pattern = sdf.toPattern();
+
+      // solo i campi con lo stesso significato in SimpleDateFormat e DateTimeFormatter
+      // (S è escluso: millisecondi per il primo, frazione di secondo per il secondo);
+      // il formato deve essere lenient come RigelDateFormatter e localizzato come
+      // il formattatore, altrimenti resta quello originale clonato per thread
+      if(pattern.matches("[yMdHhmsaE\\s/.:,\\-]*") && sdf.isLenient()
+         && sdf.getDateFormatSymbols().equals(DateFormatSymbols.getInstance(locale)))
+        return new DateField(new RigelDateFormatter(pattern, locale, sdf.getTimeZone().toZoneId()));
+    }
+
+    return new DateField(fmt);
+  }
+
+  protected static Supplier<Format> makeNumberFormat(Format proto, Locale locale)
+  {
+    if(proto == null)
+      return makeNumberFormat((String) null, locale);
+
+    return () -> (Format) proto.clone();
+  }
+
+  protected static Supplier<Format> makeNumberFormat(String pattern, Locale locale)
+  {
+    if(pattern == null)
+      return () -> NumberFormat.getInstance(locale);
+
+    return () -> new DecimalFormat(pattern, DecimalFormatSymbols.getInstance(locale));
+  }
+
+  @Override
+  public Locale getLocale()
+  {
+    return locale;
+  }
+
+  /**
+   * Ritorna un formattatore con gli stessi pattern per il locale indicato.
+   * Un formattatore costruito da formati java.text non può essere
+   * localizzato e ritorna sempre se stesso.
+   * @param locale locale richiesto
+   * @return formattatore per il locale
+   */
+  @Override
+  public RigelFormatter forLocale(Locale locale)
+  {
+    if(locale == null || locale.equals(this.locale) || datePattern == null)
+      return this;
+
+    return mapLocale.computeIfAbsent(locale, (l) -> new DefaultRigelFormatter(l,
+       datePattern, timePattern, dateTimePattern, numberPattern, valutaPattern));
+  }
+
+  @Override
+  public String formatDate(Object value)
+  {
+    return date.format(value);
+  }
+
+  @Override
+  public String formatTime(Object value)
+  {
+    return time.format(value);
+  }
+
+  @Override
+  public String formatDateTime(Object value)
+  {
+    return dateTime.format(value);
+  }
+
+  @Override
+  public String formatNumber(Object value)
+  {
+    return number.get().format(value);
+  }
+
+  @Override
+  public String formatValuta(Object value)
+  {
+    return valuta.get().format(value);
+  }
+
+  @Override
+  public Date parseDate(String value)
+     throws ParseException
+  {
+    return date.parse(value);
+  }
+
+  @Override
+  public Date parseTime(String value)
+     throws ParseException
+  {
+    return time.parse(value);
+  }
+
+  @Override
+  public Date parseDateTime(String value)
+     throws ParseException
+  {
+    return dateTime.parse(value);
+  }
+
+  @Override
+  public Number parseNumber(String value)
+     throws ParseException
+  {
+    return (Number) number.get().parseObject(value);
+  }
+
+  @Override
+  public Number parseValuta(String value)
+     throws ParseException
+  {
+    return (Number) valuta.get().parseObject(value);
+  }
+}
@@ -35,33 +35,38 @@ public class DefaultUIManager implements RigelUIManager
      throws Exception
   {
     StringBuilder sb = new StringBuilder(4096);
+    writeHtmlLista(filtro, page, sb);
+    return sb.toString();
+  }
 
+  @Override
+  public void writeHtmlLista(int filtro, RigelHtmlPage page, Appendable out)
+     throws Exception
+  {
     // prima emette tutti i commenti
-    page.buildPart(sb, PageComponentType.COMMENT, "<!--", "-->");
+    page.writePart(out, PageComponentType.COMMENT, "<!--", "-->");
 
     // quindi tutti i javascript
-    page.buildPart(sb, PageComponentType.JAVASCRIPT, "<SCRIPT LANGUAGE=\"JavaScript\">", "</SCRIPT>");
+    page.writePart(out, PageComponentType.JAVASCRIPT, "<SCRIPT LANGUAGE=\"JavaScript\">", "</SCRIPT>");
 
     if(filtro == AbstractHtmlTablePagerFilter.FILTRO_MACHERA)
     {
       // html ricerca avanzata
-      page.buildPart(sb, PageComponentType.HTML, "search", "", "");
+      page.writePart(out, PageComponentType.HTML, "search", "", "");
     }
     else
     {
       // html ricerca semplice
-      page.buildPart(sb, PageComponentType.HTML, "simplesearch", "", "");
+      page.writePart(out, PageComponentType.HTML, "simplesearch", "", "");
 
       // html principale
-      sb.append("<div class=\"rigel_body\">");
-      page.buildPart(sb, PageComponentType.HTML, "body", "", "");
-      sb.append("</div>");
+      out.append("<div class=\"rigel_body\">");
+      page.writePart(out, PageComponentType.HTML, "body", "", "");
+      out.append("</div>");
 
       // html navigazione
-      page.buildPart(sb, PageComponentType.HTML, "nav", "", "");
+      page.writePart(out, PageComponentType.HTML, "nav", "", "");
     }
-
-    return sb.toString();
   }
 
   @Override
@@ -69,19 +74,24 @@ public class DefaultUIManager implements RigelUIManager
      throws Exception
   {
     StringBuilder sb = new StringBuilder(4096);
+    writeHtmlForm(page, sb);
+    return sb.toString();
+  }
 
+  @Override
+  public void writeHtmlForm(RigelHtmlPage page, Appendable out)
+     throws Exception
+  {
     // prima emette tutti i commenti
-    page.buildPart(sb, PageComponentType.COMMENT, "<!--", "-->");
+    page.writePart(out, PageComponentType.COMMENT, "<!--", "-->");
 
     // quindi tutti i javascript
-    page.buildPart(sb, PageComponentType.JAVASCRIPT, "<SCRIPT LANGUAGE=\"JavaScript\">", "</SCRIPT>");
+    page.writePart(out, PageComponentType.JAVASCRIPT, "<SCRIPT LANGUAGE=\"JavaScript\">", "</SCRIPT>");
 
     // html principale
-    sb.append("<div class=\"rigel_body\">");
-    page.buildPart(sb, PageComponentType.HTML, "body", "", "");
-    sb.append("</div>");
-
-    return sb.toString();
+    out.append("<div class=\"rigel_body\">");
+    page.writePart(out, PageComponentType.HTML, "body", "", "");
+    out.append("</div>");
   }
 
   @Override
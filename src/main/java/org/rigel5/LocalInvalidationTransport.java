@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2020 Nicola De Nisco
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.rigel5;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Trasporto di invalidazione all'interno della stessa JVM.
+ * Tutte le istanze create con lo stesso nome di canale si scambiano
+ * i messaggi in modo sincrono. Serve per i test e per applicazioni
+ * che ospitano più cache indipendenti nello stesso processo.
+ *
+ * @author Nicola De Nisco
+ */
+public class LocalInvalidationTransport implements CacheInvalidationTransport
+{
+  private static final HashMap<String, List<LocalInvalidationTransport>> channels = new HashMap<>();
+  private final String channel;
+  private Listener listener;
+
+  public LocalInvalidationTransport(String channel)
+  {
+    this.channel = channel;
+  }
+
+  @Override
+  public void start(Listener listener)
+     throws Exception
+  {
+    this.listener = listener;
+
+    synchronized(channels)
+    {
+      channels.computeIfAbsent(channel, (k) -> new ArrayList<>()).add(this);
+    }
+  }
+
+  @Override
+  public void publish(String payload)
+     throws Exception
+  {
+    List<LocalInvalidationTransport> dest;
+    synchronized(channels)
+    {
+      List<LocalInvalidationTransport> lsTrans = channels.get(channel);
+      if(lsTrans == null)
+        return;
+
+      dest = new ArrayList<>(lsTrans);
+    }
+
+    for(LocalInvalidationTransport t : dest)
+      t.listener.onMessage(payload);
+  }
+
+  @Override
+  public void close()
+  {
+    synchronized(channels)
+    {
+      List<LocalInvalidationTransport> lsTrans = channels.get(channel);
+      if(lsTrans != null)
+      {
+        lsTrans.remove(this);
+        if(lsTrans.isEmpty())
+          channels.remove(channel);
+      }
+    }
+  }
+
+  public String getChannel()
+  {
+    return channel;
+  }
+}
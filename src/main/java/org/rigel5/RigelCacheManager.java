@@ -18,6 +18,7 @@
 package org.rigel5;
 
 import java.util.List;
+import java.util.Set;
 import org.rigel5.table.ForeignDataHolder;
 
 /**
@@ -101,9 +102,31 @@ public interface RigelCacheManager
    */
   public void putGenericCachedData(String chiave, Object data);
 
+  /**
+   * Inserimento generico di dati nella cache con indicazione delle tabelle.
+   * Il dato verrà rimosso da purgeTabella() per ognuna delle tabelle indicate.
+   * Da usare quando la chiave non è una istruzione SQL da cui
+   * ricavare automaticamente le tabelle referenziate.
+   * @param chiave chiave di ricerca
+   * @param data dati da memorizzare
+   * @param tabelle nomi delle tabelle da cui dipende il dato
+   */
+  public default void putGenericCachedData(String chiave, Object data, Set<String> tabelle)
+  {
+    putGenericCachedData(chiave, data);
+  }
+
   /**
    * Rimuove dalla cache i dati che referenziano la tabella indicata.
    * @param nomeTabella nome della tabella aggiornata
    */
   public void purgeTabella(String nomeTabella);
+
+  /**
+   * Rimuove tutte le entry della cache.
+   * L'implementazione di default non fa nulla.
+   */
+  public default void flushCache()
+  {
+  }
 }
@@ -243,6 +243,21 @@ public interface RigelCustomUrlBuilder
      String fldName, int row, CustomButtonInfo cb)
      throws Exception;
 
+  /**
+   * Indica se url e icona di un custom button senza controllo runtime
+   * dipendono dalla riga solo attraverso i parametri con macro (#caption o @nome).
+   * In questo caso le liste compilano l'html del bottone una volta sola
+   * e per ogni riga inseriscono solo i valori dei parametri.
+   * Le implementazioni che leggono il record in buildUrlCustomButton()
+   * o buildImageCustomButton() devono ritornare false.
+   * @param cb custom button
+   * @return vero se il bottone può essere precompilato
+   */
+  public default boolean isCustomButtonStatic(CustomButtonInfo cb)
+  {
+    return true;
+  }
+
   /**
    * Funzione generica che rende una url assoluta all'interno dell'applicazione.
    * @param popup vero se la maschera e' in popup
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2020 Nicola De Nisco
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.rigel5;
+
+import java.text.ParseException;
+import java.text.ParsePosition;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.ResolverStyle;
+import java.time.temporal.TemporalAccessor;
+import java.time.temporal.TemporalQueries;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Formattatore di date immutabile e thread safe.
+ * Sostituisce SimpleDateFormat appoggiandosi a DateTimeFormatter,
+ * ma accetta e restituisce java.util.Date (e derivate java.sql),
+ * in modo da poter essere usato al posto dei formati condivisi.
+ * Il parsing è lenient come quello di un SimpleDateFormat: la larghezza
+ * dei campi è libera (1/2/2020 viene accettato con dd/MM/yyyy), i valori
+ * fuori intervallo vengono riportati (31/02/2020 diventa 02/03/2020),
+ * gli spazi iniziali e gli eventuali caratteri in coda sono ignorati;
+ * i campi assenti nel pattern assumono i valori di 1/1/1970 ore 00:00.
+ * Se il fuso orario è null viene usato quello di default della JVM
+ * al momento della formattazione o del parsing.
+ *
+ * @author Nicola De Nisco
+ */
+public final class RigelDateFormatter
+{
+  private final String pattern;
+  private final ZoneId zone;
+  private final DateTimeFormatter formatter;
+
+  /**
+   * Costruttore.
+   * @param pattern pattern DateTimeFormatter
+   * @param locale locale per i nomi di mesi e giorni
+   * @param zone fuso orario (null per il default della JVM al momento dell'uso)
+   */
+  public RigelDateFormatter(String pattern, Locale locale, ZoneId zone)
+  {
+    this.pattern = pattern;
+    this.zone = zone;
+    this.formatter = new DateTimeFormatterBuilder()
+       .parseLenient()
+       .appendPattern(pattern)
+       .toFormatter(locale)
+       .withResolverStyle(ResolverStyle.LENIENT);
+  }
+
+  public static RigelDateFormatter ofPattern(String pattern)
+  {
+    return new RigelDateFormatter(pattern, Locale.getDefault(), ZoneId.systemDefault());
+  }
+
+  /**
+   * Formattatore per pattern numerici indipendenti dal locale (es. ISO per SQL).
+   * Il fuso orario è quello di default della JVM al momento dell'uso.
+   * @param pattern pattern DateTimeFormatter
+   * @return formattatore
+   */
+  public static RigelDateFormatter ofNeutralPattern(String pattern)
+  {
+    return new RigelDateFormatter(pattern, Locale.ROOT, null);
+  }
+
+  /**
+   * Formatta il valore.
+   * @param value Date, Calendar, Instant, un oggetto java.time oppure
+   * un numero (millisecondi dal 1/1/1970)
+   * @return stringa formattata
+   */
+  public String format(Object value)
+  {
+    ZoneId zone = getZone();
+    TemporalAccessor ta;
+
+    if(value instanceof Date)
+      ta = Instant.ofEpochMilli(((Date) value).getTime()).atZone(zone);
+    else if(value instanceof Calendar)
+      ta = ((Calendar) value).toInstant().atZone(zone);
+    else if(value instanceof Instant)
+      ta = ((Instant) value).atZone(zone);
+    else if(value instanceof TemporalAccessor)
+      ta = (TemporalAccessor) value;
+    else if(value instanceof Number)
+      ta = Instant.ofEpochMilli(((Number) value).longValue()).atZone(zone);
+    else
+      throw new IllegalArgumentException("Cannot format given Object as a Date");
+
+    return formatter.format(ta);
+  }
+
+  /**
+   * Interpreta la stringa.
+   * @param text stringa da interpretare
+   * @return data corrispondente
+   * @throws ParseException
+   */
+  public Date parse(String text)
+     throws ParseException
+  {
+    // come in SimpleDateFormat gli spazi prima della data sono ignorati
+    int start = 0;
+    while(start < text.length() && Character.isWhitespace(text.charAt(start)))
+      start++;
+
+    ParsePosition pos = new ParsePosition(start);
+    TemporalAccessor ta;
+
+    try
+    {
+      ta = formatter.parse(text, pos);
+    }
+    catch(DateTimeException ex)
+    {
+      throw new ParseException("Unparseable date: \"" + text + "\"", pos.getErrorIndex() < 0 ? 0 : pos.getErrorIndex());
+    }
+
+    LocalDate d = ta.query(TemporalQueries.localDate());
+    LocalTime t = ta.query(TemporalQueries.localTime());
+    ZoneId z = ta.query(TemporalQueries.zone());
+
+    return Date.from(ZonedDateTime.of(
+       d == null ? LocalDate.of(1970, 1, 1) : d,
+       t == null ? LocalTime.MIDNIGHT : t,
+       z == null ? getZone() : z).toInstant());
+  }
+
+  public String getPattern()
+  {
+    return pattern;
+  }
+
+  /**
+   * Ritorna il fuso orario in uso.
+   * @return fuso orario impostato oppure il default corrente della JVM
+   */
+  public ZoneId getZone()
+  {
+    return zone == null ? ZoneId.systemDefault() : zone;
+  }
+
+  public DateTimeFormatter getFormatter()
+  {
+    return formatter;
+  }
+}
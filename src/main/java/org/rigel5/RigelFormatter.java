@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2020 Nicola De Nisco
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.rigel5;
+
+import java.text.ParseException;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Formattazione e parsing dei valori di data, ora e numero.
+ * A differenza dei java.text.Format usati in precedenza le implementazioni
+ * devono essere thread safe: una unica istanza viene condivisa da tutte
+ * le tabelle, i query builder e le maschere di ricerca
+ * (vedi SetupHolder.getFormatter()).
+ * L'implementazione di default è DefaultRigelFormatter.
+ *
+ * @author Nicola De Nisco
+ */
+public interface RigelFormatter
+{
+  /**
+   * Ritorna il locale di questo formattatore.
+   * @return locale
+   */
+  public Locale getLocale();
+
+  /**
+   * Ritorna un formattatore equivalente per il locale indicato.
+   * @param locale locale richiesto
+   * @return formattatore (eventualmente this)
+   */
+  public RigelFormatter forLocale(Locale locale);
+
+  public String formatDate(Object value);
+
+  public String formatTime(Object value);
+
+  public String formatDateTime(Object value);
+
+  public String formatNumber(Object value);
+
+  public String formatValuta(Object value);
+
+  public Date parseDate(String value)
+     throws ParseException;
+
+  public Date parseTime(String value)
+     throws ParseException;
+
+  public Date parseDateTime(String value)
+     throws ParseException;
+
+  public Number parseNumber(String value)
+     throws ParseException;
+
+  public Number parseValuta(String value)
+     throws ParseException;
+}
@@ -46,6 +46,20 @@ public interface RigelUIManager
   public String formatHtmlLista(int filtro, RigelHtmlPage page)
      throws Exception;
 
+  /**
+   * Come formatHtmlLista ma scrive direttamente su out
+   * (ad esempio il Writer della servlet) senza costruire la stringa finale.
+   * @param filtro tipo di visualizzazione
+   * @param page the value of page
+   * @param out destinazione
+   * @throws Exception
+   */
+  public default void writeHtmlLista(int filtro, RigelHtmlPage page, Appendable out)
+     throws Exception
+  {
+    out.append(formatHtmlLista(filtro, page));
+  }
+
   /**
    * Formatta form in caso di visualizzazione semplice.
    * @param page the value of page
@@ -55,6 +69,19 @@ public interface RigelUIManager
   public String formatHtmlForm(RigelHtmlPage page)
      throws Exception;
 
+  /**
+   * Come formatHtmlForm ma scrive direttamente su out
+   * (ad esempio il Writer della servlet) senza costruire la stringa finale.
+   * @param page the value of page
+   * @param out destinazione
+   * @throws Exception
+   */
+  public default void writeHtmlForm(RigelHtmlPage page, Appendable out)
+     throws Exception
+  {
+    out.append(formatHtmlForm(page));
+  }
+
   /**
    * Formatta lista quando è attiva la ricerca semplice.
    * Oltre al contenuto della tabella e la barra di navigazione
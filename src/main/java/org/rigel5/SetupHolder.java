@@ -18,6 +18,7 @@
 package org.rigel5;
 
 import java.text.*;
+import java.util.Locale;
 import org.commonlib5.utils.ClassOper;
 import org.commonlib5.utils.StringOper;
 import org.rigel5.db.ConnectionProducer;
@@ -45,12 +46,16 @@ public class SetupHolder
   private static String imgFormForeign = null;
   private static String imgDeleteItem = null;
   //
-  // formattatori vari
+  // formattatori vari (impostati con i vecchi setter)
   private static Format dateFormat = null;
   private static Format timeFormat = null;
   private static Format dateTimeFormat = null;
   private static Format numberFormat = null;
   private static Format valutaFormat = null;
+  /**
+   * Formattatore thread safe per date e numeri.
+   */
+  private static volatile RigelFormatter formatter = null;
   /**
    * L'oggetto connection producer
    * è un produttore di connessioni SQL.
@@ -162,64 +167,135 @@ public class SetupHolder
     return imgEditItem;
   }
 
+  /**
+   * Ritorna il formattatore per date e numeri.
+   * Se non è stato impostato esplicitamente viene costruito un
+   * DefaultRigelFormatter per il locale di default, tenendo conto
+   * degli eventuali formati impostati con setDateFormat() e simili.
+   * @return formattatore thread safe
+   */
+  public static RigelFormatter getFormatter()
+  {
+    RigelFormatter f = formatter;
+    if(f == null)
+      formatter = f = DefaultRigelFormatter.fromFormats(Locale.getDefault(),
+         dateFormat, timeFormat, dateTimeFormat, numberFormat, valutaFormat);
+    return f;
+  }
+
+  /**
+   * Ritorna il formattatore per date e numeri per il locale indicato.
+   * @param locale locale richiesto
+   * @return formattatore thread safe
+   */
+  public static RigelFormatter getFormatter(Locale locale)
+  {
+    return getFormatter().forLocale(locale);
+  }
+
+  public static void setFormatter(RigelFormatter _formatter)
+  {
+    formatter = _formatter;
+  }
+
+  /**
+   * Formato per le date.
+   * @return formato impostato con setDateFormat() o una nuova istanza di default
+   * @deprecated i java.text.Format non sono thread safe: usare getFormatter()
+   */
+  @Deprecated
   public static Format getDateFormat()
   {
-    if(dateFormat == null)
-      dateFormat = new SimpleDateFormat("dd/MM/yyyy");
-    return dateFormat;
+    return dateFormat != null ? dateFormat : new SimpleDateFormat(DefaultRigelFormatter.DATE_PATTERN);
   }
 
+  /**
+   * Imposta il formato per le date.
+   * Il formattatore corrente viene ricostruito con i formati impostati.
+   * @param _dateFormat formato per le date
+   * @deprecated usare setFormatter()
+   */
+  @Deprecated
   public static void setDateFormat(Format _dateFormat)
   {
     dateFormat = _dateFormat;
+    formatter = null;
   }
 
+  /**
+   * @deprecated i java.text.Format non sono thread safe: usare getFormatter()
+   */
+  @Deprecated
   public static Format getTimeFormat()
   {
-    if(timeFormat == null)
-      timeFormat = new SimpleDateFormat("HH:mm:ss");
-    return timeFormat;
+    return timeFormat != null ? timeFormat : new SimpleDateFormat(DefaultRigelFormatter.TIME_PATTERN);
   }
 
+  /**
+   * @deprecated usare setFormatter()
+   */
+  @Deprecated
   public static void setTimeFormat(Format _timeFormat)
   {
     timeFormat = _timeFormat;
+    formatter = null;
   }
 
+  /**
+   * @deprecated i java.text.Format non sono thread safe: usare getFormatter()
+   */
+  @Deprecated
   public static Format getDateTimeFormat()
   {
-    if(dateTimeFormat == null)
-      dateTimeFormat = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss");
-    return dateTimeFormat;
+    return dateTimeFormat != null ? dateTimeFormat : new SimpleDateFormat(DefaultRigelFormatter.DATETIME_PATTERN);
   }
 
+  /**
+   * @deprecated usare setFormatter()
+   */
+  @Deprecated
   public static void setDateTimeFormat(Format _dateTimeFormat)
   {
     dateTimeFormat = _dateTimeFormat;
+    formatter = null;
   }
 
+  /**
+   * @deprecated i java.text.Format non sono thread safe: usare getFormatter()
+   */
+  @Deprecated
   public static Format getNumberFormat()
   {
-    if(numberFormat == null)
-      numberFormat = NumberFormat.getInstance();
-    return numberFormat;
+    return numberFormat != null ? numberFormat : NumberFormat.getInstance();
   }
 
+  /**
+   * @deprecated usare setFormatter()
+   */
+  @Deprecated
   public static void setNumberFormat(Format _numberFormat)
   {
     numberFormat = _numberFormat;
+    formatter = null;
   }
 
+  /**
+   * @deprecated i java.text.Format non sono thread safe: usare getFormatter()
+   */
+  @Deprecated
   public static Format getValutaFormat()
   {
-    if(valutaFormat == null)
-      valutaFormat = NumberFormat.getInstance();
-    return valutaFormat;
+    return valutaFormat != null ? valutaFormat : NumberFormat.getInstance();
   }
 
+  /**
+   * @deprecated usare setFormatter()
+   */
+  @Deprecated
   public static void setValutaFormat(Format _valutaFormat)
   {
     valutaFormat = _valutaFormat;
+    formatter = null;
   }
 
   public static ConnectionProducer getConProd()
@@ -17,10 +17,11 @@
  */
 package org.rigel5;
 
-import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.rigel5.table.ForeignDataHolder;
 
 /**
@@ -60,6 +61,10 @@ public class SimpleCacheManager implements RigelCacheManager
    * I dati vengono memorizzati qui.
    */
   protected HashMap<String, CacheHit> cache = new HashMap<String, CacheHit>();
+  /**
+   * Indice inverso tabella -> chiavi usato da purgeTabella.
+   */
+  protected CacheTableIndex tableIndex = new CacheTableIndex();
 
   @Override
   public List<ForeignDataHolder> getForeignDataList(String chiave)
@@ -120,6 +125,7 @@ public class SimpleCacheManager implements RigelCacheManager
     if((System.currentTimeMillis() - rv.tCreated) > expireMillis)
     {
       cache.remove(chiave);
+      tableIndex.unregister(chiave);
       return null;
     }
 
@@ -127,36 +133,33 @@ public class SimpleCacheManager implements RigelCacheManager
   }
 
   @Override
-  public synchronized void putGenericCachedData(String chiave, Object data)
+  public void putGenericCachedData(String chiave, Object data)
+  {
+    putGenericCachedData(chiave, data, SqlUtils.extractTables(chiave));
+  }
+
+  @Override
+  public synchronized void putGenericCachedData(String chiave, Object data, Set<String> tabelle)
   {
     cache.put(chiave, new CacheHit(data));
+    tableIndex.register(chiave, tabelle);
   }
 
   @Override
   public synchronized void purgeTabella(String nomeTabella)
   {
-    ArrayList<String> toRemove = new ArrayList<>();
-    String upNomeTab = " FROM " + nomeTabella.toUpperCase() + " ";
-
-    for(Map.Entry<String, CacheHit> entrySet : cache.entrySet())
+    for(String s : tableIndex.getChiavi(nomeTabella))
     {
-      String key = entrySet.getKey();
-      CacheHit value = entrySet.getValue();
-
-      if(key.contains(upNomeTab))
-        toRemove.add(key);
-    }
-
-    for(String s : toRemove)
       cache.remove(s);
+      tableIndex.unregister(s);
+    }
   }
 
-  /**
-   * Rimuove tutte le entry della cache.
-   */
+  @Override
   public synchronized void flushCache()
   {
     cache.clear();
+    tableIndex.clear();
   }
 
   /**
@@ -164,13 +167,18 @@ public class SimpleCacheManager implements RigelCacheManager
    */
   public synchronized void purge()
   {
-    for(Map.Entry<String, CacheHit> entry : cache.entrySet())
+    Iterator<Map.Entry<String, CacheHit>> itr = cache.entrySet().iterator();
+    while(itr.hasNext())
     {
+      Map.Entry<String, CacheHit> entry = itr.next();
       String chiave = entry.getKey();
       CacheHit data = entry.getValue();
 
       if((System.currentTimeMillis() - data.tCreated) > expireMillis)
-        cache.remove(chiave);
+      {
+        itr.remove();
+        tableIndex.unregister(chiave);
+      }
     }
   }
 
@@ -18,6 +18,11 @@
 package org.rigel5;
 
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.regex.Pattern;
 import org.apache.torque.criteria.SqlEnum;
 import org.commonlib5.utils.StringOper;
@@ -236,4 +241,193 @@ public class SqlUtils
 
     return false;
   }
+
+  /**
+   * Parole chiave che chiudono l'elenco delle tabelle di una FROM.
+   */
+  private static final Set<String> TABLE_LIST_TERMINATORS = new HashSet<>(Arrays.asList(
+     "WHERE", "JOIN", "INNER", "LEFT", "RIGHT", "FULL", "OUTER", "CROSS", "NATURAL",
+     "ON", "USING", "ORDER", "GROUP", "HAVING", "LIMIT", "OFFSET", "FETCH", "FOR",
+     "UNION", "EXCEPT", "INTERSECT", "MINUS", "WINDOW", "SET", "VALUES", "SELECT",
+     "LATERAL", "ONLY", "RETURNING", "DEFAULT"));
+
+  /**
+   * Estrae i nomi delle tabelle referenziate da una istruzione SQL.
+   * Vengono considerati gli identificatori che seguono FROM, JOIN, INTO e UPDATE,
+   * comprese le liste separate da virgola e le subquery annidate.
+   * I nomi vengono normalizzati con normalizeTableName(); per i nomi
+   * qualificati con lo schema viene aggiunto anche il nome semplice.
+   * Il parsing è volutamente tollerante: in caso di dubbio può restituire
+   * nomi in eccesso ma non ignora tabelle effettivamente referenziate.
+   * @param sSQL istruzione SQL
+   * @return insieme (eventualmente vuoto) dei nomi tabella normalizzati
+   */
+  public static Set<String> extractTables(String sSQL)
+  {
+    HashSet<String> rv = new HashSet<>();
+    if(sSQL == null || sSQL.isEmpty())
+      return rv;
+
+    // 0=nessuno 1=attesa nome tabella 2=dopo nome tabella 3=dopo AS 4=dopo alias
+    int state = 0;
+    for(String tok : tokenizeSql(sSQL))
+    {
+      String up = tok.toUpperCase();
+
+      if(up.equals("FROM") || up.equals("JOIN") || up.equals("INTO") || up.equals("UPDATE"))
+      {
+        state = 1;
+        continue;
+      }
+
+      boolean isName = isSqlIdentifier(tok) && !TABLE_LIST_TERMINATORS.contains(up);
+
+      switch(state)
+      {
+        case 1:
+          if(isName)
+          {
+            addTableName(rv, tok);
+            state = 2;
+          }
+          else if(!up.equals("ONLY"))
+            state = 0;
+          break;
+
+        case 2:
+          if(tok.equals(","))
+            state = 1;
+          else if(up.equals("AS"))
+            state = 3;
+          else
+            state = isName ? 4 : 0;
+          break;
+
+        case 3:
+          state = isName ? 4 : 0;
+          break;
+
+        case 4:
+          state = tok.equals(",") ? 1 : 0;
+          break;
+      }
+    }
+
+    return rv;
+  }
+
+  /**
+   * Normalizza un nome di tabella per confronti.
+   * Rimuove i delimitatori di identificatore ("", ``, []) e converte in maiuscolo.
+   * @param nomeTabella nome tabella (eventualmente con schema)
+   * @return nome normalizzato
+   */
+  public static String normalizeTableName(String nomeTabella)
+  {
+    StringBuilder sb = new StringBuilder(nomeTabella.length());
+    for(int i = 0; i < nomeTabella.length(); i++)
+    {
+      char c = nomeTabella.charAt(i);
+      if(c != '"' && c != '`' && c != '[' && c != ']' && !Character.isWhitespace(c))
+        sb.append(Character.toUpperCase(c));
+    }
+    return sb.toString();
+  }
+
+  private static void addTableName(Set<String> rv, String tok)
+  {
+    String nome = normalizeTableName(tok);
+    if(nome.isEmpty())
+      return;
+
+    rv.add(nome);
+
+    int pos = nome.lastIndexOf('.');
+    if(pos != -1 && pos < nome.length() - 1)
+      rv.add(nome.substring(pos + 1));
+  }
+
+  private static boolean isSqlIdentifier(String tok)
+  {
+    char c = tok.charAt(0);
+    return Character.isLetter(c) || c == '_' || c == '"' || c == '`' || c == '[';
+  }
+
+  /**
+   * Suddivide una istruzione SQL in token.
+   * I letterali stringa e i commenti vengono scartati, gli identificatori (anche qualificati
+   * e delimitati) diventano un unico token, la punteggiatura un token per carattere.
+   */
+  private static List<String> tokenizeSql(String sSQL)
+  {
+    ArrayList<String> rv = new ArrayList<>();
+    int len = sSQL.length();
+    int i = 0;
+
+    while(i < len)
+    {
+      char c = sSQL.charAt(i);
+
+      if(Character.isWhitespace(c))
+      {
+        i++;
+      }
+      else if(c == '-' && i + 1 < len && sSQL.charAt(i + 1) == '-')
+      {
+        // commento di riga: scartato
+        int end = sSQL.indexOf('\n', i + 2);
+        i = end == -1 ? len : end + 1;
+      }
+      else if(c == '/' && i + 1 < len && sSQL.charAt(i + 1) == '*')
+      {
+        // commento di blocco: scartato
+        int end = sSQL.indexOf("*/", i + 2);
+        i = end == -1 ? len : end + 2;
+      }
+      else if(c == '\'')
+      {
+        // letterale stringa: scartato (gestisce l'escape '')
+        i++;
+        while(i < len)
+        {
+          if(sSQL.charAt(i) == '\'')
+          {
+            if(i + 1 < len && sSQL.charAt(i + 1) == '\'')
+              i += 2;
+            else
+              break;
+          }
+          else
+            i++;
+        }
+        i++;
+      }
+      else if(Character.isLetterOrDigit(c) || c == '_' || c == '"' || c == '`' || c == '[' || c == '$')
+      {
+        int start = i;
+        while(i < len)
+        {
+          char d = sSQL.charAt(i);
+          if(d == '"' || d == '`' || d == '[')
+          {
+            char close = d == '[' ? ']' : d;
+            int end = sSQL.indexOf(close, i + 1);
+            i = end == -1 ? len : end + 1;
+          }
+          else if(Character.isLetterOrDigit(d) || d == '_' || d == '$' || d == '.')
+            i++;
+          else
+            break;
+        }
+        rv.add(sSQL.substring(start, i));
+      }
+      else
+      {
+        rv.add(String.valueOf(c));
+        i++;
+      }
+    }
+
+    return rv;
+  }
 }
@@ -28,6 +28,7 @@ import java.sql.*;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
@@ -46,6 +47,7 @@ import org.jdom2.Document;
 import org.jdom2.Element;
 import org.jdom2.Namespace;
 import org.jdom2.input.SAXBuilder;
+import org.rigel5.db.sql.StatoRecCache;
 import org.rigel5.db.torque.TableMapHelper;
 
 /**
@@ -88,6 +90,12 @@ abstract public class AbstractAlignDatabase
   protected String clobType = "CLOB";
   protected boolean alterFkCorrectPostgres = false;
   protected boolean usaTestEstesoCaricamentoPeer = false;
+  /** import CSV cumulativo (COPY su PostgreSQL, executeBatch altrove); sovrascrivibile con l'attributo bulk */
+  protected boolean csvBulk = false;
+  /** dimensione dei blocchi per l'import CSV cumulativo; sovrascrivibile con l'attributo chunk */
+  protected int csvChunkSize = 1000;
+  /** dimensione dei blocchi per macro_populateuuid senza generazione uuid lato server */
+  protected int uuidChunkSize = 1000;
 
   public static final int osType = OsIdent.checkOStype();
   public static final int SB_STATEMENT_SIZE = 1024;
@@ -194,6 +202,13 @@ abstract public class AbstractAlignDatabase
       updSettimana = minor;
       updated = true;
     }
+
+    // lo schema può essere cambiato: i metadati in cache non sono più validi
+    if(updated)
+    {
+      SchemaCatalog.getInstance(con).invalidateAll();
+      StatoRecCache.getInstance().clear();
+    }
   }
 
   protected StepUpdate parseStep(Element elemento)
@@ -1021,6 +1036,16 @@ abstract public class AbstractAlignDatabase
     modifier.apply(this, arParams);
   }
 
+  /**
+   * Popola un campo uuid dove è NULL.
+   * Sintassi: tabella;chiave primaria;campo uuid
+   * Se il database è in grado di generare uuid (PostgreSQL, MSSQL)
+   * viene eseguito un unico update; altrimenti gli uuid sono generati
+   * qui e scritti a blocchi con executeBatch(), con commit ad ogni
+   * blocco se la connessione non è in autocommit.
+   * @param params parametri della macro
+   * @throws Exception
+   */
   public void macro_populateuuid(String params)
      throws Exception
   {
@@ -1032,40 +1057,137 @@ abstract public class AbstractAlignDatabase
     String nomePrimary = arParams[1];
     String nomeCampo = arParams[2];
 
-    boolean pnum = DbUtils.isNumeric(con, nomeTabella, nomePrimary);
+    String uuidFun = getUuidFunction();
+    if(uuidFun != null)
+    {
+      String sUPD
+         = "UPDATE " + nomeTabella
+         + "   SET " + nomeCampo + "=" + uuidFun
+         + " WHERE " + nomeCampo + " IS NULL";
+
+      try(Statement su = con.createStatement())
+      {
+        int count = su.executeUpdate(sUPD);
+        if(verbose)
+          log.info("Popolati " + count + " uuid in " + nomeTabella + "." + nomeCampo);
+      }
+      return;
+    }
 
     String sSQL
-       = "SELECT " + nomePrimary + "," + nomeCampo
+       = "SELECT " + nomePrimary
        + "  FROM " + nomeTabella
        + " WHERE " + nomeCampo + " IS NULL";
 
-    try(Statement sq = con.createStatement())
+    String sUPD
+       = "UPDATE " + nomeTabella
+       + "   SET " + nomeCampo + "=?"
+       + " WHERE " + nomePrimary + "=?";
+
+    int total = 0;
+    boolean commit = !con.getAutoCommit();
+    ArrayList<Object> keys = new ArrayList<>(uuidChunkSize);
+
+    try(Statement sq = con.createStatement();
+       PreparedStatement su = con.prepareStatement(sUPD))
     {
-      try(ResultSet rs = sq.executeQuery(sSQL))
+      sq.setMaxRows(uuidChunkSize);
+
+      do
       {
-        String sUPD;
-        while(rs.next())
+        // i record aggiornati escono dalla selezione: ogni ciclo legge il blocco successivo
+        keys.clear();
+        try(ResultSet rs = sq.executeQuery(sSQL))
         {
-          if(pnum)
-          {
-            sUPD = "UPDATE " + nomeTabella
-               + "   SET " + nomeCampo + "='" + UUID.randomUUID() + "'"
-               + " WHERE " + nomePrimary + "=" + rs.getLong(1);
-          }
-          else
-          {
-            sUPD = "UPDATE " + nomeTabella
-               + "   SET " + nomeCampo + "='" + UUID.randomUUID() + "'"
-               + " WHERE " + nomePrimary + "='" + rs.getLong(1) + "'";
-          }
+          while(rs.next())
+            keys.add(rs.getObject(1));
+        }
+
+        if(keys.isEmpty())
+          break;
+
+        for(Object key : keys)
+        {
+          su.setString(1, UUID.randomUUID().toString());
+          su.setObject(2, key);
+          su.addBatch();
+        }
+
+        int updated = countUpdated(su.executeBatch());
+        if(commit)
+          con.commit();
+
+        // se nessun record del blocco è stato aggiornato la select restituirebbe
+        // sempre le stesse chiavi: interrompe per non ciclare all'infinito
+        if(updated == 0)
+        {
+          log.warn("Nessun uuid aggiornato in " + nomeTabella + "." + nomeCampo
+             + " per " + keys.size() + " chiavi: popolamento interrotto.");
+          break;
+        }
+
+        total += updated;
+        if(verbose)
+          log.info("Popolati " + total + " uuid in " + nomeTabella + "." + nomeCampo);
+      }
+      while(keys.size() == uuidChunkSize);
+    }
+  }
+
+  /**
+   * Somma i record aggiornati dai comandi di un executeBatch().
+   * Se il driver non riporta il conteggio (SUCCESS_NO_INFO) il comando
+   * viene considerato come un record aggiornato.
+   * @param counts risultato di executeBatch()
+   * @return numero di record aggiornati
+   */
+  protected int countUpdated(int[] counts)
+  {
+    int updated = 0;
+    for(int c : counts)
+    {
+      if(c == Statement.SUCCESS_NO_INFO)
+        updated++;
+      else if(c > 0)
+        updated += c;
+    }
+    return updated;
+  }
 
-          try(Statement su = con.createStatement())
+  /**
+   * Ritorna la funzione SQL per generare un uuid lato server.
+   * @return espressione SQL oppure null se non disponibile
+   * @throws Exception
+   */
+  protected String getUuidFunction()
+     throws Exception
+  {
+    if("postgresql".equals(adapter))
+    {
+      // gen_random_uuid() è nativa da PostgreSQL 13 (prima con pgcrypto); uuid_generate_v4() con uuid-ossp
+      for(String fun : new String[]
+      {
+        "gen_random_uuid", "uuid_generate_v4"
+      })
+      {
+        try(PreparedStatement ps = con.prepareStatement("SELECT 1 FROM pg_proc WHERE proname=?"))
+        {
+          ps.setString(1, fun);
+          try(ResultSet rs = ps.executeQuery())
           {
-            su.executeUpdate(sUPD);
+            if(rs.next())
+              return fun + "()";
           }
         }
       }
+
+      return null;
     }
+
+    if("mssql".equals(adapter))
+      return "NEWID()";
+
+    return null;
   }
 
   public void macro_build(String params)
@@ -1363,106 +1485,503 @@ abstract public class AbstractAlignDatabase
       CSVParser parser = CSVFormat.RFC4180.withFirstRecordAsHeader().parse(in);
 
       Map<String, Integer> headers = parser.getHeaderMap();
-      int numColonne = headers.size();
+      ArrayList<Info> arInfo = new ArrayList<>();
 
-      StringBuilder sb1 = new StringBuilder();
-      StringBuilder sb2 = new StringBuilder();
-      sb1.append("INSERT INTO ").append(tabella).append("(");
-      sb2.append(") VALUES (");
-      StringBuilder sb3 = new StringBuilder();
-      sb3.append("UPDATE ").append(tabella).append(" SET ");
+      for(Map.Entry<String, Integer> entry : headers.entrySet())
+      {
+        Info i = new Info();
+        i.nomeCampo = purgeNome(entry.getKey());
+        i.indiceCampo = entry.getValue();
+        arInfo.add(i);
+      }
 
-      ArrayList<Info> arInfo = new ArrayList<>();
+      // solo metadati: nessun record deve essere letto
+      ArrayMap<String, Integer> colMap = DbUtils.getTipiColonneQuery(con, "SELECT * FROM " + tabella + " WHERE 1=0");
 
+      if(colMap == null)
       {
-        int c1 = 0, c2 = 0;
-        for(Map.Entry<String, Integer> entry : headers.entrySet())
-        {
-          Info i = new Info();
+        log.info("Tabella " + tabella + " non trovata nel database.");
+        return;
+      }
 
-          i.nomeCampo = purgeNome(entry.getKey());
-          i.indiceCampo = entry.getValue();
+      arInfo.forEach((i) -> i.sqlType = colMap.getIgnoreCase(i.nomeCampo));
 
-          if(c1 > 0)
-          {
-            sb1.append(",");
-            sb2.append(",");
-          }
+      boolean bulk = csvBulk;
+      int chunkSize = csvChunkSize;
+      if(fileCsv != null)
+      {
+        bulk = StringOper.checkTrueFalse(fileCsv.getAttributeValue("bulk"), bulk);
+        chunkSize = StringOper.parse(fileCsv.getAttributeValue("chunk"), chunkSize);
+      }
 
-          sb1.append(i.nomeCampo);
-          sb2.append("?");
+      if(!bulk)
+        executeFileCsvRecord(tabella, chiave, parser, arInfo);
+      else if("postgresql".equals(adapter))
+        executeFileCsvCopy(tabella, chiave, parser, arInfo);
+      else
+        executeFileCsvBatch(tabella, chiave, parser, arInfo, chunkSize);
+    }
+  }
 
-          if(!StringOper.isEquNocase(chiave, i.nomeCampo))
-          {
-            if(c2 > 0)
-              sb3.append(",");
-            sb3.append(i.nomeCampo).append("=?");
-            c2++;
-          }
+  /**
+   * Legge i valori di un record CSV nell'ordine di arInfo.
+   * @param csvRecord record del file
+   * @param arInfo descrittori delle colonne
+   * @return valori oppure null se il record va scartato
+   * @throws Exception
+   */
+  protected String[] readCsvRecord(CSVRecord csvRecord, List<Info> arInfo)
+     throws Exception
+  {
+    // scarta i record che non hanno lo stesso numero di colonne
+    if(arInfo.size() != csvRecord.size())
+    {
+      log.info(String.format("Record %d scartato: attesi %d campi, trovati %d campi.",
+         csvRecord.getRecordNumber(), arInfo.size(), csvRecord.size()));
+      return null;
+    }
 
-          c1++;
-          arInfo.add(i);
-        }
-      }
+    String[] rv = new String[arInfo.size()];
+    for(int j = 0; j < rv.length; j++)
+    {
+      Info i = arInfo.get(j);
+      rv[j] = manipolaCampo(i, StringOper.okStrNull(csvRecord.get(i.indiceCampo)));
+    }
 
-      sb1.append(sb2).append(")");
-      sb3.append(" WHERE ").append(chiave).append("=?");
+    return rv;
+  }
 
-      PreparedStatement psIns = con.prepareStatement(sb1.toString());
-      PreparedStatement psUpd = con.prepareStatement(sb3.toString());
+  protected int findKeyIndex(String chiave, List<Info> arInfo)
+  {
+    for(int j = 0; j < arInfo.size(); j++)
+    {
+      if(StringOper.isEquNocase(chiave, arInfo.get(j).nomeCampo))
+        return j;
+    }
+    return -1;
+  }
 
-      //ArrayMap<String, Integer> colMap = DbUtils.getTipiColonne(con, tabella);
-      ArrayMap<String, Integer> colMap = DbUtils.getTipiColonneQuery(con, "SELECT * FROM " + tabella);
+  protected String buildCsvInsert(String tabella, List<Info> arInfo)
+  {
+    StringBuilder sb1 = new StringBuilder(SB_STATEMENT_SIZE);
+    StringBuilder sb2 = new StringBuilder();
+    sb1.append("INSERT INTO ").append(tabella).append("(");
+    sb2.append(") VALUES (");
 
-      if(colMap == null)
+    for(int j = 0; j < arInfo.size(); j++)
+    {
+      if(j > 0)
       {
-        log.info("Tabella " + tabella + " non trovata nel database.");
-        return;
+        sb1.append(",");
+        sb2.append(",");
       }
 
-      arInfo.forEach((i) -> i.sqlType = colMap.getIgnoreCase(i.nomeCampo));
+      sb1.append(arInfo.get(j).nomeCampo);
+      sb2.append("?");
+    }
+
+    return sb1.append(sb2).append(")").toString();
+  }
+
+  protected String buildCsvUpdate(String tabella, String chiave, List<Info> arInfo, int keyIdx)
+  {
+    StringBuilder sb3 = new StringBuilder(SB_STATEMENT_SIZE);
+    sb3.append("UPDATE ").append(tabella).append(" SET ");
+
+    int c2 = 0;
+    for(int j = 0; j < arInfo.size(); j++)
+    {
+      if(j == keyIdx)
+        continue;
+
+      if(c2++ > 0)
+        sb3.append(",");
+      sb3.append(arInfo.get(j).nomeCampo).append("=?");
+    }
+
+    return sb3.append(" WHERE ").append(chiave).append("=?").toString();
+  }
+
+  protected void setCsvInsert(PreparedStatement psIns, List<Info> arInfo, String[] valori)
+     throws SQLException
+  {
+    for(int j = 0; j < valori.length; j++)
+      psIns.setObject(j + 1, valori[j], arInfo.get(j).sqlType);
+  }
+
+  protected void setCsvUpdate(PreparedStatement psUpd, List<Info> arInfo, String[] valori, int keyIdx)
+     throws SQLException
+  {
+    int c2 = 1;
+    for(int j = 0; j < valori.length; j++)
+    {
+      if(j != keyIdx)
+        psUpd.setObject(c2++, valori[j], arInfo.get(j).sqlType);
+    }
+
+    psUpd.setObject(c2, valori[keyIdx], arInfo.get(keyIdx).sqlType);
+  }
+
+  /**
+   * Import CSV record per record: update per chiave ed eventuale insert.
+   * @param tabella tabella di destinazione
+   * @param chiave campo chiave (può essere null: solo insert)
+   * @param parser parser del file CSV
+   * @param arInfo descrittori delle colonne
+   * @throws Exception
+   */
+  protected void executeFileCsvRecord(String tabella, String chiave, CSVParser parser, List<Info> arInfo)
+     throws Exception
+  {
+    int keyIdx = findKeyIndex(chiave, arInfo);
+    boolean haveUpdate = keyIdx != -1 && arInfo.size() > 1;
 
+    try(PreparedStatement psIns = con.prepareStatement(buildCsvInsert(tabella, arInfo));
+       PreparedStatement psUpd = haveUpdate ? con.prepareStatement(buildCsvUpdate(tabella, chiave, arInfo, keyIdx)) : null)
+    {
       for(CSVRecord csvRecord : parser)
       {
-        // scarta i record che non hanno lo stesso numero di colonne
-        if(numColonne != csvRecord.size())
+        String[] valori = readCsvRecord(csvRecord, arInfo);
+        if(valori == null)
+          continue;
+
+        boolean updateRecord = false;
+
+        if(haveUpdate && valori[keyIdx] != null)
         {
-          log.info(String.format("Record %d scartato: attesi %d campi, trovati %d campi.",
-             csvRecord.getRecordNumber(), numColonne, csvRecord.size()));
+          setCsvUpdate(psUpd, arInfo, valori, keyIdx);
+          updateRecord = psUpd.executeUpdate() != 0;
+        }
+
+        if(!updateRecord)
+        {
+          setCsvInsert(psIns, arInfo, valori);
+          psIns.executeUpdate();
+        }
+      }
+    }
+  }
+
+  /**
+   * Import CSV con update e insert cumulativi (executeBatch).
+   * Per ogni blocco di record vengono eseguiti gli update; i record
+   * per i quali l'update non ha modificato nulla vengono poi inseriti.
+   * Un blocco viene chiuso in anticipo se contiene già la stessa chiave,
+   * in modo da rispettare l'ordine del file come nell'import record per record.
+   * @param tabella tabella di destinazione
+   * @param chiave campo chiave (può essere null: solo insert)
+   * @param parser parser del file CSV
+   * @param arInfo descrittori delle colonne
+   * @param chunkSize numero di record per blocco
+   * @throws Exception
+   */
+  protected void executeFileCsvBatch(String tabella, String chiave, CSVParser parser, List<Info> arInfo, int chunkSize)
+     throws Exception
+  {
+    int keyIdx = findKeyIndex(chiave, arInfo);
+    boolean haveUpdate = keyIdx != -1 && arInfo.size() > 1;
+    ArrayList<String[]> chunk = new ArrayList<>(chunkSize);
+    HashSet<String> chunkKeys = new HashSet<>();
+    int total = 0;
+
+    try(PreparedStatement psIns = con.prepareStatement(buildCsvInsert(tabella, arInfo));
+       PreparedStatement psUpd = haveUpdate ? con.prepareStatement(buildCsvUpdate(tabella, chiave, arInfo, keyIdx)) : null)
+    {
+      for(CSVRecord csvRecord : parser)
+      {
+        String[] valori = readCsvRecord(csvRecord, arInfo);
+        if(valori == null)
           continue;
+
+        String key = keyIdx == -1 ? null : valori[keyIdx];
+        if(chunk.size() >= chunkSize || (key != null && !chunkKeys.add(key)))
+        {
+          total += executeCsvChunk(psIns, psUpd, arInfo, chunk, keyIdx);
+          chunk.clear();
+          chunkKeys.clear();
+          if(key != null)
+            chunkKeys.add(key);
         }
 
-        int c1 = 1, c2 = 1, tipoChiave = 0;
-        String valoreChiave = null;
-        boolean updateRecord = false;
+        chunk.add(valori);
+      }
+
+      total += executeCsvChunk(psIns, psUpd, arInfo, chunk, keyIdx);
+    }
 
-        for(Info i : arInfo)
+    if(verbose)
+      log.info("Importati " + total + " record in " + tabella);
+  }
+
+  protected int executeCsvChunk(PreparedStatement psIns, PreparedStatement psUpd,
+     List<Info> arInfo, List<String[]> chunk, int keyIdx)
+     throws Exception
+  {
+    if(chunk.isEmpty())
+      return 0;
+
+    ArrayList<String[]> toInsert = new ArrayList<>();
+    ArrayList<String[]> toUpdate = new ArrayList<>();
+
+    for(String[] valori : chunk)
+    {
+      if(psUpd != null && valori[keyIdx] != null)
+        toUpdate.add(valori);
+      else
+        toInsert.add(valori);
+    }
+
+    if(!toUpdate.isEmpty())
+    {
+      for(String[] valori : toUpdate)
+      {
+        setCsvUpdate(psUpd, arInfo, valori, keyIdx);
+        psUpd.addBatch();
+      }
+
+      int[] counts = psUpd.executeBatch();
+      for(int j = 0; j < toUpdate.size(); j++)
+      {
+        int count = j < counts.length ? counts[j] : Statement.SUCCESS_NO_INFO;
+
+        if(count == Statement.SUCCESS_NO_INFO)
         {
-          String valoreCampo = manipolaCampo(i, StringOper.okStrNull(csvRecord.get(i.indiceCampo)));
+          // il driver non riporta il numero di record: ripete il singolo update
+          setCsvUpdate(psUpd, arInfo, toUpdate.get(j), keyIdx);
+          count = psUpd.executeUpdate();
+        }
 
-          psIns.setObject(c1++, valoreCampo, i.sqlType);
+        if(count == 0)
+          toInsert.add(toUpdate.get(j));
+      }
+    }
+
+    if(!toInsert.isEmpty())
+    {
+      for(String[] valori : toInsert)
+      {
+        setCsvInsert(psIns, arInfo, valori);
+        psIns.addBatch();
+      }
+
+      psIns.executeBatch();
+    }
+
+    return chunk.size();
+  }
+
+  /**
+   * Import CSV per PostgreSQL.
+   * Il file viene copiato con COPY in una tabella temporanea con le sole
+   * colonne del CSV e da questa inserito nella tabella di destinazione
+   * con una sola istruzione: INSERT ... ON CONFLICT se la chiave ha un
+   * indice univoco, altrimenti UPDATE ... FROM seguito da INSERT dei
+   * record mancanti. Per chiavi ripetute nel file vale l'ultimo record.
+   * La tabella temporanea ha un nome univoco qualificato con pg_temp,
+   * per non toccare mai una tabella permanente omonima, e viene
+   * eliminata anche in caso di errore.
+   * @param tabella tabella di destinazione
+   * @param chiave campo chiave (può essere null: solo insert)
+   * @param parser parser del file CSV
+   * @param arInfo descrittori delle colonne
+   * @throws Exception
+   */
+  protected void executeFileCsvCopy(String tabella, String chiave, CSVParser parser, List<Info> arInfo)
+     throws Exception
+  {
+    int keyIdx = findKeyIndex(chiave, arInfo);
+    String tmpTable = "pg_temp.rigel_csv_import_" + UUID.randomUUID().toString().replace("-", "");
+    String colList = arInfo.stream().map((i) -> i.nomeCampo).collect(Collectors.joining(","));
+    File tmpFile = File.createTempFile("rigelcsv", ".copy");
+    boolean tmpCreated = false;
+
+    try
+    {
+      int total = 0;
+      try(Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmpFile), StandardCharsets.UTF_8)))
+      {
+        for(CSVRecord csvRecord : parser)
+        {
+          String[] valori = readCsvRecord(csvRecord, arInfo);
+          if(valori == null)
+            continue;
 
-          if(StringOper.isEquNocase(chiave, i.nomeCampo))
+          out.write(Long.toString(csvRecord.getRecordNumber()));
+          for(String v : valori)
           {
-            tipoChiave = i.sqlType;
-            valoreChiave = valoreCampo;
+            out.write('\t');
+            writeCopyValue(out, v);
           }
-          else
-            psUpd.setObject(c2++, valoreCampo, i.sqlType);
+          out.write('\n');
+          total++;
         }
+      }
+
+      try(Statement st = con.createStatement())
+      {
+        st.executeUpdate("CREATE TEMP TABLE " + tmpTable
+           + " AS SELECT 0::bigint AS rigel_csv_row," + colList + " FROM " + tabella + " WITH NO DATA");
+        tmpCreated = true;
 
-        if(valoreChiave != null)
+        try(InputStream is = new BufferedInputStream(new FileInputStream(tmpFile)))
         {
-          psUpd.setObject(c2++, valoreChiave, tipoChiave);
-          updateRecord = psUpd.executeUpdate() != 0;
+          DbUtils.copyInTable(con, tmpTable, "rigel_csv_row," + colList, is);
         }
 
-        if(!updateRecord)
+        if(keyIdx == -1)
         {
-          psIns.executeUpdate();
+          st.executeUpdate("INSERT INTO " + tabella + "(" + colList + ") SELECT " + colList
+             + " FROM " + tmpTable + " ORDER BY rigel_csv_row");
+        }
+        else
+        {
+          // a parità di chiave vale l'ultimo record del file
+          String source = "(SELECT DISTINCT ON (" + chiave + ") " + colList + " FROM " + tmpTable
+             + " WHERE " + chiave + " IS NOT NULL ORDER BY " + chiave + ", rigel_csv_row DESC)";
+          String setList = arInfo.stream()
+             .filter((i) -> !StringOper.isEquNocase(chiave, i.nomeCampo))
+             .map((i) -> i.nomeCampo + "=s." + i.nomeCampo)
+             .collect(Collectors.joining(","));
+
+          if(testUniqueKey(tabella, chiave))
+          {
+            String exclSet = arInfo.stream()
+               .filter((i) -> !StringOper.isEquNocase(chiave, i.nomeCampo))
+               .map((i) -> i.nomeCampo + "=EXCLUDED." + i.nomeCampo)
+               .collect(Collectors.joining(","));
+
+            st.executeUpdate("INSERT INTO " + tabella + "(" + colList + ") SELECT " + colList + " FROM " + source + " s"
+               + " ON CONFLICT (" + chiave + ") DO " + (exclSet.isEmpty() ? "NOTHING" : "UPDATE SET " + exclSet));
+          }
+          else
+          {
+            if(!setList.isEmpty())
+              st.executeUpdate("UPDATE " + tabella + " t SET " + setList + " FROM " + source + " s"
+                 + " WHERE t." + chiave + "=s." + chiave);
+
+            st.executeUpdate("INSERT INTO " + tabella + "(" + colList + ") SELECT " + colList + " FROM " + source + " s"
+               + " WHERE NOT EXISTS(SELECT 1 FROM " + tabella + " t WHERE t." + chiave + "=s." + chiave + ")");
+          }
+
+          // record senza chiave: solo insert come nell'import record per record
+          st.executeUpdate("INSERT INTO " + tabella + "(" + colList + ") SELECT " + colList
+             + " FROM " + tmpTable + " WHERE " + chiave + " IS NULL ORDER BY rigel_csv_row");
         }
       }
+
+      if(verbose)
+        log.info("Importati " + total + " record in " + tabella);
+    }
+    finally
+    {
+      tmpFile.delete();
+
+      if(tmpCreated)
+        dropTempTable(tmpTable);
+    }
+  }
+
+  /**
+   * Elimina una tabella temporanea.
+   * Un errore viene solo segnalato: se la transazione è stata annullata
+   * la tabella viene comunque eliminata alla chiusura della sessione.
+   * @param tmpTable nome della tabella (qualificato con pg_temp)
+   */
+  protected void dropTempTable(String tmpTable)
+  {
+    try(Statement st = con.createStatement())
+    {
+      st.executeUpdate("DROP TABLE IF EXISTS " + tmpTable);
+    }
+    catch(SQLException ex)
+    {
+      log.warn("Eliminazione tabella temporanea " + tmpTable + " fallita: " + ex.getMessage());
+    }
+  }
+
+  /**
+   * Scrive un valore nel formato testo di COPY.
+   */
+  protected void writeCopyValue(Writer out, String v)
+     throws IOException
+  {
+    if(v == null)
+    {
+      out.write("\\N");
+      return;
     }
+
+    for(int k = 0; k < v.length(); k++)
+    {
+      char c = v.charAt(k);
+      switch(c)
+      {
+        case '\\':
+          out.write("\\\\");
+          break;
+        case '\t':
+          out.write("\\t");
+          break;
+        case '\n':
+          out.write("\\n");
+          break;
+        case '\r':
+          out.write("\\r");
+          break;
+        default:
+          out.write(c);
+      }
+    }
+  }
+
+  /**
+   * Verifica se il campo indicato ha da solo un indice univoco (o è la chiave primaria).
+   * @param nomeTabella nome della tabella
+   * @param chiave nome del campo
+   * @return vero se esiste un indice univoco sul solo campo
+   * @throws Exception
+   */
+  protected boolean testUniqueKey(String nomeTabella, String chiave)
+     throws Exception
+  {
+    String nomeSchema = null;
+    int pos = nomeTabella.indexOf('.');
+    if(pos != -1)
+    {
+      nomeSchema = nomeTabella.substring(0, pos);
+      nomeTabella = nomeTabella.substring(pos + 1);
+    }
+
+    DatabaseMetaData dbMeta = con.getMetaData();
+    if(testUniqueKey(dbMeta, nomeSchema, nomeTabella, chiave))
+      return true;
+
+    return testUniqueKey(dbMeta,
+       nomeSchema == null ? null : nomeSchema.toLowerCase(), nomeTabella.toLowerCase(), chiave);
+  }
+
+  private boolean testUniqueKey(DatabaseMetaData dbMeta, String nomeSchema, String nomeTabella, String chiave)
+     throws SQLException
+  {
+    Map<String, List<String>> indici = new HashMap<>();
+    try(ResultSet rs = dbMeta.getIndexInfo(null, nomeSchema, nomeTabella, true, false))
+    {
+      while(rs.next())
+      {
+        String idxName = rs.getString("INDEX_NAME");
+        String colName = rs.getString("COLUMN_NAME");
+        if(idxName != null && colName != null)
+          indici.computeIfAbsent(idxName, (k) -> new ArrayList<>()).add(colName);
+      }
+    }
+
+    for(List<String> cols : indici.values())
+    {
+      if(cols.size() == 1 && StringOper.isEquNocase(chiave, cols.get(0)))
+        return true;
+    }
+
+    return false;
   }
 
   protected String manipolaCampo(Info i, String valore)
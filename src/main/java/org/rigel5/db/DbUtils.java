@@ -1536,6 +1536,45 @@ public class DbUtils
     }
   }
 
+  /**
+   * Esegue una query SQL leggendo i risultati con un cursore.
+   * Lo statement è forward only e read only e usa la fetch size indicata,
+   * quindi i record vengono prelevati dal server a blocchi man mano che
+   * lo stream viene consumato; alcuni driver (es. PostgreSQL) usano il
+   * cursore solo se la connessione non è in autocommit.
+   * Lo stream restituito <b>deve</b> essere chiuso dopo l'uso.
+   * @param <TT> tipo degli oggetti prodotti
+   * @param con connessione al db
+   * @param sSQL query da eseguire
+   * @param params parametri della query preparata (può essere null)
+   * @param fetchSize numero di record prelevati ad ogni accesso al server
+   * @param mapper costruttore degli oggetti dal resultset
+   * @return stream dei risultati
+   * @throws SQLException
+   */
+  public static <TT> Stream<TT> doSelectAsStream(Connection con,
+     String sSQL, List<Object> params, int fetchSize, RecordMapper<TT> mapper)
+     throws SQLException
+  {
+    PreparedStatement statement = con.prepareStatement(sSQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+    try
+    {
+      statement.setFetchSize(fetchSize);
+
+      if(params != null)
+        QueryBuilder.setParameters(statement, params);
+
+      ResultSet resultSet = statement.executeQuery();
+      ResultsetSpliterator<TT> spliterator = new ResultsetSpliterator<>(mapper, null, statement, resultSet);
+      return StreamSupport.stream(spliterator, false).onClose(spliterator);
+    }
+    catch(SQLException e)
+    {
+      statement.close();
+      throw e;
+    }
+  }
+
   /**
    * Performs a SQL <code>select</code> using a PreparedStatement.
    *
@@ -2280,7 +2319,7 @@ public class DbUtils
      throws Exception
   {
     String cmd = "COPY " + table + "(" + columnList + ") FROM STDIN";
-    CopyManager copyManager = new CopyManager((BaseConnection) con);
+    CopyManager copyManager = new CopyManager(con.unwrap(BaseConnection.class));
     copyManager.copyIn(cmd, is, 8192);
   }
 
@@ -2300,7 +2339,7 @@ public class DbUtils
      throws Exception
   {
     String cmd = "COPY " + table + "(" + columnList + ") TO STDOUT";
-    CopyManager copyManager = new CopyManager((BaseConnection) con);
+    CopyManager copyManager = new CopyManager(con.unwrap(BaseConnection.class));
     copyManager.copyOut(cmd, os);
   }
 }
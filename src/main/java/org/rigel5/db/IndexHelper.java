@@ -67,17 +67,14 @@ public class IndexHelper
     unique.clear();
     indici.clear();
 
-    try(ResultSet rs = meta.getIndexInfo(null, schemaName, tableName, false, false))
+    SchemaCatalog.TableInfo ti = SchemaCatalog.getInstance(con).getTable(schemaName, tableName);
+
+    for(IndiciBean b : ti.getIndexes(con))
     {
-      while(rs.next())
-      {
-        IndiciBean b = new IndiciBean();
-        b.read(rs);
-        indici.aggiungi(b.INDEX_NAME, b);
-
-        if(b.NON_UNIQUE == false)
-          unique.aggiungi(b.INDEX_NAME, b);
-      }
+      indici.aggiungi(b.INDEX_NAME, b);
+
+      if(b.NON_UNIQUE == false)
+        unique.aggiungi(b.INDEX_NAME, b);
     }
   }
 
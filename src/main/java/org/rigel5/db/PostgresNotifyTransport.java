@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2020 Nicola De Nisco
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.rigel5.db;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.rigel5.CacheInvalidationTransport;
+
+/**
+ * Trasporto di invalidazione cache basato su PostgreSQL LISTEN/NOTIFY.
+ * Una connessione dedicata, ottenuta dal ConnectionProducer e mantenuta
+ * per tutta la vita del trasporto, resta in LISTEN sul canale indicato;
+ * un thread daemon attende le notifiche e le consegna al listener.
+ * La connessione viene restituita al producer solo dopo UNLISTEN e con
+ * l'autocommit originale.
+ * La pubblicazione usa invece una normale connessione del producer
+ * attraverso pg_notify(): la notifica segue la transazione in corso
+ * su quella connessione e viene consegnata al suo commit (subito se
+ * la connessione è in autocommit).
+ * Se la connessione dedicata cade viene riaperta e il listener
+ * riceve onResync(), poichè nel frattempo alcune notifiche possono
+ * essere andate perse.
+ *
+ * @author Nicola De Nisco
+ */
+public class PostgresNotifyTransport implements CacheInvalidationTransport, Runnable
+{
+  /** Logging */
+  private static final Log log = LogFactory.getLog(PostgresNotifyTransport.class);
+  public static final String DEFAULT_CHANNEL = "rigel_cache";
+  protected final ConnectionProducer conProd;
+  protected final String channel;
+  protected long pollMillis = 1000;
+  protected long retryMillis = 5000;
+  protected volatile boolean running = false;
+  protected Thread thread;
+  protected Listener listener;
+  protected ConnectionProducer.ConnectionHolder holder;
+  protected PGConnection pgcon;
+  protected boolean savedAutoCommit = true;
+
+  public PostgresNotifyTransport(ConnectionProducer conProd)
+  {
+    this(conProd, DEFAULT_CHANNEL);
+  }
+
+  public PostgresNotifyTransport(ConnectionProducer conProd, String channel)
+  {
+    if(!channel.matches("[a-zA-Z_][a-zA-Z0-9_]*"))
+      throw new IllegalArgumentException("Invalid channel name " + channel);
+
+    this.conProd = conProd;
+    this.channel = channel.toLowerCase();
+  }
+
+  @Override
+  public synchronized void start(Listener listener)
+     throws Exception
+  {
+    if(running)
+      throw new IllegalStateException("Transport already started.");
+
+    this.listener = listener;
+    openListener();
+
+    running = true;
+    thread = new Thread(this, "RigelCacheListener-" + channel);
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  @Override
+  public void publish(String payload)
+     throws Exception
+  {
+    conProd.runConnection((con) ->
+    {
+      try(PreparedStatement ps = con.prepareStatement("SELECT pg_notify(?, ?)"))
+      {
+        ps.setString(1, channel);
+        ps.setString(2, payload);
+        ps.execute();
+      }
+    });
+  }
+
+  @Override
+  public void run()
+  {
+    while(running)
+    {
+      try
+      {
+        PGNotification[] arNotify = pgcon.getNotifications((int) pollMillis);
+        if(arNotify != null)
+        {
+          for(PGNotification n : arNotify)
+            listener.onMessage(n.getParameter());
+        }
+      }
+      catch(Exception ex)
+      {
+        if(!running)
+          break;
+
+        log.error("Listening on channel " + channel + " failed: reconnecting.", ex);
+        reconnect();
+      }
+    }
+
+    closeListener();
+  }
+
+  protected void reconnect()
+  {
+    closeListener();
+
+    while(running)
+    {
+      try
+      {
+        Thread.sleep(retryMillis);
+        openListener();
+        listener.onResync();
+        return;
+      }
+      catch(InterruptedException ex)
+      {
+        return;
+      }
+      catch(Exception ex)
+      {
+        log.error("Reconnecting channel " + channel + " failed.", ex);
+        closeListener();
+      }
+    }
+  }
+
+  protected void openListener()
+     throws Exception
+  {
+    holder = conProd.getConnectionHolder();
+
+    try
+    {
+      Connection con = holder.getConnection();
+      savedAutoCommit = con.getAutoCommit();
+      con.setAutoCommit(true);
+
+      try(Statement st = con.createStatement())
+      {
+        st.execute("LISTEN " + channel);
+      }
+
+      pgcon = con.unwrap(PGConnection.class);
+    }
+    catch(Exception ex)
+    {
+      closeListener();
+      throw ex;
+    }
+  }
+
+  protected void closeListener()
+  {
+    pgcon = null;
+
+    if(holder != null)
+    {
+      try
+      {
+        // la connessione torna al pool: niente LISTEN pendenti per il prossimo utilizzatore
+        Connection con = holder.getConnection();
+        try(Statement st = con.createStatement())
+        {
+          st.execute("UNLISTEN *");
+        }
+        con.setAutoCommit(savedAutoCommit);
+      }
+      catch(Exception ex)
+      {
+        log.debug("Resetting listener connection:", ex);
+      }
+
+      try
+      {
+        holder.close();
+      }
+      catch(Exception ex)
+      {
+        log.error("Closing listener connection:", ex);
+      }
+
+      holder = null;
+    }
+  }
+
+  @Override
+  public void close()
+     throws IOException
+  {
+    running = false;
+
+    if(thread != null)
+    {
+      thread.interrupt();
+      try
+      {
+        thread.join(pollMillis + 1000);
+      }
+      catch(InterruptedException ex)
+      {
+        Thread.currentThread().interrupt();
+      }
+      thread = null;
+    }
+  }
+
+  public String getChannel()
+  {
+    return channel;
+  }
+
+  public long getPollMillis()
+  {
+    return pollMillis;
+  }
+
+  public void setPollMillis(long pollMillis)
+  {
+    this.pollMillis = pollMillis;
+  }
+
+  public long getRetryMillis()
+  {
+    return retryMillis;
+  }
+
+  public void setRetryMillis(long retryMillis)
+  {
+    this.retryMillis = retryMillis;
+  }
+}
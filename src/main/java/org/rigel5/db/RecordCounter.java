@@ -186,6 +186,86 @@ public class RecordCounter
     }
   }
 
+  /**
+   * Stima del numero di record di un Criteria da parte del planner del db.
+   * Per un criteria senza condizioni usa le statistiche della tabella.
+   * @param c criteria da stimare
+   * @param tableName tabella del criteria (per la stima senza condizioni; può essere null)
+   * @return numero stimato di record o -1 se la stima non è disponibile
+   * @throws java.lang.Exception
+   */
+  public long getEstimatedRecordCount(Criteria c, String tableName)
+     throws Exception
+  {
+    if(con == null)
+    {
+      try(TorqueConnection connection = Transaction.begin())
+      {
+        con = connection;
+        long rv = getEstimatedRecordCountInternal(c, tableName);
+        Transaction.commit(connection);
+        return rv;
+      }
+      finally
+      {
+        con = null;
+      }
+    }
+    else
+    {
+      return getEstimatedRecordCountInternal(c, tableName);
+    }
+  }
+
+  protected long getEstimatedRecordCountInternal(Criteria c, String tableName)
+     throws Exception
+  {
+    String tableSQL = qb.getTableEstimateRecordsQuery();
+    if(tableName != null && tableSQL != null && c.getTopLevelCriterion() == null)
+    {
+      try(PreparedStatement statement = con.prepareStatement(tableSQL))
+      {
+        statement.setString(1, tableName);
+        try(ResultSet resultSet = statement.executeQuery())
+        {
+          long rv = qb.readEstimateRecords(resultSet);
+          if(rv > 0)
+            return rv;
+        }
+      }
+    }
+
+    Query query = SqlBuilder.buildQuery(c);
+    if(query.getFromClause().isEmpty())
+      throw new TorqueException("Missing from clause.");
+
+    String sSQL = query.toString();
+    int idx = sSQL.indexOf(" FROM ");
+    if(idx == -1)
+      throw new TorqueException("Invalid syntax in query.");
+
+    String sSQL1 = qb.getEstimateRecordsQuery("SELECT * " + sSQL.substring(idx));
+    if(sSQL1 == null)
+      return -1;
+
+    try(PreparedStatement statement = con.prepareStatement(sSQL1))
+    {
+      setPreparedStatementReplacements(
+         statement,
+         query.getPreparedStatementReplacements(),
+         0);
+
+      try(ResultSet resultSet = statement.executeQuery())
+      {
+        return qb.readEstimateRecords(resultSet);
+      }
+    }
+    catch(SQLException e)
+    {
+      throw ExceptionMapper.getInstance().toTorqueException(e);
+    }
+  }
+
   protected long getRecordCountInternal(Criteria c)
      throws Exception
   {
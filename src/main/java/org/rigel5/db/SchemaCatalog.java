@@ -0,0 +1,458 @@
+/*
+ * Copyright (C) 2020 Nicola De Nisco
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.rigel5.db;
+
+import com.workingdogs.village.DataSetException;
+import com.workingdogs.village.Schema;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.commonlib5.utils.ArrayMap;
+import org.commonlib5.utils.Pair;
+import org.commonlib5.utils.StringOper;
+import org.rigel5.SetupHolder;
+import org.rigel5.db.IndexHelper.IndiciBean;
+import org.rigel5.db.TableHelper.PrimaryKeyBean;
+import org.rigel5.db.TableHelper.RelazioniBean;
+
+/**
+ * Catalogo condiviso dei metadati dello schema.
+ * Per ogni tabella conserva tipi delle colonne, chiavi primarie,
+ * chiavi esportate e importate, indici e presenza di STATO_REC;
+ * ogni informazione viene letta da DatabaseMetaData solo al primo uso.
+ * La risoluzione dei nomi tabella usa scanTabelleColonne() del
+ * QueryBuilder, quindi segue le regole del dialetto in uso.
+ * Esiste un catalogo per ogni database (identificato da url e utente
+ * della connessione). Dopo modifiche allo schema il catalogo va
+ * invalidato con invalidate() o invalidateAll().
+ * <pre>
+ *  SchemaCatalog.TableInfo ti = SchemaCatalog.getInstance(con).getTable(con, "anag_clienti");
+ *  if(ti != null &amp;&amp; ti.haveStatoRec(con))
+ *    ...
+ * </pre>
+ *
+ * @author Nicola De Nisco
+ */
+public class SchemaCatalog
+{
+  /** Logging */
+  private static final Log log = LogFactory.getLog(SchemaCatalog.class);
+  public static final int MAX_QUERY_SCHEMA = 512;
+  private static final Map<String, SchemaCatalog> catalogs = new ConcurrentHashMap<>();
+  /** tabelle per nome richiesto (minuscolo) */
+  protected final Map<String, TableInfo> tables = new ConcurrentHashMap<>();
+  /** schema delle query di prova (vedi getQuerySchema) */
+  protected final Map<String, Schema> querySchemas = new ConcurrentHashMap<>();
+
+  /**
+   * Metadati di una tabella.
+   * Le informazioni sono caricate al primo accesso e poi condivise:
+   * le collezioni ritornate non devono essere modificate.
+   */
+  public static class TableInfo
+  {
+    protected final String schema, name;
+    private volatile ArrayMap<String, Integer> columnTypes;
+    private volatile ArrayMap<String, Integer> primaryKeys;
+    private volatile List<PrimaryKeyBean> primaryKeyBeans;
+    private volatile List<RelazioniBean> exported, imported;
+    private volatile List<IndiciBean> indexes;
+    private volatile Boolean statoRec;
+
+    public TableInfo(String schema, String name)
+    {
+      this.schema = schema;
+      this.name = name;
+    }
+
+    public String getSchema()
+    {
+      return schema;
+    }
+
+    public String getName()
+    {
+      return name;
+    }
+
+    public String getFullName()
+    {
+      return schema == null ? name : schema + "." + name;
+    }
+
+    public ArrayMap<String, Integer> getColumnTypes(Connection con)
+       throws SQLException
+    {
+      if(columnTypes == null)
+      {
+        synchronized(this)
+        {
+          if(columnTypes == null)
+            setColumnTypes(DbUtils.getTipiColonne(con, schema, name, null));
+        }
+      }
+      return columnTypes;
+    }
+
+    protected synchronized void setColumnTypes(ArrayMap<String, Integer> tipi)
+    {
+      boolean sr = false;
+      for(String colName : tipi.keySet())
+        sr |= StringOper.isEquNocase("stato_rec", colName);
+
+      statoRec = sr;
+      columnTypes = tipi;
+    }
+
+    /**
+     * Tipo di una colonna.
+     * @param con connessione al db
+     * @param colName nome della colonna (case insensitive)
+     * @return tipo da java.sql.Types oppure 0 se non trovata
+     * @throws SQLException
+     */
+    public int getColumnType(Connection con, String colName)
+       throws SQLException
+    {
+      Integer rv = getColumnTypes(con).getIgnoreCase(colName);
+      return rv == null ? 0 : rv;
+    }
+
+    public boolean haveStatoRec(Connection con)
+       throws SQLException
+    {
+      if(statoRec == null)
+        getColumnTypes(con);
+      return statoRec;
+    }
+
+    public ArrayMap<String, Integer> getPrimaryKeys(Connection con)
+       throws SQLException
+    {
+      if(primaryKeys == null)
+      {
+        synchronized(this)
+        {
+          if(primaryKeys == null)
+          {
+            ArrayMap<String, Integer> pk = new ArrayMap<>();
+            for(PrimaryKeyBean b : getPrimaryKeyBeans(con))
+              pk.add(new Pair<>(b.column_name, b.key_seq));
+            primaryKeys = pk;
+          }
+        }
+      }
+      return primaryKeys;
+    }
+
+    public List<PrimaryKeyBean> getPrimaryKeyBeans(Connection con)
+       throws SQLException
+    {
+      if(primaryKeyBeans == null)
+      {
+        synchronized(this)
+        {
+          if(primaryKeyBeans == null)
+          {
+            ArrayList<PrimaryKeyBean> rv = new ArrayList<>();
+            try(ResultSet rs = con.getMetaData().getPrimaryKeys(null, schema, name))
+            {
+              while(rs.next())
+              {
+                PrimaryKeyBean b = new PrimaryKeyBean();
+                b.read(rs);
+                rv.add(b);
+              }
+            }
+            primaryKeyBeans = Collections.unmodifiableList(rv);
+          }
+        }
+      }
+      return primaryKeyBeans;
+    }
+
+    /**
+     * Relazioni in cui questa tabella è referenziata (tabella master).
+     */
+    public List<RelazioniBean> getExportedKeys(Connection con)
+       throws SQLException
+    {
+      if(exported == null)
+      {
+        synchronized(this)
+        {
+          if(exported == null)
+          {
+            try(ResultSet rs = con.getMetaData().getExportedKeys(null, schema, name))
+            {
+              exported = readRelazioni(rs);
+            }
+          }
+        }
+      }
+      return exported;
+    }
+
+    /**
+     * Relazioni in cui questa tabella referenzia altre tabelle.
+     */
+    public List<RelazioniBean> getImportedKeys(Connection con)
+       throws SQLException
+    {
+      if(imported == null)
+      {
+        synchronized(this)
+        {
+          if(imported == null)
+          {
+            try(ResultSet rs = con.getMetaData().getImportedKeys(null, schema, name))
+            {
+              imported = readRelazioni(rs);
+            }
+          }
+        }
+      }
+      return imported;
+    }
+
+    public List<IndiciBean> getIndexes(Connection con)
+       throws SQLException
+    {
+      if(indexes == null)
+      {
+        synchronized(this)
+        {
+          if(indexes == null)
+          {
+            ArrayList<IndiciBean> rv = new ArrayList<>();
+            try(ResultSet rs = con.getMetaData().getIndexInfo(null, schema, name, false, false))
+            {
+              while(rs.next())
+              {
+                IndiciBean b = new IndiciBean();
+                b.read(rs);
+                rv.add(b);
+              }
+            }
+            indexes = Collections.unmodifiableList(rv);
+          }
+        }
+      }
+      return indexes;
+    }
+
+    private static List<RelazioniBean> readRelazioni(ResultSet rs)
+       throws SQLException
+    {
+      ArrayList<RelazioniBean> rv = new ArrayList<>();
+      while(rs.next())
+      {
+        RelazioniBean b = new RelazioniBean();
+        b.read(rs);
+        rv.add(b);
+      }
+      return Collections.unmodifiableList(rv);
+    }
+
+    @Override
+    public String toString()
+    {
+      return getFullName();
+    }
+  }
+
+  protected SchemaCatalog()
+  {
+  }
+
+  /**
+   * Ritorna il catalogo del database a cui è collegata la connessione.
+   * @param con connessione al db
+   * @return il catalogo
+   * @throws SQLException
+   */
+  public static SchemaCatalog getInstance(Connection con)
+     throws SQLException
+  {
+    DatabaseMetaData md = con.getMetaData();
+    return catalogs.computeIfAbsent(md.getURL() + "|" + md.getUserName(), (k) -> new SchemaCatalog());
+  }
+
+  /**
+   * Ritorna i metadati di una tabella.
+   * La ricerca del nome tabella è case insensitive; il nome può
+   * comprendere lo schema. Le tabelle non trovate non vengono
+   * memorizzate, in modo da rilevare quelle create successivamente.
+   * @param con connessione al db
+   * @param nomeTabella nome della tabella (eventualmente con schema)
+   * @return metadati oppure null se la tabella non esiste
+   * @throws Exception
+   */
+  public TableInfo getTable(Connection con, String nomeTabella)
+     throws Exception
+  {
+    String key = nomeTabella.toLowerCase();
+    TableInfo ti = tables.get(key);
+    if(ti != null)
+      return ti;
+
+    ti = DbUtils.scanTabelleColonne(con, nomeTabella, null,
+       (con2, nomeSchema, nomeTab, nomeColonna) -> new TableInfo(nomeSchema, nomeTab));
+
+    if(ti == null)
+      return null;
+
+    // stessa tabella richiesta con nomi diversi: condivide i metadati
+    TableInfo prev = tables.putIfAbsent(ti.getFullName().toLowerCase(), ti);
+    if(prev != null)
+      ti = prev;
+
+    tables.putIfAbsent(key, ti);
+    return ti;
+  }
+
+  /**
+   * Ritorna i metadati di una tabella già individuata (schema e nome esatti).
+   * @param schema schema della tabella (può essere null)
+   * @param nomeTabella nome della tabella come riportato dai metadati
+   * @return metadati (caricati al primo uso)
+   */
+  public TableInfo getTable(String schema, String nomeTabella)
+  {
+    String key = (schema == null ? nomeTabella : schema + "." + nomeTabella).toLowerCase();
+    return tables.computeIfAbsent(key, (k) -> new TableInfo(schema, nomeTabella));
+  }
+
+  /**
+   * Carica in una sola volta i tipi colonna di tutte le tabelle.
+   * Usa una unica chiamata a DatabaseMetaData.getColumns() su tutto
+   * il catalogo (che i driver risolvono con una query sulle tabelle
+   * di sistema/information_schema) invece di una per tabella.
+   * Le tabelle dello schema di default sono registrate anche senza schema.
+   * @param con connessione al db
+   * @throws Exception
+   */
+  public void prefetch(Connection con)
+     throws Exception
+  {
+    Map<String, ArrayMap<String, Integer>> tipi = new ConcurrentHashMap<>();
+    Map<String, TableInfo> infos = new ConcurrentHashMap<>();
+
+    try(ResultSet rs = con.getMetaData().getColumns(con.getCatalog(), null, null, null))
+    {
+      while(rs.next())
+      {
+        String schema = rs.getString("TABLE_SCHEM");
+        String table = rs.getString("TABLE_NAME");
+        String full = (schema == null ? table : schema + "." + table).toLowerCase();
+
+        infos.computeIfAbsent(full, (k) -> new TableInfo(schema, table));
+        tipi.computeIfAbsent(full, (k) -> new ArrayMap<>())
+           .add(new Pair<>(rs.getString("COLUMN_NAME"), rs.getInt("DATA_TYPE")));
+      }
+    }
+
+    for(Map.Entry<String, TableInfo> e : infos.entrySet())
+    {
+      TableInfo ti = e.getValue();
+      TableInfo prev = tables.putIfAbsent(e.getKey(), ti);
+      if(prev != null)
+        ti = prev;
+
+      if(ti.columnTypes == null)
+        ti.setColumnTypes(tipi.get(e.getKey()));
+
+      if(ti.schema == null || SetupHolder.getQueryBuilder().isSchemaPublic(ti.schema))
+        tables.putIfAbsent(ti.name.toLowerCase(), ti);
+    }
+
+    log.debug("Prefetched metadata for " + infos.size() + " tables.");
+  }
+
+  /**
+   * Ritorna lo schema (colonne e tipi) di una query senza leggerne i dati.
+   * Il risultato viene memorizzato: la query di prova viene eseguita
+   * solo la prima volta.
+   * @param con connessione al db
+   * @param sSQL query da sondare (deve ritornare zero record, es. WHERE 1 = -1)
+   * @return schema della query
+   * @throws SQLException
+   * @throws DataSetException
+   */
+  public Schema getQuerySchema(Connection con, String sSQL)
+     throws SQLException, DataSetException
+  {
+    Schema s = querySchemas.get(sSQL);
+    if(s != null)
+      return s;
+
+    s = new Schema();
+    try(Statement stm = con.createStatement();
+       ResultSet rs = stm.executeQuery(sSQL))
+    {
+      s.populate(rs.getMetaData(), null, null, con);
+    }
+
+    if(querySchemas.size() >= MAX_QUERY_SCHEMA)
+      querySchemas.clear();
+
+    querySchemas.put(sSQL, s);
+    return s;
+  }
+
+  /**
+   * Invalida i metadati di una tabella (e gli schemi delle query memorizzate).
+   * @param nomeTabella nome della tabella (con o senza schema)
+   */
+  public void invalidate(String nomeTabella)
+  {
+    String key = nomeTabella.toLowerCase();
+    int pos = key.lastIndexOf('.');
+    String table = pos == -1 ? key : key.substring(pos + 1);
+
+    tables.entrySet().removeIf((e) -> e.getKey().equals(key)
+       || e.getValue().getName().equalsIgnoreCase(table));
+    querySchemas.clear();
+  }
+
+  /**
+   * Invalida tutti i metadati di questo database.
+   */
+  public void invalidateAll()
+  {
+    tables.clear();
+    querySchemas.clear();
+  }
+
+  /**
+   * Invalida i metadati di tutti i database.
+   */
+  public static void invalidateAllCatalogs()
+  {
+    catalogs.values().forEach(SchemaCatalog::invalidateAll);
+  }
+}
@@ -70,37 +70,16 @@ public class TableHelper
     esportate.clear();
     importate.clear();
 
-    try(ResultSet rs = meta.getExportedKeys(null, schemaName, tableName))
-    {
-      while(rs.next())
-      {
-        RelazioniBean b = new RelazioniBean();
-        b.read(rs);
+    SchemaCatalog.TableInfo ti = SchemaCatalog.getInstance(con).getTable(schemaName, tableName);
 
-        esportate.aggiungi(makeKey(b), b);
-      }
-    }
+    for(RelazioniBean b : ti.getExportedKeys(con))
+      esportate.aggiungi(makeKey(b), b);
 
-    try(ResultSet rs = meta.getImportedKeys(null, schemaName, tableName))
-    {
-      while(rs.next())
-      {
-        RelazioniBean b = new RelazioniBean();
-        b.read(rs);
+    for(RelazioniBean b : ti.getImportedKeys(con))
+      importate.aggiungi(makeKey(b), b);
 
-        importate.aggiungi(makeKey(b), b);
-      }
-    }
-
-    try(ResultSet rs = meta.getPrimaryKeys(null, schemaName, tableName))
-    {
-      while(rs.next())
-      {
-        PrimaryKeyBean b = new PrimaryKeyBean();
-        b.read(rs);
-        primarie.aggiungi(b.table_schem + "." + b.table_name, b);
-      }
-    }
+    for(PrimaryKeyBean b : ti.getPrimaryKeyBeans(con))
+      primarie.aggiungi(b.table_schem + "." + b.table_name, b);
   }
 
   protected String makeKey(RelazioniBean b)
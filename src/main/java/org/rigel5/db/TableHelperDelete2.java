@@ -17,39 +17,79 @@
  */
 package org.rigel5.db;
 
-import com.workingdogs.village.Column;
-import com.workingdogs.village.Record;
-import com.workingdogs.village.Value;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.torque.om.NumberKey;
 import org.apache.torque.om.ObjectKey;
-import org.apache.torque.om.SimpleKey;
 import org.apache.torque.om.StringKey;
 import org.commonlib5.utils.StringJoin;
 
 /**
  * Utility per la cancellazione ricorsiva di record in tabella.
+ * Il grafo delle dipendenze viene visitato una sola volta usando i
+ * metadati delle chiavi esportate, letti una sola volta dallo SchemaCatalog;
+ * le chiavi dei record figli sono recuperate con liste IN a blocchi
+ * con parametri. Ogni cancellazione è registrata con la sua profondità
+ * nel grafo: executeDelete() procede dal livello più profondo verso
+ * la tabella di partenza e, se richiesto con setParallel(), esegue le
+ * cancellazioni di uno stesso livello su tabelle diverse in parallelo,
+ * ognuna in una propria transazione.
  *
  * @author Nicola De Nisco
  */
 public class TableHelperDelete2 extends TableHelper
 {
   private static final Log log = LogFactory.getLog(TableHelperDelete2.class);
+  public static final int DEFAULT_CHUNK_SIZE = 500;
 
   protected boolean enableMultiKey = false;
   protected final List<String> comandi = new ArrayList<>();
   protected final List<String> recurse = new ArrayList<>();
+  protected final List<DeleteStep> steps = new ArrayList<>();
+  protected int chunkSize = DEFAULT_CHUNK_SIZE;
+  protected ConnectionProducer parallelProducer = null;
+  protected int parallelThreads = 0;
+
+  /**
+   * Cancellazione di un blocco di record di una tabella.
+   */
+  public static class DeleteStep
+  {
+    public final String tableName, fieldName;
+    public final List<Object> keys;
+    public final int level;
+
+    public DeleteStep(String tableName, String fieldName, List<Object> keys, int level)
+    {
+      this.tableName = tableName;
+      this.fieldName = fieldName;
+      this.keys = keys;
+      this.level = level;
+    }
+
+    @Override
+    public String toString()
+    {
+      return "DELETE FROM " + tableName + " WHERE " + fieldName + " IN(" + keys.size() + " keys) level " + level;
+    }
+  }
 
   public TableHelperDelete2(Connection con, boolean dryrun)
      throws SQLException
@@ -75,7 +115,18 @@ public class TableHelperDelete2 extends TableHelper
   protected void deleteCascade(Stack<String> sttable, String fieldPrimary, Collection<ObjectKey<?>> primaryKeys)
      throws Exception
   {
-    String key = schemaName + "." + tableName;
+    List<Object> values = new ArrayList<>(primaryKeys.size());
+    for(ObjectKey<?> k : primaryKeys)
+      values.add(k.getValue());
+
+    deleteCascade(sttable, schemaName, tableName, fieldPrimary, values);
+  }
+
+  protected void deleteCascade(Stack<String> sttable,
+     String schema, String table, String fieldPrimary, List<Object> primaryKeys)
+     throws Exception
+  {
+    String key = schema + "." + table;
     if(sttable.contains(key))
     {
       log.warn("Rilevata dipendanza circolare fra tabelle: " + sttable);
@@ -83,98 +134,102 @@ public class TableHelperDelete2 extends TableHelper
       return;
     }
 
+    if(primaryKeys.isEmpty())
+      return;
+
     sttable.push(key);
-    deleteTable(fieldPrimary, primaryKeys);
+    steps.add(new DeleteStep(key, fieldPrimary, primaryKeys, sttable.size() - 1));
 
-    HashMap<String, Collection<ObjectKey<?>>> mapKeys = new HashMap<>();
+    HashMap<String, List<Object>> mapKeys = new HashMap<>();
     mapKeys.put(fieldPrimary, primaryKeys);
 
-    for(Map.Entry<String, List<RelazioniBean>> entry : esportate.entrySet())
+    for(RelazioniBean b : getExportedKeys(schema, table))
     {
-      String nome = entry.getKey();
-      List<RelazioniBean> lsRel = entry.getValue();
-
-      for(RelazioniBean b : lsRel)
+      List<Object> alternateKeys = mapKeys.get(b.pkcolumn_name);
+      if(alternateKeys == null)
       {
-        Collection<ObjectKey<?>> alternateKeys = mapKeys.get(b.pkcolumn_name);
-        if(alternateKeys == null)
-        {
-          alternateKeys = getAlternateKeys(fieldPrimary, primaryKeys,
-             b.pkcolumn_name, b.pktable_schem + "." + b.pktable_name);
-          mapKeys.put(b.pkcolumn_name, alternateKeys);
-        }
-
-        if(!alternateKeys.isEmpty())
-        {
-          TableHelperDelete2 thd = new TableHelperDelete2(con, dryrun);
-          thd.enableMultiKey = enableMultiKey;
-          thd.loadData(b.fktable_schem, b.fktable_name);
-          thd.deleteCascade(sttable, b.fkcolumn_name, alternateKeys);
-          comandi.addAll(thd.comandi);
-          recurse.addAll(thd.recurse);
-        }
+        alternateKeys = getAlternateKeys(fieldPrimary, primaryKeys,
+           b.pkcolumn_name, b.pktable_schem + "." + b.pktable_name);
+        mapKeys.put(b.pkcolumn_name, alternateKeys);
       }
+
+      if(!alternateKeys.isEmpty())
+        deleteCascade(sttable, b.fktable_schem, b.fktable_name, b.fkcolumn_name, alternateKeys);
     }
 
     sttable.pop();
   }
 
-  private void deleteTable(String fieldPrimary, Collection<ObjectKey<?>> primaryKeys)
+  /**
+   * Ritorna le chiavi esportate di una tabella.
+   * I metadati vengono letti attraverso lo SchemaCatalog condiviso.
+   * @param schema schema della tabella
+   * @param table nome della tabella
+   * @return relazioni in cui la tabella è referenziata
+   * @throws Exception
+   */
+  protected List<RelazioniBean> getExportedKeys(String schema, String table)
      throws Exception
   {
-    if(primaryKeys.isEmpty())
-      return;
-
-    String jk = joinKeys(primaryKeys);
-    if(jk.isEmpty())
-      return;
-
-    String sDEL
-       = "DELETE FROM " + schemaName + "." + tableName
-       + " WHERE " + fieldPrimary + " IN(" + jk + ")";
+    return SchemaCatalog.getInstance(con).getTable(schema, table).getExportedKeys(con);
+  }
 
-    comandi.add(sDEL);
+  /**
+   * Svuota la cache dei metadati (da usare dopo modifiche allo schema).
+   */
+  public static void clearMetadataCache()
+  {
+    SchemaCatalog.invalidateAllCatalogs();
   }
 
-  private Collection<ObjectKey<?>> getAlternateKeys(String fieldPrimary, Collection<ObjectKey<?>> primaryKeys, String targetField, String tableName)
+  private List<Object> getAlternateKeys(String fieldPrimary, List<Object> primaryKeys, String targetField, String tableName)
      throws Exception
   {
-    String sSQL
+    if(targetField.equals(fieldPrimary))
+      return primaryKeys;
+
+    LinkedHashSet<Object> rv = new LinkedHashSet<>();
+    String sqlBase
        = "SELECT DISTINCT " + targetField
        + "  FROM " + tableName
-       + " WHERE " + fieldPrimary + " IN(" + joinKeys(primaryKeys) + ")";
-
-    List<Record> lsRecs = DbUtils.executeQuery(sSQL, con);
-    if(lsRecs.isEmpty())
-      return Collections.EMPTY_LIST;
+       + " WHERE " + fieldPrimary + " IN(";
 
-    Collection<ObjectKey<?>> rv = new ArrayList<>();
-    Column col = lsRecs.get(0).schema().column(1);
-
-    if(col.isNumericValue())
-    {
-      for(Record r : lsRecs)
-      {
-        Value value = r.getValue(1);
-        if(!value.isNull())
-          rv.add(SimpleKey.keyFor(value.asInt()));
-      }
-    }
-    else if(col.isStringValue())
+    for(int start = 0; start < primaryKeys.size(); start += chunkSize)
     {
-      for(Record r : lsRecs)
+      List<Object> chunk = primaryKeys.subList(start, Math.min(start + chunkSize, primaryKeys.size()));
+
+      try(PreparedStatement ps = con.prepareStatement(sqlBase + placeholders(chunk.size()) + ")"))
       {
-        Value value = r.getValue(1);
-        if(!value.isNull())
-          rv.add(SimpleKey.keyFor(value.asString()));
+        bind(ps, chunk);
+        try(ResultSet rs = ps.executeQuery())
+        {
+          while(rs.next())
+          {
+            Object value = rs.getObject(1);
+            if(value != null)
+              rv.add(value);
+          }
+        }
       }
     }
-    else
-    {
-      throw new Exception("Chiave di tipo non ammesso.");
-    }
 
-    return rv;
+    return rv.isEmpty() ? Collections.EMPTY_LIST : new ArrayList<>(rv);
+  }
+
+  private static String placeholders(int count)
+  {
+    StringBuilder sb = new StringBuilder(count * 2);
+    for(int i = 0; i < count; i++)
+      sb.append(i == 0 ? "?" : ",?");
+    return sb.toString();
+  }
+
+  private static void bind(PreparedStatement ps, List<Object> values)
+     throws SQLException
+  {
+    int pos = 1;
+    for(Object v : values)
+      ps.setObject(pos++, v);
   }
 
   public String joinKeys(Collection<ObjectKey<?>> keys)
@@ -193,29 +248,226 @@ public class TableHelperDelete2 extends TableHelper
     throw new RuntimeException("Chiave di tipo non ammesso.");
   }
 
+  private static String joinValues(List<Object> values)
+  {
+    StringBuilder sb = new StringBuilder();
+    for(Object v : values)
+    {
+      if(sb.length() > 0)
+        sb.append(",");
+
+      if(v instanceof Number)
+        sb.append(v);
+      else
+        sb.append("'").append(v.toString().replace("'", "''")).append("'");
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Ritorna i comandi di cancellazione in forma testuale.
+   * Sono prodotti solo per consultazione: executeDelete()
+   * usa statement con parametri.
+   * @return lista di comandi SQL
+   */
   public List<String> getComandi()
   {
+    if(comandi.size() != steps.size())
+    {
+      comandi.clear();
+      for(DeleteStep ds : steps)
+        comandi.add("DELETE FROM " + ds.tableName + " WHERE " + ds.fieldName + " IN(" + joinValues(ds.keys) + ")");
+    }
+
     return comandi;
   }
 
+  public List<DeleteStep> getSteps()
+  {
+    return steps;
+  }
+
   public List<String> getRecurse()
   {
     return recurse;
   }
 
+  /**
+   * Esegue le cancellazioni preparate, dal livello più profondo verso
+   * la tabella di partenza.
+   * Senza setParallel() tutti i comandi sono eseguiti sulla connessione
+   * dell'oggetto, nella transazione del chiamante.
+   * In modalità parallela tutti i comandi sono eseguiti su connessioni
+   * del producer, ognuno in una propria transazione: la connessione
+   * dell'oggetto deve essere in autocommit, altrimenti le sue transazioni
+   * aperte bloccherebbero le connessioni del producer.
+   * @return numero di record cancellati
+   * @throws Exception
+   */
   public long executeDelete()
      throws Exception
   {
+    int maxLevel = 0;
+    for(DeleteStep ds : steps)
+      maxLevel = Math.max(maxLevel, ds.level);
+
+    boolean parallel = !dryrun && parallelProducer != null && parallelThreads > 1;
+    if(parallel && !con.getAutoCommit())
+      throw new SQLException("Cancellazione parallela non ammessa: la connessione ha una transazione aperta.");
+
     long numDeleted = 0;
+    ExecutorService executor = parallel ? Executors.newFixedThreadPool(parallelThreads) : null;
 
-    for(int i = comandi.size() - 1; i >= 0; i--)
+    try
     {
-      final String sDEL = (String) comandi.get(i);
+      for(int level = maxLevel; level >= 0; level--)
+      {
+        List<DeleteStep> lsLevel = new ArrayList<>();
+        for(int i = steps.size() - 1; i >= 0; i--)
+        {
+          if(steps.get(i).level == level)
+            lsLevel.add(steps.get(i));
+        }
 
-      if(dryrun)
-        log.info("sDEL=" + sDEL);
-      else
-        numDeleted += DbUtils.executeStatement(sDEL, con);
+        if(lsLevel.isEmpty())
+          continue;
+
+        if(executor == null)
+        {
+          for(DeleteStep ds : lsLevel)
+            numDeleted += executeStep(con, ds);
+        }
+        else
+        {
+          numDeleted += executeLevelParallel(executor, lsLevel);
+        }
+      }
+    }
+    finally
+    {
+      if(executor != null)
+        executor.shutdownNow();
+    }
+
+    return numDeleted;
+  }
+
+  /**
+   * Esegue le cancellazioni di un livello su connessioni del producer.
+   * Le cancellazioni sono raggruppate per tabella: solo gruppi su tabelle
+   * diverse vengono eseguiti in parallelo, quelle sulla stessa tabella
+   * sono eseguite in sequenza nella stessa transazione.
+   * @param executor esecutore dei gruppi
+   * @param lsLevel cancellazioni del livello
+   * @return numero di record cancellati
+   * @throws Exception
+   */
+  protected long executeLevelParallel(ExecutorService executor, List<DeleteStep> lsLevel)
+     throws Exception
+  {
+    LinkedHashMap<String, List<DeleteStep>> mapTables = new LinkedHashMap<>();
+    for(DeleteStep ds : lsLevel)
+      mapTables.computeIfAbsent(ds.tableName.toLowerCase(), (k) -> new ArrayList<>()).add(ds);
+
+    if(mapTables.size() == 1)
+    {
+      List<DeleteStep> group = mapTables.values().iterator().next();
+      return parallelProducer.functionConnection((c) -> executeStepTransaction(c, group));
+    }
+
+    List<Future<Long>> lsFut = new ArrayList<>();
+    for(List<DeleteStep> group : mapTables.values())
+      lsFut.add(executor.submit(() -> parallelProducer.functionConnection((c) -> executeStepTransaction(c, group))));
+
+    long numDeleted = 0;
+    try
+    {
+      for(Future<Long> f : lsFut)
+        numDeleted += f.get();
+    }
+    catch(Exception ex)
+    {
+      lsFut.forEach((f) -> f.cancel(true));
+      throw ex;
+    }
+
+    return numDeleted;
+  }
+
+  protected long executeStepTransaction(Connection c, List<DeleteStep> lsSteps)
+     throws Exception
+  {
+    boolean autoCommit = c.getAutoCommit();
+    c.setAutoCommit(false);
+
+    try
+    {
+      long rv = 0;
+      for(DeleteStep ds : lsSteps)
+        rv += executeStep(c, ds);
+      c.commit();
+      return rv;
+    }
+    catch(Exception ex)
+    {
+      c.rollback();
+      throw ex;
+    }
+    finally
+    {
+      c.setAutoCommit(autoCommit);
+    }
+  }
+
+  /**
+   * Esegue una cancellazione a blocchi di chunkSize chiavi.
+   * @param c connessione da utilizzare
+   * @param ds cancellazione da eseguire
+   * @return numero di record cancellati
+   * @throws Exception
+   */
+  protected long executeStep(Connection c, DeleteStep ds)
+     throws Exception
+  {
+    if(dryrun)
+    {
+      log.info("sDEL=" + ds);
+      return 0;
+    }
+
+    long numDeleted = 0;
+    String sqlBase = "DELETE FROM " + ds.tableName + " WHERE " + ds.fieldName + " IN(";
+    PreparedStatement psFull = null;
+
+    try
+    {
+      for(int start = 0; start < ds.keys.size(); start += chunkSize)
+      {
+        List<Object> chunk = ds.keys.subList(start, Math.min(start + chunkSize, ds.keys.size()));
+
+        if(chunk.size() == chunkSize)
+        {
+          // i blocchi completi riusano lo stesso statement
+          if(psFull == null)
+            psFull = c.prepareStatement(sqlBase + placeholders(chunkSize) + ")");
+
+          bind(psFull, chunk);
+          numDeleted += psFull.executeUpdate();
+        }
+        else
+        {
+          try(PreparedStatement ps = c.prepareStatement(sqlBase + placeholders(chunk.size()) + ")"))
+          {
+            bind(ps, chunk);
+            numDeleted += ps.executeUpdate();
+          }
+        }
+      }
+    }
+    finally
+    {
+      if(psFull != null)
+        psFull.close();
     }
 
     return numDeleted;
@@ -230,4 +482,30 @@ public class TableHelperDelete2 extends TableHelper
   {
     this.enableMultiKey = enableMultiKey;
   }
+
+  public int getChunkSize()
+  {
+    return chunkSize;
+  }
+
+  public void setChunkSize(int chunkSize)
+  {
+    this.chunkSize = Math.max(1, chunkSize);
+  }
+
+  /**
+   * Attiva l'esecuzione parallela delle cancellazioni di uno stesso livello.
+   * Tutte le cancellazioni vengono eseguite su connessioni ottenute dal
+   * producer, in transazioni separate per livello e tabella: la
+   * cancellazione complessiva non è più atomica e un errore lascia
+   * cancellati i livelli già completati. La connessione passata al
+   * costruttore deve essere in autocommit al momento di executeDelete().
+   * @param producer fornitore delle connessioni (null per disattivare)
+   * @param threads numero di thread
+   */
+  public void setParallel(ConnectionProducer producer, int threads)
+  {
+    this.parallelProducer = producer;
+    this.parallelThreads = threads;
+  }
 }
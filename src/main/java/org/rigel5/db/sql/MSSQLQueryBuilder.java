@@ -17,6 +17,7 @@
  */
 package org.rigel5.db.sql;
 
+import java.util.List;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.Statement;
@@ -102,10 +103,32 @@ public class MSSQLQueryBuilder extends QueryBuilder
   }
 
   @Override
-  public String makeSQLstringNoFiltro(boolean useOrderby)
+  public Object adjBindValue(int type, Object val)
+  {
+    switch(type)
+    {
+      case RigelColumnDescriptor.PDT_TIMESTAMP_CMPDATEONLY:
+      case RigelColumnDescriptor.PDT_TIMESTAMP_CMPHOURONLY:
+      case RigelColumnDescriptor.PDT_TIMESTAMP_CMPTOSEC:
+      case RigelColumnDescriptor.PDT_TIMESTAMP_CMPTOMIN:
+      case RigelColumnDescriptor.PDT_DATE:
+      case RigelColumnDescriptor.PDT_TIMESTAMP:
+      case RigelColumnDescriptor.PDT_TIME:
+        // come adjValue confronta solo la data
+        return new java.sql.Date(((java.util.Date) (val)).getTime());
+    }
+
+    return super.adjBindValue(type, val);
+  }
+
+  @Override
+  public String makeSQLstringNoFiltro(boolean useOrderby, List<Object> params)
      throws Exception
   {
-    return super.makeSQLstringNoFiltro(useOrderby).toUpperCase();
+    int first = params == null ? 0 : params.size();
+    String sSQL = super.makeSQLstringNoFiltro(useOrderby, params).toUpperCase();
+    upperStringParams(params, first);
+    return sSQL;
   }
 
   /**
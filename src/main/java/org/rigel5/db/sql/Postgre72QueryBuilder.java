@@ -41,6 +41,7 @@ import org.rigel5.table.RigelColumnDescriptor;
 public class Postgre72QueryBuilder extends QueryBuilder
 {
   private static final Log log = LogFactory.getLog(Postgre72QueryBuilder.class);
+  private static final Pattern pExplainRows = Pattern.compile("rows=(\\d+)");
 
   @Override
   public String adjCampo(int type, String campo)
@@ -112,6 +113,20 @@ public class Postgre72QueryBuilder extends QueryBuilder
     return "'" + StringOper.CvtSQLstring(val.toString().trim()) + "'";
   }
 
+  @Override
+  public Object adjBindValue(int type, Object val)
+  {
+    switch(type)
+    {
+      case RigelColumnDescriptor.PDT_TIME:
+      case RigelColumnDescriptor.PDT_TIMESTAMP_CMPHOURONLY:
+        // il campo viene confrontato come stringa (vedi adjCampo)
+        return hhIso.format((java.util.Date) (val));
+    }
+
+    return super.adjBindValue(type, val);
+  }
+
   @Override
   public String adjLike(String campo, Object val)
   {
@@ -130,36 +145,56 @@ public class Postgre72QueryBuilder extends QueryBuilder
   }
 
   @Override
-  public String makeSQLstring(boolean useOrderby, boolean useLimit, boolean fetchRecord)
-     throws Exception
+  public String getEstimateRecordsQuery(String genericQuery)
   {
-    if(!fetchRecord)
-      useOrderby = useLimit = false;
-
-    String sSQL = makeSQLstringNoFiltro(useOrderby);
+    return "EXPLAIN " + genericQuery;
+  }
 
-    if(haveFilter())
-    {
-      // attiva subselect per il filtro
-      sSQL = "SELECT * FROM (" + sSQL + ") AS FOO";
+  @Override
+  public String getTableEstimateRecordsQuery()
+  {
+    return "SELECT reltuples::bigint FROM pg_class WHERE oid = to_regclass(?)";
+  }
 
-      if(filtro.haveWhere())
-        sSQL += " WHERE " + makeFiltroWhere(filtro);
+  /**
+   * Interpreta il risultato di EXPLAIN (stima 'rows=' del nodo radice)
+   * o di pg_class.reltuples (-1 o 0 se la tabella non è mai stata analizzata).
+   */
+  @Override
+  public long readEstimateRecords(ResultSet rs)
+     throws SQLException
+  {
+    if(!rs.next())
+      return -1;
 
-      if(useOrderby && filtro.haveOrderby())
-        sSQL += " ORDER BY " + makeFiltroOrderby(filtro);
-    }
+    String s = rs.getString(1);
+    if(s == null)
+      return -1;
 
-    if(useLimit && haveLimit())
-      sSQL = addNativeOffsetToQuery(sSQL, offset, limit);
+    Matcher m = pExplainRows.matcher(s);
+    if(m.find())
+      return Long.parseLong(m.group(1));
 
-    if(!fetchRecord)
-      sSQL = limitQueryToOne(sSQL);
+    try
+    {
+      return Long.parseLong(s.trim());
+    }
+    catch(NumberFormatException ex)
+    {
+      return -1;
+    }
+  }
 
-    if(macroResolver != null)
-      sSQL = macroResolver.resolveMacro(sSQL);
+  @Override
+  protected String wrapSubselect(String sSQL)
+  {
+    return "SELECT * FROM (" + sSQL + ") AS FOO";
+  }
 
-    return sSQL;
+  @Override
+  public boolean haveRowValueCompare()
+  {
+    return true;
   }
 
   @Override
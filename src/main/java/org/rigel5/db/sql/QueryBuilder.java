@@ -25,10 +25,11 @@ import java.io.IOException;
 import java.lang.reflect.Array;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.text.SimpleDateFormat;
+import java.sql.Types;
 import java.util.*;
 import java.util.function.Function;
 import org.apache.commons.logging.Log;
@@ -40,6 +41,8 @@ import org.apache.torque.sql.Query;
 import org.apache.torque.sql.SqlBuilder;
 import org.commonlib5.utils.MacroResolver;
 import org.commonlib5.utils.StringOper;
+import org.rigel5.RigelCacheManager;
+import org.rigel5.RigelDateFormatter;
 import org.rigel5.RigelI18nInterface;
 import org.rigel5.SetupHolder;
 import org.rigel5.SqlUtils;
@@ -49,6 +52,8 @@ import static org.rigel5.db.DbUtils.VIEWS_FILTER;
 import org.rigel5.db.torque.CriteriaRigel;
 import org.rigel5.table.FiltroListe;
 import org.rigel5.table.ForeignDataHolder;
+import org.rigel5.table.ForeignDataList;
+import org.rigel5.table.RecordCountQuery;
 import org.rigel5.table.RigelColumnDescriptor;
 import org.rigel5.table.RigelTableModel;
 
@@ -68,6 +73,10 @@ abstract public class QueryBuilder implements Closeable
   /** Logging */
   private static final Log log = LogFactory.getLog(QueryBuilder.class);
   public final static int MAX_RECORDS = 500;
+  /** numero massimo di parametri in una clausola IN */
+  public final static int MAX_IN_PARAMS = 500;
+  /** segnaposto in cache per i codici foreign non trovati */
+  protected static final Object FOREIGN_NOT_FOUND = new Object();
   protected String select = "*";
   protected String from;
   protected String where;
@@ -82,10 +91,14 @@ abstract public class QueryBuilder implements Closeable
   protected boolean useDistinct = false;
   protected boolean nativeLimit = true;
   protected boolean nativeOffset = true;
-  protected SimpleDateFormat dfIso = new SimpleDateFormat("yyyy-MM-dd");
-  protected SimpleDateFormat hhIso = new SimpleDateFormat("HH:mm:ss");
-  protected SimpleDateFormat dsIso = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-  protected SimpleDateFormat dmIso = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+  protected boolean bindParameters = false;
+  protected List<FiltroData.orderbyInfo> seekColumns;
+  protected Object[] seekValues;
+  protected boolean seekBackward = false;
+  protected static final RigelDateFormatter dfIso = RigelDateFormatter.ofNeutralPattern("yyyy-MM-dd");
+  protected static final RigelDateFormatter hhIso = RigelDateFormatter.ofNeutralPattern("HH:mm:ss");
+  protected static final RigelDateFormatter dsIso = RigelDateFormatter.ofNeutralPattern("yyyy-MM-dd HH:mm:ss");
+  protected static final RigelDateFormatter dmIso = RigelDateFormatter.ofNeutralPattern("yyyy-MM-dd HH:mm");
   protected static HashMap<String, Boolean> statoRecMap = new HashMap<String, Boolean>();
   protected QueryDataSet lastQuery;
   protected MacroResolver macroResolver;
@@ -132,12 +145,27 @@ abstract public class QueryBuilder implements Closeable
   public String getTotalRecordsQueryAddFilter(FiltroData fl)
      throws Exception
   {
-    String sSQL = makeSQLstringNoFiltro(false);
+    return getTotalRecordsQueryAddFilter(fl, null);
+  }
+
+  /**
+   * Query di congeggio.
+   * Come getTotalRecordsQueryAddFilter(FiltroData) ma se params non è null
+   * i valori dei filtri vengono sostituiti da segnaposto e accodati a params.
+   * @param fl filtro per records
+   * @param params lista dei parametri della query preparata (può essere null)
+   * @return una query di conteggio dei record selezionati
+   * @throws java.lang.Exception
+   */
+  public String getTotalRecordsQueryAddFilter(FiltroData fl, List<Object> params)
+     throws Exception
+  {
+    String sSQL = noFiltro(false, params);
 
     sSQL = getCountRecordsQuery(sSQL);
 
     if(fl != null && fl.haveWhere())
-      sSQL += " WHERE " + makeFiltroWhere(fl);
+      sSQL += " WHERE " + filtroWhere(fl, params);
 
     return sSQL;
   }
@@ -151,6 +179,166 @@ abstract public class QueryBuilder implements Closeable
     return adjCampo(dataType, campo) + compare + adjValue(dataType, val);
   }
 
+  /**
+   * Segnaposto di un parametro per query preparate.
+   * Di norma è un semplice '?'; i dialetti che nella forma letterale
+   * racchiudono il valore in una funzione di conversione restituiscono
+   * qui la stessa funzione applicata al segnaposto.
+   * @param dataType tipo del campo (vedi RigelColumnDescriptor.PDT_...)
+   * @return il segnaposto da inserire nella query
+   */
+  public String adjParam(int dataType)
+  {
+    return "?";
+  }
+
+  /**
+   * Valore di un parametro per query preparate.
+   * È la controparte di adjValue() quando la query viene generata con
+   * i segnaposto: applica le stesse conversioni (troncamenti, maiuscole)
+   * ma restituisce un oggetto adatto a PreparedStatement.setObject().
+   * @param dataType tipo del campo (vedi RigelColumnDescriptor.PDT_...)
+   * @param val valore da convertire
+   * @return valore da passare al driver
+   */
+  public Object adjBindValue(int dataType, Object val)
+  {
+    switch(dataType)
+    {
+      case RigelColumnDescriptor.PDT_BOOLEAN:
+        return val instanceof Boolean ? val : Boolean.valueOf(StringOper.okStr(val));
+      case RigelColumnDescriptor.PDT_DATE:
+      case RigelColumnDescriptor.PDT_TIMESTAMP_CMPDATEONLY:
+        return new java.sql.Date(((java.util.Date) (val)).getTime());
+      case RigelColumnDescriptor.PDT_TIME:
+      case RigelColumnDescriptor.PDT_TIMESTAMP_CMPHOURONLY:
+        return new java.sql.Time(truncMillis((java.util.Date) (val), 1000L));
+      case RigelColumnDescriptor.PDT_TIMESTAMP:
+      case RigelColumnDescriptor.PDT_TIMESTAMP_CMPTOSEC:
+        return new java.sql.Timestamp(truncMillis((java.util.Date) (val), 1000L));
+      case RigelColumnDescriptor.PDT_TIMESTAMP_CMPTOMIN:
+        return new java.sql.Timestamp(truncMillis((java.util.Date) (val), 60000L));
+      case RigelColumnDescriptor.PDT_INTEGER:
+      case RigelColumnDescriptor.PDT_FLOAT:
+      case RigelColumnDescriptor.PDT_DOUBLE:
+      case RigelColumnDescriptor.PDT_MONEY:
+      case RigelColumnDescriptor.PDT_NUMBERKEY:
+        return adjBindNumber(dataType, val);
+      case RigelColumnDescriptor.PDT_STRINGKEY:
+      case RigelColumnDescriptor.PDT_STRING:
+        if(ignoreCase)
+          return val.toString().toUpperCase().trim();
+        else
+          return val.toString().trim();
+    }
+
+    return val.toString().trim();
+  }
+
+  protected Object adjBindNumber(int dataType, Object val)
+  {
+    if(val instanceof Number)
+      return val;
+
+    String sVal = val.toString().trim();
+    try
+    {
+      if(dataType == RigelColumnDescriptor.PDT_INTEGER || dataType == RigelColumnDescriptor.PDT_NUMBERKEY)
+      {
+        try
+        {
+          return Long.valueOf(sVal);
+        }
+        catch(NumberFormatException ex)
+        {
+          // prosegue come decimale
+        }
+      }
+
+      return new java.math.BigDecimal(sVal);
+    }
+    catch(NumberFormatException ex)
+    {
+      // lascia al database la segnalazione dell'errore
+      return sVal;
+    }
+  }
+
+  protected long truncMillis(java.util.Date d, long unit)
+  {
+    long t = d.getTime();
+    return t - Math.floorMod(t, unit);
+  }
+
+  /**
+   * Produce il valore da inserire nella query.
+   * Se params è null restituisce il letterale (adjValue),
+   * altrimenti accoda il valore a params e restituisce il segnaposto.
+   * @param dataType tipo del campo (vedi RigelColumnDescriptor.PDT_...)
+   * @param val valore
+   * @param params lista dei parametri della query preparata (può essere null)
+   * @return letterale o segnaposto
+   */
+  protected String adjValueOrParam(int dataType, Object val, List<Object> params)
+  {
+    if(params == null)
+      return adjValue(dataType, val);
+
+    params.add(adjBindValue(dataType, val));
+    return adjParam(dataType);
+  }
+
+  /**
+   * Confronto con una espressione regolare.
+   * @param campo nome del campo
+   * @param regex espressione regolare già quotata o segnaposto
+   * @param caseSensitive vero per confronto sensibile a maiuscole/minuscole
+   * @return la condizione SQL
+   */
+  protected String adjRegex(String campo, String regex, boolean caseSensitive)
+  {
+    return "(" + campo + (caseSensitive ? " ~ " : " ~* ") + regex + ")";
+  }
+
+  /**
+   * Imposta i parametri di una query preparata.
+   * @param ps statement da impostare
+   * @param params valori nell'ordine dei segnaposto
+   * @throws SQLException
+   */
+  public static void setParameters(PreparedStatement ps, List<Object> params)
+     throws SQLException
+  {
+    for(int i = 0; i < params.size(); i++)
+    {
+      Object val = params.get(i);
+      if(val == null)
+        ps.setNull(i + 1, Types.NULL);
+      else
+        ps.setObject(i + 1, val);
+    }
+  }
+
+  /**
+   * Converte in maiuscolo i parametri stringa a partire dalla posizione indicata.
+   * Usata dai dialetti che convertono in maiuscolo l'intera query:
+   * i valori passati come parametri devono subire lo stesso trattamento.
+   * @param params lista dei parametri (può essere null)
+   * @param first prima posizione da convertire
+   */
+  protected void upperStringParams(List<Object> params, int first)
+  {
+    if(params == null)
+      return;
+
+    for(int i = first; i < params.size(); i++)
+    {
+      Object val = params.get(i);
+      if(val instanceof String)
+        params.set(i, ((String) val).toUpperCase());
+    }
+  }
+
   abstract public String getVista()
      throws Exception;
 
@@ -220,8 +408,23 @@ abstract public class QueryBuilder implements Closeable
   public String queryForUpdate(FiltroData fd)
      throws Exception
   {
-    String fldUpdates = makeFiltroUpdate(fd);
-    String fldWhere = makeFiltroWhere(fd);
+    return queryForUpdate(fd, null);
+  }
+
+  /**
+   * Query di aggiornamento.
+   * Se params non è null i valori vengono sostituiti da segnaposto
+   * e accodati a params (prima quelli di SET poi quelli di WHERE).
+   * @param fd filtro con campi da aggiornare e condizioni
+   * @param params lista dei parametri della query preparata (può essere null)
+   * @return query di aggiornamento
+   * @throws Exception
+   */
+  public String queryForUpdate(FiltroData fd, List<Object> params)
+     throws Exception
+  {
+    String fldUpdates = params == null ? makeFiltroUpdate(fd) : makeFiltroUpdate(fd, params);
+    String fldWhere = filtroWhere(fd, params);
 
     return queryForUpdate(fldUpdates, fldWhere);
   }
@@ -269,7 +472,37 @@ abstract public class QueryBuilder implements Closeable
       return "DELETE FROM " + deleteFrom + " WHERE " + fldWhere;
   }
 
-  public synchronized String makeSQLstringNoFiltro(boolean useOrderby)
+  public String makeSQLstringNoFiltro(boolean useOrderby)
+     throws Exception
+  {
+    return makeSQLstringNoFiltro(useOrderby, null);
+  }
+
+  /**
+   * Senza parametri da accodare usa l'overload storico, che le classi
+   * derivate possono aver ridefinito; altrimenti la versione con segnaposto.
+   */
+  private String noFiltro(boolean useOrderby, List<Object> params)
+     throws Exception
+  {
+    return params == null ? makeSQLstringNoFiltro(useOrderby) : makeSQLstringNoFiltro(useOrderby, params);
+  }
+
+  private String filtroWhere(FiltroData fd, List<Object> params)
+  {
+    return params == null ? makeFiltroWhere(fd) : makeFiltroWhere(fd, params);
+  }
+
+  /**
+   * Costruisce la query senza il filtro utente.
+   * Se params non è null i valori dei parametri vengono
+   * sostituiti da segnaposto e accodati a params.
+   * @param useOrderby vero per aggiungere l'ordinamento di default
+   * @param params lista dei parametri della query preparata (può essere null)
+   * @return la query SQL
+   * @throws Exception
+   */
+  public synchronized String makeSQLstringNoFiltro(boolean useOrderby, List<Object> params)
      throws Exception
   {
     String sSQL = null;
@@ -283,7 +516,7 @@ abstract public class QueryBuilder implements Closeable
       sSQL += " WHERE " + where;
 
     if(parametri != null && parametri.haveWhere())
-      sSQL = SqlUtils.addWhere(sSQL, makeFiltroWhere(parametri));
+      sSQL = SqlUtils.addWhere(sSQL, filtroWhere(parametri, params));
 
     if(haveGroupby())
       sSQL += " GROUP BY " + groupby;
@@ -306,26 +539,55 @@ abstract public class QueryBuilder implements Closeable
 
   public String makeSQLstring(boolean useOrderby, boolean useLimit, boolean fetchRecord)
      throws Exception
+  {
+    return makeSQLstring(useOrderby, useLimit, fetchRecord, null);
+  }
+
+  /**
+   * Costruisce la query completa.
+   * Se params non è null i valori di filtro e parametri vengono
+   * sostituiti da segnaposto e accodati a params nell'ordine
+   * in cui compaiono nella query.
+   * @param useOrderby vero per aggiungere l'ordinamento
+   * @param useLimit vero per applicare offset e limit
+   * @param fetchRecord falso per ottenere una query che restituisce al più un record
+   * @param params lista dei parametri della query preparata (può essere null)
+   * @return la query SQL
+   * @throws Exception
+   */
+  public String makeSQLstring(boolean useOrderby, boolean useLimit, boolean fetchRecord, List<Object> params)
+     throws Exception
   {
     if(!fetchRecord)
       useOrderby = useLimit = false;
 
-    String sSQL = makeSQLstringNoFiltro(useOrderby);
+    // la ricerca keyset richiede i segnaposto e sostituisce l'ordinamento
+    boolean seek = useLimit && params != null && haveSeek();
+    String sSQL = noFiltro(useOrderby && !seek, params);
 
-    if(haveFilter())
+    if(haveFilter() || seek)
     {
       // attiva subselect per il filtro
-      sSQL = "SELECT * FROM (" + sSQL + ")";
+      sSQL = wrapSubselect(sSQL);
 
-      if(filtro.haveWhere())
-        sSQL += " WHERE " + makeFiltroWhere(filtro);
+      String whre = null;
+      if(haveFilter() && filtro.haveWhere())
+        whre = filtroWhere(filtro, params);
 
-      if(useOrderby && filtro.haveOrderby())
+      if(seek)
+        whre = (whre == null ? "" : whre + " AND ") + makeSeekWhere(params);
+
+      if(whre != null)
+        sSQL += " WHERE " + whre;
+
+      if(seek)
+        sSQL += " ORDER BY " + makeSeekOrderby(seekBackward);
+      else if(useOrderby && filtro.haveOrderby())
         sSQL += " ORDER BY " + makeFiltroOrderby(filtro);
     }
 
     if(useLimit && haveLimit())
-      sSQL = addNativeOffsetToQuery(sSQL, offset, limit);
+      sSQL = addNativeOffsetToQuery(sSQL, seek ? 0 : offset, limit);
 
     if(!fetchRecord)
       sSQL = limitQueryToOne(sSQL);
@@ -336,6 +598,161 @@ abstract public class QueryBuilder implements Closeable
     return sSQL;
   }
 
+  /**
+   * Racchiude una query in una subselect.
+   * @param sSQL query da racchiudere
+   * @return la subselect
+   */
+  protected String wrapSubselect(String sSQL)
+  {
+    return "SELECT * FROM (" + sSQL + ")";
+  }
+
+  /**
+   * Verifica supporto al confronto fra righe.
+   * Se il database supporta la sintassi (a,b) &gt; (?,?) la condizione
+   * keyset viene generata in questa forma, più adatta all'uso degli indici;
+   * altrimenti viene espansa in una catena di OR.
+   * @return vero se supportato
+   */
+  public boolean haveRowValueCompare()
+  {
+    return false;
+  }
+
+  /**
+   * Imposta la ricerca keyset (seek) per la prossima query.
+   * Al posto di OFFSET la query seleziona i record che, nell'ordinamento
+   * indicato, seguono (o precedono se backward) i valori di chiave indicati.
+   * Le colonne devono individuare univocamente il record (di solito
+   * l'ordinamento richiesto completato con la chiave primaria), essere
+   * presenti nella select e non ammettere valori NULL: la condizione
+   * generata escluderebbe i record con chiave nulla.
+   * In caso di backward i record vengono comunque restituiti nell'ordine naturale.
+   * @param columns colonne di ordinamento
+   * @param values valori di chiave dell'ultimo (o primo) record della pagina corrente
+   * @param backward vero per la pagina precedente
+   */
+  public void setSeek(List<FiltroData.orderbyInfo> columns, Object[] values, boolean backward)
+  {
+    if(columns.size() != values.length)
+      throw new IllegalArgumentException("Keyset columns and values mismatch.");
+
+    for(Object v : values)
+    {
+      if(v == null)
+        throw new IllegalArgumentException("Keyset values can not be null.");
+    }
+
+    seekColumns = columns;
+    seekValues = values;
+    seekBackward = backward;
+  }
+
+  public void clearSeek()
+  {
+    seekColumns = null;
+    seekValues = null;
+    seekBackward = false;
+  }
+
+  public boolean haveSeek()
+  {
+    return seekColumns != null && seekValues != null && !seekColumns.isEmpty();
+  }
+
+  public boolean isSeekBackward()
+  {
+    return seekBackward;
+  }
+
+  protected boolean isSeekDesc(FiltroData.orderbyInfo oi, boolean reverse)
+  {
+    return "DESC".equalsIgnoreCase(StringOper.okStr(oi.dir)) ^ reverse;
+  }
+
+  /**
+   * Ordinamento per la ricerca keyset.
+   * @param reverse vero per invertire tutte le direzioni
+   * @return clausola ORDER BY
+   */
+  protected String makeSeekOrderby(boolean reverse)
+  {
+    StringBuilder sb = new StringBuilder();
+
+    for(FiltroData.orderbyInfo oi : seekColumns)
+    {
+      if(sb.length() != 0)
+        sb.append(",");
+
+      sb.append(oi.nomecampo).append(isSeekDesc(oi, reverse) ? " DESC" : " ASC");
+    }
+
+    return sb.toString();
+  }
+
+  /**
+   * Condizione per la ricerca keyset.
+   * Genera (k1,k2) &gt; (?,?) se tutte le colonne hanno la stessa direzione
+   * e il database lo consente, altrimenti la forma espansa
+   * ((k1 &gt; ?) OR (k1 = ? AND k2 &gt; ?)).
+   * @param params lista dei parametri della query preparata
+   * @return la condizione SQL
+   */
+  protected String makeSeekWhere(List<Object> params)
+  {
+    int numCols = seekColumns.size();
+    boolean desc = isSeekDesc(seekColumns.get(0), seekBackward);
+    boolean sameDir = true;
+    for(int i = 1; i < numCols; i++)
+      sameDir &= isSeekDesc(seekColumns.get(i), seekBackward) == desc;
+
+    StringBuilder sb = new StringBuilder(128);
+
+    if(numCols == 1 || (sameDir && haveRowValueCompare()))
+    {
+      StringBuilder sp = new StringBuilder();
+      for(int i = 0; i < numCols; i++)
+      {
+        if(i != 0)
+        {
+          sb.append(",");
+          sp.append(",");
+        }
+
+        sb.append(seekColumns.get(i).nomecampo);
+        sp.append("?");
+        params.add(seekValues[i]);
+      }
+
+      if(numCols == 1)
+        return "(" + sb + (desc ? " < " : " > ") + sp + ")";
+
+      return "((" + sb + ")" + (desc ? " < " : " > ") + "(" + sp + "))";
+    }
+
+    sb.append("(");
+    for(int i = 0; i < numCols; i++)
+    {
+      if(i != 0)
+        sb.append(" OR ");
+
+      sb.append("(");
+      for(int j = 0; j < i; j++)
+      {
+        sb.append(seekColumns.get(j).nomecampo).append(" = ? AND ");
+        params.add(seekValues[j]);
+      }
+
+      FiltroData.orderbyInfo oi = seekColumns.get(i);
+      sb.append(oi.nomecampo).append(isSeekDesc(oi, seekBackward) ? " < ?" : " > ?").append(")");
+      params.add(seekValues[i]);
+    }
+    sb.append(")");
+
+    return sb.toString();
+  }
+
   public synchronized String makeFiltroSelect(FiltroData fd)
   {
     String sel = "";
@@ -352,6 +769,18 @@ abstract public class QueryBuilder implements Closeable
   }
 
   public synchronized String makeFiltroUpdate(FiltroData fd)
+  {
+    return makeFiltroUpdate(fd, null);
+  }
+
+  /**
+   * Clausola SET di una query di aggiornamento.
+   * Se params non è null i valori vengono sostituiti da segnaposto e accodati a params.
+   * @param fd filtro con i campi da aggiornare
+   * @param params lista dei parametri della query preparata (può essere null)
+   * @return la clausola o null se non ci sono campi da aggiornare
+   */
+  public synchronized String makeFiltroUpdate(FiltroData fd, List<Object> params)
   {
     String upd = "";
 
@@ -360,7 +789,7 @@ abstract public class QueryBuilder implements Closeable
       if(ui.val == null)
         continue;
 
-      upd += "," + adjCampo(ui.type, ui.nomecampo) + "=" + adjValue(ui.type, ui.val);
+      upd += "," + adjCampo(ui.type, ui.nomecampo) + "=" + adjValueOrParam(ui.type, ui.val, params);
     }
 
     return upd.length() == 0 ? null : upd.substring(1);
@@ -372,6 +801,20 @@ abstract public class QueryBuilder implements Closeable
   }
 
   public synchronized String makeFiltroWhere(FiltroData fd)
+  {
+    return makeFiltroWhere(fd, null);
+  }
+
+  /**
+   * Clausola WHERE per il filtro indicato.
+   * Se params è null i valori vengono inseriti come letterali;
+   * altrimenti vengono sostituiti da segnaposto e accodati a params,
+   * in modo che filtri diversi producano la stessa query preparata.
+   * @param fd filtro
+   * @param params lista dei parametri della query preparata (può essere null)
+   * @return la clausola o null se il filtro è vuoto
+   */
+  public synchronized String makeFiltroWhere(FiltroData fd, List<Object> params)
   {
     StringBuilder whre = new StringBuilder();
 
@@ -382,22 +825,31 @@ abstract public class QueryBuilder implements Closeable
         whre.append(" AND ").append(wi.nomecampo).append(" IS NULL");
       else if(SqlEnum.ISNOTNULL.equals(wi.criteria))
         whre.append(" AND ").append(wi.nomecampo).append(" IS NOT NULL");
-      else if(SqlEnum.MINUS.equals(wi.criteria))
-        whre.append(" AND (").append(wi.nomecampo).append(" ~ '").append(simpleVal(wi)).append("')");
-      else if(SqlEnum.MINUS_ALL.equals(wi.criteria))
-        whre.append(" AND (").append(wi.nomecampo).append(" ~* '").append(simpleVal(wi)).append("')");
+      else if(SqlEnum.MINUS.equals(wi.criteria) || SqlEnum.MINUS_ALL.equals(wi.criteria))
+      {
+        String regex;
+        if(params == null)
+          regex = "'" + simpleVal(wi) + "'";
+        else
+        {
+          params.add(StringOper.okStr(wi.val));
+          regex = "?";
+        }
+
+        whre.append(" AND ").append(adjRegex(wi.nomecampo, regex, SqlEnum.MINUS.equals(wi.criteria)));
+      }
       else if(SqlEnum.IN.equals(wi.criteria))
       {
         ArrayList<String> sVals = new ArrayList<>();
 
         if(wi.val instanceof Collection)
           for(Object oVal : (Collection) wi.val)
-            sVals.add(adjValue(wi.type, oVal));
+            sVals.add(adjValueOrParam(wi.type, oVal, params));
         else if(wi.val.getClass().isArray())
           for(int i = 0; i < Array.getLength(wi.val); i++)
-            sVals.add(adjValue(wi.type, Array.get(wi.val, i)));
+            sVals.add(adjValueOrParam(wi.type, Array.get(wi.val, i), params));
         else if(wi.val instanceof String)
-          sVals.add(adjValue(wi.type, wi.val.toString()));
+          sVals.add(adjValueOrParam(wi.type, wi.val.toString(), params));
 
         if(!sVals.isEmpty())
           whre.append(" AND (").append(adjCampo(wi.type, wi.nomecampo))
@@ -405,14 +857,14 @@ abstract public class QueryBuilder implements Closeable
       }
       else if(wi.val != null)
         whre.append(" AND (").append(adjCampo(wi.type, wi.nomecampo)).append(" ").append(wi.criteria)
-           .append(" ").append(adjValue(wi.type, wi.val)).append(")");
+           .append(" ").append(adjValueOrParam(wi.type, wi.val, params)).append(")");
     }
 
     for(FiltroData.betweenInfo bi : fd.vBetween)
     {
       String nomeCampo = adjCampo(bi.type, bi.nomecampo);
-      String valMin = adjValue(bi.type, bi.val1);
-      String valMax = adjValue(bi.type, bi.val2);
+      String valMin = adjValueOrParam(bi.type, bi.val1, params);
+      String valMax = adjValueOrParam(bi.type, bi.val2, params);
 
       whre.append(" AND ((").append(nomeCampo).append(" >= ").append(valMin)
          .append(") AND (").append(nomeCampo).append(" <= ").append(valMax).append("))");
@@ -446,9 +898,17 @@ abstract public class QueryBuilder implements Closeable
   public QueryDataSet buildQueryDataset(Connection con, boolean fetchRecords)
      throws Exception
   {
-    String sSQL = makeSQLstring(true, fetchRecords, fetchRecords);
-    log.debug("SQL=" + sSQL);
-    return new QueryDataSet(con, sSQL);
+    if(!bindParameters)
+    {
+      String sSQL = makeSQLstring(true, fetchRecords, fetchRecords);
+      log.debug("SQL=" + sSQL);
+      return new QueryDataSet(con, sSQL);
+    }
+
+    ArrayList<Object> params = new ArrayList<>();
+    String sSQL = makeSQLstring(true, fetchRecords, fetchRecords, params);
+    log.debug("SQL=" + sSQL + " PARAMS=" + params);
+    return new QueryDataSetFiltroData(con, sSQL, params);
   }
 
   public synchronized List<Record> executeQuery(Connection con, boolean fetchRecords)
@@ -462,11 +922,20 @@ abstract public class QueryBuilder implements Closeable
     if(!fetchRecords)
       return Collections.EMPTY_LIST;
 
+    List<Record> lsRecs;
+    boolean seek = bindParameters && haveSeek();
+
     // simula il parametro offset
     if(!nativeOffset)
-      return DbUtils.getSelectResults(lastQuery, offset, limit);
+      lsRecs = DbUtils.getSelectResults(lastQuery, seek ? 0 : offset, limit);
+    else
+      lsRecs = DbUtils.getSelectResults(lastQuery);
+
+    // la pagina precedente viene letta in ordine inverso
+    if(seek && seekBackward)
+      Collections.reverse(lsRecs);
 
-    return DbUtils.getSelectResults(lastQuery);
+    return lsRecs;
   }
 
   public Schema getSchema()
@@ -500,16 +969,7 @@ abstract public class QueryBuilder implements Closeable
     if(fl == null || fl.getOggFiltro() == null)
       return getTotalRecords(con);
 
-    long rv = -1;
-    String sSQL = getTotalRecordsQueryAddFilter((FiltroData) (fl.getOggFiltro()));
-    try(Statement st = con.createStatement();
-       ResultSet rs = st.executeQuery(sSQL))
-    {
-      if(rs.next())
-        rv = rs.getLong(1);
-    }
-
-    return rv;
+    return executeTotalRecords(con, (FiltroData) (fl.getOggFiltro()));
   }
 
   /**
@@ -522,19 +982,120 @@ abstract public class QueryBuilder implements Closeable
    */
   public synchronized long getTotalRecords(Connection con)
      throws Exception
+  {
+    return executeTotalRecords(con, null);
+  }
+
+  protected long executeTotalRecords(Connection con, FiltroData fd)
+     throws Exception
+  {
+    if(!bindParameters)
+      return executeCount(con, getTotalRecordsQueryAddFilter(fd), null);
+
+    ArrayList<Object> params = new ArrayList<>();
+    String sSQL = getTotalRecordsQueryAddFilter(fd, params);
+    return executeCount(con, sSQL, params);
+  }
+
+  /**
+   * Esegue una query di conteggio.
+   * @param con connessione SQL
+   * @param sSQL query di conteggio
+   * @param params parametri della query preparata (null per una query letterale)
+   * @return il valore della prima colonna del primo record o -1
+   * @throws Exception
+   */
+  public static long executeCount(Connection con, String sSQL, List<Object> params)
+     throws Exception
   {
     long rv = -1;
-    String sSQL = getTotalRecordsQueryAddFilter(null);
-    try(Statement st = con.createStatement();
-       ResultSet rs = st.executeQuery(sSQL))
+
+    if(params == null)
     {
-      if(rs.next())
-        rv = rs.getLong(1);
+      try(Statement st = con.createStatement();
+         ResultSet rs = st.executeQuery(sSQL))
+      {
+        if(rs.next())
+          rv = rs.getLong(1);
+      }
+
+      return rv;
+    }
+
+    try(PreparedStatement ps = con.prepareStatement(sSQL))
+    {
+      setParameters(ps, params);
+      try(ResultSet rs = ps.executeQuery())
+      {
+        if(rs.next())
+          rv = rs.getLong(1);
+      }
     }
 
     return rv;
   }
 
+  /**
+   * Conteggio dei record di questa query con il filtro specificato.
+   * Le query di conteggio e di stima vengono costruite subito; il conteggio
+   * restituito non accede più allo stato del builder e può essere eseguito
+   * da un altro thread mentre il builder legge la pagina.
+   * @param fd eventuale filtro applicato (può essere null)
+   * @return conteggio dei record
+   * @throws Exception
+   */
+  public synchronized RecordCountQuery getRecordCountQuery(FiltroData fd)
+     throws Exception
+  {
+    List<Object> params = bindParameters ? new ArrayList<>() : null;
+    String sSQL = noFiltro(false, params);
+    String sWhere = fd != null && fd.haveWhere() ? " WHERE " + filtroWhere(fd, params) : "";
+
+    String tableName = null;
+    if(sWhere.isEmpty() && !haveWhere() && (parametri == null || !parametri.haveWhere())
+       && !haveGroupby() && !haveHaving() && !useDistinct && from != null && from.trim().matches("[A-Za-z_][\\w.]*"))
+      tableName = from.trim();
+
+    return new SqlRecordCountQuery(this,
+       getCountRecordsQuery(sSQL) + sWhere,
+       getEstimateRecordsQuery(wrapSubselect(sSQL) + sWhere),
+       tableName, params);
+  }
+
+  /**
+   * Query per la stima del numero di record da parte del planner.
+   * Il risultato va interpretato con readEstimateRecords().
+   * @param genericQuery una query per selezionare record
+   * @return query di stima o null se il db non la supporta
+   */
+  public String getEstimateRecordsQuery(String genericQuery)
+  {
+    return null;
+  }
+
+  /**
+   * Query per la stima del numero di record di una tabella
+   * dalle statistiche del db; ha come unico parametro il nome della tabella.
+   * Il risultato va interpretato con readEstimateRecords().
+   * @return query di stima o null se il db non la supporta
+   */
+  public String getTableEstimateRecordsQuery()
+  {
+    return null;
+  }
+
+  /**
+   * Interpreta il risultato di una query di stima.
+   * @param rs risultato della query di stima
+   * @return numero stimato di record o -1 se non disponibile
+   * @throws SQLException
+   */
+  public long readEstimateRecords(ResultSet rs)
+     throws SQLException
+  {
+    return -1;
+  }
+
   /**
    * Determina il numero di record restituiti dalla query indicata.
    * Viene usata per decidere se attivare la modalita combo.
@@ -638,7 +1199,7 @@ abstract public class QueryBuilder implements Closeable
     if(cd.isEnableCache() && (rv = SetupHolder.getCacheManager().getForeignDataList(sSQL)) != null)
       return rv;
 
-    rv = new ArrayList<>();
+    rv = new ForeignDataList();
     try(Statement st = con.createStatement();
        ResultSet rs = st.executeQuery(sSQL))
     {
@@ -647,23 +1208,7 @@ abstract public class QueryBuilder implements Closeable
 
       while(rs.next())
       {
-        ForeignDataHolder fdh = new ForeignDataHolder();
-
-        if(cd.isForeignAlternate())
-        {
-          fdh.codice = rs.getString(1);
-          fdh.alternateCodice = rs.getString(2);
-          fdh.descrizione = "";
-          for(int i = 3; i <= numCol; i++)
-            fdh.descrizione += rs.getString(i) + " ";
-        }
-        else
-        {
-          fdh.codice = rs.getString(1);
-          fdh.descrizione = "";
-          for(int i = 2; i <= numCol; i++)
-            fdh.descrizione += rs.getString(i) + " ";
-        }
+        ForeignDataHolder fdh = readForeignDataHolder(rs, numCol, cd);
 
         // cerca l'elemento '0' per metterlo da parte
         // in modo da inserirlo in cima alla lista comunque
@@ -699,6 +1244,36 @@ abstract public class QueryBuilder implements Closeable
     return rv;
   }
 
+  /**
+   * Legge un record di dati esterni dal risultato di una query
+   * costruita da getQueryForeignDataList() o getQueryForeignDataPage().
+   * @param rs risultato della query posizionato sul record
+   * @param numCol numero di colonne del risultato
+   * @param cd colonna chiave per il recupero
+   * @return il dato esterno
+   * @throws SQLException
+   */
+  protected ForeignDataHolder readForeignDataHolder(ResultSet rs, int numCol, RigelColumnDescriptor cd)
+     throws SQLException
+  {
+    ForeignDataHolder fdh = new ForeignDataHolder();
+    int first = 2;
+
+    fdh.codice = rs.getString(1);
+    if(cd.isForeignAlternate())
+    {
+      fdh.alternateCodice = rs.getString(2);
+      first = 3;
+    }
+
+    StringBuilder sb = new StringBuilder();
+    for(int i = first; i <= numCol; i++)
+      sb.append(rs.getString(i)).append(' ');
+
+    fdh.descrizione = sb.toString();
+    return fdh;
+  }
+
   /**
    * Costuisce la query utilizzata da getForeignDataList() ed estimateForeignDataList().
    * @param row riga corrente
@@ -712,6 +1287,49 @@ abstract public class QueryBuilder implements Closeable
   public String getQueryForeignDataList(int row, int col, RigelTableModel rtm,
      RigelColumnDescriptor cd, boolean haveStatoRec)
      throws Exception
+  {
+    String sSQL = getQueryForeignDataBase(row, col, rtm, cd, haveStatoRec);
+
+    if(cd.getForeignCampoDisplay().indexOf(',') == -1)
+      sSQL += " ORDER BY " + cd.getForeignCampoDisplay();
+    else
+      sSQL += " ORDER BY " + cd.getForeignCampoLink();
+
+    if(macroResolver != null)
+      sSQL = macroResolver.resolveMacro(sSQL);
+
+    log.debug("** getQueryForeignDataList: " + sSQL);
+    return sSQL;
+  }
+
+  /**
+   * Costruisce la query utilizzata da getForeignDataPage().
+   * La query è quella di getQueryForeignDataList() senza ordinamento;
+   * il chiamante aggiunge la condizione IN sul campo di collegamento.
+   * @param rtm tableModel con i dati principali
+   * @param cd colonna chiave per il recupero
+   * @param haveStatoRec vero se la tabella collegata ha il campo STATO_REC.
+   * @return la query SQL di base per i dati esterni di una pagina
+   * @throws Exception
+   */
+  public String getQueryForeignDataPage(RigelTableModel rtm, RigelColumnDescriptor cd, boolean haveStatoRec)
+     throws Exception
+  {
+    String sSQL = getQueryForeignDataBase(0, 0, rtm, cd, haveStatoRec);
+
+    if(macroResolver != null)
+      sSQL = macroResolver.resolveMacro(sSQL);
+
+    log.debug("** getQueryForeignDataPage: " + sSQL);
+    return sSQL;
+  }
+
+  /**
+   * Parte comune (select e where) delle query per i dati esterni.
+   */
+  protected String getQueryForeignDataBase(int row, int col, RigelTableModel rtm,
+     RigelColumnDescriptor cd, boolean haveStatoRec)
+     throws Exception
   {
     String sSQL;
 
@@ -734,16 +1352,117 @@ abstract public class QueryBuilder implements Closeable
     if(cd.getComboExtraWhere() != null)
       sSQL += " AND " + rtm.getValueMacroInside(row, col, cd.getComboExtraWhere(), true, false);
 
-    if(cd.getForeignCampoDisplay().indexOf(',') == -1)
-      sSQL += " ORDER BY " + cd.getForeignCampoDisplay();
-    else
-      sSQL += " ORDER BY " + cd.getForeignCampoLink();
+    return sSQL;
+  }
 
-    if(macroResolver != null)
-      sSQL = macroResolver.resolveMacro(sSQL);
+  /**
+   * Recupera i dati esterni per i soli valori indicati.
+   * Viene usata per la visualizzazione di una pagina di lista:
+   * invece di caricare l'intera tabella collegata vengono letti solo
+   * i record con i codici presenti nella pagina (WHERE link IN (...)).
+   * I risultati vengono memorizzati nella cache per singolo codice,
+   * compresi i codici non trovati.
+   * @param rtm tableModel con i dati principali
+   * @param cd colonna chiave per il recupero
+   * @param keys valori del campo di collegamento (come letti dal table model)
+   * @param i18n
+   * @return mappa codice -> dato esterno (null per i codici non trovati)
+   * @throws Exception
+   */
+  public Map<String, ForeignDataHolder> getForeignDataPage(RigelTableModel rtm, RigelColumnDescriptor cd,
+     Collection<Object> keys, RigelI18nInterface i18n)
+     throws Exception
+  {
+    HashMap<String, ForeignDataHolder> rv = new HashMap<>();
+    if(keys.isEmpty())
+      return rv;
 
-    log.debug("** getQueryForeignDataList: " + sSQL);
-    return sSQL;
+    String sSQL = getQueryForeignDataPage(rtm, cd, haveStatoRec(cd.getForeignTabella()));
+    String prefix = "l5:" + sSQL + "|";
+    Set<String> tabelle = SqlUtils.extractTables(sSQL);
+    RigelCacheManager cm = SetupHolder.getCacheManager();
+
+    // separa i codici già in cache da quelli da leggere
+    ArrayList<Object> toRead = new ArrayList<>();
+    for(Object k : keys)
+    {
+      String sk = k.toString();
+      if(rv.containsKey(sk))
+        continue;
+
+      Object cached = cd.isEnableCache() ? cm.getGenericCachedData(prefix + sk) : null;
+      if(cached == null)
+      {
+        rv.put(sk, null);
+        toRead.add(k);
+      }
+      else
+        rv.put(sk, cached == FOREIGN_NOT_FOUND ? null : (ForeignDataHolder) cached);
+    }
+
+    if(!toRead.isEmpty())
+    {
+      SetupHolder.getConProd().runConnection((con) ->
+      {
+        for(int i = 0; i < toRead.size(); i += MAX_IN_PARAMS)
+        {
+          List<Object> chunk = toRead.subList(i, Math.min(i + MAX_IN_PARAMS, toRead.size()));
+          readForeignDataPage(con, sSQL, cd, chunk, rv);
+        }
+      });
+
+      for(Object k : toRead)
+      {
+        String sk = k.toString();
+        ForeignDataHolder fdh = rv.get(sk);
+
+        // emula l'elemento zero aggiunto da getForeignDataList()
+        if(fdh == null && "0".equals(sk) && SetupHolder.isAutoComboAlwaysHaveZero())
+        {
+          fdh = new ForeignDataHolder();
+          fdh.codice = "0";
+          fdh.alternateCodice = "0";
+          fdh.descrizione = i18n.msg("Nessuno/indefinito");
+          rv.put(sk, fdh);
+        }
+
+        if(cd.isEnableCache())
+          cm.putGenericCachedData(prefix + sk, fdh == null ? FOREIGN_NOT_FOUND : fdh, tabelle);
+      }
+    }
+
+    return rv;
+  }
+
+  /**
+   * Legge un blocco di codici per getForeignDataPage().
+   */
+  protected void readForeignDataPage(Connection con, String sSQL, RigelColumnDescriptor cd,
+     List<Object> keys, Map<String, ForeignDataHolder> rv)
+     throws Exception
+  {
+    StringBuilder sb = new StringBuilder(sSQL);
+    sb.append(" AND ").append(cd.getForeignCampoLink()).append(" IN (");
+    for(int i = 0; i < keys.size(); i++)
+      sb.append(i == 0 ? "?" : ",?");
+    sb.append(")");
+
+    try(PreparedStatement ps = con.prepareStatement(sb.toString()))
+    {
+      for(int i = 0; i < keys.size(); i++)
+        ps.setObject(i + 1, keys.get(i));
+
+      try(ResultSet rs = ps.executeQuery())
+      {
+        int numCol = rs.getMetaData().getColumnCount();
+        while(rs.next())
+        {
+          ForeignDataHolder fdh = readForeignDataHolder(rs, numCol, cd);
+          if(fdh.codice != null && rv.get(fdh.codice) == null)
+            rv.put(fdh.codice, fdh);
+        }
+      }
+    }
   }
 
   /**
@@ -844,7 +1563,7 @@ abstract public class QueryBuilder implements Closeable
     if(cd.isEnableCache() && (rv = SetupHolder.getCacheManager().getDataComboColonnaAttached(sSQL)) != null)
       return rv;
 
-    rv = new ArrayList<>();
+    rv = new ForeignDataList();
     try(Statement st = con.createStatement();
        ResultSet rs = st.executeQuery(sSQL))
     {
@@ -990,7 +1709,7 @@ abstract public class QueryBuilder implements Closeable
     if(cd.isEnableCache() && (rv = SetupHolder.getCacheManager().getDataComboColonnaSelf(sSQL)) != null)
       return rv;
 
-    rv = new ArrayList<>();
+    rv = new ForeignDataList();
     try(Statement st = con.createStatement();
        ResultSet rs = st.executeQuery(sSQL))
     {
@@ -1517,6 +2236,24 @@ abstract public class QueryBuilder implements Closeable
     return macroResolver;
   }
 
+  public boolean isBindParameters()
+  {
+    return bindParameters;
+  }
+
+  /**
+   * Attiva le query preparate con segnaposto per filtri e parametri.
+   * È disattivo per default: con i segnaposto le query vengono costruite
+   * con gli overload che ricevono la lista dei parametri, quindi eventuali
+   * ridefinizioni di makeSQLstringNoFiltro(boolean) o makeFiltroWhere(FiltroData)
+   * nelle classi derivate non vengono più chiamate.
+   * @param bindParameters vero per usare i segnaposto
+   */
+  public void setBindParameters(boolean bindParameters)
+  {
+    this.bindParameters = bindParameters;
+  }
+
   public void setMacroResolver(MacroResolver macroResolver)
   {
     this.macroResolver = macroResolver;
@@ -28,13 +28,13 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import org.apache.torque.criteria.SqlEnum;
 import org.commonlib5.utils.Pair;
 import org.commonlib5.utils.StringOper;
+import org.rigel5.db.SchemaCatalog;
 
 /**
  *
@@ -59,18 +59,43 @@ public class QueryDataSetFiltroData extends QueryDataSet
     super(resultSet);
   }
 
-  public QueryDataSetFiltroData(Connection conn, String select, String from, FiltroData filtro)
+  /**
+   * Esegue una query preparata con i parametri indicati.
+   * @param conn connessione al db
+   * @param selectStmt query con segnaposto '?'
+   * @param params valori dei parametri nell'ordine dei segnaposto
+   * @throws SQLException
+   * @throws DataSetException
+   */
+  public QueryDataSetFiltroData(Connection conn, String selectStmt, List<Object> params)
      throws SQLException, DataSetException
   {
-    String sql1 = buildQueryNoWhere(select, from, filtro) + " WHERE 1 = -1";
-    Schema s = new Schema();
-
-    try(Statement stm = conn.createStatement();
-       ResultSet rs = stm.executeQuery(sql1))
+    PreparedStatement lstm = conn.prepareStatement(selectStmt);
+    try
+    {
+      QueryBuilder.setParameters(lstm, params);
+      this.resultSet = lstm.executeQuery();
+    }
+    catch(SQLException ex)
     {
-      s.populate(rs.getMetaData(), null, null, conn);
+      lstm.close();
+      throw ex;
     }
 
+    this.stmt = lstm;
+    this.selectString = new StringBuilder(selectStmt);
+    this.schema = new Schema();
+
+    schema.populate(resultSet.getMetaData(), null, null, conn);
+  }
+
+  public QueryDataSetFiltroData(Connection conn, String select, String from, FiltroData filtro)
+     throws SQLException, DataSetException
+  {
+    // lo schema della query di prova viene letto una sola volta
+    String sql1 = buildQueryNoWhere(select, from, filtro) + " WHERE 1 = -1";
+    Schema s = SchemaCatalog.getInstance(conn).getQuerySchema(conn, sql1);
+
     String sql2 = buildQuery(select, from, filtro, s);
     PreparedStatement lstm = conn.prepareStatement(sql2);
     int ps = 1;
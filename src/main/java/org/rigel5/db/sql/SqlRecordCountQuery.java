@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2020 Nicola De Nisco
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.rigel5.db.sql;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.List;
+import org.rigel5.SetupHolder;
+import org.rigel5.table.RecordCountQuery;
+
+/**
+ * Conteggio dei record di una query SQL.
+ * Viene costruito da QueryBuilder.getRecordCountQuery() e contiene
+ * le query già pronte: conteggio e stima usano una connessione
+ * propria ottenuta dal ConnectionProducer.
+ *
+ * @author Nicola De Nisco
+ */
+public class SqlRecordCountQuery implements RecordCountQuery
+{
+  protected final QueryBuilder qb;
+  protected final String countSQL, estimateSQL, tableName;
+  protected final List<Object> params;
+
+  /**
+   * Costruttore.
+   * @param qb query builder per interpretare le stime
+   * @param countSQL query di conteggio
+   * @param estimateSQL query di stima (può essere null)
+   * @param tableName tabella per la stima senza filtri (può essere null)
+   * @param params parametri delle query (null per query letterali)
+   */
+  public SqlRecordCountQuery(QueryBuilder qb, String countSQL, String estimateSQL, String tableName, List<Object> params)
+  {
+    this.qb = qb;
+    this.countSQL = countSQL;
+    this.estimateSQL = estimateSQL;
+    this.tableName = tableName;
+    this.params = params;
+  }
+
+  @Override
+  public String getKey()
+  {
+    return params == null ? countSQL : countSQL + params;
+  }
+
+  @Override
+  public long count()
+     throws Exception
+  {
+    return SetupHolder.getConProd().functionConnection((con) -> QueryBuilder.executeCount(con, countSQL, params));
+  }
+
+  @Override
+  public long estimate()
+     throws Exception
+  {
+    String tableSQL = tableName == null ? null : qb.getTableEstimateRecordsQuery();
+
+    if(tableSQL != null)
+    {
+      long rv = SetupHolder.getConProd().functionConnection((con) ->
+      {
+        try(PreparedStatement ps = con.prepareStatement(tableSQL))
+        {
+          ps.setString(1, tableName);
+          try(ResultSet rs = ps.executeQuery())
+          {
+            return qb.readEstimateRecords(rs);
+          }
+        }
+      });
+
+      // statistiche non ancora raccolte: usa la stima della query
+      if(rv > 0)
+        return rv;
+    }
+
+    if(estimateSQL == null)
+      return -1;
+
+    return SetupHolder.getConProd().functionConnection((con) ->
+    {
+      try(PreparedStatement ps = con.prepareStatement(estimateSQL))
+      {
+        if(params != null)
+          QueryBuilder.setParameters(ps, params);
+
+        try(ResultSet rs = ps.executeQuery())
+        {
+          return qb.readEstimateRecords(rs);
+        }
+      }
+    });
+  }
+
+  public String getCountSQL()
+  {
+    return countSQL;
+  }
+
+  public String getEstimateSQL()
+  {
+    return estimateSQL;
+  }
+}
@@ -17,23 +17,23 @@
  */
 package org.rigel5.db.sql;
 
-import java.sql.Connection;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.util.HashMap;
-import org.commonlib5.utils.StringOper;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.rigel5.SetupHolder;
-import org.rigel5.db.DbUtils;
+import org.rigel5.db.SchemaCatalog;
 
 /**
  * Singletone cache per verifica esistenza campo STATO_REC in tabelle.
+ * I metadati sono letti attraverso lo SchemaCatalog condiviso;
+ * qui viene mantenuto solo l'esito per nome di tabella.
+ * La classe può essere usata da più thread contemporaneamente.
  *
  * @author Nicola De Nisco
  */
 public final class StatoRecCache
 {
-  private static StatoRecCache instance = null;
-  private final HashMap<String, Boolean> statoRecTables = new HashMap<>();
+  private static final StatoRecCache instance = new StatoRecCache();
+  private final Map<String, Boolean> statoRecTables = new ConcurrentHashMap<>();
 
   private StatoRecCache()
   {
@@ -41,9 +41,6 @@ public final class StatoRecCache
 
   public static StatoRecCache getInstance()
   {
-    if(instance == null)
-      instance = new StatoRecCache();
-
     return instance;
   }
 
@@ -56,64 +53,42 @@ public final class StatoRecCache
    */
   public boolean haveStatoRec(String nomeTabella)
   {
-    int pos;
     String test = nomeTabella.toLowerCase();
-    if((pos = test.lastIndexOf('.')) != -1)
-      test = test.substring(pos + 1);
 
     Boolean rv = statoRecTables.get(test);
     if(rv == null)
     {
-      rv = findTable(test);
+      rv = findTable(nomeTabella);
       statoRecTables.put(test, rv);
     }
 
     return rv;
   }
 
-  private Boolean findTable(String test)
+  /**
+   * Svuota la cache (da chiamare dopo modifiche allo schema).
+   */
+  public void clear()
+  {
+    statoRecTables.clear();
+  }
+
+  private Boolean findTable(String nomeTabella)
   {
     if(SetupHolder.getConProd() == null)
       throw new RuntimeException("Connection producer non inizializzato.");
 
     try
     {
-      return SetupHolder.getConProd().functionConnection((con) -> findTable(test, con));
+      return SetupHolder.getConProd().functionConnection((con) ->
+      {
+        SchemaCatalog.TableInfo ti = SchemaCatalog.getInstance(con).getTable(con, nomeTabella);
+        return ti != null && ti.haveStatoRec(con);
+      });
     }
     catch(Exception e)
     {
       throw new RuntimeException(e);
     }
   }
-
-  private boolean findTable(String test, Connection con)
-     throws Exception
-  {
-    try (ResultSet rsMeta = con.getMetaData().getTables(null, null, null, DbUtils.TABLES_FILTER))
-    {
-      while(rsMeta.next())
-      {
-        String mTabella = rsMeta.getString(3);
-
-        if(StringOper.isEquNocase(test, mTabella))
-          return findColumnTable(con, mTabella);
-      }
-    }
-    return false;
-  }
-
-  private boolean findColumnTable(Connection con, String tableName)
-     throws SQLException
-  {
-    try (ResultSet rsMeta = con.getMetaData().getColumns(null, null, tableName, null))
-    {
-      while(rsMeta.next())
-      {
-        String mCampo = rsMeta.getString(4);
-        if(StringOper.isEquNocase("stato_rec", mCampo))
-          return true;
-      }
-    }
-    return false;
-  }
 }
@@ -0,0 +1,407 @@
+/*
+ * Copyright (C) 2020 Nicola De Nisco
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.rigel5.db.torque;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.torque.Column;
+import org.apache.torque.TorqueException;
+import org.apache.torque.adapter.IDMethod;
+import org.apache.torque.map.ColumnMap;
+import org.apache.torque.map.TableMap;
+import org.apache.torque.om.Persistent;
+import org.apache.torque.util.ColumnValues;
+import org.apache.torque.util.ExceptionMapper;
+import org.apache.torque.util.JdbcTypedValue;
+import org.rigel5.db.DbUtils;
+
+/**
+ * Salvataggio cumulativo di oggetti Peer.
+ * Gli oggetti vengono raggruppati per tabella e tipo di operazione
+ * (insert o update) e scritti con PreparedStatement.addBatch/executeBatch,
+ * riducendo i round trip verso il database ad uno per gruppo.
+ * Gli statement hanno la stessa forma di DbUtils.doInsert/doUpdate
+ * e i valori vengono prodotti dal metodo buildColumnValues() del Peer.
+ * Una cancellazione logica è un normale update.
+ * <br>
+ * A differenza di Persistent.save() vengono scritti solo i campi
+ * dell'oggetto: eventuali collezioni collegate non sono salvate.
+ * Gli oggetti che non possono essere accodati (chiave primaria
+ * generata dal database, valori espressi come SQL, Peer non
+ * standard) fanno ritornare false ad add(): in quel caso i gruppi
+ * pendenti vengono già eseguiti e il chiamante deve salvare
+ * l'oggetto direttamente, così l'ordine delle scritture è preservato.
+ * Per lo stesso motivo, quando un gruppo raggiunge maxBatch oggetti
+ * vengono eseguiti tutti i gruppi pendenti nell'ordine di creazione.
+ * Ogni comando del batch deve aggiornare esattamente un record:
+ * un update che non trova la riga solleva una TorqueException.
+ * <pre>
+ *  PeerBatchSaver batch = new PeerBatchSaver(dbCon);
+ *  for(Persistent obj : lsObj)
+ *    if(obj.isModified() &amp;&amp; !batch.add(obj))
+ *      obj.save(dbCon);
+ *  batch.flush();
+ * </pre>
+ *
+ * @author Nicola De Nisco
+ */
+public class PeerBatchSaver
+{
+  /** Logging */
+  private static final Log log = LogFactory.getLog(PeerBatchSaver.class);
+  public static final int DEFAULT_MAX_BATCH = 500;
+  protected final Connection con;
+  protected int maxBatch = DEFAULT_MAX_BATCH;
+  protected final Map<String, Batch> batches = new LinkedHashMap<>();
+  protected int numSaved = 0;
+  /** informazioni sui Peer (per classe oggetto); la cache è dell'istanza per non trattenere i classloader */
+  protected final Map<Class, PeerInfo> peerInfoCache = new HashMap<>();
+  private static final PeerInfo NO_PEER = new PeerInfo(null, null, null, false);
+
+  protected static class PeerInfo
+  {
+    final Method buildColumnValues;
+    final String tableName;
+    final Set<String> pkNames;
+    final boolean autoId;
+
+    PeerInfo(Method buildColumnValues, String tableName, Set<String> pkNames, boolean autoId)
+    {
+      this.buildColumnValues = buildColumnValues;
+      this.tableName = tableName;
+      this.pkNames = pkNames;
+      this.autoId = autoId;
+    }
+  }
+
+  protected static class Batch
+  {
+    final String sql;
+    final List<Persistent> objs = new ArrayList<>();
+    final List<List<JdbcTypedValue>> values = new ArrayList<>();
+
+    Batch(String sql)
+    {
+      this.sql = sql;
+    }
+  }
+
+  public PeerBatchSaver(Connection con)
+  {
+    this.con = con;
+  }
+
+  /**
+   * Accoda un oggetto per il salvataggio.
+   * Gli oggetti non modificati vengono ignorati.
+   * @param obj oggetto da salvare
+   * @return vero se l'oggetto è stato accodato (o non richiede salvataggio);
+   * falso se deve essere salvato direttamente dal chiamante
+   * @throws Exception
+   */
+  public boolean add(Persistent obj)
+     throws Exception
+  {
+    if(!obj.isModified())
+      return true;
+
+    PeerInfo pi = getPeerInfo(obj.getClass());
+    ColumnValues cv = pi == NO_PEER ? null : buildColumnValues(pi, obj);
+
+    if(cv == null || !isBatchable(pi, cv, obj.isNew()))
+    {
+      flush();
+      return false;
+    }
+
+    List<String> colNames = new ArrayList<>();
+    List<JdbcTypedValue> vals = new ArrayList<>();
+    String sql;
+
+    if(obj.isNew())
+    {
+      for(Map.Entry<Column, JdbcTypedValue> e : cv.entrySet())
+      {
+        colNames.add(e.getKey().getColumnName());
+        vals.add(e.getValue());
+      }
+
+      sql = buildInsert(pi.tableName, colNames);
+    }
+    else
+    {
+      List<String> pkCols = new ArrayList<>();
+      List<JdbcTypedValue> pkVals = new ArrayList<>();
+
+      for(Map.Entry<Column, JdbcTypedValue> e : cv.entrySet())
+      {
+        String colName = e.getKey().getColumnName();
+        if(pi.pkNames.contains(colName.toUpperCase()))
+        {
+          pkCols.add(colName);
+          pkVals.add(e.getValue());
+        }
+        else
+        {
+          colNames.add(colName);
+          vals.add(e.getValue());
+        }
+      }
+
+      if(colNames.isEmpty())
+      {
+        // nulla da aggiornare oltre la chiave
+        obj.setModified(false);
+        return true;
+      }
+
+      vals.addAll(pkVals);
+      sql = buildUpdate(pi.tableName, colNames, pkCols);
+    }
+
+    Batch b = batches.computeIfAbsent(sql, Batch::new);
+    b.objs.add(obj);
+    b.values.add(vals);
+
+    // esegue tutti i gruppi per non anticipare scritture accodate dopo quelle pendenti
+    if(b.objs.size() >= maxBatch)
+      flush();
+
+    return true;
+  }
+
+  /**
+   * Esegue tutti i gruppi pendenti.
+   * @return numero di oggetti scritti da questa istanza
+   * @throws Exception
+   */
+  public int flush()
+     throws Exception
+  {
+    for(Batch b : batches.values())
+      execute(b);
+
+    batches.clear();
+    return numSaved;
+  }
+
+  protected void execute(Batch b)
+     throws Exception
+  {
+    if(b.objs.isEmpty())
+      return;
+
+    long startTime = System.currentTimeMillis();
+
+    int[] counts;
+    try(PreparedStatement ps = con.prepareStatement(b.sql))
+    {
+      for(List<JdbcTypedValue> vals : b.values)
+      {
+        DbUtils.populatePreparedStatement(vals, ps, 1);
+        ps.addBatch();
+      }
+
+      counts = ps.executeBatch();
+    }
+    catch(SQLException e)
+    {
+      throw ExceptionMapper.getInstance().toTorqueException(e);
+    }
+
+    checkUpdateCounts(b, counts);
+
+    for(Persistent obj : b.objs)
+    {
+      obj.setNew(false);
+      obj.setModified(false);
+    }
+
+    numSaved += b.objs.size();
+    log.trace("batch of " + b.objs.size() + " took "
+       + (System.currentTimeMillis() - startTime) + " milliseconds: " + b.sql);
+
+    b.objs.clear();
+    b.values.clear();
+  }
+
+  /**
+   * Verifica che ogni comando del batch abbia scritto un solo record.
+   * @param b gruppo eseguito
+   * @param counts risultato di executeBatch()
+   * @throws TorqueException se un record non è stato scritto
+   */
+  protected void checkUpdateCounts(Batch b, int[] counts)
+     throws TorqueException
+  {
+    if(counts == null || counts.length != b.objs.size())
+      throw new TorqueException("Batch incompleto: " + (counts == null ? 0 : counts.length)
+         + " risultati per " + b.objs.size() + " oggetti: " + b.sql);
+
+    for(int i = 0; i < counts.length; i++)
+    {
+      if(counts[i] != 1 && counts[i] != Statement.SUCCESS_NO_INFO)
+        throw new TorqueException("Record " + b.objs.get(i).getPrimaryKey()
+           + " non salvato (" + counts[i] + " righe aggiornate): " + b.sql);
+    }
+  }
+
+  protected boolean isBatchable(PeerInfo pi, ColumnValues cv, boolean isNew)
+  {
+    // chiave generata dal database: il valore va riletto, quindi niente batch
+    if(isNew && pi.autoId)
+      return false;
+
+    int numPk = 0;
+    for(Map.Entry<Column, JdbcTypedValue> e : cv.entrySet())
+    {
+      JdbcTypedValue v = e.getValue();
+      if(v == null || v.getSqlExpression() != null)
+        return false;
+
+      if(pi.pkNames.contains(e.getKey().getColumnName().toUpperCase()))
+      {
+        if(v.getValue() == null)
+          return false;
+        numPk++;
+      }
+    }
+
+    // l'update richiede la chiave completa; l'insert la chiave esplicita
+    return !pi.pkNames.isEmpty() && numPk == pi.pkNames.size();
+  }
+
+  protected ColumnValues buildColumnValues(PeerInfo pi, Persistent obj)
+     throws Exception
+  {
+    try
+    {
+      return (ColumnValues) pi.buildColumnValues.invoke(null, obj);
+    }
+    catch(InvocationTargetException e)
+    {
+      Throwable t = e.getCause();
+      if(t instanceof Exception)
+        throw (Exception) t;
+      throw e;
+    }
+  }
+
+  protected String buildInsert(String tableName, List<String> colNames)
+  {
+    StringBuilder sb = new StringBuilder(128)
+       .append("INSERT INTO ").append(tableName)
+       .append("(").append(String.join(",", colNames)).append(") VALUES (");
+
+    for(int i = 0; i < colNames.size(); i++)
+      sb.append(i == 0 ? "?" : ",?");
+
+    return sb.append(")").toString();
+  }
+
+  protected String buildUpdate(String tableName, List<String> colNames, List<String> pkCols)
+  {
+    StringBuilder sb = new StringBuilder(128)
+       .append("UPDATE ").append(tableName).append(" SET ");
+
+    for(int i = 0; i < colNames.size(); i++)
+      sb.append(i == 0 ? "" : ",").append(colNames.get(i)).append("=?");
+
+    sb.append(" WHERE ");
+    for(int i = 0; i < pkCols.size(); i++)
+      sb.append(i == 0 ? "" : " AND ").append(pkCols.get(i)).append("=?");
+
+    return sb.toString();
+  }
+
+  /**
+   * Recupera (con cache) le informazioni sul Peer dell'oggetto.
+   * Il Peer deve avere il metodo statico buildColumnValues(oggetto)
+   * generato da Torque.
+   * @param objClass classe dell'oggetto
+   * @return informazioni o NO_PEER se il Peer non è utilizzabile
+   */
+  protected PeerInfo getPeerInfo(Class objClass)
+  {
+    return peerInfoCache.computeIfAbsent(objClass, (cls) ->
+    {
+      try
+      {
+        Class peerClass = Class.forName(cls.getName() + "Peer", true, cls.getClassLoader());
+        Method bcv = null;
+        for(Method m : peerClass.getMethods())
+        {
+          if(m.getName().equals("buildColumnValues") && m.getParameterCount() == 1
+             && m.getParameterTypes()[0].isAssignableFrom(cls)
+             && ColumnValues.class.isAssignableFrom(m.getReturnType()))
+          {
+            bcv = m;
+            break;
+          }
+        }
+
+        if(bcv == null)
+          return NO_PEER;
+
+        TableMap tm = (TableMap) peerClass.getMethod("getTableMap").invoke(null);
+        Set<String> pkNames = new HashSet<>();
+        for(ColumnMap cm : tm.getColumns())
+        {
+          if(cm.isPrimaryKey())
+            pkNames.add(cm.getColumnName().toUpperCase());
+        }
+
+        boolean autoId = !IDMethod.NO_ID_METHOD.equals(tm.getPrimaryKeyMethod());
+        return new PeerInfo(bcv, tm.getFullyQualifiedTableName(), pkNames, autoId);
+      }
+      catch(Throwable t)
+      {
+        log.debug("Batch save not available for " + cls.getName(), t);
+        return NO_PEER;
+      }
+    });
+  }
+
+  public int getMaxBatch()
+  {
+    return maxBatch;
+  }
+
+  public void setMaxBatch(int maxBatch)
+  {
+    this.maxBatch = Math.max(1, maxBatch);
+  }
+
+  public int getNumSaved()
+  {
+    return numSaved;
+  }
+}
@@ -19,6 +19,7 @@ package org.rigel5.glue;
 
 import java.sql.Connection;
 import org.apache.torque.om.Persistent;
+import org.rigel5.db.torque.PeerBatchSaver;
 
 /**
  * Salvataggio degli oggetti Peer.
@@ -127,6 +128,27 @@ public interface PeerObjectSaver
   public void salva(Persistent obj, Connection dbCon, int userID, int statoRecNew, int writeLevel)
      throws Exception;
 
+  /**
+   * Salva un oggetto sul database con eventuale salvataggio cumulativo.
+   * Le implementazioni che lo supportano eseguono i controlli e
+   * l'aggiornamento dei campi automatici e poi accodano l'oggetto
+   * con batch.add(); se add() ritorna false l'oggetto va salvato
+   * direttamente. L'implementazione di default salva subito l'oggetto;
+   * se non ridefinita PeerTablePagerEditApp non usa il salvataggio
+   * cumulativo e salva le righe una per volta.
+   * @param obj l'oggetto peer da salvare
+   * @param dbCon connessione al db SQL
+   * @param statoRecNew lo stato del record da impostare
+   * @param batch salvataggio cumulativo in corso
+   * @throws Exception
+   */
+  @SuppressWarnings("deprecation")
+  public default void salva(Persistent obj, Connection dbCon, int statoRecNew, PeerBatchSaver batch)
+     throws Exception
+  {
+    salva(obj, dbCon, statoRecNew);
+  }
+
   /**
    * Salva un oggetto sul db senza applicare nessun controllo.
    * I campi automatici sono comunque aggiornati correttamente.
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2020 Nicola De Nisco
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.rigel5.glue;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import org.rigel5.table.RigelColumnDescriptor;
+import org.rigel5.table.RigelObjectTableModel;
+import org.rigel5.table.RigelTableModel;
+import org.rigel5.table.html.wrapper.HtmlWrapperBase;
+
+/**
+ * Pool di wrapper condiviso fra tutte le sessioni.
+ * Ogni richiesta prende in prestito un wrapper ad uso esclusivo e lo
+ * restituisce al termine: il numero di istanze dipende dal numero di
+ * richieste contemporanee per la stessa lista e non dal numero di sessioni;
+ * richieste parallele della stessa sessione usano istanze diverse
+ * e non si serializzano sui metodi synchronized di tabella e paginatore.
+ * Al prelievo e alla restituzione il wrapper viene riportato allo stato
+ * iniziale: buffer dei record, posizione e filtro del paginatore,
+ * ordinamento e filtro delle colonne, posizione keyset; nessuno stato
+ * della sessione precedente passa alla successiva.
+ *
+ * @author Nicola De Nisco
+ */
+public class SharedWrapperPool
+{
+  protected int maxIdle = 16;
+  protected final ConcurrentHashMap<String, ConcurrentLinkedDeque<HtmlWrapperBase>> pool = new ConcurrentHashMap<>();
+
+  /**
+   * Preleva un wrapper libero.
+   * @param key chiave del wrapper
+   * @return wrapper o null se non ci sono wrapper liberi
+   */
+  public HtmlWrapperBase borrow(String key)
+  {
+    ConcurrentLinkedDeque<HtmlWrapperBase> idle = pool.get(key);
+    HtmlWrapperBase wr = idle == null ? null : idle.pollFirst();
+    if(wr != null)
+      resetState(wr);
+    return wr;
+  }
+
+  /**
+   * Restituisce un wrapper al pool.
+   * Se sono già presenti maxIdle wrapper liberi viene scartato.
+   * @param key chiave del wrapper
+   * @param wr wrapper da restituire
+   */
+  public void release(String key, HtmlWrapperBase wr)
+  {
+    resetState(wr);
+
+    ConcurrentLinkedDeque<HtmlWrapperBase> idle = pool.computeIfAbsent(key, (k) -> new ConcurrentLinkedDeque<>());
+    if(idle.size() < maxIdle)
+      idle.offerFirst(wr);
+  }
+
+  /**
+   * Riporta il wrapper allo stato iniziale.
+   * @param wr wrapper da ripulire
+   */
+  protected void resetState(HtmlWrapperBase wr)
+  {
+    if(wr.getPager() != null)
+      wr.getPager().resetState();
+
+    clearRows(wr);
+  }
+
+  /**
+   * Rilascia i dati della richiesta precedente.
+   * @param wr wrapper da ripulire
+   */
+  protected void clearRows(HtmlWrapperBase wr)
+  {
+    RigelTableModel tm = wr.getPtm();
+    if(tm == null)
+      return;
+
+    for(int i = 0; i < tm.getColumnCount(); i++)
+    {
+      RigelColumnDescriptor cd = tm.getColumn(i);
+      if(cd != null)
+        cd.clearForeignPage();
+    }
+
+    if(tm instanceof RigelObjectTableModel)
+      ((RigelObjectTableModel) tm).clear();
+  }
+
+  /**
+   * Svuota il pool.
+   * Da chiamare quando vengono ricaricati i modelli XML.
+   */
+  public void clear()
+  {
+    pool.clear();
+  }
+
+  public int getIdleCount(String key)
+  {
+    ConcurrentLinkedDeque<HtmlWrapperBase> idle = pool.get(key);
+    return idle == null ? 0 : idle.size();
+  }
+
+  public int getMaxIdle()
+  {
+    return maxIdle;
+  }
+
+  public void setMaxIdle(int maxIdle)
+  {
+    this.maxIdle = maxIdle;
+  }
+}
@@ -20,6 +20,7 @@ package org.rigel5.glue;
 import java.util.Hashtable;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.commonlib5.lambda.FunctionTrowException;
 import org.commonlib5.utils.ClassOper;
 import org.jdom2.Element;
 import org.rigel5.RigelI18nInterface;
@@ -35,6 +36,7 @@ import org.rigel5.glue.table.HeditTableApp;
 import org.rigel5.glue.table.PeerAppMaintDispTable;
 import org.rigel5.glue.table.PeerAppMaintFormTable;
 import org.rigel5.glue.table.SqlAppMaintFormTable;
+import org.rigel5.glue.validators.Validator;
 import org.rigel5.table.RigelTableModel;
 import org.rigel5.table.html.AbstractHtmlTablePager;
 import org.rigel5.table.html.FormTable;
@@ -90,6 +92,8 @@ abstract public class WrapperCacheBase
   protected RigelI18nInterface i18n = null;
 
   protected String[] basePath = null;
+  // liste condivise fra tutte le sessioni
+  protected static SharedWrapperPool sharedPool = new SharedWrapperPool();
 
   /**
    * Svuota questa cache di tutti gli elementi contenuti.
@@ -205,6 +209,7 @@ abstract public class WrapperCacheBase
       ptm.rebind(wl.getRecords());
     }
 
+    Validator.precompile(wl.getEleXml());
     log.debug("Creato nuovo PeerWrapperEditHtml " + type);
     return wl;
   }
@@ -264,6 +269,7 @@ abstract public class WrapperCacheBase
       ptm.rebind(wl.getRecords());
     }
 
+    Validator.precompile(wl.getEleXml());
     log.debug("Creato nuovo PeerWrapperEditHtml " + type);
     return wl;
   }
@@ -318,6 +324,7 @@ abstract public class WrapperCacheBase
 
     populateTableModelProperties(wf.getPtm());
 
+    Validator.precompile(wf.getEleXml());
     log.debug("Creato nuovo PeerWrapperFormHtml " + type);
     return wf;
   }
@@ -367,6 +374,7 @@ abstract public class WrapperCacheBase
 
     populateTableModelProperties(wf.getPtm());
 
+    Validator.precompile(wf.getEleXml());
     log.debug("Creato nuovo PeerWrapperFormHtml " + type);
     return wf;
   }
@@ -420,6 +428,7 @@ abstract public class WrapperCacheBase
 
     populateTableModelProperties(wf.getPtm());
 
+    Validator.precompile(wf.getEleXml());
     log.debug("Creato nuovo SqlWrapperFormHtml " + type);
     return wf;
   }
@@ -787,6 +796,143 @@ abstract public class WrapperCacheBase
     throw new MissingListException(i18n.msg("Lista %s non trovata o non inizializzabile.", type));
   }
 
+  /**
+   * Preleva una lista dal pool condiviso fra tutte le sessioni.
+   * La lista è ad uso esclusivo del chiamante fino a releaseListaShared();
+   * se il pool non ha liste libere ne viene costruita una nuova.
+   * Adatta alle liste in sola visualizzazione: il filtro impostato
+   * dall'utente è salvato in sessione e viene recuperato dal paginatore
+   * ad ogni richiesta; le proprietà specifiche della sessione vengono
+   * riapplicate da prepareListaShared(). Posizione, filtro e ordinamento
+   * lasciati da un utilizzo precedente vengono azzerati dal pool.
+   * @param type nome della lista
+   * @return la lista
+   * @throws java.lang.Exception
+   */
+  public HtmlWrapperBase borrowListaShared(String type)
+     throws Exception
+  {
+    HtmlWrapperBase wl = sharedPool.borrow(getSharedKey(type));
+    if(wl == null)
+      wl = creaListaShared(type);
+
+    prepareListaShared(wl);
+    return wl;
+  }
+
+  /**
+   * Restituisce al pool condiviso una lista ottenuta con borrowListaShared().
+   * @param type nome della lista
+   * @param wl la lista
+   */
+  public void releaseListaShared(String type, HtmlWrapperBase wl)
+  {
+    sharedPool.release(getSharedKey(type), wl);
+  }
+
+  /**
+   * Esegue una funzione con una lista del pool condiviso.
+   * In caso di errore la lista non viene restituita al pool.
+   * <code>
+   * String html = wc.functionListaShared("Clienti", (wl) -> wl.getHtml(params, session));
+   * </code>
+   * @param <T> tipo del valore di ritorno
+   * @param type nome della lista
+   * @param fun funzione da eseguire
+   * @return valore restituito dalla funzione
+   * @throws java.lang.Exception
+   */
+  public <T> T functionListaShared(String type, FunctionTrowException<HtmlWrapperBase, T> fun)
+     throws Exception
+  {
+    HtmlWrapperBase wl = borrowListaShared(type);
+    T rv = fun.apply(wl);
+    releaseListaShared(type, wl);
+    return rv;
+  }
+
+  /**
+   * Chiave della lista nel pool condiviso.
+   * Include le classi di questa cache e del wrapper builder,
+   * che determinano come la lista viene costruita.
+   * @param type nome della lista
+   * @return chiave
+   */
+  protected String getSharedKey(String type)
+  {
+    return getClass().getName() + "/" + wrpBuilder.getClass().getName() + "/" + type;
+  }
+
+  /**
+   * Costruisce una nuova lista per il pool condiviso.
+   * @param type nome della lista
+   * @return la lista
+   * @throws java.lang.Exception
+   */
+  protected HtmlWrapperBase creaListaShared(String type)
+     throws Exception
+  {
+    HtmlWrapperBase wl = null;
+
+    try
+    {
+      if((wl = creaListaPeer(type)) != null)
+        return wl;
+    }
+    catch(MissingListException | MissingSectionException e)
+    {
+    }
+
+    try
+    {
+      if((wl = creaListaSql(type)) != null)
+        return wl;
+    }
+    catch(MissingListException | MissingSectionException e)
+    {
+    }
+
+    try
+    {
+      if((wl = creaListaTmap(type)) != null)
+        return wl;
+    }
+    catch(MissingListException | MissingSectionException e)
+    {
+    }
+
+    throw new MissingListException(i18n.msg("Lista %s non trovata o non inizializzabile.", type));
+  }
+
+  /**
+   * Applica ad una lista del pool condiviso le impostazioni di questa sessione.
+   * @param wl la lista
+   * @throws java.lang.Exception
+   */
+  protected void prepareListaShared(HtmlWrapperBase wl)
+     throws Exception
+  {
+    if(wl.getTbl() != null)
+      wl.getTbl().setI18n(i18n);
+
+    if(wl.getPager() != null)
+      wl.getPager().setI18n(i18n);
+
+    // le proprietà (usate dalle macro) sono quelle di questa sessione
+    wl.getPtm().clearProperties();
+    populateTableModelProperties(wl.getPtm());
+  }
+
+  public static SharedWrapperPool getSharedPool()
+  {
+    return sharedPool;
+  }
+
+  public static void setSharedPool(SharedWrapperPool sharedPool)
+  {
+    WrapperCacheBase.sharedPool = sharedPool;
+  }
+
   /**
    * Interroga la cache per verificare se la lista esiste
    * e di che tipo di lista sia (sql o peer)
@@ -40,9 +40,22 @@ public class PeerPagerAppMaint extends PeerPager
   public List getRecords(Criteria c)
      throws Exception
   {
+    if(keysetRequest)
+    {
+      addOrder(c);
+      applyKeyset(c);
+    }
+
     return wl.getRecords(c);
   }
 
+  @Override
+  protected void addOrder(Criteria c)
+     throws Exception
+  {
+    wl.addOrderCriteria(c);
+  }
+
   public PeerWrapperListaHtml getWl()
   {
     return wl;
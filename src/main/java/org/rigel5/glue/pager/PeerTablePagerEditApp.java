@@ -25,6 +25,7 @@ import org.apache.torque.om.ColumnAccessByName;
 import org.apache.torque.om.Persistent;
 import org.commonlib5.utils.StringOper;
 import org.rigel5.HtmlUtils;
+import org.rigel5.db.torque.PeerBatchSaver;
 import org.rigel5.db.torque.PeerTransactAgent;
 import org.rigel5.glue.PeerObjectSaver;
 import org.rigel5.glue.validators.Validator;
@@ -45,6 +46,8 @@ import org.rigel5.table.peer.html.PeerWrapperEditHtml;
 public class PeerTablePagerEditApp extends AbstractHtmlTablePager
 {
   protected PeerObjectSaver pos = null;
+  /** vero se pos implementa il salvataggio cumulativo */
+  protected boolean posBatch = false;
   protected PeerWrapperEditHtml wl;
   protected Map mdLinkParams;
 
@@ -67,6 +70,7 @@ public class PeerTablePagerEditApp extends AbstractHtmlTablePager
   {
     this.wl = wl;
     this.pos = pos;
+    this.posBatch = isBatchSaver(pos);
 
     // imposta numero per pagina
     if(wl.getNumPerPage() != 0)
@@ -240,6 +244,8 @@ public class PeerTablePagerEditApp extends AbstractHtmlTablePager
         Object oldStatoRecObj;
         // recupera eventuale write level dell'utente; se non specificato si presume il massimo
         int userWriteLevel = StringOper.parse(param.get("user_write_level"), 9);
+        // solo un gestore che implementa salva(..., batch) mantiene i suoi controlli accodando
+        PeerBatchSaver batch = ptm.isBatchSave() && posBatch ? new PeerBatchSaver(dbCon) : null;
 
         for(int i = 0; i < ptm.getRowCount(); i++)
         {
@@ -256,9 +262,12 @@ public class PeerTablePagerEditApp extends AbstractHtmlTablePager
           }
 
           int statoRec = (ptm.isRowDeleted(i) ? 10 : 0) + recordWriteLevel;
-          saveObject(dbCon, (Persistent) obj, ptm, i, session, param, custom, statoRec);
+          saveObject(dbCon, (Persistent) obj, ptm, i, session, param, custom, statoRec, batch);
         }
 
+        if(batch != null)
+          batch.flush();
+
         return true;
       }
     };
@@ -293,6 +302,66 @@ public class PeerTablePagerEditApp extends AbstractHtmlTablePager
       pos.salva(obj, dbCon, statoRec);
   }
 
+  /**
+   * Salva un singolo oggetto sul db con eventuale salvataggio cumulativo.
+   * I validatori vengono comunque applicati riga per riga; se il
+   * salvataggio cumulativo non è attivo (batch null) viene usata
+   * la versione senza batch.
+   * È il gestore di salvataggio ad accodare l'oggetto dopo i suoi
+   * controlli (vedi PeerObjectSaver.salva(..., batch)); se non lo
+   * supporta l'oggetto viene salvato immediatamente.
+   * @param dbCon connessione sql
+   * @param obj oggetto da salvare
+   * @param tableModel table model di riferimento
+   * @param row riga corrispondente all'oggetto da salvare
+   * @param session sessione di riferimento
+   * @param param mappa dei parametri della post
+   * @param custom eventuali dati custom da sottoporre ai validatori
+   * @param statoRec valore di stato rec da impostare ove previsto
+   * @param batch salvataggio cumulativo (può essere null)
+   * @throws Exception
+   */
+  protected void saveObject(Connection dbCon, Persistent obj,
+     RigelTableModel tableModel, int row,
+     HttpSession session, Map param, Map custom, int statoRec, PeerBatchSaver batch)
+     throws Exception
+  {
+    if(batch == null)
+    {
+      saveObject(dbCon, obj, tableModel, row, session, param, custom, statoRec);
+      return;
+    }
+
+    if(!Validator.postParseValidate(wl.getEleXml(), obj, tableModel, (hEditTable) wl.getTbl(), row,
+       session, param, i18n, dbCon, custom))
+      return;
+
+    if(!obj.isModified() && statoRec == 0)
+      return;
+
+    pos.salva(obj, dbCon, statoRec, batch);
+  }
+
+  /**
+   * Verifica se il gestore di salvataggio ridefinisce
+   * salva(obj, dbCon, statoRec, batch); l'implementazione di default
+   * dell'interfaccia salva immediatamente l'oggetto.
+   * @param pos gestore di salvataggio
+   * @return vero se accoda gli oggetti al salvataggio cumulativo
+   */
+  protected static boolean isBatchSaver(PeerObjectSaver pos)
+  {
+    try
+    {
+      return pos != null && !pos.getClass()
+         .getMethod("salva", Persistent.class, Connection.class, int.class, PeerBatchSaver.class).isDefault();
+    }
+    catch(NoSuchMethodException ex)
+    {
+      return false;
+    }
+  }
+
   @Override
   public String getSelfUrl(int rStart, HttpSession sessione)
      throws Exception
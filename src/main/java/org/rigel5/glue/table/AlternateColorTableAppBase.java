@@ -98,6 +98,7 @@ public class AlternateColorTableAppBase extends AlternateColorTableAppGeneric
     strartRow = rStart;
     numRows = numRec;
     numCols = tableModel.getColumnCount();
+    prepareForeignPage(rStart, numRec);
 
     while(numRec-- > 0)
     {
@@ -17,6 +17,9 @@
  */
 package org.rigel5.glue.table;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 import org.commonlib5.utils.StringOper;
 import org.rigel5.HtmlUtils;
@@ -24,6 +27,7 @@ import org.rigel5.RigelCustomUrlBuilder;
 import org.rigel5.RigelI18nInterface;
 import org.rigel5.SetupHolder;
 import org.rigel5.glue.custom.CustomButtonFactory;
+import org.rigel5.table.BloccoPermessi;
 import org.rigel5.table.RigelColumnDescriptor;
 import org.rigel5.table.RigelTableModel;
 import org.rigel5.table.html.wrapper.CustomButtonInfo;
@@ -35,6 +39,12 @@ import org.rigel5.table.html.wrapper.HtmlWrapperBase;
  * con caratteristiche. Viene utilizzata in: HeditTableApp (lista
  * con edit dei campi), AlternateColorTableAppBase (lista semplice
  * senza edit).
+ * I custom button senza controllo runtime vengono compilati al primo uso
+ * in un frammento html (vedi ButtonTemplate) valido per il wrapper e il
+ * suo blocco permessi: per ogni riga restano solo da inserire i valori
+ * che dipendono dal record (parametri della url, macro di javascript,
+ * conferma e html). I bottoni con controllo runtime o di line edit
+ * vengono costruiti riga per riga.
  *
  * @author Nicola De Nisco
  */
@@ -49,6 +59,44 @@ public class CaratteristicheHtmlBuilder
   protected String popupEditFunction = null;
   protected String lineEditUrl, lineEditScript;
   protected Map<String, String> extraParams;
+  protected final Map<CustomButtonInfo, ButtonTemplate> mapTemplate = new HashMap<>();
+  protected final Map<CustomButtonInfo, Integer> mapTentativi = new HashMap<>();
+  protected BloccoPermessi templatePermessi;
+  public static final String SLOT_PREFIX = "RGLSLOT";
+  public static final char SLOT_BEGIN = '\u0001', SLOT_END = '\u0002';
+  public static final int MAX_TENTATIVI_TEMPLATE = 3;
+
+  /**
+   * Valore di un custom button che dipende dalla riga.
+   */
+  @FunctionalInterface
+  protected interface Slot
+  {
+    /**
+     * @param row riga in costruzione
+     * @param col colonna in costruzione
+     * @return valore da inserire oppure null se il bottone va costruito per intero
+     * @throws Exception
+     */
+    public String getValue(int row, int col)
+       throws Exception;
+  }
+
+  /**
+   * Frammento html precompilato di un custom button.
+   * Il frammento è diviso in parti fisse intervallate dai valori
+   * che dipendono dalla riga.
+   */
+  protected static class ButtonTemplate
+  {
+    /** parti fisse del frammento (una in più degli slot) */
+    protected String[] parts;
+    /** valori da inserire fra le parti */
+    protected Slot[] slots;
+  }
+
+  /** bottone non precompilabile: viene sempre costruito riga per riga */
+  protected static final ButtonTemplate NO_TEMPLATE = new ButtonTemplate();
 
   public CaratteristicheHtmlBuilder(HtmlWrapperBase wl, RigelTableModel tableModel,
      RigelCustomUrlBuilder urlBuilder, String popupEditFunction,
@@ -139,93 +187,396 @@ public class CaratteristicheHtmlBuilder
         if(!cbri.isVisible())
           continue;
       }
+      else if(!cb.isLineEdit())
+      {
+        // bottone statico: usa il frammento precompilato se disponibile
+        ButtonTemplate bt = getTemplate(cd, cb, row, col);
+        if(bt != null && fillTemplate(sOut, bt, row, col))
+          continue;
+      }
 
-      String text = StringOper.okStr(cb.getText());
-      String html = StringOper.okStrNull(cb.getHtml());
+      buildButton(sOut, cd, cb, cbri == null || cbri.isEnabled(), row, col);
+    }
+
+    return sOut.toString();
+  }
 
-      if(cbri == null || cbri.isEnabled())
+  /**
+   * Costruisce per intero l'html di un custom button per la riga indicata.
+   * @param sOut accumulatore dell'html
+   * @param cd colonna ospite
+   * @param cb custom button
+   * @param enabled vero se il bottone è attivo (produce un link)
+   * @param row riga in costruzione
+   * @param col colonna in costruzione
+   * @throws Exception
+   */
+  protected void buildButton(StringBuilder sOut, RigelColumnDescriptor cd, CustomButtonInfo cb,
+     boolean enabled, int row, int col)
+     throws Exception
+  {
+    String url = null, confirm = null;
+
+    if(enabled)
+    {
+      if(cb.haveJavascript())
       {
-        String url = null;
-        if(cb.haveJavascript())
-        {
-          String script = cb.makeJavascript((RigelTableModel) (tableModel), row);
-          url = "javascript:" + script;
+        String script = cb.makeJavascript((RigelTableModel) (tableModel), row);
+        url = "javascript:" + script;
 
-          if(cb.isLineEdit() && (lineEditScript == null && lineEditUrl == null))
-            lineEditScript = script;
-        }
-        else
-        {
-          url = urlBuilder.buildUrlCustomButton(popup || (cb.getPopup() > 0),
-             (RigelTableModel) (tableModel), cd, cd.getName(), row, cb);
+        if(cb.isLineEdit() && (lineEditScript == null && lineEditUrl == null))
+          lineEditScript = script;
+      }
+      else
+      {
+        url = urlBuilder.buildUrlCustomButton(popup || (cb.getPopup() > 0),
+           (RigelTableModel) (tableModel), cd, cd.getName(), row, cb);
 
-          if(cb.isLineEdit() && (lineEditScript == null && lineEditUrl == null))
-            lineEditUrl = url;
-        }
+        if(cb.isLineEdit() && (lineEditScript == null && lineEditUrl == null))
+          lineEditUrl = url;
+      }
 
-        // modifica url in base alle opzioni del custom button
-        if(!HtmlUtils.isJavascriptBegin(url))
-        {
-          if(cb.getPopup() > 0)
-          {
-            url = "javascript:apriPopup" + cb.getPopup() + "('"
-               + url + "', '" + StringOper.purge(text) + "')";
-          }
-          else
-          {
-            // url semplice: in questo caso possiamo chiedere conferma all'utente se previsto
-            if(cb.haveConfirm())
-            {
-              String confirm = cb.makeConfirmMessage((RigelTableModel) (tableModel), row, col);
-              url = "javascript:confermaCB('" + confirm + "', '" + url + "')";
-            }
-          }
-        }
+      if(isConfirmRequired(cb, url))
+        confirm = cb.makeConfirmMessage((RigelTableModel) (tableModel), row, col);
+    }
 
-        if(html == null)
-        {
-          // recupera icona del custom button
-          String icon = urlBuilder.buildImageCustomButton(popup,
-             (RigelTableModel) (tableModel), cd, cd.getName(), row, cb);
-
-          if(url == null)
-            sOut.append(icon).append("&nbsp;");
-          else
-            sOut.append(buildLinkTag(url, icon)).append("&nbsp;");
-        }
-        else
-        {
-          // risolve eventuali macro nell'html
-          html = cb.makeHtmlCustom(tableModel, row, col);
+    String content;
+    if(StringOper.okStrNull(cb.getHtml()) == null)
+    {
+      // recupera icona del custom button
+      content = urlBuilder.buildImageCustomButton(popup, tableModel, cd, cd.getName(), row, cb);
+    }
+    else
+    {
+      // risolve eventuali macro nell'html
+      content = cb.makeHtmlCustom(tableModel, row, col);
+    }
 
-          if(url == null)
-            sOut.append(html).append("&nbsp;");
-          else
-            sOut.append(buildLinkTag(url, html)).append("&nbsp;");
-        }
+    appendButton(sOut, cb, enabled, url, confirm, content);
+  }
+
+  /**
+   * Vero se la url del bottone va racchiusa nella richiesta di conferma.
+   */
+  protected boolean isConfirmRequired(CustomButtonInfo cb, String url)
+  {
+    return !HtmlUtils.isJavascriptBegin(url) && cb.getPopup() <= 0 && cb.haveConfirm();
+  }
+
+  /**
+   * Compone l'html di un custom button a partire dalle sue parti.
+   * @param sOut accumulatore dell'html
+   * @param cb custom button
+   * @param enabled vero se il bottone è attivo (produce un link)
+   * @param url url o javascript del bottone
+   * @param confirm messaggio di conferma (se richiesto)
+   * @param content icona o html del bottone
+   * @throws Exception
+   */
+  protected void appendButton(StringBuilder sOut, CustomButtonInfo cb, boolean enabled,
+     String url, String confirm, String content)
+     throws Exception
+  {
+    if(!enabled)
+    {
+      // bottone disattivato: viene visualizzato ma senza iperlink
+      sOut.append(content);
+      return;
+    }
+
+    // modifica url in base alle opzioni del custom button
+    if(!HtmlUtils.isJavascriptBegin(url))
+    {
+      if(cb.getPopup() > 0)
+      {
+        url = "javascript:apriPopup" + cb.getPopup() + "('"
+           + url + "', '" + StringOper.purge(StringOper.okStr(cb.getText())) + "')";
       }
       else
       {
-        // bottone disattivato: viene visualizzato ma senza iperlink
-        if(html == null)
-        {
-          // recupera icona del custom button
-          String icon = urlBuilder.buildImageCustomButton(popup,
-             (RigelTableModel) (tableModel), cd, cd.getName(), row, cb);
+        // url semplice: in questo caso possiamo chiedere conferma all'utente se previsto
+        if(cb.haveConfirm())
+          url = "javascript:confermaCB('" + confirm + "', '" + url + "')";
+      }
+    }
 
-          sOut.append(icon);
-        }
-        else
-        {
-          // risolve eventuali macro nell'html
-          html = cb.makeHtmlCustom(tableModel, row, col);
+    if(url == null)
+      sOut.append(content).append("&nbsp;");
+    else
+      sOut.append(buildLinkTag(url, content)).append("&nbsp;");
+  }
 
-          sOut.append(html);
-        }
+  /**
+   * Ritorna il template di un custom button, costruendolo al primo uso.
+   * I template vengono scartati se cambia il blocco permessi del wrapper.
+   * @param cd colonna ospite
+   * @param cb custom button (senza controllo runtime)
+   * @param row riga in costruzione
+   * @param col colonna in costruzione
+   * @return template oppure null se il bottone va costruito per intero
+   * @throws Exception
+   */
+  protected ButtonTemplate getTemplate(RigelColumnDescriptor cd, CustomButtonInfo cb, int row, int col)
+     throws Exception
+  {
+    if(wl.getPermessi() != templatePermessi)
+    {
+      mapTemplate.clear();
+      mapTentativi.clear();
+      templatePermessi = wl.getPermessi();
+    }
+
+    ButtonTemplate bt = mapTemplate.get(cb);
+    if(bt == null)
+    {
+      if((bt = buildTemplate(cd, cb, row, col)) == null)
+      {
+        // riga non adatta alla verifica: riprova sulle successive per qualche volta
+        int tentativi = mapTentativi.getOrDefault(cb, 0) + 1;
+        mapTentativi.put(cb, tentativi);
+        if(tentativi < MAX_TENTATIVI_TEMPLATE)
+          return null;
+
+        bt = NO_TEMPLATE;
       }
+
+      mapTemplate.put(cb, bt);
     }
 
-    return sOut.toString();
+    return bt == NO_TEMPLATE ? null : bt;
+  }
+
+  /**
+   * Compila il frammento html di un custom button.
+   * Il bottone viene composto una volta sola con dei segnaposto al posto
+   * dei valori dipendenti dalla riga; il frammento viene usato solo se
+   * riproduce esattamente l'html costruito per intero sulla riga in
+   * costruzione, altrimenti il bottone viene sempre costruito riga per riga.
+   * Url e icona vengono generate una volta sola: il bottone viene compilato
+   * solo se l'url builder le dichiara dipendenti dalla riga esclusivamente
+   * attraverso i parametri con macro (vedi RigelCustomUrlBuilder.isCustomButtonStatic()).
+   * @param cd colonna ospite
+   * @param cb custom button
+   * @param row riga in costruzione
+   * @param col colonna in costruzione
+   * @return template (NO_TEMPLATE se il bottone non è precompilabile)
+   * oppure null se la riga non permette la verifica (valori vuoti)
+   * @throws Exception
+   */
+  protected ButtonTemplate buildTemplate(RigelColumnDescriptor cd, CustomButtonInfo cb, int row, int col)
+     throws Exception
+  {
+    if(!urlBuilder.isCustomButtonStatic(cb))
+      return NO_TEMPLATE;
+
+    ArrayList<Slot> slots = new ArrayList<>();
+    String url;
+
+    if(cb.haveJavascript())
+    {
+      url = "javascript:" + addSlot(slots, (r, c) -> cb.makeJavascript(tableModel, r));
+    }
+    else if((url = buildUrlTemplate(cd, cb, slots)) == null)
+    {
+      return NO_TEMPLATE;
+    }
+
+    String confirm = null;
+    if(isConfirmRequired(cb, url))
+      confirm = addSlot(slots, (r, c) -> cb.makeConfirmMessage(tableModel, r, c));
+
+    String content;
+    if(StringOper.okStrNull(cb.getHtml()) != null)
+      content = addSlot(slots, (r, c) -> cb.makeHtmlCustom(tableModel, r, c));
+    else
+      content = urlBuilder.buildImageCustomButton(popup, tableModel, cd, cd.getName(), row, cb);
+
+    StringBuilder fragment = new StringBuilder(256);
+    appendButton(fragment, cb, true, url, confirm, content);
+
+    ButtonTemplate bt = splitTemplate(fragment.toString(), slots);
+    if(bt == null)
+      return NO_TEMPLATE;
+
+    StringBuilder fill = new StringBuilder(256);
+    if(!fillTemplate(fill, bt, row, col))
+      return null;
+
+    StringBuilder full = new StringBuilder(256);
+    buildButton(full, cd, cb, true, row, col);
+
+    return fill.toString().equals(full.toString()) ? bt : NO_TEMPLATE;
+  }
+
+  /**
+   * Registra un valore dipendente dalla riga.
+   * @return il segnaposto da inserire nel frammento
+   */
+  protected String addSlot(ArrayList<Slot> slots, Slot slot)
+  {
+    slots.add(slot);
+    return SLOT_BEGIN + Integer.toString(slots.size() - 1) + SLOT_END;
+  }
+
+  /**
+   * Divide il frammento nelle parti fisse in corrispondenza dei segnaposto.
+   * @param fragment frammento con i segnaposto
+   * @param slots valori registrati con addSlot()
+   * @return template oppure null se ogni segnaposto non compare esattamente una volta
+   */
+  protected ButtonTemplate splitTemplate(String fragment, ArrayList<Slot> slots)
+  {
+    String[] parts = new String[slots.size() + 1];
+    Slot[] order = new Slot[slots.size()];
+    boolean[] used = new boolean[slots.size()];
+
+    int start = 0, n = 0, pos;
+    while((pos = fragment.indexOf(SLOT_BEGIN, start)) != -1)
+    {
+      int end = fragment.indexOf(SLOT_END, pos);
+      if(end == -1 || n == order.length)
+        return null;
+
+      int idx = StringOper.parse(fragment.substring(pos + 1, end), -1);
+      if(idx < 0 || idx >= used.length || used[idx])
+        return null;
+
+      used[idx] = true;
+      parts[n] = fragment.substring(start, pos);
+      order[n++] = slots.get(idx);
+      start = end + 1;
+    }
+
+    if(n != order.length)
+      return null;
+
+    parts[n] = fragment.substring(start);
+
+    ButtonTemplate bt = new ButtonTemplate();
+    bt.parts = parts;
+    bt.slots = order;
+    return bt;
+  }
+
+  /**
+   * Genera la url con i segnaposto dei parametri dipendenti dalla riga.
+   * @param cd colonna ospite
+   * @param cb custom button
+   * @param slots accumulatore dei valori dipendenti dalla riga
+   * @return la url con i segnaposto oppure null se non è precalcolabile
+   * @throws Exception
+   */
+  protected String buildUrlTemplate(RigelColumnDescriptor cd, CustomButtonInfo cb, ArrayList<Slot> slots)
+     throws Exception
+  {
+    CustomButtonInfo probe = new CustomButtonInfo(cb.getText(), cb.getJavascript());
+    probe.setUrl(cb.getUrl());
+    probe.setClassName(cb.getClassName());
+    probe.setIcon(cb.getIcon());
+    probe.setPopup(cb.getPopup());
+    probe.setConfirm(cb.getConfirm());
+    probe.setHtml(cb.getHtml());
+    probe.setLineEdit(cb.isLineEdit());
+
+    for(Object o : cb.getRuntimeParameters().entrySet())
+    {
+      Map.Entry e = (Map.Entry) o;
+      probe.addRuntimeParam((String) e.getKey(), e.getValue());
+    }
+
+    for(Iterator<CustomButtonInfo> itr = cb.innerButtonsIterator(); itr.hasNext();)
+      probe.addInnerButton(itr.next());
+
+    ArrayList<RigelColumnDescriptor> slotCols = new ArrayList<>();
+    for(Object o : cb.getParam().entrySet())
+    {
+      Map.Entry e = (Map.Entry) o;
+      String nome = (String) e.getKey();
+      String valore = (String) e.getValue();
+
+      RigelColumnDescriptor slot = null;
+      if(valore.startsWith("#"))
+        slot = tableModel.getColumn(valore.substring(1));
+      else if(valore.startsWith("@"))
+        slot = tableModel.getColumnByName(valore.substring(1));
+
+      if(slot != null)
+      {
+        valore = SLOT_PREFIX + slotCols.size() + "Z";
+        slotCols.add(slot);
+      }
+      else if(valore.startsWith("#") || valore.startsWith("@"))
+      {
+        // colonna inesistente: l'errore verrà segnalato dal percorso normale
+        return null;
+      }
+
+      probe.addParam(nome, valore);
+    }
+
+    String url = urlBuilder.buildUrlCustomButton(popup || (cb.getPopup() > 0),
+       tableModel, cd, cd.getName(), 0, probe);
+    if(url == null)
+      return null;
+
+    // sostituisce i segnaposto dell'url builder con quelli del frammento
+    for(int i = 0; i < slotCols.size(); i++)
+    {
+      String token = SLOT_PREFIX + i + "Z";
+      int pos = url.indexOf(token);
+      if(pos == -1 || url.indexOf(token, pos + 1) != -1)
+        return null;
+
+      RigelColumnDescriptor slotCol = slotCols.get(i);
+      url = url.substring(0, pos)
+         + addSlot(slots, (r, c) -> encodeSlotValue(slotCol.getValueAsString(tableModel.getRowRecord(r))))
+         + url.substring(pos + token.length());
+    }
+
+    return url;
+  }
+
+  /**
+   * Codifica il valore di un parametro della url.
+   * @return il valore codificato oppure null se va costruito con l'url builder
+   * (valori vuoti, che non generano il parametro)
+   */
+  protected String encodeSlotValue(String valore)
+  {
+    if(!StringOper.isOkStr(valore) || valore.startsWith("&"))
+      return null;
+
+    return HtmlUtils.encodeURI(valore);
+  }
+
+  /**
+   * Compone l'html di una riga inserendo i valori nelle parti fisse del template.
+   * @param sOut accumulatore dell'html
+   * @param bt template del bottone
+   * @param row riga in costruzione
+   * @param col colonna in costruzione
+   * @return vero se l'html è stato composto; falso se il bottone va costruito
+   * per intero (sOut viene lasciato invariato)
+   * @throws Exception
+   */
+  protected boolean fillTemplate(StringBuilder sOut, ButtonTemplate bt, int row, int col)
+     throws Exception
+  {
+    int mark = sOut.length();
+    for(int i = 0; i < bt.slots.length; i++)
+    {
+      String valore = bt.slots[i].getValue(row, col);
+      if(valore == null)
+      {
+        sOut.setLength(mark);
+        return false;
+      }
+
+      sOut.append(bt.parts[i]).append(valore);
+    }
+
+    sOut.append(bt.parts[bt.slots.length]);
+    return true;
   }
 
   public String getHtmlCarCancella(RigelColumnDescriptor cd, int row, int col)
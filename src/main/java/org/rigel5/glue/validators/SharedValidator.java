@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2020 Nicola De Nisco
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.rigel5.glue.validators;
+
+/**
+ * Marcatore per validatori condivisibili fra thread.
+ * Un validatore (o post save action) che implementa questa interfaccia
+ * viene istanziato e inizializzato una sola volta per ogni definizione
+ * XML e poi usato contemporaneamente da tutte le richieste, senza alcuna
+ * sincronizzazione: validate() non deve quindi modificare lo stato
+ * dell'oggetto. I validatori che non la implementano vengono invece
+ * prelevati da un pool, in modo che ogni richiesta usi una propria istanza.
+ *
+ * @author Nicola De Nisco
+ */
+public interface SharedValidator
+{
+}
@@ -20,28 +20,48 @@ package org.rigel5.glue.validators;
 import java.sql.Connection;
 import java.util.*;
 import javax.servlet.http.HttpSession;
-import org.commonlib5.utils.StringOper;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.jdom2.*;
-import org.rigel5.RigelCacheManager;
 import org.rigel5.RigelI18nInterface;
-import org.rigel5.SetupHolder;
 import org.rigel5.db.torque.PeerTransactAgent;
 import org.rigel5.table.RigelTableModel;
 import org.rigel5.table.html.hEditTable;
 
 /**
  * Funzioni per la validazione dei forms.
+ * Le sezioni di validazione della definizione XML vengono compilate
+ * una sola volta in una ValidatorChain (vedi precompile()); le
+ * istanze dei validatori sono condivise (SharedValidator) oppure
+ * prelevate da un pool, quindi richieste concorrenti sulla stessa
+ * lista non vengono serializzate.
  *
  * @author Nicola De Nisco
  */
 public class Validator
 {
-  public static class ValidatorCacheBean
+  /** Logging */
+  private static final Log log = LogFactory.getLog(Validator.class);
+
+  /**
+   * Catene compilate per elemento XML di definizione.
+   * È indipendente dalla RigelCacheManager: le catene hanno la vita
+   * dell'elemento XML che le ha generate e non vanno perse quando la
+   * cache viene svuotata o gli oggetti generici vengono espulsi.
+   * Le catene non referenziano l'elemento chiave (vedi ValidatorChain),
+   * quindi le voci vengono rimosse quando la definizione XML viene ricaricata.
+   */
+  private static final Map<Element, ValidatorChain> chains = Collections.synchronizedMap(new WeakHashMap<>());
+
+  /**
+   * Trasporta fuori da computeIfAbsent gli errori di compilazione della catena.
+   */
+  private static class CompileException extends RuntimeException
   {
-    public final Hashtable<String, PostParseValidator> cachePost = new Hashtable<>();
-    public final Hashtable<String, PreParseValidator> cachePre = new Hashtable<>();
-    public final Hashtable<String, SaveMasterDetailValidator> cacheSave = new Hashtable<>();
-    public final Hashtable<String, PostSaveAction> cacheAction = new Hashtable<>();
+    public CompileException(Exception cause)
+    {
+      super(cause);
+    }
   }
 
   public static class StopParse
@@ -49,16 +69,54 @@ public class Validator
     public boolean stopParsing;
   }
 
-  private static ValidatorCacheBean getCacheBean()
+  /**
+   * Ritorna la catena compilata dei validatori di una definizione XML.
+   * @param eleXml elemento XML della lista/form
+   * @return catena dei validatori
+   * @throws Exception se un validatore non può essere istanziato
+   */
+  public static ValidatorChain getChain(Element eleXml)
+     throws Exception
   {
-    RigelCacheManager cm = SetupHolder.getCacheManager();
-    ValidatorCacheBean bean = (ValidatorCacheBean) cm.getGenericCachedData("Rigel_ValidatorCacheBean");
-    if(bean == null)
+    try
     {
-      bean = new ValidatorCacheBean();
-      cm.putGenericCachedData("Rigel_ValidatorCacheBean", bean);
+      return chains.computeIfAbsent(eleXml, (ele) ->
+      {
+        try
+        {
+          return ValidatorChain.compile(ele);
+        }
+        catch(Exception ex)
+        {
+          throw new CompileException(ex);
+        }
+      });
+    }
+    catch(CompileException ex)
+    {
+      throw (Exception) ex.getCause();
+    }
+  }
+
+  /**
+   * Compila in anticipo la catena dei validatori.
+   * Viene chiamata alla costruzione del wrapper; eventuali errori
+   * vengono solo segnalati e si ripresenteranno alla validazione.
+   * @param eleXml elemento XML della lista/form (può essere null)
+   */
+  public static void precompile(Element eleXml)
+  {
+    if(eleXml == null)
+      return;
+
+    try
+    {
+      getChain(eleXml);
+    }
+    catch(Exception ex)
+    {
+      log.error("Validators of " + eleXml.getName() + " not compiled.", ex);
     }
-    return bean;
   }
 
   /**
@@ -95,32 +153,14 @@ public class Validator
   {
     if(eleXml != null)
     {
-      Iterator itrPPV = eleXml.getChildren("post-parse-validator").iterator();
-      while(itrPPV.hasNext())
+      for(ValidatorChain.Link<PostParseValidator> link : getChain(eleXml).getPostParse())
       {
-        Element elePPV = (Element) (itrPPV.next());
-
-        String classPPV = StringOper.okStrNull(elePPV.getChildText("class"));
-        if(classPPV != null)
-        {
-          PostParseValidator ppv;
-          ValidatorCacheBean vb = getCacheBean();
-          synchronized(vb.cachePost)
-          {
-            if((ppv = vb.cachePost.get(classPPV)) == null)
-            {
-              ppv = ValidatorsFactory.getInstance().getPostParseValidator(classPPV);
-              vb.cachePost.put(classPPV, ppv);
-            }
-          }
+        PostParseValidator ppv = link.borrow();
+        boolean rv = ppv.validate(obj, tableModel, table, row, session, param, i18n, con, custom);
+        link.release(ppv);
 
-          synchronized(ppv)
-          {
-            ppv.init(elePPV);
-            if(!ppv.validate(obj, tableModel, table, row, session, param, i18n, con, custom))
-              return false;
-          }
-        }
+        if(!rv)
+          return false;
       }
     }
 
@@ -161,39 +201,18 @@ public class Validator
   {
     if(eleXml != null)
     {
-      Iterator itrPPV = eleXml.getChildren("pre-parse-validator").iterator();
-      while(itrPPV.hasNext())
+      for(ValidatorChain.Link<PreParseValidator> link : getChain(eleXml).getPreParse())
       {
-        Element elePPV = (Element) (itrPPV.next());
-
-        String classPPV = StringOper.okStrNull(elePPV.getChildText("class"));
-        if(classPPV != null)
-        {
-          PreParseValidator ppv;
-          ValidatorCacheBean vb = getCacheBean();
-          synchronized(vb.cachePre)
-          {
-            if((ppv = vb.cachePre.get(classPPV)) == null)
-            {
-              ppv = ValidatorsFactory.getInstance().getPreParseValidator(classPPV);
-              vb.cachePre.put(classPPV, ppv);
-            }
-          }
+        PreParseValidator ppv = link.borrow();
+        boolean rv = ppv.validate(obj, tableModel, table, row, session, param, i18n, custom);
+        boolean stop = ppv.isStopParsing();
+        link.release(ppv);
 
-          synchronized(ppv)
-          {
-            ppv.init(elePPV);
-            boolean rv = ppv.validate(obj, tableModel, table, row, session, param, i18n, custom);
+        if(stop)
+          stopParsing.stopParsing = true;
 
-            if(ppv.isStopParsing())
-              stopParsing.stopParsing = true;
-
-            if(!rv)
-            {
-              return rv;
-            }
-          }
-        }
+        if(!rv)
+          return rv;
       }
     }
 
@@ -210,15 +229,7 @@ public class Validator
     if(eleXml == null)
       return true;
 
-    int count = 0;
-    for(Element elePPV : eleXml.getChildren("post-save-validator"))
-    {
-      String classPPV = StringOper.okStrNull(elePPV.getChildText("class"));
-      if(classPPV != null)
-        count++;
-    }
-
-    if(count == 0)
+    if(getChain(eleXml).getSaveMasterDetail().isEmpty())
       return true;
 
     return PeerTransactAgent.executeReturn((con) -> runValidators(con,
@@ -234,33 +245,17 @@ public class Validator
      HttpSession session, Map param, RigelI18nInterface i18n, Map custom)
      throws Exception
   {
-    for(Element elePPV : eleXml.getChildren("post-save-validator"))
+    for(ValidatorChain.Link<SaveMasterDetailValidator> link : getChain(eleXml).getSaveMasterDetail())
     {
-      String classPPV = StringOper.okStrNull(elePPV.getChildText("class"));
-      if(classPPV != null)
-      {
-        SaveMasterDetailValidator ppv;
-        ValidatorCacheBean vb = getCacheBean();
+      SaveMasterDetailValidator ppv = link.borrow();
+      boolean rv = ppv.validate(obj,
+         tableModelMaster, tableMaster, rowMaster,
+         detail, tableModelDetail, tableDetail,
+         session, param, i18n, con, custom);
+      link.release(ppv);
 
-        synchronized(vb.cacheSave)
-        {
-          if((ppv = vb.cacheSave.get(classPPV)) == null)
-          {
-            ppv = ValidatorsFactory.getInstance().getSaveMasterDetailValidator(classPPV);
-            vb.cacheSave.put(classPPV, ppv);
-          }
-        }
-
-        synchronized(ppv)
-        {
-          ppv.init(elePPV);
-          if(!ppv.validate(obj,
-             tableModelMaster, tableMaster, rowMaster,
-             detail, tableModelDetail, tableDetail,
-             session, param, i18n, con, custom))
-            return false;
-        }
-      }
+      if(!rv)
+        return false;
     }
 
     return true;
@@ -274,30 +269,14 @@ public class Validator
     if(eleXml == null)
       return true;
 
-    for(Element elePPV : eleXml.getChildren("post-save-action"))
+    for(ValidatorChain.Link<PostSaveAction> link : getChain(eleXml).getPostSaveAction())
     {
-      String classPPV = StringOper.okStrNull(elePPV.getChildText("class"));
-      if(classPPV != null)
-      {
-        PostSaveAction ppv;
-        ValidatorCacheBean vb = getCacheBean();
+      PostSaveAction ppv = link.borrow();
+      boolean rv = ppv.action(obj, tableModel, table, row, session, param, i18n, custom);
+      link.release(ppv);
 
-        synchronized(vb.cacheAction)
-        {
-          if((ppv = vb.cacheAction.get(classPPV)) == null)
-          {
-            ppv = ValidatorsFactory.getInstance().getPostSaveAction(classPPV);
-            vb.cacheAction.put(classPPV, ppv);
-          }
-        }
-
-        synchronized(ppv)
-        {
-          ppv.init(elePPV);
-          if(!ppv.action(obj, tableModel, table, row, session, param, i18n, custom))
-            return false;
-        }
-      }
+      if(!rv)
+        return false;
     }
 
     // per default il record e' valido
@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2020 Nicola De Nisco
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.rigel5.glue.validators;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import org.commonlib5.utils.StringOper;
+import org.jdom2.Element;
+
+/**
+ * Catena precompilata dei validatori di una lista/form.
+ * Viene costruita una sola volta per ogni elemento XML di definizione,
+ * leggendo le sezioni pre-parse-validator, post-parse-validator,
+ * post-save-validator e post-save-action.
+ * Ogni validatore viene inizializzato con init() solo alla creazione.
+ * I validatori SharedValidator sono una unica istanza condivisa;
+ * gli altri vengono prelevati da un pool con borrow() e restituiti
+ * con release(), così richieste concorrenti non si bloccano a vicenda.
+ * La catena conserva solo copie staccate delle sezioni di configurazione:
+ * non mantiene riferimenti al documento XML da cui è stata compilata.
+ *
+ * @author Nicola De Nisco
+ */
+public class ValidatorChain
+{
+  /** numero massimo di istanze inattive conservate per ogni validatore */
+  public static final int MAX_IDLE = 16;
+
+  @FunctionalInterface
+  public interface Creator<T>
+  {
+    public T create(String className, Element eleXml)
+       throws Exception;
+  }
+
+  /**
+   * Un validatore della catena con le sue istanze.
+   * @param <T> tipo del validatore
+   */
+  public static class Link<T>
+  {
+    protected final String className;
+    protected final Element eleXml;
+    protected final Creator<T> creator;
+    protected final T shared;
+    protected final ConcurrentLinkedQueue<T> idle = new ConcurrentLinkedQueue<>();
+
+    public Link(String className, Element eleXml, Creator<T> creator)
+       throws Exception
+    {
+      this.className = className;
+      this.eleXml = eleXml;
+      this.creator = creator;
+
+      // la prima istanza verifica subito la classe e ne determina il tipo
+      T first = creator.create(className, eleXml);
+      if(first instanceof SharedValidator)
+      {
+        shared = first;
+      }
+      else
+      {
+        shared = null;
+        idle.offer(first);
+      }
+    }
+
+    /**
+     * Preleva una istanza inizializzata del validatore.
+     * Deve essere restituita con release() al termine dell'uso;
+     * in caso di eccezione può semplicemente essere abbandonata.
+     * @return istanza pronta all'uso
+     * @throws Exception
+     */
+    public T borrow()
+       throws Exception
+    {
+      if(shared != null)
+        return shared;
+
+      T v = idle.poll();
+      return v == null ? creator.create(className, eleXml) : v;
+    }
+
+    public void release(T v)
+    {
+      if(v != shared && idle.size() < MAX_IDLE)
+        idle.offer(v);
+    }
+
+    public String getClassName()
+    {
+      return className;
+    }
+
+    public boolean isShared()
+    {
+      return shared != null;
+    }
+  }
+
+  protected final List<Link<PreParseValidator>> preParse;
+  protected final List<Link<PostParseValidator>> postParse;
+  protected final List<Link<SaveMasterDetailValidator>> saveMasterDetail;
+  protected final List<Link<PostSaveAction>> postSaveAction;
+
+  protected ValidatorChain(Element eleXml)
+     throws Exception
+  {
+    ValidatorsFactory vf = ValidatorsFactory.getInstance();
+
+    preParse = compile(eleXml, "pre-parse-validator", (cl, ele) ->
+    {
+      PreParseValidator v = vf.getPreParseValidator(cl);
+      v.init(ele);
+      return v;
+    });
+
+    postParse = compile(eleXml, "post-parse-validator", (cl, ele) ->
+    {
+      PostParseValidator v = vf.getPostParseValidator(cl);
+      v.init(ele);
+      return v;
+    });
+
+    saveMasterDetail = compile(eleXml, "post-save-validator", (cl, ele) ->
+    {
+      SaveMasterDetailValidator v = vf.getSaveMasterDetailValidator(cl);
+      v.init(ele);
+      return v;
+    });
+
+    postSaveAction = compile(eleXml, "post-save-action", (cl, ele) ->
+    {
+      PostSaveAction v = vf.getPostSaveAction(cl);
+      v.init(ele);
+      return v;
+    });
+  }
+
+  /**
+   * Compila la catena dei validatori di una definizione XML.
+   * @param eleXml elemento XML della lista/form
+   * @return catena compilata
+   * @throws Exception se un validatore non può essere istanziato
+   */
+  public static ValidatorChain compile(Element eleXml)
+     throws Exception
+  {
+    return new ValidatorChain(eleXml);
+  }
+
+  private static <T> List<Link<T>> compile(Element eleXml, String tag, Creator<T> creator)
+     throws Exception
+  {
+    List<Element> lsEle = eleXml.getChildren(tag);
+    if(lsEle.isEmpty())
+      return Collections.emptyList();
+
+    ArrayList<Link<T>> rv = new ArrayList<>(lsEle.size());
+    for(Element ele : lsEle)
+    {
+      // copia senza parent: il link non deve tenere raggiungibile la definizione
+      String className = StringOper.okStrNull(ele.getChildText("class"));
+      if(className != null)
+        rv.add(new Link<>(className, ele.clone(), creator));
+    }
+
+    return Collections.unmodifiableList(rv);
+  }
+
+  public List<Link<PreParseValidator>> getPreParse()
+  {
+    return preParse;
+  }
+
+  public List<Link<PostParseValidator>> getPostParse()
+  {
+    return postParse;
+  }
+
+  public List<Link<SaveMasterDetailValidator>> getSaveMasterDetail()
+  {
+    return saveMasterDetail;
+  }
+
+  public List<Link<PostSaveAction>> getPostSaveAction()
+  {
+    return postSaveAction;
+  }
+}
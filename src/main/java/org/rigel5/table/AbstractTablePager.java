@@ -44,6 +44,16 @@ abstract public class AbstractTablePager
   protected int numPagine = -1, pagCurr = -1;
   protected String formName = "fo";
 
+  /**
+   * Riporta la navigazione allo stato iniziale.
+   * Usata quando la stessa istanza passa ad un'altra sessione.
+   */
+  public void resetState()
+  {
+    start = 0;
+    numPagine = pagCurr = -1;
+  }
+
   /**
    * Ritorna il nome del form da usare
    * per il codice javascript per la navigazione pagine.
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2020 Nicola De Nisco
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.rigel5.table;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Lista di dati esterni con indici di ricerca per codice e codice alternativo.
+ * Gli indici vengono costruiti alla prima ricerca e ricostruiti se la lista
+ * viene modificata; poichè viaggiano con la lista stessa, quando questa
+ * è memorizzata nella cache vengono invalidati insieme alla entry.
+ * In caso di codici duplicati vince il primo elemento, come nella
+ * ricerca sequenziale.
+ *
+ * @author Nicola De Nisco
+ */
+public class ForeignDataList extends ArrayList<ForeignDataHolder>
+{
+  private static class Index
+  {
+    final int modCount;
+    final Map<String, ForeignDataHolder> map;
+
+    Index(int modCount, Map<String, ForeignDataHolder> map)
+    {
+      this.modCount = modCount;
+      this.map = map;
+    }
+  }
+
+  private transient volatile Index idxCodice, idxAlternate;
+
+  public ForeignDataList()
+  {
+  }
+
+  public ForeignDataList(int initialCapacity)
+  {
+    super(initialCapacity);
+  }
+
+  public ForeignDataList(Collection<? extends ForeignDataHolder> c)
+  {
+    super(c);
+  }
+
+  /**
+   * Ricerca per codice.
+   * @param codice codice da cercare
+   * @return il dato o null se non presente
+   */
+  public ForeignDataHolder findCodice(String codice)
+  {
+    Index idx = idxCodice;
+    if(idx == null || idx.modCount != modCount)
+      idxCodice = idx = buildIndex(false);
+
+    return idx.map.get(codice);
+  }
+
+  /**
+   * Ricerca per codice alternativo.
+   * @param alternateCodice codice alternativo da cercare
+   * @return il dato o null se non presente
+   */
+  public ForeignDataHolder findAlternate(String alternateCodice)
+  {
+    Index idx = idxAlternate;
+    if(idx == null || idx.modCount != modCount)
+      idxAlternate = idx = buildIndex(true);
+
+    return idx.map.get(alternateCodice);
+  }
+
+  private Index buildIndex(boolean alternate)
+  {
+    int mc = modCount;
+    HashMap<String, ForeignDataHolder> map = new HashMap<>(size() * 4 / 3 + 1);
+
+    for(ForeignDataHolder f : this)
+      map.putIfAbsent(alternate ? f.alternateCodice : f.codice, f);
+
+    return new Index(mc, map);
+  }
+
+  /**
+   * Ricerca per codice in una lista generica.
+   * Usa l'indice se la lista è una ForeignDataList, altrimenti una ricerca sequenziale.
+   * @param lsValues lista dei valori (può essere null)
+   * @param codice codice da cercare
+   * @return il dato o null se non presente
+   */
+  public static ForeignDataHolder findCodice(List<ForeignDataHolder> lsValues, String codice)
+  {
+    if(lsValues == null)
+      return null;
+
+    if(lsValues instanceof ForeignDataList)
+      return ((ForeignDataList) lsValues).findCodice(codice);
+
+    for(ForeignDataHolder f : lsValues)
+    {
+      if(Objects.equals(codice, f.codice))
+        return f;
+    }
+
+    return null;
+  }
+
+  /**
+   * Ricerca per codice alternativo in una lista generica.
+   * Usa l'indice se la lista è una ForeignDataList, altrimenti una ricerca sequenziale.
+   * @param lsValues lista dei valori (può essere null)
+   * @param alternateCodice codice alternativo da cercare
+   * @return il dato o null se non presente
+   */
+  public static ForeignDataHolder findAlternate(List<ForeignDataHolder> lsValues, String alternateCodice)
+  {
+    if(lsValues == null)
+      return null;
+
+    if(lsValues instanceof ForeignDataList)
+      return ((ForeignDataList) lsValues).findAlternate(alternateCodice);
+
+    for(ForeignDataHolder f : lsValues)
+    {
+      if(Objects.equals(alternateCodice, f.alternateCodice))
+        return f;
+    }
+
+    return null;
+  }
+}
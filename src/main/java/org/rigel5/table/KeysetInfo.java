@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2020 Nicola De Nisco
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.rigel5.table;
+
+import java.util.Objects;
+
+/**
+ * Stato della paginazione keyset (seek).
+ * Memorizza i valori di chiave del primo e dell'ultimo record
+ * della pagina visualizzata; se la pagina successivamente richiesta
+ * è quella immediatamente seguente o precedente, con lo stesso filtro
+ * e lo stesso ordinamento, il paginatore può selezionare i record a
+ * partire da questi valori invece di usare OFFSET.
+ * Per i salti di pagina arbitrari resta necessario l'OFFSET.
+ *
+ * @author Nicola De Nisco
+ */
+public class KeysetInfo
+{
+  public static final int SEEK_NONE = 0;
+  public static final int SEEK_NEXT = 1;
+  public static final int SEEK_PREV = 2;
+  protected int pageStart = -1, pageSize = 0;
+  protected Object selezione;
+  protected String signature;
+  protected Object[] firstKey, lastKey;
+
+  /**
+   * Determina se la pagina richiesta può essere letta con la ricerca keyset.
+   * @param start primo record della pagina richiesta
+   * @param limit dimensione della pagina
+   * @param selezione filtro corrente (confrontato per identità)
+   * @param signature descrizione delle colonne di ordinamento
+   * @return una delle costanti SEEK_...
+   */
+  public int getSeek(int start, int limit, Object selezione, String signature)
+  {
+    if(pageStart == -1 || limit != pageSize
+       || selezione != this.selezione || !Objects.equals(signature, this.signature))
+      return SEEK_NONE;
+
+    if(start == pageStart + limit && lastKey != null)
+      return SEEK_NEXT;
+
+    if(start == pageStart - limit && firstKey != null)
+      return SEEK_PREV;
+
+    return SEEK_NONE;
+  }
+
+  /**
+   * Ritorna i valori di chiave da cui partire.
+   * @param seek SEEK_NEXT o SEEK_PREV
+   * @return valori di chiave
+   */
+  public Object[] getSeekKey(int seek)
+  {
+    return seek == SEEK_NEXT ? lastKey : firstKey;
+  }
+
+  /**
+   * Memorizza lo stato della pagina appena letta.
+   * Chiavi con valori nulli non sono utilizzabili e vengono ignorate.
+   * @param start primo record della pagina
+   * @param limit dimensione della pagina
+   * @param selezione filtro corrente
+   * @param signature descrizione delle colonne di ordinamento
+   * @param firstKey valori di chiave del primo record (può essere null)
+   * @param lastKey valori di chiave dell'ultimo record (può essere null)
+   */
+  public void save(int start, int limit, Object selezione, String signature, Object[] firstKey, Object[] lastKey)
+  {
+    this.pageStart = start;
+    this.pageSize = limit;
+    this.selezione = selezione;
+    this.signature = signature;
+    this.firstKey = isValidKey(firstKey) ? firstKey : null;
+    this.lastKey = isValidKey(lastKey) ? lastKey : null;
+  }
+
+  public void clear()
+  {
+    pageStart = -1;
+    pageSize = 0;
+    selezione = null;
+    signature = null;
+    firstKey = lastKey = null;
+  }
+
+  protected boolean isValidKey(Object[] key)
+  {
+    if(key == null || key.length == 0)
+      return false;
+
+    for(Object o : key)
+    {
+      if(o == null)
+        return false;
+    }
+
+    return true;
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2020 Nicola De Nisco
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.rigel5.table;
+
+import java.util.ArrayList;
+import org.rigel5.HtmlUtils;
+import org.rigel5.exceptions.MissingColumnException;
+
+/**
+ * Forma compilata di un testo con macro di colonna.
+ * Il testo viene analizzato una sola volta e trasformato in una sequenza
+ * di segmenti fissi e di riferimenti a colonne ('#caption', '@nome',
+ * oltre a '#row', '#col', '@row', '@col'); le colonne vengono risolte
+ * in fase di compilazione. La produzione del valore per una riga
+ * accoda i segmenti ad uno StringBuilder senza ulteriori analisi.
+ * I valori sostituiti non vengono a loro volta interpretati come macro.
+ *
+ * @author Nicola De Nisco
+ * @see RigelTableModel#getValueMacroInside
+ */
+public class MacroTemplate
+{
+  protected static final int SEG_TEXT = 0;
+  protected static final int SEG_ROW = 1;
+  protected static final int SEG_COL = 2;
+  protected static final int SEG_COLUMN = 3;
+  protected static final int SEG_MISSING = 4;
+
+  protected static class Segment
+  {
+    final int type;
+    final String text;
+    final RigelColumnDescriptor cd;
+
+    Segment(int type, String text, RigelColumnDescriptor cd)
+    {
+      this.type = type;
+      this.text = text;
+      this.cd = cd;
+    }
+  }
+
+  protected final String source;
+  protected final Segment[] segments;
+  protected final boolean macro;
+
+  protected MacroTemplate(String source, Segment[] segments)
+  {
+    this.source = source;
+    this.segments = segments;
+
+    boolean haveMacro = false;
+    for(Segment s : segments)
+      haveMacro |= s.type != SEG_TEXT;
+    this.macro = haveMacro;
+  }
+
+  /**
+   * Compila un testo con macro.
+   * Le colonne non trovate producono un errore solo quando il
+   * template viene applicato, come nella elaborazione non compilata.
+   * @param rtm table model per la risoluzione delle colonne
+   * @param valore testo da compilare
+   * @return template compilato
+   */
+  public static MacroTemplate compile(RigelTableModel rtm, String valore)
+  {
+    ArrayList<Segment> segs = new ArrayList<>();
+    int len = valore.length(), start = 0, pos = 0;
+
+    while(pos < len)
+    {
+      char c = valore.charAt(pos);
+      if(c != '#' && c != '@')
+      {
+        pos++;
+        continue;
+      }
+
+      if(pos > start)
+        segs.add(new Segment(SEG_TEXT, valore.substring(start, pos), null));
+
+      int end = pos + 1;
+      while(end < len && (Character.isLetterOrDigit(valore.charAt(end)) || valore.charAt(end) == '_'))
+        end++;
+
+      String name = valore.substring(pos + 1, end);
+      if("row".equals(name))
+        segs.add(new Segment(SEG_ROW, name, null));
+      else if("col".equals(name))
+        segs.add(new Segment(SEG_COL, name, null));
+      else
+      {
+        RigelColumnDescriptor cd = c == '#' ? rtm.getColumn(name) : rtm.getColumnByName(name);
+        segs.add(cd == null ? new Segment(SEG_MISSING, name, null) : new Segment(SEG_COLUMN, name, cd));
+      }
+
+      start = pos = end;
+    }
+
+    if(start < len)
+      segs.add(new Segment(SEG_TEXT, valore.substring(start), null));
+
+    return new MacroTemplate(valore, segs.toArray(new Segment[segs.size()]));
+  }
+
+  /**
+   * Accoda a sb il testo con le macro sostituite.
+   * @param sb destinazione
+   * @param row riga di riferimento
+   * @param col colonna di riferimento
+   * @param valObj record della riga
+   * @param useQuote se vero i valori stringa vengono richiusi fra apici
+   * @param encodeURI applica l'encoding ai valori sostituiti (parametri get)
+   * @throws Exception
+   */
+  public void render(StringBuilder sb, int row, int col, Object valObj,
+     boolean useQuote, boolean encodeURI)
+     throws Exception
+  {
+    for(Segment s : segments)
+    {
+      switch(s.type)
+      {
+        case SEG_TEXT:
+          sb.append(s.text);
+          break;
+
+        case SEG_ROW:
+          sb.append(row);
+          break;
+
+        case SEG_COL:
+          sb.append(col);
+          break;
+
+        case SEG_COLUMN:
+          String subval = s.cd.getValueAsString(valObj);
+
+          if(useQuote && !s.cd.isNumeric())
+            subval = "'" + subval + "'";
+
+          if(encodeURI)
+            subval = HtmlUtils.encodeURI(subval);
+
+          sb.append(subval);
+          break;
+
+        case SEG_MISSING:
+          throw new MissingColumnException("Colonna " + s.text + " non trovata!");
+      }
+    }
+  }
+
+  /**
+   * @return vero se il testo contiene almeno una macro
+   */
+  public boolean haveMacro()
+  {
+    return macro;
+  }
+
+  public String getSource()
+  {
+    return source;
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2020 Nicola De Nisco
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.rigel5.table;
+
+/**
+ * Conteggio dei record selezionati da un filtro.
+ * Viene preparato dal paginatore con il filtro corrente e può essere
+ * eseguito in seguito, anche da un altro thread, su una connessione
+ * propria; non deve quindi dipendere dallo stato del paginatore
+ * o del table model.
+ *
+ * @author Nicola De Nisco
+ */
+public interface RecordCountQuery
+{
+  /**
+   * Chiave che identifica il conteggio (query e valori del filtro).
+   * Viene usata dalle strategie di conteggio per la cache.
+   * @return chiave o null se il conteggio non va memorizzato
+   */
+  public String getKey();
+
+  /**
+   * Conteggio esatto dei record.
+   * @return numero di record
+   * @throws Exception
+   */
+  public long count()
+     throws Exception;
+
+  /**
+   * Stima del numero di record (ad esempio dal planner del db).
+   * @return numero stimato di record o -1 se la stima non è disponibile
+   * @throws Exception
+   */
+  public default long estimate()
+     throws Exception
+  {
+    return -1;
+  }
+}
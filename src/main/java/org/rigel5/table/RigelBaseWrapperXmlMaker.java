@@ -314,6 +314,7 @@ public class RigelBaseWrapperXmlMaker
     cd.setEnableCache(testAttributeBoolean(nomeCl, item, "cache", cd.isEnableCache()));
     cd.setComboRicerca(testAttributeBoolean(nomeCl, item, "combo-ricerca-self", false));
     cd.setForeignAutoCombo(testAttributeBoolean(nomeCl, item, "foreign-auto-combo", true));
+    cd.setForeignBatch(testAttributeBoolean(nomeCl, item, "foreign-batch", cd.isForeignBatch()));
     cd.setPrintable(
        testAttributeBoolean(nomeCl, item, "printable",
           testAttributeBoolean(nomeCl, item, "stampabile",
@@ -161,6 +161,16 @@ abstract public class RigelColumnDescriptor extends TableColumn
    * questo flag stabilisce la memorizzazione in cache dei risultati intermedi.
    */
   protected boolean enableCache = true;
+  /**
+   * Risoluzione dei dati foreign per pagina.
+   * Invece di caricare l'intera tabella collegata vengono letti
+   * solo i codici presenti nella pagina visualizzata (vedi prepareForeignPage).
+   */
+  protected boolean foreignBatch = false;
+  /**
+   * Dati foreign della pagina corrente (solo se foreignBatch).
+   */
+  protected volatile Map<String, ForeignDataHolder> foreignPage = null;
 
   public RigelColumnDescriptor()
   {
@@ -407,23 +417,23 @@ abstract public class RigelColumnDescriptor extends TableColumn
           break;
         case PDT_FLOAT:
         case PDT_DOUBLE:
-          return SetupHolder.getNumberFormat().format(value);
+          return SetupHolder.getFormatter().formatNumber(value);
         case PDT_MONEY:
-          return SetupHolder.getValutaFormat().format(value);
+          return SetupHolder.getFormatter().formatValuta(value);
         case PDT_DATE:
-          return SetupHolder.getDateFormat().format(value);
+          return SetupHolder.getFormatter().formatDate(value);
         case PDT_TIMESTAMP_CMPDATEONLY:
         case PDT_TIMESTAMP_CMPHOURONLY:
         case PDT_TIMESTAMP_CMPTOSEC:
         case PDT_TIMESTAMP_CMPTOMIN:
         case PDT_TIMESTAMP:
-          return SetupHolder.getDateTimeFormat().format(value);
+          return SetupHolder.getFormatter().formatDateTime(value);
         case PDT_TIME:
-          return SetupHolder.getTimeFormat().format(value);
+          return SetupHolder.getFormatter().formatTime(value);
       }
 
       if(value instanceof Date)
-        return SetupHolder.getDateFormat().format(value);
+        return SetupHolder.getFormatter().formatDate(value);
 
       return value.toString();
     }
@@ -448,14 +458,14 @@ abstract public class RigelColumnDescriptor extends TableColumn
     switch(dataType)
     {
       case PDT_TIMESTAMP_CMPDATEONLY:
-        return SetupHolder.getDateFormat().format(value);
+        return SetupHolder.getFormatter().formatDate(value);
       case PDT_TIMESTAMP_CMPHOURONLY:
-        s = SetupHolder.getDateTimeFormat().format(value);
+        s = SetupHolder.getFormatter().formatDateTime(value);
         return s.substring(0, s.length() - 6);
       case PDT_TIMESTAMP_CMPTOSEC:
-        return SetupHolder.getDateTimeFormat().format(value);
+        return SetupHolder.getFormatter().formatDateTime(value);
       case PDT_TIMESTAMP_CMPTOMIN:
-        s = SetupHolder.getDateTimeFormat().format(value);
+        s = SetupHolder.getFormatter().formatDateTime(value);
         return s.substring(0, s.length() - 3);
     }
 
@@ -616,37 +626,37 @@ abstract public class RigelColumnDescriptor extends TableColumn
   public Float parseFloat(String val)
      throws Exception
   {
-    return ((Number) (SetupHolder.getNumberFormat().parseObject(val))).floatValue();
+    return SetupHolder.getFormatter().parseNumber(val).floatValue();
   }
 
   public Double parseDouble(String val)
      throws Exception
   {
-    return ((Number) (SetupHolder.getNumberFormat().parseObject(val))).doubleValue();
+    return SetupHolder.getFormatter().parseNumber(val).doubleValue();
   }
 
   public Double parseMoney(String val)
      throws Exception
   {
-    return ((Number) (SetupHolder.getValutaFormat().parseObject(val))).doubleValue();
+    return SetupHolder.getFormatter().parseValuta(val).doubleValue();
   }
 
   public Date parseDate(String val)
      throws Exception
   {
-    return ((Date) (SetupHolder.getDateFormat().parseObject(val)));
+    return SetupHolder.getFormatter().parseDate(val);
   }
 
   public Date parseTime(String val)
      throws Exception
   {
-    return ((Date) (SetupHolder.getTimeFormat().parseObject(val)));
+    return SetupHolder.getFormatter().parseTime(val);
   }
 
   public Date parseDateTime(String val)
      throws Exception
   {
-    return ((Date) (SetupHolder.getDateTimeFormat().parseObject(val)));
+    return SetupHolder.getFormatter().parseDateTime(val);
   }
 
   /**
@@ -1337,6 +1347,16 @@ abstract public class RigelColumnDescriptor extends TableColumn
     this.enableCache = enableCache;
   }
 
+  public boolean isForeignBatch()
+  {
+    return foreignBatch;
+  }
+
+  public void setForeignBatch(boolean foreignBatch)
+  {
+    this.foreignBatch = foreignBatch;
+  }
+
   public void setDataType(int dataType)
   {
     this.dataType = dataType;
@@ -1852,24 +1872,50 @@ abstract public class RigelColumnDescriptor extends TableColumn
   /**
    * Recupera dati foreign.
    * Cerca nella cache dei dati foreign il valore identificato da key.
+   * La ricerca usa l'indice per codice della lista (vedi ForeignDataList).
    * @param key valore del campo codice da cercare
    * @return il dato in cache o null se non presente
    */
   public ForeignDataHolder findHTableForeign(String key, RigelTableModel ptm, RigelI18nInterface i18n)
      throws Exception
   {
+    // in modalità batch usa i dati della pagina se il codice è stato prefetchato
+    Map<String, ForeignDataHolder> page = foreignPage;
+    if(foreignBatch && page != null && page.containsKey(key))
+      return page.get(key);
+
     // in caso di foreign da db i dati sono comunque in cache quindi ripetiamo la query quanto vogliamo
     if(isForeignFromDatabase())
       lForeignValues = ptm.getQuery().getForeignDataListAll(0, 0, ptm, this, i18n);
 
-    if(lForeignValues != null)
-      for(ForeignDataHolder f : lForeignValues)
-      {
-        if(StringOper.isEqu(key, f.codice))
-          return f;
-      }
+    return ForeignDataList.findCodice(lForeignValues, key);
+  }
 
-    return null;
+  /**
+   * Prepara i dati foreign per la pagina da visualizzare.
+   * Se la colonna è in modalità batch legge con una sola query i dati collegati
+   * ai soli codici indicati; le successive chiamate a findHTableForeign()
+   * per questi codici non accedono più al db.
+   * @param keys valori distinti della colonna nelle righe della pagina
+   * @param ptm table model con i dati
+   * @param i18n
+   * @throws Exception
+   */
+  public void prepareForeignPage(Collection<Object> keys, RigelTableModel ptm, RigelI18nInterface i18n)
+     throws Exception
+  {
+    if(!foreignBatch || !isForeignFromDatabase())
+      return;
+
+    foreignPage = ptm.getQuery().getForeignDataPage(ptm, this, keys, i18n);
+  }
+
+  /**
+   * Rilascia i dati foreign della pagina.
+   */
+  public void clearForeignPage()
+  {
+    foreignPage = null;
   }
 
   /**
@@ -1885,14 +1931,7 @@ abstract public class RigelColumnDescriptor extends TableColumn
     if(isForeignFromDatabase())
       lForeignValues = ptm.getQuery().getForeignDataListAll(0, 0, ptm, this, i18n);
 
-    if(lForeignValues != null)
-      for(ForeignDataHolder f : lForeignValues)
-      {
-        if(StringOper.isEqu(key, f.alternateCodice))
-          return f;
-      }
-
-    return null;
+    return ForeignDataList.findAlternate(lForeignValues, key);
   }
 
   /**
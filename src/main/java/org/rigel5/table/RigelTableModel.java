@@ -20,6 +20,7 @@ package org.rigel5.table;
 import com.google.inject.internal.Iterators;
 import com.workingdogs.village.Record;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.swing.table.*;
 import org.apache.commons.logging.*;
 import org.commonlib5.utils.StringOper;
@@ -44,7 +45,7 @@ abstract public class RigelTableModel extends AbstractTableModel
 {
   /** Logging */
   private static final Log log = LogFactory.getLog(RigelTableModel.class);
-  protected Vector vColumn = new Vector(10, 10);
+  protected ArrayList<RigelColumnDescriptor> vColumn = new ArrayList<>(16);
   protected TableColumnModel dtcmdl = null;
   protected java.awt.Color rowColor[] = null;
   protected boolean markDeleted[] = null;
@@ -53,12 +54,63 @@ abstract public class RigelTableModel extends AbstractTableModel
   protected QueryBuilder query = null;
   protected String formName = "fo";
   protected final Map<String, String> properties = new HashMap<>();
+  /** incrementato ad ogni modifica dell'elenco colonne */
+  protected volatile int columnVersion = 0;
+  /** cache delle macro compilate (vedi getValueMacroInside) */
+  protected final Map<String, MacroCacheEntry> macroCache = new ConcurrentHashMap<>();
+  public static final int MAX_MACRO_CACHE = 256;
+  /** indici di ricerca per caption e per nome (vedi findColumn) */
+  protected volatile ColumnIndex columnIndex;
+
+  /**
+   * Indici di ricerca delle colonne validi per una versione dell'elenco colonne.
+   * Viene sostituito per intero quando l'elenco cambia; le mappe sono
+   * concorrenti perché le ricerche aggiornano le singole voci anche
+   * da più thread di rendering.
+   */
+  protected static class ColumnIndex
+  {
+    final int version;
+    final Map<String, Integer> caption, name;
+
+    ColumnIndex(int version, Map<String, Integer> caption, Map<String, Integer> name)
+    {
+      this.version = version;
+      this.caption = caption;
+      this.name = name;
+    }
+  }
+
+  protected static class MacroCacheEntry
+  {
+    final int version;
+    final MacroTemplate template;
+
+    MacroCacheEntry(int version, MacroTemplate template)
+    {
+      this.version = version;
+      this.template = template;
+    }
+  }
 
   public int addColumn(RigelColumnDescriptor tc)
   {
-    tc.setModelIndex(vColumn.size());
+    int pos = vColumn.size();
+    tc.setModelIndex(pos);
     vColumn.add(tc);
-    return getColumnCount() - 1;
+
+    // l'aggiunta in coda non sposta le altre colonne: aggiorna gli indici senza ricostruirli
+    ColumnIndex ci = columnIndex;
+    boolean current = ci != null && ci.version == columnVersion;
+    columnVersion++;
+    if(current)
+    {
+      putIndex(ci.caption, tc.getCaption(), pos);
+      putIndex(ci.name, tc.getName(), pos);
+      columnIndex = new ColumnIndex(columnVersion, ci.caption, ci.name);
+    }
+
+    return pos;
   }
 
   public int addColumn(int pos, RigelColumnDescriptor tc)
@@ -74,12 +126,12 @@ abstract public class RigelTableModel extends AbstractTableModel
     {
       for(int i = 0; i < vColumn.size(); i++)
       {
-        RigelColumnDescriptor cd = (RigelColumnDescriptor) (vColumn.get(i));
+        RigelColumnDescriptor cd = vColumn.get(i);
         if(oldColumnHeader.equalsIgnoreCase(cd.getCaption()))
         {
-          vColumn.remove(i);
-          vColumn.add(i, tc);
+          vColumn.set(i, tc);
           tc.setModelIndex(i);
+          columnVersion++;
           return i;
         }
       }
@@ -89,9 +141,10 @@ abstract public class RigelTableModel extends AbstractTableModel
 
   private void assignIndexColumn()
   {
+    columnVersion++;
     for(int i = 0; i < vColumn.size(); i++)
     {
-      ((RigelColumnDescriptor) (vColumn.get(i))).setModelIndex(i);
+      vColumn.get(i).setModelIndex(i);
     }
   }
 
@@ -106,12 +159,13 @@ abstract public class RigelTableModel extends AbstractTableModel
     int removed = 0;
     for(int i = 0; i < vColumn.size(); i++)
     {
-      RigelColumnDescriptor cd = (RigelColumnDescriptor) (vColumn.get(i));
+      RigelColumnDescriptor cd = vColumn.get(i);
       if(header.equalsIgnoreCase(cd.getCaption()))
       {
         vColumn.remove(i);
         i--;
         removed++;
+        columnVersion++;
       }
       else
       {
@@ -127,12 +181,13 @@ abstract public class RigelTableModel extends AbstractTableModel
     int removed = 0;
     for(int i = 0; i < vColumn.size(); i++)
     {
-      RigelColumnDescriptor cd = (RigelColumnDescriptor) (vColumn.get(i));
+      RigelColumnDescriptor cd = vColumn.get(i);
       if(name.equalsIgnoreCase(cd.getName()))
       {
         vColumn.remove(i);
         i--;
         removed++;
+        columnVersion++;
       }
       else
       {
@@ -146,6 +201,7 @@ abstract public class RigelTableModel extends AbstractTableModel
   public void delAllColumns()
   {
     vColumn.clear();
+    columnVersion++;
   }
 
   public void delColumns(int startIndex, int numCol)
@@ -164,7 +220,7 @@ abstract public class RigelTableModel extends AbstractTableModel
 
   public RigelColumnDescriptor getColumn(int col)
   {
-    return (RigelColumnDescriptor) vColumn.get(col);
+    return vColumn.get(col);
   }
 
   /**
@@ -172,48 +228,120 @@ abstract public class RigelTableModel extends AbstractTableModel
    */
   public RigelColumnDescriptor lc()
   {
-    return (RigelColumnDescriptor) vColumn.get(vColumn.size() - 1);
+    return vColumn.get(vColumn.size() - 1);
   }
 
   public RigelColumnDescriptor getColumn(String header)
   {
     int idx = findColumn(header);
-    return idx == -1 ? null : (RigelColumnDescriptor) vColumn.get(idx);
+    return idx == -1 ? null : vColumn.get(idx);
   }
 
   public RigelColumnDescriptor getColumnByName(String name)
   {
     int idx = findColumnByName(name);
-    return idx == -1 ? null : (RigelColumnDescriptor) vColumn.get(idx);
+    return idx == -1 ? null : vColumn.get(idx);
   }
 
+  /**
+   * Ricerca colonna per caption (senza distinzione maiuscole/minuscole).
+   * Usa un indice hash ricostruito quando l'elenco delle colonne cambia.
+   * Poichè caption e nome possono essere modificati direttamente sul
+   * descrittore, un risultato dell'indice viene verificato e, se non
+   * trovato, si ricade nella ricerca sequenziale; l'esito aggiorna
+   * la sola voce interessata senza invalidare l'intero indice.
+   * @param header caption della colonna
+   * @return indice della colonna o -1
+   */
   @Override
   public int findColumn(String header)
   {
+    if(header == null)
+      return -1;
+
+    Map<String, Integer> idxCaption = checkIndex().caption;
+    Integer idx = idxCaption.get(header.toLowerCase());
+    if(idx != null && idx < vColumn.size() && header.equalsIgnoreCase(vColumn.get(idx).getCaption()))
+      return idx;
+
     for(int i = 0; i < vColumn.size(); i++)
     {
-      RigelColumnDescriptor cd = (RigelColumnDescriptor) vColumn.get(i);
-      if(header.equalsIgnoreCase(cd.getCaption()))
+      if(header.equalsIgnoreCase(vColumn.get(i).getCaption()))
+      {
+        idxCaption.put(header.toLowerCase(), i);
         return i;
+      }
     }
+
+    if(idx != null)
+      idxCaption.remove(header.toLowerCase());
     return -1;
   }
 
+  /**
+   * Ricerca colonna per nome (senza distinzione maiuscole/minuscole).
+   * Vedi findColumn per l'uso dell'indice.
+   * @param name nome della colonna
+   * @return indice della colonna o -1
+   */
   public int findColumnByName(String name)
   {
+    if(name == null)
+      return -1;
+
+    Map<String, Integer> idxName = checkIndex().name;
+    Integer idx = idxName.get(name.toLowerCase());
+    if(idx != null && idx < vColumn.size() && name.equalsIgnoreCase(vColumn.get(idx).getName()))
+      return idx;
+
     for(int i = 0; i < vColumn.size(); i++)
     {
-      RigelColumnDescriptor cd = (RigelColumnDescriptor) vColumn.get(i);
-      if(name.equalsIgnoreCase(cd.getName()))
+      if(name.equalsIgnoreCase(vColumn.get(i).getName()))
+      {
+        idxName.put(name.toLowerCase(), i);
         return i;
+      }
     }
+
+    if(idx != null)
+      idxName.remove(name.toLowerCase());
     return -1;
   }
 
+  private ColumnIndex checkIndex()
+  {
+    int version = columnVersion;
+    ColumnIndex ci = columnIndex;
+    if(ci != null && ci.version == version)
+      return ci;
+
+    // ricostruisce in mappe locali e pubblica l'indice completo
+    int size = vColumn.size() * 4 / 3 + 1;
+    Map<String, Integer> idxCaption = new ConcurrentHashMap<>(size);
+    Map<String, Integer> idxName = new ConcurrentHashMap<>(size);
+
+    for(int i = 0; i < vColumn.size(); i++)
+    {
+      RigelColumnDescriptor cd = vColumn.get(i);
+      putIndex(idxCaption, cd.getCaption(), i);
+      putIndex(idxName, cd.getName(), i);
+    }
+
+    columnIndex = ci = new ColumnIndex(version, idxCaption, idxName);
+    return ci;
+  }
+
+  private static void putIndex(Map<String, Integer> idx, String key, int pos)
+  {
+    // in caso di duplicati vince la prima colonna, come nella ricerca sequenziale
+    if(key != null)
+      idx.putIfAbsent(key.toLowerCase(), pos);
+  }
+
   @Override
   public String getColumnName(int column)
   {
-    RigelColumnDescriptor cd = (RigelColumnDescriptor) vColumn.get(column);
+    RigelColumnDescriptor cd = vColumn.get(column);
     return cd.getName();
   }
 
@@ -324,12 +452,8 @@ abstract public class RigelTableModel extends AbstractTableModel
   public void importaAscii(Object bean, String sLinea)
      throws Exception
   {
-    Enumeration enumCol = vColumn.elements();
-    while(enumCol.hasMoreElements())
-    {
-      RigelColumnDescriptor cd = (RigelColumnDescriptor) (enumCol.nextElement());
+    for(RigelColumnDescriptor cd : vColumn)
       cd.setValueAsciiLinea(bean, sLinea);
-    }
   }
 
   public long getTotalRecords()
@@ -363,7 +487,8 @@ abstract public class RigelTableModel extends AbstractTableModel
   public void initFrom(RigelTableModel rtm)
      throws Exception
   {
-    vColumn = new Vector(rtm.vColumn);
+    vColumn = new ArrayList<>(rtm.vColumn);
+    columnVersion++;
     dtcmdl = rtm.dtcmdl;
     rowColor = rtm.rowColor;
     markDeleted = rtm.markDeleted;
@@ -497,15 +622,67 @@ abstract public class RigelTableModel extends AbstractTableModel
     if(valObj == null)
       return null;
 
-    valore = resolveMacro('#', row, col, valore, useQuote, encodeURI);
-    valore = resolveMacro('@', row, col, valore, useQuote, encodeURI);
+    MacroTemplate mt = getMacroTemplate(valore);
+    if(!mt.haveMacro())
+      return valore;
 
-    return valore;
+    StringBuilder sb = new StringBuilder(valore.length() + 32);
+    mt.render(sb, row, col, valObj, useQuote, encodeURI);
+    return sb.toString();
+  }
+
+  /**
+   * Come getValueMacroInside ma accoda il risultato ad uno StringBuilder
+   * esistente, evitando la stringa intermedia.
+   * @param sb destinazione
+   * @param row riga di riferimento
+   * @param col colonna di riferimento
+   * @param valore valore in input.
+   * @param useQuote se vero i valori stringa vengono richiusi fra apici
+   * @param encodeURI applica l'encoding ai valori sostituiti (parametri get)
+   * @return vero se è stato accodato qualcosa
+   * @throws Exception
+   */
+  public boolean appendValueMacroInside(StringBuilder sb, int row, int col, String valore,
+     boolean useQuote, boolean encodeURI)
+     throws Exception
+  {
+    if(!StringOper.isOkStr(valore))
+      return false;
+
+    Object valObj = getRowRecord(row);
+    if(valObj == null)
+      return false;
+
+    getMacroTemplate(valore).render(sb, row, col, valObj, useQuote, encodeURI);
+    return true;
+  }
+
+  /**
+   * Ritorna la forma compilata del testo con macro.
+   * I template sono conservati in una cache legata a questo table model
+   * e vengono ricompilati se l'elenco delle colonne viene modificato.
+   * @param valore testo con macro
+   * @return template compilato
+   */
+  public MacroTemplate getMacroTemplate(String valore)
+  {
+    MacroCacheEntry e = macroCache.get(valore);
+    if(e != null && e.version == columnVersion)
+      return e.template;
+
+    if(macroCache.size() >= MAX_MACRO_CACHE)
+      macroCache.clear();
+
+    MacroTemplate mt = MacroTemplate.compile(this, valore);
+    macroCache.put(valore, new MacroCacheEntry(columnVersion, mt));
+    return mt;
   }
 
   /**
-   * Usata internamente da getValueMacroInside per ogni carattere
-   * che identifica l'inizio di una macro.
+   * Elaborazione delle macro senza compilazione.
+   * Non più usata da getValueMacroInside (vedi MacroTemplate);
+   * mantenuta per le classi derivate.
    * @param chbegin carattere che identifica l'inizio di una macro (solo '#' e '@' sono supportate)
    * @param row riga di riferimento
    * @param col colonna di riferimento
@@ -692,7 +869,7 @@ abstract public class RigelTableModel extends AbstractTableModel
     ArrayList<RigelColumnDescriptor> rv = new ArrayList<>(vColumn.size());
     for(int i = 0; i < vColumn.size(); i++)
     {
-      RigelColumnDescriptor column = (RigelColumnDescriptor) vColumn.elementAt(i);
+      RigelColumnDescriptor column = vColumn.get(i);
       if(column.isVisible())
         rv.add(column);
     }
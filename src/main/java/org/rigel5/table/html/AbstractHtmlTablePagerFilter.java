@@ -18,10 +18,12 @@
 package org.rigel5.table.html;
 
 import java.util.*;
+import java.util.concurrent.Future;
 import javax.servlet.http.*;
 import org.commonlib5.utils.StringOper;
 import org.rigel5.table.FiltroListe;
 import org.rigel5.table.MascheraRicercaGenerica;
+import org.rigel5.table.RecordCountQuery;
 import org.rigel5.table.RigelColumnDescriptor;
 import org.rigel5.table.RigelTableModel;
 
@@ -52,6 +54,11 @@ abstract public class AbstractHtmlTablePagerFilter extends AbstractHtmlTablePage
   private String preTable = "";
   private String postTable = "";
   private String idPager = "default";
+  protected RecordCountStrategy countStrategy = null;
+  protected RecordCountQuery countQuery = null;
+  protected Future<Long> countPending = null;
+  protected boolean countStarted = false;
+  protected int pageRows = -1;
 
   public AbstractHtmlTablePagerFilter(String id)
   {
@@ -61,6 +68,40 @@ abstract public class AbstractHtmlTablePagerFilter extends AbstractHtmlTablePage
        + "</td></tr></table>";
   }
 
+  /**
+   * Riporta paginatore e colonne allo stato iniziale.
+   * Oltre alla posizione rilascia il filtro corrente, la maschera
+   * di ricerca (costruita con la lingua della sessione) e l'ordinamento
+   * o il filtro impostati sulle colonne.
+   */
+  @Override
+  public void resetState()
+  {
+    super.resetState();
+    filtro = 0;
+    cSelezione = null;
+    mgr = null;
+    pageRows = -1;
+    countStarted = false;
+    countQuery = null;
+
+    if(countPending != null)
+      countPending.cancel(false);
+    countPending = null;
+
+    RigelTableModel tm = table == null ? null : getRigelTableModel();
+    if(tm != null)
+    {
+      for(int i = 0; i < tm.getColumnCount(); i++)
+      {
+        RigelColumnDescriptor cd = tm.getColumn(i);
+        cd.setFiltroSort(0);
+        cd.setFiltroTipo(0);
+        cd.setFiltroValore(null);
+      }
+    }
+  }
+
   /**
    * Html da visualizzare quando nessun elemento viene selezionato dal filtro.
    *
@@ -260,21 +301,111 @@ abstract public class AbstractHtmlTablePagerFilter extends AbstractHtmlTablePage
         setSelezione(sessione, cSelezione);
     }
 
-    // recupera html per la pagina
-    // ATTENZIONE: questa va prima di getHtmlFiltro/getSimpleSearch
-    // altrimenti l'html dei filtri potrebbe essere incompleto (combo-auto)
-    getHtmlTable(page);
+    countStarted = false;
+    pageRows = -1;
+    try
+    {
+      // recupera html per la pagina
+      // ATTENZIONE: questa va prima di getHtmlFiltro/getSimpleSearch
+      // altrimenti l'html dei filtri potrebbe essere incompleto (combo-auto)
+      getHtmlTable(page);
+
+      // recupera filtro per la pagina
+      getHtmlFiltro(page);
+
+      // recupera filtro semplificato per la pagina
+      getSimpleSearch(sessione, 20, page);
+
+      // recupera componenti di navigazione
+      long totalRecords = getRecordCount();
+      if(totalRecords > limit)
+        getHtmlNavRecord(totalRecords, sessione, page);
+    }
+    finally
+    {
+      if(countPending != null)
+        countPending.cancel(false);
+
+      countQuery = null;
+      countPending = null;
+    }
+  }
+
+  /**
+   * Conteggio dei record per il filtro corrente.
+   * Le classi derivate che lo supportano restituiscono un conteggio
+   * eseguibile in modo indipendente dal paginatore (vedi RecordCountQuery).
+   * @return conteggio o null per usare getTotalRecords()
+   * @throws Exception
+   */
+  protected RecordCountQuery getRecordCountQuery()
+     throws Exception
+  {
+    return null;
+  }
+
+  /**
+   * Avvia il conteggio dei record secondo la strategia impostata.
+   * Le classi derivate la chiamano in getHtmlTable() con il filtro
+   * completo e prima di leggere la pagina, in modo che un conteggio
+   * asincrono possa procedere in parallelo alla lettura;
+   * se non viene chiamata il conteggio parte dopo getHtmlTable().
+   * @throws Exception
+   */
+  protected void startRecordCount()
+     throws Exception
+  {
+    if(countStrategy == null || countStarted)
+      return;
 
-    // recupera filtro per la pagina
-    getHtmlFiltro(page);
+    countStarted = true;
+    if((countQuery = getRecordCountQuery()) != null)
+      countPending = countStrategy.start(countQuery);
+  }
 
-    // recupera filtro semplificato per la pagina
-    getSimpleSearch(sessione, 20, page);
+  /**
+   * Numero totale dei record per la barra di navigazione.
+   * Senza una strategia di conteggio equivale a getTotalRecords().
+   * @return numero di record (esatto o approssimato secondo la strategia)
+   * @throws Exception
+   */
+  protected long getRecordCount()
+     throws Exception
+  {
+    if(countStrategy == null)
+      return getTotalRecords();
+
+    startRecordCount();
+    if(countQuery == null)
+      return getTotalRecords();
 
-    // recupera componenti di navigazione
-    long totalRecords = getTotalRecords();
-    if(totalRecords > limit)
-      getHtmlNavRecord(totalRecords, sessione, page);
+    return countStrategy.getTotalRecords(countQuery, countPending, start, limit, pageRows);
+  }
+
+  /**
+   * Numero di record da leggere per la pagina corrente:
+   * la dimensione della pagina più le eventuali righe aggiuntive
+   * richieste dalla strategia di conteggio.
+   * @return numero di record
+   */
+  public int getFetchLimit()
+  {
+    return countStrategy == null ? limit : limit + countStrategy.getExtraRows();
+  }
+
+  public RecordCountStrategy getCountStrategy()
+  {
+    return countStrategy;
+  }
+
+  /**
+   * Imposta la strategia di conteggio dei record.
+   * Con null (default) il conteggio esatto viene ripetuto ad ogni pagina.
+   * @param countStrategy strategia di conteggio
+   */
+  public void setCountStrategy(RecordCountStrategy countStrategy)
+  {
+    this.countStrategy = countStrategy;
   }
 
   /**
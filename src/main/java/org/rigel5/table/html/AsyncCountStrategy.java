@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2020 Nicola De Nisco
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.rigel5.table.html;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.rigel5.table.RecordCountQuery;
+
+/**
+ * Conteggio esatto eseguito in parallelo alla lettura della pagina.
+ * Il conteggio viene avviato da start() su un thread del pool interno,
+ * che usa una propria connessione al db, e viene atteso solo al momento
+ * di costruire la barra di navigazione: il tempo di risposta diventa
+ * il maggiore dei due invece della somma.
+ * Il numero di thread limita anche le connessioni usate per i conteggi;
+ * le richieste in eccesso restano in coda.
+ *
+ * @author Nicola De Nisco
+ */
+public class AsyncCountStrategy extends ExactCountStrategy
+{
+  public static final int DEFAULT_THREADS = 4;
+  protected final ThreadPoolExecutor executor;
+
+  public AsyncCountStrategy()
+  {
+    this(DEFAULT_TTL, DEFAULT_THREADS);
+  }
+
+  public AsyncCountStrategy(long ttlMillis, int maxThreads)
+  {
+    super(ttlMillis);
+    executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS,
+       new LinkedBlockingQueue<>(), (r) ->
+    {
+      Thread t = new Thread(r, "RigelRecordCount");
+      t.setDaemon(true);
+      return t;
+    });
+    executor.allowCoreThreadTimeOut(true);
+  }
+
+  @Override
+  public Future<Long> start(RecordCountQuery cq)
+     throws Exception
+  {
+    long rv = getCached(cq.getKey());
+    if(rv != -1)
+      return CompletableFuture.completedFuture(rv);
+
+    return executor.submit(() -> count(cq));
+  }
+
+  @Override
+  public long getTotalRecords(RecordCountQuery cq, Future<Long> pending, int start, int limit, int pageRows)
+     throws Exception
+  {
+    if(pending == null)
+      return count(cq);
+
+    try
+    {
+      return pending.get();
+    }
+    catch(ExecutionException ex)
+    {
+      if(ex.getCause() instanceof Exception)
+        throw (Exception) ex.getCause();
+
+      throw ex;
+    }
+  }
+
+  /**
+   * Termina il pool di thread.
+   * Da chiamare solo quando la strategia non è più utilizzata.
+   */
+  public void shutdown()
+  {
+    executor.shutdown();
+  }
+}
@@ -19,6 +19,7 @@ package org.rigel5.table.html;
 
 import java.util.*;
 import javax.servlet.http.HttpSession;
+import org.rigel5.table.KeysetInfo;
 
 /**
  * Oggetto base di PeerListaElem e SqlListaElem.
@@ -28,11 +29,41 @@ import javax.servlet.http.HttpSession;
  */
 abstract public class CommonPager extends AbstractHtmlTablePagerFilter
 {
+  protected boolean keysetMode = false;
+  protected final KeysetInfo keyset = new KeysetInfo();
+
   public CommonPager(String id)
   {
     super(id);
   }
 
+  /**
+   * Modalità di paginazione keyset.
+   * Se attiva la pagina successiva e quella precedente vengono lette
+   * a partire dai valori di chiave della pagina corrente invece che con OFFSET;
+   * il costo non cresce più con la profondità della pagina.
+   * Per le liste SQL richiede anche QueryBuilder.setBindParameters(true),
+   * altrimenti la paginazione resta con OFFSET.
+   * @return vero se attiva
+   */
+  public boolean isKeysetMode()
+  {
+    return keysetMode;
+  }
+
+  public void setKeysetMode(boolean keysetMode)
+  {
+    this.keysetMode = keysetMode;
+    keyset.clear();
+  }
+
+  @Override
+  public void resetState()
+  {
+    super.resetState();
+    keyset.clear();
+  }
+
   /**
    * Ritorna l'html per la pagina.
    * @param params parametri della richiesta HTML
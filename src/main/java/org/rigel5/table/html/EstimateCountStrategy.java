@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2020 Nicola De Nisco
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.rigel5.table.html;
+
+import java.util.concurrent.Future;
+import org.rigel5.table.RecordCountQuery;
+
+/**
+ * Conteggio approssimato dalla stima del planner del db.
+ * Per PostgreSQL la stima è quella di EXPLAIN sulla query filtrata
+ * o pg_class.reltuples per una tabella senza filtri (vedi QueryBuilder).
+ * Se la stima non è disponibile o è inferiore a exactThreshold
+ * viene eseguito il conteggio esatto, che in questo caso è economico.
+ * Quando la pagina letta non è completa il totale è noto con
+ * esattezza e non serve alcun conteggio.
+ *
+ * @author Nicola De Nisco
+ */
+public class EstimateCountStrategy extends ExactCountStrategy
+{
+  public static final long DEFAULT_EXACT_THRESHOLD = 10000;
+  protected long exactThreshold = DEFAULT_EXACT_THRESHOLD;
+
+  public EstimateCountStrategy()
+  {
+  }
+
+  public EstimateCountStrategy(long ttlMillis, long exactThreshold)
+  {
+    super(ttlMillis);
+    this.exactThreshold = exactThreshold;
+  }
+
+  @Override
+  public long getTotalRecords(RecordCountQuery cq, Future<Long> pending, int start, int limit, int pageRows)
+     throws Exception
+  {
+    // pagina incompleta: siamo sull'ultima pagina
+    if(pageRows >= 0 && pageRows < limit && (pageRows > 0 || start == 0))
+      return start + pageRows;
+
+    String key = cq.getKey() == null ? null : "~" + cq.getKey();
+    long rv = getCached(key);
+    if(rv == -1)
+    {
+      if((rv = cq.estimate()) < exactThreshold)
+        return count(cq);
+
+      putCached(key, rv);
+    }
+
+    // la stima non può essere inferiore ai record visti
+    if(pageRows > 0)
+      rv = Math.max(rv, start + pageRows);
+
+    return rv;
+  }
+
+  public long getExactThreshold()
+  {
+    return exactThreshold;
+  }
+
+  public void setExactThreshold(long exactThreshold)
+  {
+    this.exactThreshold = exactThreshold;
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2020 Nicola De Nisco
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.rigel5.table.html;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import org.rigel5.table.RecordCountQuery;
+
+/**
+ * Conteggio esatto dei record con una cache a scadenza breve.
+ * La cache è indicizzata dalla chiave del conteggio (query e valori
+ * del filtro): la navigazione fra le pagine dello stesso filtro non
+ * ripete il conteggio, mentre una modifica dei dati diventa visibile
+ * al più dopo ttlMillis. Con ttlMillis a 0 la cache è disabilitata.
+ * Una istanza può essere condivisa fra più paginatori.
+ *
+ * @author Nicola De Nisco
+ */
+public class ExactCountStrategy implements RecordCountStrategy
+{
+  public static final long DEFAULT_TTL = 5000;
+  protected long ttlMillis;
+  protected int maxEntries = 1000;
+  protected final ConcurrentHashMap<String, CachedCount> cache = new ConcurrentHashMap<>();
+
+  protected static class CachedCount
+  {
+    final long value, expire;
+
+    CachedCount(long value, long expire)
+    {
+      this.value = value;
+      this.expire = expire;
+    }
+  }
+
+  public ExactCountStrategy()
+  {
+    this(DEFAULT_TTL);
+  }
+
+  public ExactCountStrategy(long ttlMillis)
+  {
+    this.ttlMillis = ttlMillis;
+  }
+
+  @Override
+  public long getTotalRecords(RecordCountQuery cq, Future<Long> pending, int start, int limit, int pageRows)
+     throws Exception
+  {
+    return count(cq);
+  }
+
+  /**
+   * Conteggio esatto usando la cache.
+   * @param cq conteggio da eseguire
+   * @return numero di record
+   * @throws Exception
+   */
+  protected long count(RecordCountQuery cq)
+     throws Exception
+  {
+    String key = cq.getKey();
+    long rv = getCached(key);
+    if(rv == -1)
+      putCached(key, rv = cq.count());
+
+    return rv;
+  }
+
+  /**
+   * Recupera un valore dalla cache.
+   * @param key chiave (può essere null)
+   * @return valore o -1 se non presente o scaduto
+   */
+  protected long getCached(String key)
+  {
+    if(key == null || ttlMillis <= 0)
+      return -1;
+
+    CachedCount cc = cache.get(key);
+    if(cc == null)
+      return -1;
+
+    if(cc.expire < System.currentTimeMillis())
+    {
+      cache.remove(key, cc);
+      return -1;
+    }
+
+    return cc.value;
+  }
+
+  /**
+   * Inserisce un valore nella cache.
+   * Quando la cache supera maxEntries vengono rimossi i valori scaduti.
+   * @param key chiave (può essere null)
+   * @param value valore da memorizzare
+   */
+  protected void putCached(String key, long value)
+  {
+    if(key == null || ttlMillis <= 0 || value < 0)
+      return;
+
+    long now = System.currentTimeMillis();
+    if(cache.size() >= maxEntries)
+    {
+      for(Iterator<Map.Entry<String, CachedCount>> itr = cache.entrySet().iterator(); itr.hasNext();)
+      {
+        if(itr.next().getValue().expire < now)
+          itr.remove();
+      }
+
+      if(cache.size() >= maxEntries)
+        cache.clear();
+    }
+
+    cache.put(key, new CachedCount(value, now + ttlMillis));
+  }
+
+  public void clearCache()
+  {
+    cache.clear();
+  }
+
+  public long getTtlMillis()
+  {
+    return ttlMillis;
+  }
+
+  public void setTtlMillis(long ttlMillis)
+  {
+    this.ttlMillis = ttlMillis;
+  }
+
+  public int getMaxEntries()
+  {
+    return maxEntries;
+  }
+
+  public void setMaxEntries(int maxEntries)
+  {
+    this.maxEntries = maxEntries;
+  }
+}
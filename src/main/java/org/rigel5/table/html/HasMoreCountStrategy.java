@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2020 Nicola De Nisco
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.rigel5.table.html;
+
+import java.util.concurrent.Future;
+import org.rigel5.table.RecordCountQuery;
+
+/**
+ * Nessun conteggio: il paginatore legge un record oltre la pagina
+ * per sapere se esiste la pagina successiva.
+ * Il totale restituito è quello dei record visti (più uno se esistono
+ * altri record), quindi la navigazione mostra solo le pagine fino
+ * alla successiva; è adatta a liste molto lunghe consultate in sequenza.
+ *
+ * @author Nicola De Nisco
+ */
+public class HasMoreCountStrategy implements RecordCountStrategy
+{
+  @Override
+  public int getExtraRows()
+  {
+    return 1;
+  }
+
+  @Override
+  public long getTotalRecords(RecordCountQuery cq, Future<Long> pending, int start, int limit, int pageRows)
+     throws Exception
+  {
+    // il paginatore non ha riportato i record letti
+    if(pageRows < 0)
+      return cq.count();
+
+    return start + Math.min(pageRows, limit + 1);
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2020 Nicola De Nisco
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.rigel5.table.html;
+
+import java.util.concurrent.Future;
+import org.rigel5.table.RecordCountQuery;
+
+/**
+ * Strategia di conteggio dei record per la barra di navigazione dei paginatori.
+ * Il paginatore chiama start() con il filtro già impostato e prima di leggere
+ * la pagina; dopo la lettura chiama getTotalRecords() passando il risultato
+ * di start() e il numero di record effettivamente letti.
+ *
+ * @author Nicola De Nisco
+ * @see ExactCountStrategy
+ * @see AsyncCountStrategy
+ * @see EstimateCountStrategy
+ * @see HasMoreCountStrategy
+ */
+public interface RecordCountStrategy
+{
+  /**
+   * Record da leggere oltre la dimensione della pagina.
+   * @return numero di record aggiuntivi (di norma 0)
+   */
+  public default int getExtraRows()
+  {
+    return 0;
+  }
+
+  /**
+   * Avvio del conteggio prima della lettura della pagina.
+   * @param cq conteggio da eseguire
+   * @return conteggio in corso o null
+   * @throws Exception
+   */
+  public default Future<Long> start(RecordCountQuery cq)
+     throws Exception
+  {
+    return null;
+  }
+
+  /**
+   * Numero totale dei record (o sua approssimazione).
+   * @param cq conteggio da eseguire
+   * @param pending valore restituito da start()
+   * @param start primo record della pagina
+   * @param limit dimensione della pagina
+   * @param pageRows record letti per la pagina, comprese le righe aggiuntive (-1 se non noto)
+   * @return numero di record
+   * @throws Exception
+   */
+  public long getTotalRecords(RecordCountQuery cq, Future<Long> pending, int start, int limit, int pageRows)
+     throws Exception;
+}
@@ -131,16 +131,90 @@ public class RigelHtmlPage extends ArrayList<RigelHtmlPageComponent>
    */
   public List<RigelHtmlPageComponent> buildPart(StringBuilder sb, List<RigelHtmlPageComponent> lsComps, String pre, String post)
      throws Exception
+  {
+    return writePart(sb, lsComps, pre, post);
+  }
+
+  /**
+   * Scrive un gruppo di componenti.
+   * Il contenuto dei componenti viene scritto direttamente su out
+   * (ad esempio il Writer della servlet) senza copie intermedie.
+   * @param out destinazione del contenuto dei componenti
+   * @param lsComps lista componenti da scrivere
+   * @param pre da inserire prima del gruppo componenti
+   * @param post da inserire dopo del gruppo componenti
+   * @return lista di componenti utilizzati
+   * @throws Exception
+   */
+  public List<RigelHtmlPageComponent> writePart(Appendable out, List<RigelHtmlPageComponent> lsComps, String pre, String post)
+     throws Exception
   {
     if(!lsComps.isEmpty())
     {
-      sb.append(pre).append("\r\n");
-      sb.append(StringOper.join(lsComps.iterator(), "\r\n", null));
-      sb.append(post).append("\r\n");
+      out.append(pre).append("\r\n");
+      for(int i = 0; i < lsComps.size(); i++)
+      {
+        if(i > 0)
+          out.append("\r\n");
+        lsComps.get(i).writeTo(out);
+      }
+      out.append(post).append("\r\n");
     }
     return lsComps;
   }
 
+  /**
+   * Cerca e scrive un gruppo di componenti.
+   * @param out destinazione del contenuto dei componenti
+   * @param type tipo di componente richiesto
+   * @param pre da inserire prima del gruppo componenti
+   * @param post da inserire dopo del gruppo componenti
+   * @return lista di componenti utilizzati
+   * @throws Exception
+   */
+  public List<RigelHtmlPageComponent> writePart(Appendable out, PageComponentType type, String pre, String post)
+     throws Exception
+  {
+    return writePart(out, findComponents(type), pre, post);
+  }
+
+  /**
+   * Cerca e scrive un gruppo di componenti.
+   * @param out destinazione del contenuto dei componenti
+   * @param type tipo di componente richiesto
+   * @param group gruppo richiesto
+   * @param pre da inserire prima del gruppo componenti
+   * @param post da inserire dopo del gruppo componenti
+   * @return lista di componenti utilizzati
+   * @throws Exception
+   */
+  public List<RigelHtmlPageComponent> writePart(Appendable out,
+     PageComponentType type, String group,
+     String pre, String post)
+     throws Exception
+  {
+    return writePart(out, findComponents(type, group), pre, post);
+  }
+
+  /**
+   * Cerca e scrive un gruppo di componenti.
+   * @param out destinazione del contenuto dei componenti
+   * @param type tipo di componente richiesto
+   * @param group gruppo richiesto (può essere null)
+   * @param section la sezione richiesta (può essere null)
+   * @param pre da inserire prima del gruppo componenti
+   * @param post da inserire dopo del gruppo componenti
+   * @return lista di componenti utilizzati
+   * @throws Exception
+   */
+  public List<RigelHtmlPageComponent> writePart(Appendable out,
+     PageComponentType type, String group, String section,
+     String pre, String post)
+     throws Exception
+  {
+    return writePart(out, findComponents(type, group, section), pre, post);
+  }
+
   /**
    * Cerca e assembla un gruppo di componenti.
    * @param sb accumulo del contenuto dei componenti
@@ -237,6 +311,18 @@ public class RigelHtmlPage extends ArrayList<RigelHtmlPageComponent>
     return sb.toString();
   }
 
+  public void writeAllJavascript(Appendable out)
+     throws Exception
+  {
+    writePart(out, PageComponentType.JAVASCRIPT, "<SCRIPT LANGUAGE=\"JavaScript\">", "</SCRIPT>");
+  }
+
+  public void writeHtml(Appendable out, String group, String section)
+     throws Exception
+  {
+    writePart(out, PageComponentType.HTML, StringOper.okStrNull(group), StringOper.okStrNull(section), "\n", "\n");
+  }
+
   public String getGeneric(PageComponentType type, String group, String section)
      throws Exception
   {
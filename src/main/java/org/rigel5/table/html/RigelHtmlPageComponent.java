@@ -17,6 +17,10 @@
  */
 package org.rigel5.table.html;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
 /**
  * Un componente di pagina.
  * Il componente può essere di vari tipi (vedi @see type).
@@ -33,6 +37,10 @@ public class RigelHtmlPageComponent
   private String section = null;
   /** il contenuto del componente */
   private StringBuilder content = new StringBuilder(512);
+  /** destinazione per l'emissione diretta del contenuto (può essere null) */
+  private Appendable output = null;
+  /** dimensione oltre la quale il contenuto viene scaricato su output */
+  private int flushSize = 8192;
 
   /**
    * Costruttore del componente.
@@ -94,19 +102,108 @@ public class RigelHtmlPageComponent
   {
     if(string == null)
       throw new NullPointerException("valore nullo non ammesso");
+    checkFlush();
     return content.append(string);
   }
 
   public StringBuilder append(int val)
   {
+    checkFlush();
     return content.append(val);
   }
 
   public StringBuilder append(long val)
   {
+    checkFlush();
     return content.append(val);
   }
 
+  private void checkFlush()
+  {
+    if(output != null && content.length() >= flushSize)
+    {
+      try
+      {
+        flush();
+      }
+      catch(IOException ex)
+      {
+        throw new UncheckedIOException(ex);
+      }
+    }
+  }
+
+  /**
+   * Scarica il contenuto accumulato su output e svuota il buffer.
+   * Non ha effetto se output non è impostato.
+   * @throws IOException
+   */
+  public void flush()
+     throws IOException
+  {
+    if(output == null)
+      return;
+
+    writeTo(output);
+    content.setLength(0);
+  }
+
+  /**
+   * Scrive il contenuto del componente senza crearne copie intermedie.
+   * @param out destinazione
+   * @throws IOException
+   */
+  public void writeTo(Appendable out)
+     throws IOException
+  {
+    int len = content.length();
+    if(len == 0)
+      return;
+
+    if(out instanceof Writer)
+    {
+      Writer wr = (Writer) out;
+      char[] buf = new char[Math.min(len, 8192)];
+      for(int i = 0; i < len; i += buf.length)
+      {
+        int n = Math.min(buf.length, len - i);
+        content.getChars(i, i + n, buf, 0);
+        wr.write(buf, 0, n);
+      }
+    }
+    else
+    {
+      out.append(content);
+    }
+  }
+
+  public Appendable getOutput()
+  {
+    return output;
+  }
+
+  /**
+   * Imposta l'emissione diretta del contenuto.
+   * Con output impostato il contenuto viene scaricato su output
+   * ogni volta che supera flushSize caratteri; il buffer mantiene
+   * solo la parte non ancora scritta (vedi flush()).
+   * @param output destinazione (null per disattivare)
+   */
+  public void setOutput(Appendable output)
+  {
+    this.output = output;
+  }
+
+  public int getFlushSize()
+  {
+    return flushSize;
+  }
+
+  public void setFlushSize(int flushSize)
+  {
+    this.flushSize = flushSize;
+  }
+
   public void clear()
   {
     content = new StringBuilder(512);
@@ -290,6 +290,37 @@ public class hTable
       page.add(javascript);
   }
 
+  /**
+   * Produce la tabella scrivendola direttamente su out.
+   * L'html viene scaricato su out man mano che viene prodotto
+   * (vedi RigelHtmlPageComponent.setOutput), quindi la tabella completa
+   * non viene mai tenuta in memoria; l'eventuale javascript segue
+   * la tabella in un blocco SCRIPT.
+   * @param rStart prima riga da visualizzare
+   * @param numRec numero di righe da visualizzare
+   * @param out destinazione (ad esempio il Writer della servlet)
+   * @throws Exception
+   */
+  public synchronized void doHtml(int rStart, int numRec, Appendable out)
+     throws Exception
+  {
+    RigelHtmlPage page = new RigelHtmlPage();
+
+    html.setOutput(out);
+    try
+    {
+      doHtml(rStart, numRec, page);
+      html.flush();
+    }
+    finally
+    {
+      html.setOutput(null);
+      html.clear();
+    }
+
+    page.writeAllJavascript(out);
+  }
+
   /**
    * Produce l'header della tabella
    * @throws java.lang.Exception
@@ -388,11 +419,47 @@ public class hTable
     strartRow = rStart;
     numRows = numRec;
     numCols = tableModel.getColumnCount();
+    prepareForeignPage(rStart, numRec);
 
     while(numRec-- > 0)
       doRow(rStart++);
   }
 
+  /**
+   * Prepara i dati foreign delle colonne in modalità batch.
+   * Per ogni colonna foreign con foreignBatch attivo raccoglie i valori
+   * distinti presenti nelle righe da visualizzare e li risolve con una
+   * sola query (vedi RigelColumnDescriptor.prepareForeignPage).
+   * @param rStart prima riga da visualizzare
+   * @param numRec numero di righe da visualizzare
+   * @throws Exception
+   */
+  protected void prepareForeignPage(int rStart, int numRec)
+     throws Exception
+  {
+    RigelTableModel rtm = getTM();
+    if(rtm == null)
+      return;
+
+    for(int i = 0; i < tableModel.getColumnCount(); i++)
+    {
+      RigelColumnDescriptor cd = getCD(i);
+      if(cd == null || !cd.isForeignBatch() || !cd.isVisible()
+         || cd.getForeignMode() == RigelColumnDescriptor.DISP_FLD_ONLY)
+        continue;
+
+      LinkedHashMap<String, Object> keys = new LinkedHashMap<>();
+      for(int row = rStart; row < rStart + numRec; row++)
+      {
+        Object val = tableModel.getValueAt(row, i);
+        if(val != null)
+          keys.putIfAbsent(val.toString(), val);
+      }
+
+      cd.prepareForeignPage(keys.values(), rtm, i18n);
+    }
+  }
+
   public void doRow(int row)
      throws Exception
   {
@@ -620,7 +687,7 @@ public class hTable
     if((cd = getCD(col)) != null)
       sOut = cd.formatValue(value);
     else if(value instanceof Date)
-      sOut = SetupHolder.getDateFormat().format(value);
+      sOut = SetupHolder.getFormatter().formatDate(value);
     else
       sOut = value.toString();
 
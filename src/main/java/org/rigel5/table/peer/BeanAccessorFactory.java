@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) 2020 Nicola De Nisco
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.rigel5.table.peer;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Costruttore di accessori tipizzati per le proprietà dei bean.
+ * Trasforma i metodi getter e setter (tipicamente quelli degli oggetti
+ * Torque) in implementazioni di Function e BiConsumer generate con
+ * LambdaMetafactory: la chiamata diventa una normale invocazione di
+ * interfaccia, che il JIT può mettere in linea, senza l'array di
+ * argomenti e i controlli di accesso di Method.invoke.
+ * Se la generazione non è possibile (metodo non pubblico, classe non
+ * visibile dal class loader di rigel) viene usato un MethodHandle;
+ * se anche questo fallisce il metodo ritorna null e il chiamante
+ * deve usare la reflection.
+ * Le eccezioni sollevate da getter e setter vengono propagate
+ * direttamente, senza InvocationTargetException.
+ *
+ * @author Nicola De Nisco
+ */
+public class BeanAccessorFactory
+{
+  /** Logging */
+  private static final Log log = LogFactory.getLog(BeanAccessorFactory.class);
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+  private static volatile boolean enabled = true;
+
+  private BeanAccessorFactory()
+  {
+  }
+
+  /**
+   * Costruisce l'accessore di lettura.
+   * @param getter metodo getter della proprietà
+   * @return accessore o null se non è possibile costruirlo
+   */
+  @SuppressWarnings("unchecked")
+  public static Function<Object, Object> makeGetter(Method getter)
+  {
+    if(!enabled || !isAccessible(getter) || getter.getParameterCount() != 0)
+      return null;
+
+    try
+    {
+      MethodHandle mh = LOOKUP.unreflect(getter);
+      Class<?> beanClass = getter.getDeclaringClass();
+
+      if(isVisible(beanClass))
+      {
+        try
+        {
+          CallSite site = LambdaMetafactory.metafactory(LOOKUP, "apply",
+             MethodType.methodType(Function.class),
+             MethodType.methodType(Object.class, Object.class),
+             mh,
+             MethodType.methodType(wrap(getter.getReturnType()), beanClass));
+
+          return (Function<Object, Object>) site.getTarget().invoke();
+        }
+        catch(Throwable t)
+        {
+          log.debug("LambdaMetafactory not available for " + getter + ": using MethodHandle.", t);
+        }
+      }
+
+      MethodHandle gmh = mh.asType(MethodType.methodType(Object.class, Object.class));
+      return (bean) ->
+      {
+        try
+        {
+          return gmh.invokeExact(bean);
+        }
+        catch(Throwable t)
+        {
+          throw sneakyThrow(t);
+        }
+      };
+    }
+    catch(Throwable t)
+    {
+      log.debug("Accessor not available for " + getter + ": using reflection.", t);
+      return null;
+    }
+  }
+
+  /**
+   * Costruisce l'accessore di scrittura.
+   * L'accessore generato accetta solo il tipo esatto del parametro
+   * (per i primitivi la corrispondente classe wrapper); negli altri casi
+   * (conversioni di allargamento come Integer per un long, null per
+   * un primitivo, tipo errato) si usa Method.invoke, che applica le
+   * stesse conversioni e solleva le stesse eccezioni della reflection.
+   * @param setter metodo setter della proprietà
+   * @return accessore o null se non è possibile costruirlo
+   */
+  @SuppressWarnings("unchecked")
+  public static BiConsumer<Object, Object> makeSetter(Method setter)
+  {
+    if(!enabled || !isAccessible(setter) || setter.getParameterCount() != 1)
+      return null;
+
+    try
+    {
+      MethodHandle mh = LOOKUP.unreflect(setter);
+      Class<?> beanClass = setter.getDeclaringClass();
+
+      if(isVisible(beanClass))
+      {
+        try
+        {
+          CallSite site = LambdaMetafactory.metafactory(LOOKUP, "accept",
+             MethodType.methodType(BiConsumer.class),
+             MethodType.methodType(void.class, Object.class, Object.class),
+             mh,
+             MethodType.methodType(void.class, beanClass, wrap(setter.getParameterTypes()[0])));
+
+          return guardSetter(setter, (BiConsumer<Object, Object>) site.getTarget().invoke());
+        }
+        catch(Throwable t)
+        {
+          log.debug("LambdaMetafactory not available for " + setter + ": using MethodHandle.", t);
+        }
+      }
+
+      MethodHandle gmh = mh.asType(MethodType.methodType(void.class, Object.class, Object.class));
+      return guardSetter(setter, (bean, value) ->
+      {
+        try
+        {
+          gmh.invokeExact(bean, value);
+        }
+        catch(Throwable t)
+        {
+          throw sneakyThrow(t);
+        }
+      });
+    }
+    catch(Throwable t)
+    {
+      log.debug("Accessor not available for " + setter + ": using reflection.", t);
+      return null;
+    }
+  }
+
+  /**
+   * Limita l'accessore veloce ai valori del tipo esatto del parametro.
+   * Il cast dell'accessore generato non applica le conversioni di
+   * Method.invoke: un Integer per un long solleverebbe ClassCastException
+   * e un null per un primitivo NullPointerException.
+   */
+  private static BiConsumer<Object, Object> guardSetter(Method setter, BiConsumer<Object, Object> fast)
+  {
+    Class<?> paramType = setter.getParameterTypes()[0];
+    Class<?> exactType = wrap(paramType);
+    boolean primitive = paramType.isPrimitive();
+
+    return (bean, value) ->
+    {
+      if(primitive ? value != null && value.getClass() == exactType : value == null || exactType.isInstance(value))
+        fast.accept(bean, value);
+      else
+        invokeSetter(setter, bean, value);
+    };
+  }
+
+  private static void invokeSetter(Method setter, Object bean, Object value)
+  {
+    try
+    {
+      setter.invoke(bean, value);
+    }
+    catch(InvocationTargetException e)
+    {
+      throw sneakyThrow(e.getCause());
+    }
+    catch(IllegalAccessException e)
+    {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static boolean isAccessible(Method m)
+  {
+    return m != null
+       && Modifier.isPublic(m.getModifiers())
+       && Modifier.isPublic(m.getDeclaringClass().getModifiers())
+       && !Modifier.isStatic(m.getModifiers());
+  }
+
+  /**
+   * La classe generata viene definita nel class loader di rigel:
+   * il bean deve essere raggiungibile da quel loader.
+   */
+  private static boolean isVisible(Class<?> beanClass)
+  {
+    try
+    {
+      return Class.forName(beanClass.getName(), false, LOOKUP.lookupClass().getClassLoader()) == beanClass;
+    }
+    catch(Throwable t)
+    {
+      return false;
+    }
+  }
+
+  private static Class<?> wrap(Class<?> c)
+  {
+    if(!c.isPrimitive())
+      return c;
+
+    return MethodType.methodType(c).wrap().returnType();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T extends Throwable> RuntimeException sneakyThrow(Throwable t)
+     throws T
+  {
+    throw (T) t;
+  }
+
+  public static boolean isEnabled()
+  {
+    return enabled;
+  }
+
+  /**
+   * Abilita o disabilita la generazione degli accessori.
+   * Con false i descrittori costruiti successivamente usano la reflection.
+   * @param enabled stato
+   */
+  public static void setEnabled(boolean enabled)
+  {
+    BeanAccessorFactory.enabled = enabled;
+  }
+}
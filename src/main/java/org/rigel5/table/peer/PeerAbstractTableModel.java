@@ -34,6 +34,7 @@ import org.apache.torque.om.StringKey;
 import org.commonlib5.utils.StringOper;
 import org.rigel5.SetupHolder;
 import org.rigel5.db.DbUtils;
+import org.rigel5.db.torque.PeerBatchSaver;
 import org.rigel5.db.torque.PeerTransactAgent;
 import org.rigel5.db.torque.TableMapHelper;
 import org.rigel5.exceptions.MissingColumnException;
@@ -59,6 +60,8 @@ abstract public class PeerAbstractTableModel extends RigelObjectTableModel
   protected TableMap map;
   protected TableMapHelper maph;
   protected Criteria defaultOrderCriteria = null;
+  /** se vero saveData() usa il salvataggio cumulativo (vedi PeerBatchSaver) */
+  protected boolean batchSave = false;
   /** Logging */
   private static Log log = LogFactory.getLog(PeerAbstractTableModel.class);
 
@@ -422,7 +425,7 @@ abstract public class PeerAbstractTableModel extends RigelObjectTableModel
     Map<String, String> nameMap = aiGetNameMap(map.getName());
 
     for(int i = 0; i < cmaps.length; i++)
-      vColumn.add(aiBuildCD(i, cmaps[i], nameMap));
+      addColumn(aiBuildCD(i, cmaps[i], nameMap));
 
     init(objList);
   }
@@ -654,6 +657,7 @@ abstract public class PeerAbstractTableModel extends RigelObjectTableModel
      throws Exception
   {
     Vector toDel = new Vector();
+    PeerBatchSaver batch = batchSave ? new PeerBatchSaver(dbCon) : null;
     while(numrec-- > 0 && start < getRowCount())
     {
       Persistent obj = (Persistent) (getRowRecord(start));
@@ -665,17 +669,24 @@ abstract public class PeerAbstractTableModel extends RigelObjectTableModel
 
       if(pos == null)
       {
-        if(obj.isModified())
+        if(obj.isModified() && (batch == null || !batch.add(obj)))
           obj.save(dbCon);
       }
-      else
+      else if(batch == null)
       {
         pos.salva(obj, dbCon, isRowDeleted(start) ? 10 : 0);
       }
+      else
+      {
+        pos.salva(obj, dbCon, isRowDeleted(start) ? 10 : 0, batch);
+      }
 
       start++;
     }
 
+    if(batch != null)
+      batch.flush();
+
     if(delSelected && !toDel.isEmpty())
     {
       getVBuf().removeAll(toDel);
@@ -683,6 +694,28 @@ abstract public class PeerAbstractTableModel extends RigelObjectTableModel
     }
   }
 
+  public boolean isBatchSave()
+  {
+    return batchSave;
+  }
+
+  /**
+   * Attiva il salvataggio cumulativo.
+   * Le righe modificate vengono raggruppate per tabella e operazione
+   * e scritte con executeBatch() invece di un save() per riga.
+   * Vengono scritti solo i campi degli oggetti: da non usare se il
+   * salvataggio deve propagarsi ad oggetti collegati.
+   * Nel paginatore di edit (PeerTablePagerEditApp) il salvataggio cumulativo
+   * è usato solo se il gestore di salvataggio implementa salva(..., batch);
+   * altrimenti le righe sono salvate una per volta dal gestore, in modo da
+   * non perdere i suoi controlli e i campi automatici.
+   * @param batchSave vero per attivare
+   */
+  public void setBatchSave(boolean batchSave)
+  {
+    this.batchSave = batchSave;
+  }
+
   public void setTableMap(TableMap m)
   {
     map = m;
@@ -903,6 +936,11 @@ abstract public class PeerAbstractTableModel extends RigelObjectTableModel
     return beanPeerClass;
   }
 
+  public TableMapHelper getMaph()
+  {
+    return maph;
+  }
+
   public Criteria getDefaultOrderCriteria()
   {
     return defaultOrderCriteria;
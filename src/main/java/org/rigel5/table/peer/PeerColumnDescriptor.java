@@ -19,6 +19,8 @@ package org.rigel5.table.peer;
 
 import java.beans.*;
 import java.lang.reflect.*;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 import org.apache.commons.logging.*;
 import org.apache.torque.map.ColumnMap;
 import org.rigel5.table.RigelColumnDescriptor;
@@ -36,6 +38,9 @@ public class PeerColumnDescriptor extends RigelColumnDescriptor
   private PropertyDescriptor prop;
   protected Method getter = null;
   protected Method setter = null;
+  /** accessori generati (null se si usa la reflection) */
+  protected Function<Object, Object> getterFun = null;
+  protected BiConsumer<Object, Object> setterFun = null;
   protected ColumnMap cmap = null;
 
   public PeerColumnDescriptor()
@@ -94,6 +99,8 @@ public class PeerColumnDescriptor extends RigelColumnDescriptor
 
       getter = prop.getReadMethod();
       setter = prop.getWriteMethod();
+      getterFun = BeanAccessorFactory.makeGetter(getter);
+      setterFun = BeanAccessorFactory.makeSetter(setter);
       if(setter == null)
         setEditable(false);
 
@@ -111,7 +118,13 @@ public class PeerColumnDescriptor extends RigelColumnDescriptor
   public Object getValue(Object bean)
      throws Exception
   {
-    return isCalcolato() || getter == null ? null : getter.invoke(bean, (Object[]) null);
+    if(isCalcolato() || getter == null)
+      return null;
+
+    if(getterFun != null)
+      return getterFun.apply(bean);
+
+    return getter.invoke(bean, (Object[]) null);
   }
 
   @Override
@@ -121,7 +134,10 @@ public class PeerColumnDescriptor extends RigelColumnDescriptor
     if(isCalcolato() || setter == null)
       return;
 
-    setter.invoke(bean, value);
+    if(setterFun != null)
+      setterFun.accept(bean, value);
+    else
+      setter.invoke(bean, value);
   }
 
   public ColumnMap getCmap()
@@ -20,12 +20,14 @@ package org.rigel5.table.peer.html;
 import java.lang.reflect.*;
 import java.sql.Connection;
 import java.util.*;
+import java.util.stream.Stream;
 import org.apache.torque.criteria.Criteria;
 import org.apache.torque.criteria.SqlEnum;
 import org.apache.torque.map.ColumnMap;
 import org.apache.torque.map.TableMap;
 import org.apache.torque.sql.OrderBy;
 import org.apache.torque.util.UniqueList;
+import org.commonlib5.lambda.ConsumerThrowException;
 import org.commonlib5.utils.Pair;
 import org.commonlib5.utils.StringOper;
 import org.rigel5.db.torque.CriteriaRigel;
@@ -50,7 +52,7 @@ abstract public class HtmlPeerWrapperBase extends HtmlWrapperBase
   protected Class objectClass;
   protected Class peerClass;
   protected TableMapHelper tmap;
-  private Method doSelectM, getStatoRecM;
+  private Method doSelectM, doSelectAsStreamM, getStatoRecM;
 
   /**
    * Imposta la classe dell'oggetto Peer (manipolatore).
@@ -73,6 +75,18 @@ abstract public class HtmlPeerWrapperBase extends HtmlWrapperBase
 
     // recupera metodo doSelect
     doSelectM = peerClass.getMethod("doSelect", Criteria.class, Connection.class);
+
+    // recupera metodo doSelectAsStream (se esiste)
+    try
+    {
+      doSelectAsStreamM = peerClass.getMethod("doSelectAsStream", Criteria.class, Connection.class);
+      if(!Modifier.isStatic(doSelectAsStreamM.getModifiers()))
+        doSelectAsStreamM = null;
+    }
+    catch(NoSuchMethodException ei)
+    {
+      doSelectAsStreamM = null;
+    }
   }
 
   public Class getPeerClass()
@@ -384,6 +398,36 @@ abstract public class HtmlPeerWrapperBase extends HtmlWrapperBase
    */
   public List getRecords(Criteria c)
      throws Exception
+  {
+    addOrderCriteria(c);
+
+    // rimuove statorec se previsto
+    if(getStatoRecM != null)
+      CriteriaRigel.removeDeleted(c, nomeTabella);
+
+    // attiva filtro se previsto
+    for(ParametroListe pl : filtro.getParametri())
+    {
+      if(pl.getValore() != null)
+      {
+        String where = pl.getCampo() + pl.getOperazione() + pl.getValoreFmt();
+        c.andVerbatimSql("(" + where + ")", null);
+      }
+    }
+
+    return doSelect(c);
+  }
+
+  /**
+   * Aggiunge al criteria l'ordinamento della lista.
+   * Le colonne di ordinamento previste dal wrapper vengono accodate
+   * a quelle già presenti; se alla fine non c'è alcun ordinamento
+   * viene usato quello per chiave primaria.
+   * @param c criteria di selezione
+   * @throws Exception
+   */
+  public void addOrderCriteria(Criteria c)
+     throws Exception
   {
     // attiva ordinamento di default se previsto
     for(String nomeCol : sortColumns)
@@ -421,22 +465,6 @@ abstract public class HtmlPeerWrapperBase extends HtmlWrapperBase
           c.addDescendingOrderByColumn(ob.getColumn());
       }
     }
-
-    // rimuove statorec se previsto
-    if(getStatoRecM != null)
-      CriteriaRigel.removeDeleted(c, nomeTabella);
-
-    // attiva filtro se previsto
-    for(ParametroListe pl : filtro.getParametri())
-    {
-      if(pl.getValore() != null)
-      {
-        String where = pl.getCampo() + pl.getOperazione() + pl.getValoreFmt();
-        c.andVerbatimSql("(" + where + ")", null);
-      }
-    }
-
-    return doSelect(c);
   }
 
   public List doSelect(Criteria c)
@@ -444,4 +472,51 @@ abstract public class HtmlPeerWrapperBase extends HtmlWrapperBase
   {
     return PeerTransactAgent.executeReturnReadonly((con) -> (List) doSelectM.invoke(null, c, con));
   }
+
+  /**
+   * Verifica se la classe peer consente la lettura con cursore.
+   * @return vero se è disponibile doSelectAsStream(Criteria, Connection)
+   */
+  public boolean isSelectAsStream()
+  {
+    return doSelectAsStreamM != null;
+  }
+
+  /**
+   * Legge i records selezionati leggendoli con un cursore.
+   * Usa doSelectAsStream() della classe peer in una transazione read only
+   * senza autocommit (necessario ad alcuni driver per usare il cursore);
+   * se la classe peer non lo prevede i records vengono caricati con doSelect().
+   * @param c criteria di selezione
+   * @param fun funzione chiamata per ogni oggetto letto
+   * @throws Exception
+   */
+  public void scanRecords(Criteria c, ConsumerThrowException<Object> fun)
+     throws Exception
+  {
+    if(doSelectAsStreamM == null)
+    {
+      for(Object o : doSelect(c))
+        fun.accept(o);
+      return;
+    }
+
+    PeerTransactAgent.executeReadonly((con) ->
+    {
+      boolean autoCommit = con.getAutoCommit();
+      con.setAutoCommit(false);
+
+      try(Stream<?> sr = (Stream<?>) doSelectAsStreamM.invoke(null, c, con))
+      {
+        Iterator<?> itr = sr.iterator();
+        while(itr.hasNext())
+          fun.accept(itr.next());
+      }
+      finally
+      {
+        con.rollback();
+        con.setAutoCommit(autoCommit);
+      }
+    });
+  }
 }
@@ -20,12 +20,22 @@ package org.rigel5.table.peer.html;
 import java.lang.reflect.Method;
 import java.sql.Connection;
 import java.util.*;
+import org.apache.torque.Column;
 import org.apache.torque.criteria.Criteria;
+import org.apache.torque.criteria.Criterion;
 import org.apache.torque.criteria.SqlEnum;
+import org.apache.torque.map.ColumnMap;
+import org.apache.torque.om.ColumnAccessByName;
 import org.apache.torque.sql.OrderBy;
+import org.apache.torque.sql.Query;
+import org.apache.torque.sql.SqlBuilder;
 import org.apache.torque.util.UniqueList;
+import org.rigel5.db.RecordCounter;
 import org.rigel5.db.torque.PeerTransactAgent;
+import org.rigel5.db.torque.TableMapHelper;
 import org.rigel5.table.FiltroListe;
+import org.rigel5.table.KeysetInfo;
+import org.rigel5.table.RecordCountQuery;
 import org.rigel5.table.html.CommonPager;
 import org.rigel5.table.html.RigelHtmlPage;
 
@@ -67,6 +77,10 @@ public class PeerPager extends CommonPager
 {
   private static int idCounter = 0;
   protected Method doSelectM = null;
+  protected boolean keysetRequest = false;
+  protected List<OrderBy> keysetOrder = null;
+  protected String keysetSignature = null;
+  protected int keysetSeek = KeysetInfo.SEEK_NONE;
 
   public PeerPager()
   {
@@ -89,11 +103,36 @@ public class PeerPager extends CommonPager
      throws Exception
   {
     cSelezione.setOffset((int) start);
-    cSelezione.setLimit((int) limit);
+    cSelezione.setLimit(getFetchLimit());
     //se nella selezione si utilizzano campi interi, questo provoca errore
     //cSelezione.setIgnoreCase(true);
 
-    List v = getRecords(cSelezione);
+    startRecordCount();
+
+    List v;
+    keysetRequest = keysetMode;
+    try
+    {
+      v = getRecords(cSelezione);
+    }
+    finally
+    {
+      keysetRequest = false;
+    }
+
+    // la pagina precedente letta con keyset non ha righe aggiuntive
+    // ma la pagina successiva esiste: è quella visualizzata in precedenza
+    if(keysetMode && keysetSeek == KeysetInfo.SEEK_PREV && v.size() == limit)
+      pageRows = getFetchLimit();
+    else
+      pageRows = v.size();
+
+    if(v.size() > limit)
+      v = v.subList(0, limit);
+
+    if(keysetMode)
+      v = saveKeyset(v);
+
     if(!v.isEmpty())
     {
       ((PeerTableModel) (getTableModel())).init(v);
@@ -144,6 +183,23 @@ public class PeerPager extends CommonPager
       doSelectM = ptm.getBeanPeerClass().getMethod("doSelect", Criteria.class, Connection.class);
 
     addExtraFilter(c);
+    addOrder(c);
+    applyKeyset(c);
+
+    return (List) PeerTransactAgent.executeReturnReadonly((con) -> doSelectM.invoke(null, c, con));
+  }
+
+  /**
+   * Completa il criteria con l'ordinamento effettivo della lista.
+   * Per default, se non è richiesto un ordinamento specifico,
+   * usa quello per chiave primaria del table model.
+   * @param c criteria di selezione
+   * @throws Exception
+   */
+  protected void addOrder(Criteria c)
+     throws Exception
+  {
+    PeerTableModel ptm = (PeerTableModel) getTableModel();
 
     // usa ordinamento di default per chiave primaria
     if((c.getOrderByColumns() == null || c.getOrderByColumns().isEmpty()) && ptm.getDefaultOrderCriteria() != null)
@@ -158,13 +214,190 @@ public class PeerPager extends CommonPager
           c.addDescendingOrderByColumn(ob.getColumn());
       }
     }
+  }
 
-    return (List) PeerTransactAgent.executeReturnReadonly((con) -> doSelectM.invoke(null, c, con));
+  /**
+   * Applica la paginazione keyset al criteria.
+   * Va chiamata con l'ordinamento già completo (vedi addOrder).
+   * L'ordinamento viene completato con la chiave primaria; se la pagina
+   * richiesta è adiacente a quella visualizzata in precedenza l'OFFSET
+   * viene sostituito da una condizione sui valori di chiave memorizzati.
+   * Non ha effetto se la richiesta non proviene da getHtmlTable in
+   * modalità keyset o se l'ordinamento usa colonne di altre tabelle
+   * o colonne che ammettono NULL (i record con valore nullo verrebbero
+   * esclusi dalla condizione di ricerca).
+   * @param c criteria di selezione
+   * @throws Exception
+   */
+  protected void applyKeyset(Criteria c)
+     throws Exception
+  {
+    keysetOrder = null;
+    keysetSeek = KeysetInfo.SEEK_NONE;
+
+    if(!keysetRequest)
+      return;
+
+    TableMapHelper maph = ((PeerTableModel) getTableModel()).getMaph();
+    if(maph == null)
+      return;
+
+    ArrayList<OrderBy> keyOrder = new ArrayList<>();
+    for(OrderBy ob : c.getOrderByColumns())
+    {
+      ColumnMap cm = findKeysetColumn(maph, ob.getColumn());
+      if(cm == null || ob.isIgnoreCase() || !(cm.isPrimaryKey() || cm.isNotNull()))
+        return;
+
+      addKeysetColumn(keyOrder, cm, ob.getOrder());
+    }
+
+    // completa con la chiave primaria per rendere l'ordinamento univoco
+    Iterator<ColumnMap> itrPk = maph.getPrimaryKeys();
+    if(!itrPk.hasNext())
+      return;
+
+    while(itrPk.hasNext())
+    {
+      ColumnMap cm = itrPk.next();
+      if(addKeysetColumn(keyOrder, cm, SqlEnum.ASC))
+        c.addAscendingOrderByColumn(cm);
+    }
+
+    StringBuilder sig = new StringBuilder();
+    for(OrderBy ob : keyOrder)
+      sig.append(((ColumnMap) ob.getColumn()).getColumnName()).append(' ').append(ob.getOrder()).append(',');
+
+    keysetOrder = keyOrder;
+    keysetSignature = sig.toString();
+    keysetSeek = keyset.getSeek(start, limit, cSelezione, keysetSignature);
+
+    if(keysetSeek == KeysetInfo.SEEK_NONE)
+      return;
+
+    boolean reverse = keysetSeek == KeysetInfo.SEEK_PREV;
+    Object[] key = keyset.getSeekKey(keysetSeek);
+
+    // (k1 > v1) OR (k1 = v1 AND k2 > v2) OR ...
+    Criterion seek = null;
+    for(int i = 0; i < keyOrder.size(); i++)
+    {
+      Criterion term = null;
+      for(int j = 0; j < i; j++)
+      {
+        Criterion eq = new Criterion(keyOrder.get(j).getColumn(), key[j], SqlEnum.EQUAL);
+        term = term == null ? eq : term.and(eq);
+      }
+
+      boolean desc = SqlEnum.DESC.equals(keyOrder.get(i).getOrder()) ^ reverse;
+      Criterion cmp = new Criterion(keyOrder.get(i).getColumn(), key[i],
+         desc ? SqlEnum.LESS_THAN : SqlEnum.GREATER_THAN);
+      term = term == null ? cmp : term.and(cmp);
+      seek = seek == null ? term : seek.or(term);
+    }
+
+    c.and(seek);
+    c.setOffset(0);
+
+    if(reverse)
+    {
+      // niente righe aggiuntive: sarebbero in testa alla pagina
+      c.setLimit(limit);
+
+      // la pagina precedente viene letta in ordine inverso
+      ArrayList<OrderBy> oc = new ArrayList<>(c.getOrderByColumns());
+      c.getOrderByColumns().clear();
+      for(OrderBy ob : oc)
+      {
+        if(ob.getOrder().equals(SqlEnum.ASC))
+          c.addDescendingOrderByColumn(ob.getColumn());
+        else
+          c.addAscendingOrderByColumn(ob.getColumn());
+      }
+    }
+  }
+
+  protected ColumnMap findKeysetColumn(TableMapHelper maph, Column col)
+  {
+    if(!maph.getNomeTabella().equalsIgnoreCase(col.getTableName()))
+      return null;
+
+    if(col instanceof ColumnMap)
+      return (ColumnMap) col;
+
+    return maph.getCampo(col.getColumnName());
+  }
+
+  private boolean addKeysetColumn(List<OrderBy> keyOrder, ColumnMap cm, SqlEnum order)
+  {
+    for(OrderBy ob : keyOrder)
+    {
+      if(ob.getColumn() == cm)
+        return false;
+    }
+
+    keyOrder.add(new OrderBy(cm, order, false));
+    return true;
+  }
+
+  /**
+   * Memorizza i valori di chiave della pagina letta.
+   * @param v records letti
+   * @return records nell'ordine di visualizzazione
+   * @throws Exception
+   */
+  protected List saveKeyset(List v)
+     throws Exception
+  {
+    if(keysetOrder == null || v.isEmpty())
+    {
+      keyset.clear();
+      return v;
+    }
+
+    if(keysetSeek == KeysetInfo.SEEK_PREV)
+    {
+      v = new ArrayList(v);
+      Collections.reverse(v);
+    }
+
+    keyset.save(start, limit, cSelezione, keysetSignature,
+       getKeysetValues(v.get(0)), getKeysetValues(v.get(v.size() - 1)));
+    keysetOrder = null;
+    return v;
+  }
+
+  protected Object[] getKeysetValues(Object bean)
+  {
+    if(!(bean instanceof ColumnAccessByName))
+      return null;
+
+    Object[] rv = new Object[keysetOrder.size()];
+    for(int i = 0; i < rv.length; i++)
+      rv[i] = ((ColumnAccessByName) bean).getByName(((ColumnMap) keysetOrder.get(i).getColumn()).getJavaName());
+
+    return rv;
   }
 
   @Override
   public long getTotalRecords()
      throws Exception
+  {
+    Criteria c = getCountCriteria();
+
+    if(c.getTopLevelCriterion() == null)
+      return getTableModel().getTotalRecords();
+
+    return ((PeerTableModel) (getTableModel())).getTotalRecords(c);
+  }
+
+  /**
+   * Criteria per il conteggio dei record: filtro corrente più filtri supplementari.
+   * @return criteria di conteggio
+   * @throws Exception
+   */
+  protected Criteria getCountCriteria()
+     throws Exception
   {
     Criteria c;
     if(cSelezione.getOggFiltro() == null)
@@ -173,11 +406,51 @@ public class PeerPager extends CommonPager
       c = (Criteria) (((Criteria) (cSelezione.getOggFiltro())).clone());
 
     addExtraFilter(c);
+    return c;
+  }
+
+  @Override
+  protected RecordCountQuery getRecordCountQuery()
+     throws Exception
+  {
+    Criteria c = getCountCriteria();
+    PeerTableModel ptm = (PeerTableModel) getTableModel();
+    String tableName = ptm.getTableMap().getName();
 
+    String key;
     if(c.getTopLevelCriterion() == null)
-      return getTableModel().getTotalRecords();
+      key = tableName;
+    else
+    {
+      Query q = SqlBuilder.buildQuery(c);
+      key = q.toString() + q.getPreparedStatementReplacements();
+    }
 
-    return ((PeerTableModel) (getTableModel())).getTotalRecords(c);
+    return new RecordCountQuery()
+    {
+      @Override
+      public String getKey()
+      {
+        return key;
+      }
+
+      @Override
+      public long count()
+         throws Exception
+      {
+        if(c.getTopLevelCriterion() == null)
+          return ptm.getTotalRecords();
+
+        return ptm.getTotalRecords(c);
+      }
+
+      @Override
+      public long estimate()
+         throws Exception
+      {
+        return new RecordCounter().getEstimatedRecordCount(c, tableName);
+      }
+    };
   }
 
   /**
@@ -17,6 +17,7 @@
  */
 package org.rigel5.table.peer.xml;
 
+import java.io.OutputStream;
 import java.io.Writer;
 import java.util.*;
 import javax.servlet.http.*;
@@ -29,7 +30,10 @@ import org.rigel5.table.RigelColumnDescriptor;
 import org.rigel5.table.html.RigelHtmlPage;
 import org.rigel5.table.peer.PeerAbstractTableModel;
 import org.rigel5.table.peer.html.HtmlPeerWrapperBase;
+import org.rigel5.table.xml.csvTable;
+import org.rigel5.table.xml.exportTable;
 import org.rigel5.table.xml.xTable;
+import org.rigel5.table.xml.xlsxTable;
 
 /**
  * Wrapper per la generazione di XML.
@@ -42,6 +46,7 @@ public class PeerWrapperListaXml extends HtmlPeerWrapperBase
   protected int limit = 0;
 
   public static final int RECORD_PER_PASSATA = 100;
+  public static final int FETCH_SIZE = 1000;
 
   public PeerWrapperListaXml()
      throws Exception
@@ -101,9 +106,121 @@ public class PeerWrapperListaXml extends HtmlPeerWrapperBase
     }
   }
 
+  /**
+   * Produce CSV dei records.
+   * @param out output CSV
+   * @throws Exception
+   */
+  public void getCsv(Writer out)
+     throws Exception
+  {
+    doExport(new csvTable(out));
+  }
+
+  /**
+   * Produce un foglio XLSX dei records.
+   * @param out output del file XLSX
+   * @throws Exception
+   */
+  public void getXlsx(OutputStream out)
+     throws Exception
+  {
+    xlsxTable etbl = new xlsxTable(out);
+    if(getTitolo() != null)
+      etbl.setSheetName(getTitolo());
+
+    doExport(etbl);
+  }
+
+  /**
+   * Esporta i records (CSV, XLSX).
+   * Se la classe peer lo consente i records vengono letti con un cursore
+   * (vedi scanRecords), altrimenti a blocchi di RECORD_PER_PASSATA records
+   * come in getXml(); in entrambi i casi il generatore riceve un blocco
+   * alla volta e la memoria impegnata non dipende dal numero di righe.
+   * Se impostato, il limite della lista (vedi setLimit) viene rispettato
+   * in entrambi i casi.
+   * @param etbl generatore dell'export
+   * @throws Exception
+   */
+  public void doExport(exportTable etbl)
+     throws Exception
+  {
+    PeerTableModel pptm = (PeerTableModel) ptm;
+    pptm.reAttach();
+    etbl.setModel(pptm);
+    etbl.setColumnModel(pptm.getColumnModel());
+    etbl.beginExport();
+
+    if(isSelectAsStream())
+    {
+      Criteria c = new Criteria();
+      prepareCriteria(c);
+      c.setFetchSize(FETCH_SIZE);
+      if(limit != 0)
+        c.setLimit(limit);
+
+      ArrayList block = new ArrayList(RECORD_PER_PASSATA);
+      scanRecords(c, (obj) ->
+      {
+        block.add(obj);
+        if(block.size() == RECORD_PER_PASSATA)
+        {
+          pptm.rebind(block);
+          etbl.doRows();
+          block.clear();
+        }
+      });
+
+      if(!block.isEmpty())
+      {
+        pptm.rebind(block);
+        etbl.doRows();
+      }
+    }
+    else
+    {
+      int recStart = 0;
+      boolean contFetch = true;
+
+      do
+      {
+        int numRec = limit == 0 ? RECORD_PER_PASSATA : Math.min(RECORD_PER_PASSATA, limit - recStart);
+        Criteria c = new Criteria();
+        prepareCriteria(c);
+        c.setOffset(recStart);
+        c.setLimit(numRec);
+        List data = doSelect(c);
+        contFetch = !(data.size() < numRec);
+        recStart += data.size();
+        pptm.rebind(data);
+        etbl.doRows();
+      }
+      while(contFetch && (limit == 0 || recStart < limit));
+    }
+
+    etbl.endExport();
+  }
+
   @Override
   public List getRecords(Criteria c)
      throws Exception
+  {
+    prepareCriteria(c);
+
+    if(limit != 0)
+      c.setLimit(limit);
+
+    return doSelect(c);
+  }
+
+  /**
+   * Aggiunge al criteria l'ordinamento della lista.
+   * @param c criteria di selezione
+   * @throws Exception
+   */
+  protected void prepareCriteria(Criteria c)
+     throws Exception
   {
     // attiva ordinametno di default se previsto
     for(String nomeCol : sortColumns)
@@ -140,11 +257,6 @@ public class PeerWrapperListaXml extends HtmlPeerWrapperBase
           c.addDescendingOrderByColumn(ob.getColumn());
       }
     }
-
-    if(limit != 0)
-      c.setLimit(limit);
-
-    return doSelect(c);
   }
 
   public int getLimit()
@@ -34,7 +34,7 @@ import org.commonlib5.utils.ArrayMap;
 import org.commonlib5.utils.SimpleTimer;
 import org.commonlib5.utils.StringOper;
 import org.rigel5.SetupHolder;
-import org.rigel5.db.DbUtils;
+import org.rigel5.db.SchemaCatalog;
 import org.rigel5.db.sql.FiltroData;
 import org.rigel5.db.sql.QueryBuilder;
 import org.rigel5.exceptions.InvalidObjectException;
@@ -285,6 +285,7 @@ abstract public class SqlAbstractTableModel extends RigelObjectTableModel
               cd.setDataType(retTipoSql(col.typeEnum()));
 
             cd.setValClass(retObjTipoClass(cd.getDataType()));
+            cd.setNullable(col.nullAllowed());
             found = true;
             break;
           }
@@ -321,6 +322,103 @@ abstract public class SqlAbstractTableModel extends RigelObjectTableModel
     init(_select, _from, _where, _orderby, true);
   }
 
+  /**
+   * Colonne per la paginazione keyset.
+   * Ricava l'ordinamento effettivo della query (quello del filtro utente
+   * oppure quello di default, eventualmente costruito da init() sulle
+   * chiavi primarie) e lo completa con le chiavi primarie, in modo che
+   * individui univocamente ogni record.
+   * Le colonne che ammettono NULL non sono utilizzabili: la condizione
+   * di ricerca escluderebbe i record con valore nullo dalle pagine successive.
+   * @return colonne di ordinamento o null se la paginazione keyset non è applicabile
+   */
+  public List<FiltroData.orderbyInfo> getKeysetColumns()
+  {
+    ArrayList<FiltroData.orderbyInfo> rv = new ArrayList<>();
+    FiltroData fd = query.getFiltro();
+
+    if(fd != null && fd.haveOrderby())
+    {
+      for(FiltroData.orderbyInfo oi : fd.vOrderby)
+      {
+        if(!addKeysetColumn(rv, oi.nomecampo, oi.dir))
+          return null;
+      }
+    }
+    else if(query.haveOrderby())
+    {
+      for(String tok : StringOper.split(query.getOrderby(), ','))
+      {
+        String[] parts = tok.trim().split("\\s+");
+        if(parts.length > 2 || !addKeysetColumn(rv, parts[0], parts.length == 2 ? parts[1] : null))
+          return null;
+      }
+    }
+
+    // completa con la chiave primaria per rendere l'ordinamento univoco
+    boolean havePk = false;
+    for(int i = 0; i < getColumnCount(); i++)
+    {
+      RigelColumnDescriptor cd = getColumn(i);
+      if(!cd.isCalcolato() && cd.isPrimaryKey())
+      {
+        havePk = true;
+        addKeysetColumn(rv, cd.getName(), null);
+      }
+    }
+
+    return havePk ? rv : null;
+  }
+
+  private boolean addKeysetColumn(List<FiltroData.orderbyInfo> rv, String nomeCampo, String dir)
+  {
+    if(nomeCampo.isEmpty() || nomeCampo.indexOf('(') != -1)
+      return false;
+
+    dir = dir == null ? "ASC" : dir.toUpperCase();
+    if(!dir.equals("ASC") && !dir.equals("DESC"))
+      return false;
+
+    int pos = nomeCampo.lastIndexOf('.');
+    RigelColumnDescriptor cd = getColumnByName(pos == -1 ? nomeCampo : nomeCampo.substring(pos + 1));
+    if(cd == null || cd.isCalcolato() || cd.isAggregatoSql())
+      return false;
+
+    if(!cd.isPrimaryKey() && ((SqlColumnDescriptor) cd).isNullable())
+      return false;
+
+    for(FiltroData.orderbyInfo oi : rv)
+    {
+      if(oi.nomecampo.equalsIgnoreCase(cd.getName()))
+        return true;
+    }
+
+    FiltroData.orderbyInfo oi = new FiltroData.orderbyInfo();
+    oi.nomecampo = cd.getName();
+    oi.dir = dir;
+    rv.add(oi);
+    return true;
+  }
+
+  /**
+   * Valori di chiave di un record per la paginazione keyset.
+   * @param row indice del record
+   * @param columns colonne restituite da getKeysetColumns()
+   * @return valori delle colonne
+   * @throws Exception
+   */
+  public Object[] getKeysetValues(int row, List<FiltroData.orderbyInfo> columns)
+     throws Exception
+  {
+    Object bean = getRowRecord(row);
+    Object[] rv = new Object[columns.size()];
+
+    for(int i = 0; i < rv.length; i++)
+      rv[i] = getColumnByName(columns.get(i).nomecampo).getValue(bean);
+
+    return rv;
+  }
+
   public void saveData()
      throws Exception
   {
@@ -486,7 +584,11 @@ abstract public class SqlAbstractTableModel extends RigelObjectTableModel
     {
       boolean haveStatoRec = false;
 
-      ArrayMap<String, Integer> tipi = DbUtils.getTipiColonne(con, tableName);
+      SchemaCatalog.TableInfo ti = SchemaCatalog.getInstance(con).getTable(con, tableName);
+      if(ti == null)
+        throw new MissingColumnException("Cancellazione logica non possibile su tabella " + tableName);
+
+      ArrayMap<String, Integer> tipi = ti.getColumnTypes(con);
       for(Map.Entry<String, Integer> entry : tipi.entrySet())
       {
         String colName = entry.getKey();
@@ -508,12 +610,14 @@ abstract public class SqlAbstractTableModel extends RigelObjectTableModel
       if(!haveStatoRec)
         throw new MissingColumnException("Cancellazione logica non possibile su tabella " + tableName);
 
-      String sSQL = qb.queryForUpdate(fd);
-      log.info("Delete sSQL=" + sSQL);
+      ArrayList<Object> params = new ArrayList<>();
+      String sSQL = qb.queryForUpdate(fd, params);
+      log.info("Delete sSQL=" + sSQL + " PARAMS=" + params);
 
-      try (Statement st = con.createStatement())
+      try (PreparedStatement ps = con.prepareStatement(sSQL))
       {
-        return st.executeUpdate(sSQL);
+        QueryBuilder.setParameters(ps, params);
+        return ps.executeUpdate();
       }
     });
 
@@ -29,6 +29,7 @@ import org.rigel5.table.RigelColumnDescriptor;
 public class SqlColumnDescriptor extends RigelColumnDescriptor
 {
   private int cIndex;
+  private boolean nullable = true;
 
   public SqlColumnDescriptor()
   {
@@ -97,4 +98,20 @@ public class SqlColumnDescriptor extends RigelColumnDescriptor
   {
     return cIndex;
   }
+
+  /**
+   * Vero se la colonna può contenere valori NULL.
+   * Ricavato dai metadati della query; fino alla prima lettura
+   * la colonna è considerata nullable.
+   * @return vero se ammette NULL
+   */
+  public boolean isNullable()
+  {
+    return nullable;
+  }
+
+  public void setNullable(boolean nullable)
+  {
+    this.nullable = nullable;
+  }
 }
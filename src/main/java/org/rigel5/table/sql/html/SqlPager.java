@@ -17,7 +17,12 @@
  */
 package org.rigel5.table.sql.html;
 
+import java.util.List;
+import org.commonlib5.utils.StringOper;
 import org.rigel5.db.sql.FiltroData;
+import org.rigel5.db.sql.QueryBuilder;
+import org.rigel5.table.KeysetInfo;
+import org.rigel5.table.RecordCountQuery;
 import org.rigel5.table.html.CommonPager;
 import org.rigel5.table.html.RigelHtmlPage;
 
@@ -52,17 +57,94 @@ public class SqlPager extends CommonPager
      throws Exception
   {
     SqlTableModel stm = (SqlTableModel) (getTableModel());
+    QueryBuilder qb = stm.getQuery();
 
-    stm.getQuery().setOffset(start);
-    stm.getQuery().setLimit(limit);
-    stm.getQuery().setIgnoreCase(true);
-    stm.getQuery().setFiltro((FiltroData) (cSelezione.getOggFiltro()));
+    qb.setOffset(start);
+    qb.setLimit(getFetchLimit());
+    qb.setIgnoreCase(true);
+    qb.setFiltro((FiltroData) (cSelezione.getOggFiltro()));
 
     addExtraFilter(stm);
-    stm.rebind();
+    startRecordCount();
+
+    if(keysetMode && qb.isBindParameters())
+      rebindKeyset(stm, qb);
+    else
+      stm.rebind();
+
+    if(pageRows == -1)
+      pageRows = stm.getRowCount();
 
     if(stm.getRowCount() > 0)
-      table.doHtml(page);
+      table.doHtml(0, Math.min(stm.getRowCount(), limit), page);
+  }
+
+  @Override
+  protected RecordCountQuery getRecordCountQuery()
+     throws Exception
+  {
+    SqlTableModel stm = (SqlTableModel) (getTableModel());
+    return stm.getQuery().getRecordCountQuery((FiltroData) (cSelezione.getOggFiltro()));
+  }
+
+  /**
+   * Lettura della pagina con paginazione keyset.
+   * Se la pagina richiesta è adiacente a quella precedentemente
+   * visualizzata i record vengono selezionati a partire dai valori
+   * di chiave memorizzati; altrimenti si usa l'OFFSET.
+   * @param stm gestore dati sql
+   * @param qb query builder del gestore dati
+   * @throws Exception
+   */
+  protected void rebindKeyset(SqlTableModel stm, QueryBuilder qb)
+     throws Exception
+  {
+    // la nullabilità delle colonne è nota solo dopo la prima lettura:
+    // in assenza di colonne utilizzabili si legge con OFFSET
+    List<FiltroData.orderbyInfo> keyCols = stm.getKeysetColumns();
+    String signature = getKeysetSignature(keyCols);
+    int seek = keyCols == null ? KeysetInfo.SEEK_NONE : keyset.getSeek(start, limit, cSelezione, signature);
+
+    try
+    {
+      if(seek != KeysetInfo.SEEK_NONE)
+      {
+        qb.setOffset(0);
+        qb.setSeek(keyCols, keyset.getSeekKey(seek), seek == KeysetInfo.SEEK_PREV);
+
+        // la pagina precedente è letta in ordine inverso: niente righe aggiuntive
+        if(seek == KeysetInfo.SEEK_PREV)
+          qb.setLimit(limit);
+      }
+
+      stm.rebind();
+    }
+    finally
+    {
+      qb.clearSeek();
+      qb.setOffset(start);
+      qb.setLimit(getFetchLimit());
+    }
+
+    if(keyCols == null && (keyCols = stm.getKeysetColumns()) != null)
+      signature = getKeysetSignature(keyCols);
+
+    int numRec = Math.min(stm.getRowCount(), limit);
+    if(numRec == 0 || keyCols == null)
+      keyset.clear();
+    else
+      keyset.save(start, limit, cSelezione, signature,
+         stm.getKeysetValues(0, keyCols), stm.getKeysetValues(numRec - 1, keyCols));
+
+    // la pagina successiva esiste: è quella visualizzata in precedenza
+    if(seek == KeysetInfo.SEEK_PREV && numRec == limit)
+      pageRows = getFetchLimit();
+  }
+
+  private String getKeysetSignature(List<FiltroData.orderbyInfo> keyCols)
+  {
+    return keyCols == null ? null
+       : StringOper.join(keyCols.stream().map((oi) -> oi.nomecampo + " " + oi.dir).iterator(), ',');
   }
 
   /**
@@ -17,21 +17,38 @@
  */
 package org.rigel5.table.sql.xml;
 
+import com.workingdogs.village.Column;
+import com.workingdogs.village.Record;
+import com.workingdogs.village.Schema;
+import com.workingdogs.village.Value;
+import java.io.OutputStream;
 import java.io.Writer;
+import java.math.BigDecimal;
+import java.sql.Types;
 import java.util.*;
+import java.util.stream.Stream;
 import javax.servlet.http.*;
 import javax.swing.table.TableColumnModel;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.commonlib5.lambda.ConsumerThrowException;
 import org.commonlib5.utils.StringOper;
 import org.json.JSONObject;
 import org.rigel5.SetupHolder;
+import org.rigel5.db.DbUtils;
+import org.rigel5.db.VillageRecordMapper;
 import org.rigel5.db.sql.QueryBuilder;
 import org.rigel5.table.RigelColumnDescriptor;
 import org.rigel5.table.RigelTableModel;
 import org.rigel5.table.html.RigelHtmlPage;
 import org.rigel5.table.sql.SqlGroupBy;
 import org.rigel5.table.sql.html.HtmlSqlWrapperBase;
+import org.rigel5.table.xml.csvTable;
+import org.rigel5.table.xml.exportTable;
+import org.rigel5.table.xml.jsonStreamTable;
 import org.rigel5.table.xml.jsonTable;
 import org.rigel5.table.xml.xTable;
+import org.rigel5.table.xml.xlsxTable;
 
 /**
  * Title: wrapper per XML da liste SQL.
@@ -47,6 +64,8 @@ import org.rigel5.table.xml.xTable;
  */
 public class SqlWrapperListaXml extends HtmlSqlWrapperBase
 {
+  /** Logging */
+  private static final Log log = LogFactory.getLog(SqlWrapperListaXml.class);
   protected xTable xtbl = null;
   protected xTable tblGroup = null;
   protected RigelTableModel ptmGroup = null;
@@ -54,7 +73,9 @@ public class SqlWrapperListaXml extends HtmlSqlWrapperBase
   protected int limit = 0;
   protected boolean fixedCols = false;
   protected boolean uniqueQuery = false;
+  protected boolean streamExport = true;
   public static final int RECORD_PER_PASSATA = 100;
+  public static final int FETCH_SIZE = 1000;
 
   public SqlWrapperListaXml()
      throws Exception
@@ -172,48 +193,328 @@ public class SqlWrapperListaXml extends HtmlSqlWrapperBase
       // predispone per prelevare tutti i records
       qb2.setLimit(0);
 
+      // con l'export a cursore gruppi e dettaglio condividono l'ordinamento sulla chiave
+      List<String> keyCols = streamExport ? getGroupKeyColumns() : null;
+      String keyOrder = keyCols == null ? null : makeGroupKeyOrderby(keyCols);
+      if(keyOrder != null)
+        qb2.setOrderby(keyOrder);
+
       // reinizializza e carica i records
       ((SqlTableModel) (ptmGroup)).rebind();
 
       tblGroup.setTableStatement("head");
       tblGroup.setHeaderStatement("hfld");
       tblGroup.setRowStatement("hrec");
-      String rv = "";
 
-      for(int row = 0; row < ptmGroup.getRowCount(); row++)
+      if(keyOrder == null || !doXmlGroupStream(out, keyCols, keyOrder))
+        doXmlGroupQueries(out);
+    }
+  }
+
+  /**
+   * Produce XML raggruppato con una query di dettaglio per ogni gruppo.
+   * @param out output XML
+   * @throws Exception
+   */
+  protected void doXmlGroupQueries(Writer out)
+     throws Exception
+  {
+    for(int row = 0; row < ptmGroup.getRowCount(); row++)
+    {
+      // completa bind per il dettaglio
+      String wheredet = ssp.getWhere();
+      if(wheredet == null)
+        wheredet = makeGroupByWhere(row);
+      else
+        wheredet += " AND " + makeGroupByWhere(row);
+
+      //log.debug("gw="+wheredet);
+      //log.debug("gw="+makeGroupByWhere(row));
+      ((SqlTableModel) (ptm)).rebind(ssp.getSelect(), ssp.getFrom(), wheredet, getOrderby());
+
+      // se il dettaglio e' vuoto salta tutto il blocco
+      if(ptm.getRowCount() == 0)
+        continue;
+
+      // emette xml per il master
+      writeGroupHead(out, row);
+
+      // emette xml per il dettaglio
+      xtbl.doXml(out);
+      out.write("</group>\r\n");
+    }
+  }
+
+  protected void writeGroupHead(Writer out, int row)
+     throws Exception
+  {
+    out.write("<group>\r\n");
+    out.write("<head>\r\n");
+    tblGroup.doHeader(out);
+    tblGroup.doRow(out, row);
+    out.write("</head>\r\n");
+  }
+
+  /**
+   * Colonne chiave del raggruppamento (quelle non aggregate).
+   * @return nomi delle colonne o null se il raggruppamento non è
+   * esprimibile solo con le colonne (clausola group by libera)
+   */
+  protected List<String> getGroupKeyColumns()
+  {
+    SqlGroupBy groupby = ssp.getGroupby();
+    if(groupby == null || ssp.getStrGroupby() != null)
+      return null;
+
+    ArrayList<String> rv = new ArrayList<>();
+    for(RigelColumnDescriptor cd : groupby.colonne)
+    {
+      if(!cd.isAggregatoSql())
+        rv.add(cd.getName());
+    }
+
+    return rv.isEmpty() ? null : rv;
+  }
+
+  /**
+   * Costruisce l'ordinamento comune a gruppi e dettaglio.
+   * Parte dall'ordinamento dei gruppi e lo completa con le colonne
+   * chiave mancanti, in modo che sia totale sulla chiave.
+   * @param keyCols colonne chiave del raggruppamento
+   * @return ordinamento oppure null se l'ordinamento dei gruppi usa
+   * espressioni diverse dalle colonne chiave (es. aggregati)
+   */
+  protected String makeGroupKeyOrderby(List<String> keyCols)
+  {
+    ArrayList<String> used = new ArrayList<>();
+    StringBuilder sb = new StringBuilder();
+    String orderby = StringOper.okStrNull(ssp.getOrderbyGroupby());
+
+    if(orderby != null)
+    {
+      for(String item : orderby.split(","))
+      {
+        String[] tokens = item.trim().split("\\s+");
+        String col = null;
+        for(String k : keyCols)
+        {
+          if(k.equalsIgnoreCase(tokens[0]))
+            col = k;
+        }
+
+        if(col == null)
+          return null;
+
+        used.add(col);
+        sb.append(',').append(item.trim());
+      }
+    }
+
+    for(String k : keyCols)
+    {
+      if(!used.contains(k))
+        sb.append(',').append(k);
+    }
+
+    return sb.substring(1);
+  }
+
+  /**
+   * Produce XML raggruppato con una unica query di dettaglio.
+   * I gruppi sono già caricati in ptmGroup; il dettaglio viene letto
+   * con un cursore, ordinato come i gruppi, e ogni volta che la chiave
+   * cambia viene chiuso il gruppo corrente e aperto il successivo.
+   * Il risultato è identico a doXmlGroupQueries(): i gruppi senza
+   * dettaglio vengono saltati, così come i records che non appartengono
+   * ad alcun gruppo (esclusi da parametri o having); chiavi con valori
+   * nulli non corrispondono ad alcun gruppo, come nel confronto SQL.
+   * Il confronto delle chiavi avviene in Java: viene usato solo se tutte
+   * le colonne chiave sono di tipo numerico, data/ora o booleano, dove
+   * l'uguaglianza non dipende dalla collation del database. Con chiavi
+   * testuali (maiuscole/minuscole, spazi in coda) il database potrebbe
+   * considerare uguali valori diversi per Java: in questo caso non
+   * viene prodotto nulla e va usato doXmlGroupQueries().
+   * Se il dettaglio non risulta ordinato come i gruppi (una chiave già
+   * superata si ripresenta) viene sollevata una eccezione invece di
+   * produrre un export incompleto.
+   * @param out output XML
+   * @param keyCols colonne chiave del raggruppamento
+   * @param keyOrder ordinamento comune (vedi makeGroupKeyOrderby)
+   * @return falso se il dettaglio non contiene le colonne chiave o
+   * queste non sono confrontabili in Java (nulla è stato prodotto e
+   * va usato doXmlGroupQueries)
+   * @throws Exception
+   */
+  protected boolean doXmlGroupStream(Writer out, List<String> keyCols, String keyOrder)
+     throws Exception
+  {
+    SqlTableModel stm = (SqlTableModel) ptm;
+    stm.init(ssp.getSelect(), ssp.getFrom(), ssp.getWhere(), getOrderby(), false);
+    stm.reAttach();
+
+    Schema schema = stm.getQuery().getSchema();
+    Schema schemaGroup = ((SqlTableModel) ptmGroup).getQuery().getSchema();
+    for(String k : keyCols)
+    {
+      if(!isExactKeyColumn(schema, k) || !isExactKeyColumn(schemaGroup, k))
+        return false;
+    }
+
+    QueryBuilder qb = stm.getQuery();
+    String detOrder = StringOper.okStrNull(qb.getOrderby());
+    qb.setOrderby(detOrder == null ? keyOrder : keyOrder + "," + detOrder);
+
+    // posizione di ogni gruppo per chiave
+    HashMap<List<String>, Integer> mapGroup = new HashMap<>();
+    for(int row = 0; row < ptmGroup.getRowCount(); row++)
+    {
+      List<String> key = makeGroupKey((Record) ptmGroup.getRowRecord(row), keyCols);
+      if(key != null)
+        mapGroup.putIfAbsent(key, row);
+    }
+
+    ArrayList<Record> block = new ArrayList<>(RECORD_PER_PASSATA);
+    Object[] runKey = new Object[1];
+    int[] state =
+    {
+      -1, 0
+    }; // ultimo gruppo emesso, 1 se gruppo aperto
+
+    scanRecords(stm, (r) ->
+    {
+      List<String> key = makeGroupKey(r, keyCols);
+      if(key == null)
+        key = Collections.EMPTY_LIST;
+
+      if(!key.equals(runKey[0]))
       {
-        // completa bind per il dettaglio
-        String wheredet = ssp.getWhere();
-        if(wheredet == null)
-          wheredet = makeGroupByWhere(row);
-        else
-          wheredet += " AND " + makeGroupByWhere(row);
-
-        //log.debug("gw="+wheredet);
-        //log.debug("gw="+makeGroupByWhere(row));
-        ((SqlTableModel) (ptm)).rebind(ssp.getSelect(), ssp.getFrom(), wheredet, getOrderby());
-
-        // se il dettaglio e' vuoto salta tutto il blocco
-        if(ptm.getRowCount() == 0)
-          continue;
-
-        // emette xml per il master
-        out.write("<group>\r\n");
-        out.write("<head>\r\n");
-        tblGroup.doHeader(out);
-        tblGroup.doRow(out, row);
-        out.write("</head>\r\n");
-
-        // emette xml per il dettaglio
-        xtbl.doXml(out);
-        out.write("</group>\r\n");
+        if(state[1] == 1)
+          closeGroupStream(stm, block, out);
+
+        runKey[0] = key;
+        state[1] = 0;
+
+        Integer row = mapGroup.get(key);
+        if(row != null && row > state[0])
+        {
+          state[0] = row;
+          state[1] = 1;
+
+          writeGroupHead(out, row);
+          xtbl.normalizeCols();
+          out.write("<" + xtbl.getTableStatement() + ">\r\n");
+          if(xtbl.isShowHeader())
+            xtbl.doHeader(out);
+        }
+        else if(row != null)
+        {
+          // il dettaglio non è ordinato come i gruppi (collation o conversioni
+          // diverse): proseguire perderebbe records del gruppo
+          throw new Exception("Esportazione raggruppata: il gruppo " + key
+             + " compare fuori ordine nel dettaglio; disattivare streamExport per questa lista.");
+        }
       }
+
+      if(state[1] == 1)
+      {
+        block.add(r);
+        if(block.size() == RECORD_PER_PASSATA)
+          flushBlock(xtbl, stm, block, out);
+      }
+    });
+
+    if(state[1] == 1)
+      closeGroupStream(stm, block, out);
+
+    return true;
+  }
+
+  protected void closeGroupStream(SqlTableModel stm, List<Record> block, Writer out)
+     throws Exception
+  {
+    flushBlock(xtbl, stm, block, out);
+    out.write("</" + xtbl.getTableStatement() + ">\r\n");
+    out.write("</group>\r\n");
+  }
+
+  protected List<String> makeGroupKey(Record r, List<String> keyCols)
+     throws Exception
+  {
+    ArrayList<String> rv = new ArrayList<>(keyCols.size());
+    for(String k : keyCols)
+    {
+      Value v = r.getValue(k);
+      if(v == null || v.isNull())
+        return null;
+
+      rv.add(normalizeKeyValue(v.getValue()));
     }
+
+    return rv;
+  }
+
+  protected boolean isExactKeyColumn(Schema schema, String colName)
+     throws Exception
+  {
+    if(schema == null)
+      return false;
+
+    Column col = schema.findInSchemaIgnoreCase(colName);
+    return col != null && isExactKeyType(col.typeEnum());
   }
 
   /**
-   * Produce XML richiedendo RECORD_PER_PASSATA records al database
-   * in una serie di passate successive. Minimizza quindi l'impatto di memoria.
+   * Verifica se l'uguaglianza SQL di un tipo coincide con quella Java.
+   * I tipi testuali sono esclusi perchè il confronto dipende dalla
+   * collation (maiuscole/minuscole, spazi in coda, accenti).
+   * @param sqlType tipo java.sql.Types
+   * @return vero se il tipo può essere confrontato in Java
+   */
+  public static boolean isExactKeyType(int sqlType)
+  {
+    switch(sqlType)
+    {
+      case Types.BIT:
+      case Types.BOOLEAN:
+      case Types.TINYINT:
+      case Types.SMALLINT:
+      case Types.INTEGER:
+      case Types.BIGINT:
+      case Types.NUMERIC:
+      case Types.DECIMAL:
+      case Types.DATE:
+      case Types.TIME:
+      case Types.TIMESTAMP:
+        return true;
+    }
+
+    return false;
+  }
+
+  /**
+   * Rappresentazione di un valore chiave indipendente dalla scala o dal
+   * tipo Java restituito dal driver (1, 1.0 e 1.00 sono la stessa chiave).
+   * @param value valore della colonna
+   * @return stringa da usare nel confronto
+   */
+  public static String normalizeKeyValue(Object value)
+  {
+    if(value instanceof BigDecimal)
+      return ((BigDecimal) value).stripTrailingZeros().toPlainString();
+    if(value instanceof Number)
+      return new BigDecimal(value.toString()).stripTrailingZeros().toPlainString();
+    if(value instanceof java.util.Date)
+      return Long.toString(((java.util.Date) value).getTime());
+
+    return String.valueOf(value);
+  }
+
+  /**
+   * Produce XML limitando l'impatto di memoria.
+   * Con streamExport attivo (default) la query viene eseguita una sola
+   * volta e letta con un cursore (vedi doXmlStream); altrimenti vengono
+   * richiesti RECORD_PER_PASSATA records al database in una serie di
+   * passate successive con OFFSET/LIMIT.
    * @param xtbl
    * @param stm
    * @param out
@@ -236,6 +537,10 @@ public class SqlWrapperListaXml extends HtmlSqlWrapperBase
       stm.rebind();
       xtbl.doRows(out);
     }
+    else if(streamExport)
+    {
+      doXmlStream(xtbl, stm, out);
+    }
     else
     {
       // genera XML a blocchi di RECORD_PER_PASSATA records
@@ -263,13 +568,110 @@ public class SqlWrapperListaXml extends HtmlSqlWrapperBase
     out.write("</" + xtbl.getTableStatement() + ">\r\n");
   }
 
+  /**
+   * Produce le righe XML leggendo i records con un cursore.
+   * La query completa viene eseguita una sola volta, in una transazione
+   * read only senza autocommit, e i records vengono passati alla tabella
+   * a blocchi di RECORD_PER_PASSATA: la memoria impegnata non dipende
+   * dal numero di records e il risultato è una fotografia consistente
+   * dei dati, anche in presenza di scritture concorrenti.
+   * @param xtbl tabella di output
+   * @param stm table model
+   * @param out output XML
+   * @throws Exception
+   */
+  protected void doXmlStream(xTable xtbl, SqlTableModel stm, Writer out)
+     throws Exception
+  {
+    // struttura delle colonne senza leggere i records
+    stm.init(false);
+    stm.reAttach();
+
+    ArrayList<Record> block = new ArrayList<>(RECORD_PER_PASSATA);
+    scanRecords(stm, (r) ->
+    {
+      block.add(r);
+      if(block.size() == RECORD_PER_PASSATA)
+        flushBlock(xtbl, stm, block, out);
+    });
+
+    flushBlock(xtbl, stm, block, out);
+  }
+
+  /**
+   * Esegue la query del table model leggendo i records con un cursore.
+   * La query viene eseguita una sola volta, in una transazione read only
+   * senza autocommit, con fetch size FETCH_SIZE.
+   * @param stm table model già inizializzato (init(false))
+   * @param fun funzione chiamata per ogni record
+   * @throws Exception
+   */
+  protected void scanRecords(SqlTableModel stm, ConsumerThrowException<Record> fun)
+     throws Exception
+  {
+    scanRecords(stm, false, fun);
+  }
+
+  /**
+   * Esegue la query del table model leggendo i records con un cursore.
+   * @param stm table model già inizializzato (init(false))
+   * @param useLimit vero per applicare offset e limit della query
+   * @param fun funzione chiamata per ogni record
+   * @throws Exception
+   */
+  protected void scanRecords(SqlTableModel stm, boolean useLimit, ConsumerThrowException<Record> fun)
+     throws Exception
+  {
+    QueryBuilder qb = stm.getQuery();
+    ArrayList<Object> params = qb.isBindParameters() ? new ArrayList<>() : null;
+    String sSQL = qb.makeSQLstring(true, useLimit, true, params);
+
+    SetupHolder.getConProd().runConnection((con) ->
+    {
+      boolean autoCommit = con.getAutoCommit();
+      boolean readOnly = con.isReadOnly();
+
+      // il flag read only va impostato fuori da una transazione
+      if(autoCommit)
+        con.setReadOnly(true);
+      con.setAutoCommit(false);
+
+      try(Stream<Record> sr = DbUtils.doSelectAsStream(con, sSQL, params, FETCH_SIZE, new VillageRecordMapper()))
+      {
+        Iterator<Record> itr = sr.iterator();
+        while(itr.hasNext())
+          fun.accept(itr.next());
+      }
+      finally
+      {
+        con.rollback();
+        con.setAutoCommit(autoCommit);
+        if(autoCommit)
+          con.setReadOnly(readOnly);
+      }
+    });
+  }
+
+  protected void flushBlock(xTable xtbl, SqlTableModel stm, List<Record> block, Writer out)
+     throws Exception
+  {
+    if(block.isEmpty())
+      return;
+
+    stm.rebind(block);
+    xtbl.doRows(out);
+    block.clear();
+  }
+
   /**
    * Produce JSON piuttosto che xml.
    * @param jtbl
    * @param stm
    * @param out
    * @throws Exception
+   * @deprecated costruisce in memoria l'intero albero JSON: usare doJson(jsonStreamTable, SqlTableModel, Writer)
    */
+  @Deprecated
   protected void doJson(jsonTable jtbl, SqlTableModel stm, JSONObject out)
      throws Exception
   {
@@ -280,6 +682,176 @@ public class SqlWrapperListaXml extends HtmlSqlWrapperBase
     jtbl.doRows(out);
   }
 
+  /**
+   * Produce JSON dei records selezionati.
+   * Applica gli stessi filtri di getXml() ma ignora eventuali raggruppamenti.
+   * @param out output JSON
+   * @param rStart primo record da produrre
+   * @param numRec numero di records da produrre (0 per tutti)
+   * @param ndjson vero per produrre un oggetto per riga (newline delimited JSON)
+   * @throws Exception
+   */
+  public void getJson(Writer out, int rStart, int numRec, boolean ndjson)
+     throws Exception
+  {
+    jsonStreamTable jtbl = new jsonStreamTable(ndjson);
+    doJson(jtbl, prepareExport(rStart, numRec), out);
+  }
+
+  public void getJson(Writer out)
+     throws Exception
+  {
+    getJson(out, 0, 0, false);
+  }
+
+  /**
+   * Produce CSV dei records selezionati.
+   * Applica gli stessi filtri di getXml() ma ignora eventuali raggruppamenti.
+   * @param out output CSV
+   * @throws Exception
+   */
+  public void getCsv(Writer out)
+     throws Exception
+  {
+    doExport(new csvTable(out), prepareExport(0, 0));
+  }
+
+  /**
+   * Produce un foglio XLSX dei records selezionati.
+   * Applica gli stessi filtri di getXml() ma ignora eventuali raggruppamenti.
+   * @param out output del file XLSX
+   * @throws Exception
+   */
+  public void getXlsx(OutputStream out)
+     throws Exception
+  {
+    xlsxTable etbl = new xlsxTable(out);
+    if(getTitolo() != null)
+      etbl.setSheetName(getTitolo());
+
+    doExport(etbl, prepareExport(0, 0));
+  }
+
+  /**
+   * Predispone la query per le esportazioni non raggruppate.
+   * @param rStart primo record da produrre
+   * @param numRec numero di records da produrre (0 per tutti)
+   * @return il table model con la query predisposta
+   * @throws Exception
+   */
+  protected SqlTableModel prepareExport(int rStart, int numRec)
+     throws Exception
+  {
+    SqlTableModel stm = (SqlTableModel) ptm;
+    QueryBuilder qb1 = stm.getQuery();
+
+    String where = StringOper.okStrNull(ssp.getWhere());
+    if(where == null)
+      where = getWhereParametri();
+    else
+      where += " AND " + getWhereParametri();
+
+    qb1.setWhere(where);
+    qb1.setOffset(rStart);
+    qb1.setLimit(numRec);
+    return stm;
+  }
+
+  /**
+   * Esporta i records leggendoli con un cursore (vedi scanRecords).
+   * @param etbl generatore dell'export (CSV, XLSX)
+   * @param stm table model
+   * @throws Exception
+   */
+  protected void doExport(exportTable etbl, SqlTableModel stm)
+     throws Exception
+  {
+    // struttura delle colonne senza leggere i records
+    stm.init(false);
+    stm.reAttach();
+    etbl.setModel(stm);
+    etbl.setColumnModel(stm.getColumnModel());
+    etbl.beginExport();
+
+    if(uniqueQuery || !streamExport)
+    {
+      stm.rebind();
+      etbl.doRows();
+    }
+    else
+    {
+      ArrayList<Record> block = new ArrayList<>(RECORD_PER_PASSATA);
+      scanRecords(stm, true, (r) ->
+      {
+        block.add(r);
+        if(block.size() == RECORD_PER_PASSATA)
+        {
+          stm.rebind(block);
+          etbl.doRows();
+          block.clear();
+        }
+      });
+
+      if(!block.isEmpty())
+      {
+        stm.rebind(block);
+        etbl.doRows();
+      }
+    }
+
+    etbl.endExport();
+  }
+
+  /**
+   * Produce JSON scrivendo le righe man mano che vengono lette.
+   * Con streamExport attivo la query viene eseguita una sola volta e letta
+   * con un cursore (vedi scanRecords); altrimenti i records vengono caricati
+   * con una unica query. La memoria impegnata non dipende dal numero
+   * di righe (salvo con uniqueQuery o streamExport disattivato).
+   * @param jtbl generatore JSON
+   * @param stm table model
+   * @param out output JSON
+   * @throws Exception
+   */
+  protected void doJson(jsonStreamTable jtbl, SqlTableModel stm, Writer out)
+     throws Exception
+  {
+    // struttura delle colonne senza leggere i records
+    stm.init(false);
+    stm.reAttach();
+    jtbl.setModel(stm);
+    jtbl.setColumnModel(stm.getColumnModel());
+    jtbl.beginJson(out);
+
+    if(uniqueQuery || !streamExport)
+    {
+      stm.rebind();
+      jtbl.doRows(out);
+    }
+    else
+    {
+      ArrayList<Record> block = new ArrayList<>(RECORD_PER_PASSATA);
+      scanRecords(stm, true, (r) ->
+      {
+        block.add(r);
+        if(block.size() == RECORD_PER_PASSATA)
+        {
+          stm.rebind(block);
+          jtbl.doRows(out);
+          block.clear();
+        }
+      });
+
+      if(!block.isEmpty())
+      {
+        stm.rebind(block);
+        jtbl.doRows(out);
+      }
+    }
+
+    jtbl.endJson(out);
+  }
+
   protected void getColumnSizes(int[] arSizes, TableColumnModel tm, Writer out)
      throws Exception
   {
@@ -350,6 +922,16 @@ public class SqlWrapperListaXml extends HtmlSqlWrapperBase
     this.fixedCols = fixedCols;
   }
 
+  public boolean isStreamExport()
+  {
+    return streamExport;
+  }
+
+  public void setStreamExport(boolean streamExport)
+  {
+    this.streamExport = streamExport;
+  }
+
   public boolean isUniqueQuery()
   {
     return uniqueQuery;
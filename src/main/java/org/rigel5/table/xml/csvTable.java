@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2020 Nicola De Nisco
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.rigel5.table.xml;
+
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+
+/**
+ * Generatore di CSV per tabella.
+ * I valori sono quelli visualizzati (vedi exportTable) e vengono
+ * scritti attraverso un CSVPrinter di commons-csv con il formato
+ * indicato (default CSVFormat.EXCEL).
+ * Per evitare l'iniezione di formule nei fogli di calcolo i valori che
+ * iniziano con = + - @ (o tabulazione/ritorno carrello) vengono preceduti
+ * da un apice; i valori numerici sono lasciati invariati.
+ * Il comportamento si disattiva con setEscapeFormulas(false).
+ *
+ * @author Nicola De Nisco
+ */
+public class csvTable extends exportTable
+{
+  protected final Writer out;
+  protected CSVFormat format = CSVFormat.EXCEL;
+  protected CSVPrinter printer;
+  protected boolean escapeFormulas = true;
+  public static final Pattern NUMBER = Pattern.compile("[+-]?[0-9]+([.,][0-9]+)*([eE][+-]?[0-9]+)?");
+
+  public csvTable(Writer out)
+  {
+    this.out = out;
+  }
+
+  public csvTable(Writer out, CSVFormat format)
+  {
+    this.out = out;
+    this.format = format;
+  }
+
+  @Override
+  protected void writeBegin()
+     throws Exception
+  {
+    printer = new CSVPrinter(out, format);
+  }
+
+  @Override
+  protected void writeHeader(String[] captions)
+     throws Exception
+  {
+    printer.printRecord(Arrays.asList(captions));
+  }
+
+  @Override
+  protected void writeRow(int row, String[] values)
+     throws Exception
+  {
+    if(escapeFormulas)
+    {
+      for(int i = 0; i < values.length; i++)
+        values[i] = escapeFormula(values[i]);
+    }
+
+    printer.printRecord(Arrays.asList(values));
+  }
+
+  /**
+   * Neutralizza un valore che un foglio di calcolo interpreterebbe come formula.
+   * @param value valore da scrivere
+   * @return il valore preceduto da un apice se inizia con un carattere di formula
+   */
+  public static String escapeFormula(String value)
+  {
+    if(value == null || value.isEmpty())
+      return value;
+
+    switch(value.charAt(0))
+    {
+      case '=':
+      case '+':
+      case '-':
+      case '@':
+      case '\t':
+      case '\r':
+        return NUMBER.matcher(value).matches() ? value : "'" + value;
+    }
+
+    return value;
+  }
+
+  @Override
+  protected void writeEnd()
+     throws Exception
+  {
+    // il printer non viene chiuso per non chiudere l'output del chiamante
+    printer.flush();
+    printer = null;
+  }
+
+  public CSVFormat getFormat()
+  {
+    return format;
+  }
+
+  public void setFormat(CSVFormat format)
+  {
+    this.format = format;
+  }
+
+  public boolean isEscapeFormulas()
+  {
+    return escapeFormulas;
+  }
+
+  public void setEscapeFormulas(boolean escapeFormulas)
+  {
+    this.escapeFormulas = escapeFormulas;
+  }
+}
@@ -0,0 +1,342 @@
+/*
+ * Copyright (C) 2020 Nicola De Nisco
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.rigel5.table.xml;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import javax.swing.table.*;
+import org.commonlib5.utils.StringOper;
+import org.rigel5.RigelI18nInterface;
+import org.rigel5.SetupHolder;
+import org.rigel5.table.ForeignDataHolder;
+import org.rigel5.table.RigelColumnDescriptor;
+import org.rigel5.table.RigelTableModel;
+
+/**
+ * Classe base dei generatori di export tabellare (CSV, XLSX).
+ * Le colonne sono quelle visibili del column model; le intestazioni
+ * vengono localizzate attraverso RigelI18nInterface e i valori sono
+ * prodotti come in jsonTable: formatValue() della colonna, dati foreign
+ * secondo la modalità di visualizzazione e testo fisso.
+ * Il generatore scrive direttamente sull'output: doRows() può essere
+ * chiamata più volte fra beginExport() e endExport(), una per ogni
+ * blocco di records caricato nel table model, per cui la memoria
+ * impegnata non dipende dal numero di righe.
+ *
+ * @author Nicola De Nisco
+ */
+abstract public class exportTable
+{
+  protected TableModel tableModel;
+  protected TableColumnModel columnModel;
+  protected RigelI18nInterface i18n;
+  protected boolean showHeader = true;
+  protected int rowsWritten = 0;
+  /** colonne esportate (visibili) con la relativa posizione nel column model */
+  protected final List<RigelColumnDescriptor> columns = new ArrayList<>();
+  protected final List<Integer> columnsIndex = new ArrayList<>();
+
+  public void setModel(TableModel newTableModel)
+  {
+    tableModel = newTableModel;
+  }
+
+  public TableModel getModel()
+  {
+    return tableModel;
+  }
+
+  public void setColumnModel(TableColumnModel newColumnModel)
+  {
+    columnModel = newColumnModel;
+  }
+
+  public TableColumnModel getColumnModel()
+  {
+    return columnModel;
+  }
+
+  public void setShowHeader(boolean newShowHeader)
+  {
+    showHeader = newShowHeader;
+  }
+
+  public boolean isShowHeader()
+  {
+    return showHeader;
+  }
+
+  public RigelI18nInterface getI18n()
+  {
+    return i18n == null ? SetupHolder.getRi18n() : i18n;
+  }
+
+  public void setI18n(RigelI18nInterface i18n)
+  {
+    this.i18n = i18n;
+  }
+
+  public int getRowsWritten()
+  {
+    return rowsWritten;
+  }
+
+  /**
+   * Esporta tutte le righe attualmente caricate nel table model.
+   * @throws Exception
+   */
+  public void doExport()
+     throws Exception
+  {
+    beginExport();
+    doRows();
+    endExport();
+  }
+
+  /**
+   * Inizia l'export scrivendo le intestazioni (se richieste).
+   * @throws Exception
+   */
+  public void beginExport()
+     throws Exception
+  {
+    columns.clear();
+    columnsIndex.clear();
+    rowsWritten = 0;
+
+    for(int i = 0; i < columnModel.getColumnCount(); i++)
+    {
+      RigelColumnDescriptor cd = getCD(i);
+      if(cd != null && cd.isVisible())
+      {
+        columns.add(cd);
+        columnsIndex.add(i);
+      }
+    }
+
+    writeBegin();
+
+    if(showHeader)
+    {
+      String[] captions = new String[columns.size()];
+      for(int i = 0; i < captions.length; i++)
+        captions[i] = getCaption(columnsIndex.get(i), columns.get(i));
+
+      writeHeader(captions);
+    }
+  }
+
+  /**
+   * Esporta le righe attualmente caricate nel table model.
+   * Può essere chiamata più volte fra beginExport() e endExport().
+   * @throws Exception
+   */
+  public void doRows()
+     throws Exception
+  {
+    int numRec = tableModel.getRowCount();
+    if(numRec == 0)
+      return;
+
+    prepareForeignPage(numRec);
+    try
+    {
+      String[] values = new String[columns.size()];
+      for(int row = 0; row < numRec; row++)
+      {
+        for(int i = 0; i < values.length; i++)
+          values[i] = doFormatCellValue(row, columns.get(i));
+
+        writeRow(row, values);
+        rowsWritten++;
+      }
+    }
+    finally
+    {
+      for(RigelColumnDescriptor cd : columns)
+        cd.clearForeignPage();
+    }
+  }
+
+  /**
+   * Termina l'export.
+   * L'output sottostante non viene chiuso.
+   * @throws Exception
+   */
+  public void endExport()
+     throws Exception
+  {
+    writeEnd();
+  }
+
+  abstract protected void writeBegin()
+     throws Exception;
+
+  abstract protected void writeHeader(String[] captions)
+     throws Exception;
+
+  /**
+   * Scrive una riga.
+   * @param row riga del table model (per eventuali valori non formattati)
+   * @param values valori formattati delle colonne esportate
+   * @throws Exception
+   */
+  abstract protected void writeRow(int row, String[] values)
+     throws Exception;
+
+  abstract protected void writeEnd()
+     throws Exception;
+
+  /**
+   * Prepara i dati foreign delle colonne in modalità batch
+   * (vedi RigelColumnDescriptor.prepareForeignPage).
+   * @param numRec numero di righe caricate
+   * @throws Exception
+   */
+  protected void prepareForeignPage(int numRec)
+     throws Exception
+  {
+    if(!(tableModel instanceof RigelTableModel))
+      return;
+
+    for(RigelColumnDescriptor cd : columns)
+    {
+      if(!cd.isForeignBatch() || cd.getForeignMode() == RigelColumnDescriptor.DISP_FLD_ONLY)
+        continue;
+
+      LinkedHashMap<String, Object> keys = new LinkedHashMap<>();
+      for(int row = 0; row < numRec; row++)
+      {
+        Object val = tableModel.getValueAt(row, cd.getModelIndex());
+        if(val != null)
+          keys.putIfAbsent(val.toString(), val);
+      }
+
+      cd.prepareForeignPage(keys.values(), (RigelTableModel) tableModel, getI18n());
+    }
+  }
+
+  public String getCaption(int col, RigelColumnDescriptor cd)
+  {
+    if(tableModel instanceof RigelTableModel)
+      return getI18n().localizeTableCaption(null, (RigelTableModel) tableModel, cd, col, cd.getCaption());
+
+    return cd.getCaption();
+  }
+
+  public Object getValue(int row, RigelColumnDescriptor cd)
+  {
+    return tableModel.getValueAt(row, cd.getModelIndex());
+  }
+
+  public String doFormatCellValue(int row, RigelColumnDescriptor cd)
+     throws Exception
+  {
+    String val = StringOper.okStrNull(formatCell(cd, getValue(row, cd)));
+    if(val == null)
+      return "";
+
+    if(cd.getForeignMode() != RigelColumnDescriptor.DISP_FLD_ONLY)
+    {
+      if((val = StringOper.okStrNull(getForeignData(cd, val))) == null)
+        return "";
+    }
+    else
+    {
+      if((val = elaboraFixedText(cd, val)) == null)
+        return "";
+    }
+
+    return val;
+  }
+
+  public String formatCell(RigelColumnDescriptor cd, Object value)
+     throws Exception
+  {
+    if(value == null)
+      return "";
+
+    if(cd != null)
+      return cd.formatValue(value);
+
+    if(value instanceof Date)
+      return SetupHolder.getFormatter().formatDate(value);
+
+    return value.toString();
+  }
+
+  public String elaboraFixedText(RigelColumnDescriptor cd, String strCella)
+  {
+    int pos;
+    String sfix = cd.getFixedText();
+    if(sfix == null)
+      return strCella;
+
+    if((pos = sfix.indexOf("@@@")) != -1)
+      return sfix.substring(0, pos) + strCella + sfix.substring(pos + 3);
+    else
+      return sfix;
+  }
+
+  protected String getForeignData(RigelColumnDescriptor cd, String val)
+     throws Exception
+  {
+    if(!(tableModel instanceof RigelTableModel))
+      return "";
+
+    ForeignDataHolder fd = cd.findHTableForeign(val, (RigelTableModel) (tableModel), getI18n());
+
+    if(fd == null)
+    {
+      // ritorna un foreign value di tipo INDEFINITO
+      fd = new ForeignDataHolder();
+      fd.codice = val;
+      fd.alternateCodice = val;
+      fd.descrizione = "INDEFINITO";
+    }
+
+    switch(cd.getForeignMode())
+    {
+      case RigelColumnDescriptor.DISP_DESCR_ONLY:
+      case RigelColumnDescriptor.DISP_DESCR_EDIT:
+      case RigelColumnDescriptor.DISP_DESCR_EDIT_ALTERNATE:
+        return fd.descrizione;
+      case RigelColumnDescriptor.DISP_FLD_DESCR:
+        return fd.codice + " " + fd.descrizione;
+      case RigelColumnDescriptor.DISP_FLD_DESCR_ALTERNATE:
+        return fd.alternateCodice + " " + fd.descrizione;
+    }
+
+    return "";
+  }
+
+  /**
+   * Ritorna un oggetto RigelColumnDescriptor se la colonna
+   * indicata e' realmente una istanza di RigelColumnDescriptor;
+   * altrimenti ritorna null.
+   * @param col
+   * @return
+   */
+  public RigelColumnDescriptor getCD(int col)
+  {
+    TableColumn tc = columnModel.getColumn(col);
+    return (tc instanceof RigelColumnDescriptor) ? ((RigelColumnDescriptor) (tc)) : null;
+  }
+}
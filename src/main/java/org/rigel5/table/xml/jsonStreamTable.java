@@ -0,0 +1,282 @@
+/*
+ * Copyright (C) 2020 Nicola De Nisco
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.rigel5.table.xml;
+
+import java.io.Writer;
+import org.json.JSONObject;
+import org.rigel5.table.RigelColumnDescriptor;
+
+/**
+ * Generatore di JSON per tabella in streaming.
+ * Produce lo stesso contenuto di jsonTable (stesse colonne,
+ * stessa formattazione dei valori) ma scrive direttamente su un Writer
+ * senza costruire l'albero JSONObject/JSONArray: ogni riga viene
+ * serializzata e scritta appena prodotta, per cui doRows() può essere
+ * chiamata più volte sullo stesso output, una per ogni blocco di records
+ * caricato nel table model, e la memoria impegnata non dipende
+ * dal numero di righe.
+ * <code>
+ *  jtbl.beginJson(out);
+ *  ... per ogni blocco: rebind del table model e jtbl.doRows(out);
+ *  jtbl.endJson(out);
+ * </code>
+ * In modalità ndjson (newline delimited JSON) viene invece prodotto
+ * un oggetto per riga, con le caption delle colonne come chiavi,
+ * senza header e senza dimensioni normalizzate.
+ *
+ * @author Nicola De Nisco
+ */
+public class jsonStreamTable extends jsonTable
+{
+  protected boolean ndjson = false;
+  protected int rowsWritten = 0;
+
+  public jsonStreamTable()
+  {
+  }
+
+  public jsonStreamTable(boolean ndjson)
+  {
+    this.ndjson = ndjson;
+  }
+
+  /**
+   * Restituisce il contenuto della tabella completa.
+   * @param out output della tabella
+   * @throws Exception
+   */
+  public void doJson(Writer out)
+     throws Exception
+  {
+    doJson(out, 0, tableModel.getRowCount());
+  }
+
+  /**
+   * Restituisce il contenuto della tabella.
+   * @param out output della tabella
+   * @param rStart primo record
+   * @param numRec numero di records
+   * @throws Exception
+   */
+  public void doJson(Writer out, int rStart, int numRec)
+     throws Exception
+  {
+    beginJson(out);
+    doRows(out, rStart, numRec);
+    endJson(out);
+  }
+
+  /**
+   * Apre l'oggetto JSON e scrive l'header (se richiesto).
+   * @param out output della tabella
+   * @throws Exception
+   */
+  public void beginJson(Writer out)
+     throws Exception
+  {
+    normalizeCols();
+    arColSizes = new int[tableModel.getColumnCount()];
+    rowsWritten = 0;
+
+    if(ndjson)
+      return;
+
+    out.write('{');
+    if(showHeader)
+    {
+      doHeader(out);
+      out.write(',');
+    }
+    out.write("\"data\":[");
+  }
+
+  /**
+   * Chiude l'oggetto JSON aggiungendo le dimensioni normalizzate.
+   * @param out output della tabella
+   * @throws Exception
+   */
+  public void endJson(Writer out)
+     throws Exception
+  {
+    if(ndjson)
+    {
+      out.flush();
+      return;
+    }
+
+    out.write("],\"normalized-size\":[");
+    for(int i = 0; i < arColSizes.length; i++)
+    {
+      if(i > 0)
+        out.write(',');
+      out.write(Integer.toString(rowsWritten == 0 ? 0 : arColSizes[i] / rowsWritten));
+    }
+    out.write("]}");
+    out.flush();
+  }
+
+  /**
+   * Produce l'header della tabella.
+   * @param out output della tabella
+   * @throws Exception
+   */
+  public void doHeader(Writer out)
+     throws Exception
+  {
+    JSONObject tmp;
+    boolean first = true;
+
+    out.write("\"header\":[");
+
+    if((tmp = preHeader()) != null)
+      first = writeItem(out, tmp.toString(), first);
+
+    for(int i = 0; i < columnModel.getColumnCount(); i++)
+    {
+      if((tmp = doCellHeader(i)) != null)
+        first = writeItem(out, tmp.toString(), first);
+    }
+
+    if((tmp = postHeader()) != null)
+      writeItem(out, tmp.toString(), first);
+
+    out.write(']');
+  }
+
+  /**
+   * Scrive tutte le righe attualmente caricate nel table model.
+   * Può essere chiamata più volte fra beginJson() e endJson().
+   * @param out output della tabella
+   * @throws Exception
+   */
+  public void doRows(Writer out)
+     throws Exception
+  {
+    doRows(out, 0, tableModel.getRowCount());
+  }
+
+  public void doRows(Writer out, int rStart, int numRec)
+     throws Exception
+  {
+    if(rStart > tableModel.getRowCount())
+      return;
+
+    if(rStart + numRec > tableModel.getRowCount())
+      numRec = tableModel.getRowCount() - rStart;
+
+    for(int i = 0; i < numRec; i++)
+    {
+      if(ndjson)
+      {
+        doRowObject(out, rStart++);
+        out.write('\n');
+      }
+      else
+      {
+        if(rowsWritten > 0)
+          out.write(',');
+        doRow(out, rStart++);
+      }
+
+      rowsWritten++;
+    }
+  }
+
+  /**
+   * Scrive una riga come array di celle (stesso formato di jsonTable).
+   * @param out output della tabella
+   * @param row riga del table model
+   * @throws Exception
+   */
+  public void doRow(Writer out, int row)
+     throws Exception
+  {
+    JSONObject tmp;
+    boolean first = true;
+
+    out.write('[');
+
+    if((tmp = preValues(row)) != null)
+      first = writeItem(out, tmp.toString(), first);
+
+    for(int col = 0; col < columnModel.getColumnCount(); col++)
+    {
+      if((tmp = doCell(row, col)) != null)
+        first = writeItem(out, tmp.toString(), first);
+    }
+
+    if((tmp = postValues(row)) != null)
+      writeItem(out, tmp.toString(), first);
+
+    out.write(']');
+  }
+
+  /**
+   * Scrive una riga come oggetto caption:valore (formato ndjson).
+   * @param out output della tabella
+   * @param row riga del table model
+   * @throws Exception
+   */
+  public void doRowObject(Writer out, int row)
+     throws Exception
+  {
+    boolean first = true;
+
+    out.write('{');
+    for(int col = 0; col < columnModel.getColumnCount(); col++)
+    {
+      RigelColumnDescriptor cd;
+      if((cd = getCD(col)) == null || !cd.isVisible())
+        continue;
+
+      if(!first)
+        out.write(',');
+      first = false;
+
+      out.write(JSONObject.quote(cd.getCaption()));
+      out.write(':');
+      out.write(JSONObject.quote(doFormatCellValue(row, col, cd)));
+    }
+    out.write('}');
+  }
+
+  protected boolean writeItem(Writer out, String item, boolean first)
+     throws Exception
+  {
+    if(!first)
+      out.write(',');
+
+    out.write(item);
+    return false;
+  }
+
+  public boolean isNdjson()
+  {
+    return ndjson;
+  }
+
+  public void setNdjson(boolean ndjson)
+  {
+    this.ndjson = ndjson;
+  }
+
+  public int getRowsWritten()
+  {
+    return rowsWritten;
+  }
+}
@@ -404,7 +404,7 @@ public class jsonTable
     {
       if(value instanceof Date)
       {
-        sOut = SetupHolder.getDateFormat().format(value);
+        sOut = SetupHolder.getFormatter().formatDate(value);
       }
       else
       {
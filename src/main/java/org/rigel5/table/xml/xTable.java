@@ -515,7 +515,7 @@ public class xTable
     {
       if(value instanceof Date)
       {
-        sOut = SetupHolder.getDateFormat().format(value);
+        sOut = SetupHolder.getFormatter().formatDate(value);
       }
       else
       {
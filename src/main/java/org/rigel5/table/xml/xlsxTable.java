@@ -0,0 +1,374 @@
+/*
+ * Copyright (C) 2020 Nicola De Nisco
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.rigel5.table.xml;
+
+import java.io.BufferedWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.rigel5.table.RigelColumnDescriptor;
+
+/**
+ * Generatore di XLSX (Office Open XML) per tabella.
+ * Il file viene prodotto in streaming direttamente nello zip di output:
+ * le righe del foglio sono scritte man mano che arrivano e le parti
+ * statiche del documento (workbook, relazioni, stili) vengono aggiunte
+ * alla fine, quando il numero di fogli è noto. Le stringhe sono scritte
+ * inline, senza tabella delle stringhe condivise, per cui la memoria
+ * impegnata non dipende dal numero di righe.
+ * Al raggiungimento del limite di righe di un foglio viene aperto un
+ * nuovo foglio, con la ripetizione delle intestazioni.
+ * Le colonne numeriche senza formattatore esplicito, dati foreign o
+ * testo fisso sono scritte come numeri (con numericCells attivo);
+ * tutte le altre con il valore formattato come nelle altre esportazioni.
+ *
+ * @author Nicola De Nisco
+ */
+public class xlsxTable extends exportTable
+{
+  /** numero massimo di righe per foglio in Excel */
+  public static final int MAX_ROWS_SHEET = 1048576;
+  public static final String NS_MAIN = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+  public static final String NS_REL = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+  public static final String NS_PKGREL = "http://schemas.openxmlformats.org/package/2006/relationships";
+  // stili definiti in styles.xml
+  protected static final int STYLE_HEADER = 1, STYLE_DECIMAL = 2;
+  //
+  protected final OutputStream os;
+  protected ZipOutputStream zip;
+  protected Writer out;
+  protected String sheetName = "Dati";
+  protected boolean numericCells = true;
+  protected int numSheet, rowSheet;
+  protected String[] captions;
+  protected boolean[] colNumeric;
+
+  public xlsxTable(OutputStream os)
+  {
+    this.os = os;
+  }
+
+  @Override
+  protected void writeBegin()
+     throws Exception
+  {
+    zip = new ZipOutputStream(os);
+    out = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8));
+    numSheet = 0;
+    captions = null;
+
+    colNumeric = new boolean[columns.size()];
+    for(int i = 0; i < colNumeric.length; i++)
+      colNumeric[i] = numericCells && isNumericColumn(columns.get(i));
+
+    openSheet();
+  }
+
+  @Override
+  protected void writeHeader(String[] captions)
+     throws Exception
+  {
+    this.captions = captions.clone();
+    writeCaptions();
+  }
+
+  @Override
+  protected void writeRow(int row, String[] values)
+     throws Exception
+  {
+    if(rowSheet == MAX_ROWS_SHEET)
+    {
+      closeSheet();
+      openSheet();
+      writeCaptions();
+    }
+
+    out.write("<row r=\"" + (++rowSheet) + "\">");
+    for(int i = 0; i < values.length; i++)
+    {
+      Object value;
+      if(colNumeric[i] && (value = getValue(row, columns.get(i))) instanceof Number)
+        writeNumberCell(value, columns.get(i));
+      else if(!values[i].isEmpty())
+        writeStringCell(values[i], 0);
+      else
+        out.write("<c/>");
+    }
+    out.write("</row>\n");
+  }
+
+  @Override
+  protected void writeEnd()
+     throws Exception
+  {
+    closeSheet();
+
+    writeEntry("[Content_Types].xml", makeContentTypes());
+    writeEntry("_rels/.rels",
+       "<Relationships xmlns=\"" + NS_PKGREL + "\">"
+       + "<Relationship Id=\"rId1\" Type=\"" + NS_REL + "/officeDocument\" Target=\"xl/workbook.xml\"/>"
+       + "</Relationships>");
+    writeEntry("xl/workbook.xml", makeWorkbook());
+    writeEntry("xl/_rels/workbook.xml.rels", makeWorkbookRels());
+    writeEntry("xl/styles.xml", makeStyles());
+
+    out.flush();
+    zip.finish();
+    out = null;
+    zip = null;
+  }
+
+  protected void openSheet()
+     throws Exception
+  {
+    numSheet++;
+    rowSheet = 0;
+    zip.putNextEntry(new ZipEntry("xl/worksheets/sheet" + numSheet + ".xml"));
+    out.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+    out.write("<worksheet xmlns=\"" + NS_MAIN + "\"><sheetData>\n");
+  }
+
+  protected void closeSheet()
+     throws Exception
+  {
+    out.write("</sheetData></worksheet>");
+    out.flush();
+    zip.closeEntry();
+  }
+
+  protected void writeCaptions()
+     throws Exception
+  {
+    if(captions == null)
+      return;
+
+    out.write("<row r=\"" + (++rowSheet) + "\">");
+    for(String c : captions)
+      writeStringCell(c, STYLE_HEADER);
+    out.write("</row>\n");
+  }
+
+  protected void writeStringCell(String value, int style)
+     throws Exception
+  {
+    out.write(style == 0 ? "<c t=\"inlineStr\">" : "<c t=\"inlineStr\" s=\"" + style + "\">");
+    out.write("<is><t xml:space=\"preserve\">");
+    out.write(fmtXml(value));
+    out.write("</t></is></c>");
+  }
+
+  protected void writeNumberCell(Object value, RigelColumnDescriptor cd)
+     throws Exception
+  {
+    if((value instanceof Double && !Double.isFinite((Double) value))
+       || (value instanceof Float && !Float.isFinite((Float) value)))
+    {
+      writeStringCell(value.toString(), 0);
+      return;
+    }
+
+    String sval = value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : value.toString();
+    switch(cd.getDataType())
+    {
+      case RigelColumnDescriptor.PDT_FLOAT:
+      case RigelColumnDescriptor.PDT_DOUBLE:
+      case RigelColumnDescriptor.PDT_MONEY:
+        out.write("<c s=\"" + STYLE_DECIMAL + "\"><v>" + sval + "</v></c>");
+        break;
+      default:
+        out.write("<c><v>" + sval + "</v></c>");
+        break;
+    }
+  }
+
+  /**
+   * Verifica se la colonna può essere scritta come numero.
+   * @param cd colonna
+   * @return vero per colonne numeriche senza trasformazioni del valore
+   */
+  protected boolean isNumericColumn(RigelColumnDescriptor cd)
+  {
+    if(cd.getFormatter() != null || cd.getFixedText() != null
+       || cd.getForeignMode() != RigelColumnDescriptor.DISP_FLD_ONLY)
+      return false;
+
+    switch(cd.getDataType())
+    {
+      case RigelColumnDescriptor.PDT_INTEGER:
+      case RigelColumnDescriptor.PDT_FLOAT:
+      case RigelColumnDescriptor.PDT_DOUBLE:
+      case RigelColumnDescriptor.PDT_MONEY:
+        return true;
+    }
+
+    return false;
+  }
+
+  protected void writeEntry(String name, String content)
+     throws Exception
+  {
+    zip.putNextEntry(new ZipEntry(name));
+    out.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+    out.write(content);
+    out.flush();
+    zip.closeEntry();
+  }
+
+  protected String makeContentTypes()
+  {
+    StringBuilder sb = new StringBuilder(1024);
+    sb.append("<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">")
+       .append("<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>")
+       .append("<Default Extension=\"xml\" ContentType=\"application/xml\"/>")
+       .append("<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>")
+       .append("<Override PartName=\"/xl/styles.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml\"/>");
+
+    for(int i = 1; i <= numSheet; i++)
+      sb.append("<Override PartName=\"/xl/worksheets/sheet").append(i)
+         .append(".xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>");
+
+    sb.append("</Types>");
+    return sb.toString();
+  }
+
+  protected String makeWorkbook()
+  {
+    StringBuilder sb = new StringBuilder(512);
+    sb.append("<workbook xmlns=\"").append(NS_MAIN).append("\" xmlns:r=\"").append(NS_REL).append("\"><sheets>");
+
+    for(int i = 1; i <= numSheet; i++)
+    {
+      String name = numSheet == 1 ? sheetName : sheetName + " " + i;
+      sb.append("<sheet name=\"").append(fmtXml(name)).append("\" sheetId=\"").append(i)
+         .append("\" r:id=\"rId").append(i).append("\"/>");
+    }
+
+    sb.append("</sheets></workbook>");
+    return sb.toString();
+  }
+
+  protected String makeWorkbookRels()
+  {
+    StringBuilder sb = new StringBuilder(512);
+    sb.append("<Relationships xmlns=\"").append(NS_PKGREL).append("\">");
+
+    for(int i = 1; i <= numSheet; i++)
+      sb.append("<Relationship Id=\"rId").append(i).append("\" Type=\"").append(NS_REL)
+         .append("/worksheet\" Target=\"worksheets/sheet").append(i).append(".xml\"/>");
+
+    sb.append("<Relationship Id=\"rId").append(numSheet + 1).append("\" Type=\"").append(NS_REL)
+       .append("/styles\" Target=\"styles.xml\"/>");
+
+    sb.append("</Relationships>");
+    return sb.toString();
+  }
+
+  protected String makeStyles()
+  {
+    return "<styleSheet xmlns=\"" + NS_MAIN + "\">"
+       + "<fonts count=\"2\"><font><sz val=\"11\"/><name val=\"Calibri\"/></font>"
+       + "<font><b/><sz val=\"11\"/><name val=\"Calibri\"/></font></fonts>"
+       + "<fills count=\"2\"><fill><patternFill patternType=\"none\"/></fill>"
+       + "<fill><patternFill patternType=\"gray125\"/></fill></fills>"
+       + "<borders count=\"1\"><border><left/><right/><top/><bottom/><diagonal/></border></borders>"
+       + "<cellStyleXfs count=\"1\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\"/></cellStyleXfs>"
+       + "<cellXfs count=\"3\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\"/>"
+       + "<xf numFmtId=\"0\" fontId=\"1\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyFont=\"1\"/>"
+       + "<xf numFmtId=\"4\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyNumberFormat=\"1\"/></cellXfs>"
+       + "</styleSheet>";
+  }
+
+  /**
+   * Rende una stringa compatibile con il contenuto xml.
+   * I caratteri di controllo non ammessi in XML 1.0 vengono rimossi.
+   * @param s stringa da convertire
+   * @return stringa convertita
+   */
+  public String fmtXml(String s)
+  {
+    StringBuilder sb = null;
+    for(int i = 0; i < s.length(); i++)
+    {
+      char c = s.charAt(i);
+      String rep = null;
+      switch(c)
+      {
+        case '&':
+          rep = "&amp;";
+          break;
+        case '<':
+          rep = "&lt;";
+          break;
+        case '>':
+          rep = "&gt;";
+          break;
+        case '"':
+          rep = "&quot;";
+          break;
+        default:
+          if(c < 0x20 && c != '\t' && c != '\n' && c != '\r')
+            rep = "";
+          break;
+      }
+
+      if(rep != null && sb == null)
+        sb = new StringBuilder(s.length() + 16).append(s, 0, i);
+
+      if(sb != null)
+      {
+        if(rep != null)
+          sb.append(rep);
+        else
+          sb.append(c);
+      }
+    }
+
+    return sb == null ? s : sb.toString();
+  }
+
+  public String getSheetName()
+  {
+    return sheetName;
+  }
+
+  /**
+   * Imposta il nome del foglio.
+   * I caratteri non ammessi da Excel vengono sostituiti e il nome
+   * viene limitato a 28 caratteri (lasciando spazio al numero del foglio).
+   * @param sheetName nome del foglio
+   */
+  public void setSheetName(String sheetName)
+  {
+    String s = sheetName.replaceAll("[\\[\\]:*?/\\\\]", "_");
+    this.sheetName = s.length() > 28 ? s.substring(0, 28) : s;
+  }
+
+  public boolean isNumericCells()
+  {
+    return numericCells;
+  }
+
+  public void setNumericCells(boolean numericCells)
+  {
+    this.numericCells = numericCells;
+  }
+}
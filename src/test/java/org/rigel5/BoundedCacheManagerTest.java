@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2026 Nicola De Nisco
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.rigel5;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.rigel5.table.ForeignDataHolder;
+
+/**
+ * Test per BoundedCacheManager: eviction LRU e contabilità dei pesi.
+ * La cache usa un solo segmento e nessuna pulizia in background
+ * per rendere il comportamento deterministico.
+ *
+ * @author Nicola De Nisco
+ */
+public class BoundedCacheManagerTest
+{
+  private static final String SQL_CLIENTI
+     = "SELECT DISTINCT idcli,ragsoc FROM anag_clienti WHERE idcli IS NOT NULL ORDER BY ragsoc";
+  private static final String SQL_ARTICOLI
+     = "SELECT DISTINCT idart,descrizione FROM anag_articoli a JOIN listini l ON a.idart=l.idart";
+
+  private static final String VALORE = "0123456789";
+
+  private BoundedCacheManager cm;
+  private long entryWeight;
+
+  @Before
+  public void setUp()
+     throws Exception
+  {
+    cm = new BoundedCacheManager(Long.MAX_VALUE, 60 * 60 * 1000L, 1, 0);
+    entryWeight = cm.estimateWeight("k0", VALORE);
+  }
+
+  @After
+  public void tearDown()
+     throws Exception
+  {
+    cm.shutdown();
+  }
+
+  private List<ForeignDataHolder> lista(String codice)
+  {
+    ForeignDataHolder fd = new ForeignDataHolder();
+    fd.codice = codice;
+    fd.descrizione = "descrizione " + codice;
+
+    ArrayList<ForeignDataHolder> rv = new ArrayList<>();
+    rv.add(fd);
+    return rv;
+  }
+
+  @Test
+  public void testWeightAccounting()
+  {
+    cm.putGenericCachedData("k1", VALORE);
+    cm.putGenericCachedData("k2", VALORE);
+    assertEquals(2, cm.size());
+    assertEquals(2 * entryWeight, cm.getWeight());
+
+    // la sostituzione non deve contare due volte la stessa chiave
+    cm.putGenericCachedData("k1", VALORE + VALORE);
+    assertEquals(2, cm.size());
+    assertEquals(entryWeight + cm.estimateWeight("k1", VALORE + VALORE), cm.getWeight());
+
+    // un dato null equivale alla rimozione
+    cm.putGenericCachedData("k1", null);
+    assertEquals(1, cm.size());
+    assertEquals(entryWeight, cm.getWeight());
+
+    cm.flushCache();
+    assertEquals(0, cm.size());
+    assertEquals(0, cm.getWeight());
+  }
+
+  @Test
+  public void testLruEviction()
+  {
+    cm.setMaxWeight(3 * entryWeight);
+
+    cm.putGenericCachedData("k1", VALORE);
+    cm.putGenericCachedData("k2", VALORE);
+    cm.putGenericCachedData("k3", VALORE);
+    assertEquals(0, cm.getEvictionCount());
+
+    // k1 diventa la più recente: la vittima deve essere k2
+    assertNotNull(cm.getGenericCachedData("k1"));
+    cm.putGenericCachedData("k4", VALORE);
+
+    assertEquals(1, cm.getEvictionCount());
+    assertEquals(3, cm.size());
+    assertEquals(3 * entryWeight, cm.getWeight());
+    assertNull(cm.getGenericCachedData("k2"));
+    assertNotNull(cm.getGenericCachedData("k1"));
+    assertNotNull(cm.getGenericCachedData("k3"));
+    assertNotNull(cm.getGenericCachedData("k4"));
+  }
+
+  @Test
+  public void testOversizedEntry()
+  {
+    cm.setMaxWeight(entryWeight);
+
+    cm.putGenericCachedData("k1", VALORE);
+    cm.putGenericCachedData("k2", VALORE + VALORE);
+
+    // l'oggetto troppo grande non viene memorizzato e non provoca eviction
+    assertNull(cm.getGenericCachedData("k2"));
+    assertNotNull(cm.getGenericCachedData("k1"));
+    assertEquals(0, cm.getEvictionCount());
+    assertEquals(entryWeight, cm.getWeight());
+  }
+
+  @Test
+  public void testExpire()
+     throws Exception
+  {
+    cm.setExpireMillis(20);
+    cm.putGenericCachedData("k1", VALORE);
+    cm.putGenericCachedData("k2", VALORE);
+    Thread.sleep(50);
+
+    // scadenza in lettura
+    assertNull(cm.getGenericCachedData("k1"));
+    assertEquals(1, cm.getExpiredCount());
+    assertEquals(entryWeight, cm.getWeight());
+
+    // scadenza dal task di pulizia
+    cm.purge();
+    assertEquals(2, cm.getExpiredCount());
+    assertEquals(0, cm.size());
+    assertEquals(0, cm.getWeight());
+  }
+
+  @Test
+  public void testPurgeTabella()
+  {
+    cm.putForeignDataList(SQL_CLIENTI, lista("1"));
+    cm.putForeignDataList(SQL_ARTICOLI, lista("2"));
+    long weightArticoli = cm.estimateWeight("l1:" + SQL_ARTICOLI, lista("2"));
+
+    cm.purgeTabella("anag_clienti");
+    assertNull(cm.getForeignDataList(SQL_CLIENTI));
+    assertNotNull(cm.getForeignDataList(SQL_ARTICOLI));
+    assertEquals(weightArticoli, cm.getWeight());
+
+    cm.purgeTabella("listini");
+    assertNull(cm.getForeignDataList(SQL_ARTICOLI));
+    assertEquals(0, cm.getWeight());
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2026 Nicola De Nisco
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.rigel5;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.rigel5.table.ForeignDataHolder;
+
+/**
+ * Test per ClusteredCacheManager con trasporto locale.
+ *
+ * @author Nicola De Nisco
+ */
+public class ClusteredCacheManagerTest
+{
+  private static final String SQL_CLIENTI
+     = "SELECT DISTINCT idcli,ragsoc FROM anag_clienti WHERE idcli IS NOT NULL ORDER BY ragsoc";
+  private static final String SQL_ARTICOLI
+     = "SELECT DISTINCT idart,descrizione FROM anag_articoli a JOIN listini l ON a.idart=l.idart";
+
+  private ClusteredCacheManager nodeA, nodeB;
+
+  @Before
+  public void setUp()
+     throws Exception
+  {
+    nodeA = new ClusteredCacheManager(new SimpleCacheManager(), new LocalInvalidationTransport("test"));
+    nodeB = new ClusteredCacheManager(new BoundedCacheManager(), new LocalInvalidationTransport("test"));
+  }
+
+  @After
+  public void tearDown()
+     throws Exception
+  {
+    nodeA.close();
+    nodeB.close();
+  }
+
+  private List<ForeignDataHolder> lista(String codice)
+  {
+    ForeignDataHolder fd = new ForeignDataHolder();
+    fd.codice = codice;
+    fd.descrizione = "descrizione " + codice;
+
+    ArrayList<ForeignDataHolder> rv = new ArrayList<>();
+    rv.add(fd);
+    return rv;
+  }
+
+  @Test
+  public void testPurgePropagation()
+  {
+    nodeA.putForeignDataList(SQL_CLIENTI, lista("1"));
+    nodeB.putForeignDataList(SQL_CLIENTI, lista("1"));
+    nodeB.putForeignDataList(SQL_ARTICOLI, lista("2"));
+
+    nodeA.purgeTabella("anag_clienti");
+
+    assertNull(nodeA.getForeignDataList(SQL_CLIENTI));
+    assertNull(nodeB.getForeignDataList(SQL_CLIENTI));
+    assertNotNull(nodeB.getForeignDataList(SQL_ARTICOLI));
+
+    // tabella in join
+    nodeB.purgeTabella("LISTINI");
+    assertNull(nodeB.getForeignDataList(SQL_ARTICOLI));
+  }
+
+  @Test
+  public void testFlushPropagation()
+  {
+    nodeA.putGenericCachedData("chiave", "valore");
+    nodeB.putGenericCachedData("chiave", "valore");
+
+    nodeB.flushCache();
+
+    assertNull(nodeA.getGenericCachedData("chiave"));
+    assertNull(nodeB.getGenericCachedData("chiave"));
+  }
+
+  @Test
+  public void testOtherChannel()
+     throws Exception
+  {
+    try(ClusteredCacheManager nodeC = new ClusteredCacheManager(
+       new SimpleCacheManager(), new LocalInvalidationTransport("other")))
+    {
+      nodeC.putForeignDataList(SQL_CLIENTI, lista("1"));
+      nodeA.purgeTabella("anag_clienti");
+      assertNotNull(nodeC.getForeignDataList(SQL_CLIENTI));
+    }
+  }
+}
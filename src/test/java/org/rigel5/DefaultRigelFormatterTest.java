@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2026 Nicola De Nisco
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.rigel5;
+
+import java.text.NumberFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test per DefaultRigelFormatter: compatibilità con i formati java.text
+ * e stabilità dei risultati con formattazione in parallelo.
+ * Il fuso orario di default viene fissato a UTC: con l'ora legale
+ * alcune ore locali sono ambigue e il confronto con SimpleDateFormat
+ * dipenderebbe dalla macchina su cui gira il test.
+ *
+ * @author Nicola De Nisco
+ */
+public class DefaultRigelFormatterTest
+{
+  private static final int NUM_THREADS = 16;
+  private static final int NUM_VALUES = 2000;
+  private static final int NUM_ROUNDS = 5;
+
+  private TimeZone defaultZone;
+  private DefaultRigelFormatter fmt;
+
+  @Before
+  public void setUp()
+  {
+    defaultZone = TimeZone.getDefault();
+    TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+    fmt = new DefaultRigelFormatter(Locale.ITALY);
+  }
+
+  @After
+  public void tearDown()
+  {
+    TimeZone.setDefault(defaultZone);
+  }
+
+  /**
+   * Valori di prova con i risultati attesi, calcolati con formati
+   * java.text non condivisi.
+   */
+  private static class Campione
+  {
+    Date data;
+    double numero;
+    String sData, sOra, sDataOra, sNumero;
+  }
+
+  private List<Campione> campioni()
+  {
+    SimpleDateFormat df = new SimpleDateFormat(DefaultRigelFormatter.DATE_PATTERN);
+    SimpleDateFormat tf = new SimpleDateFormat(DefaultRigelFormatter.TIME_PATTERN);
+    SimpleDateFormat dtf = new SimpleDateFormat(DefaultRigelFormatter.DATETIME_PATTERN);
+    NumberFormat nf = NumberFormat.getInstance(Locale.ITALY);
+    Random rnd = new Random(1234);
+
+    ArrayList<Campione> rv = new ArrayList<>();
+    for(int i = 0; i < NUM_VALUES; i++)
+    {
+      Campione c = new Campione();
+      c.data = new Date(Math.abs(rnd.nextLong()) % 4102444800000L);
+      c.numero = (rnd.nextDouble() - 0.5) * 1000000.0;
+      c.sData = df.format(c.data);
+      c.sOra = tf.format(c.data);
+      c.sDataOra = dtf.format(c.data);
+      c.sNumero = nf.format(c.numero);
+      rv.add(c);
+    }
+    return rv;
+  }
+
+  @Test
+  public void testCompatibility()
+     throws Exception
+  {
+    for(Campione c : campioni())
+    {
+      assertEquals(c.sData, fmt.formatDate(c.data));
+      assertEquals(c.sOra, fmt.formatTime(c.data));
+      assertEquals(c.sDataOra, fmt.formatDateTime(c.data));
+      assertEquals(c.sNumero, fmt.formatNumber(c.numero));
+
+      // i secondi sono l'ultima unità rappresentata
+      assertEquals(c.data.getTime() / 1000, fmt.parseDateTime(c.sDataOra).getTime() / 1000);
+      assertEquals(c.sData, fmt.formatDate(fmt.parseDate(c.sData)));
+    }
+
+    // campi a larghezza variabile e tipi java.sql
+    assertEquals("01/02/2020", fmt.formatDate(fmt.parseDate("1/2/2020")));
+    assertEquals("01/02/2020", fmt.formatDate(new java.sql.Date(fmt.parseDate("01/02/2020").getTime())));
+    assertEquals(1234.5, fmt.parseNumber("1.234,5").doubleValue(), 0.0);
+  }
+
+  @Test
+  public void testLenientParse()
+     throws Exception
+  {
+    SimpleDateFormat df = new SimpleDateFormat(DefaultRigelFormatter.DATE_PATTERN);
+
+    // spazi iniziali e caratteri in coda vengono ignorati
+    assertEquals("01/02/2020", fmt.formatDate(fmt.parseDate("  01/02/2020")));
+    assertEquals("01/02/2020", fmt.formatDate(fmt.parseDate("01/02/2020 xyz")));
+
+    // i valori fuori intervallo vengono riportati come in SimpleDateFormat
+    assertEquals(df.format(df.parse("31/02/2020")), fmt.formatDate(fmt.parseDate("31/02/2020")));
+    assertEquals("02/03/2020", fmt.formatDate(fmt.parseDate("31/02/2020")));
+    assertEquals("01/01/2021", fmt.formatDate(fmt.parseDate("01/13/2020")));
+  }
+
+  @Test
+  public void testLegacyFormats()
+     throws Exception
+  {
+    DefaultRigelFormatter lf = DefaultRigelFormatter.fromFormats(Locale.ITALY,
+       new SimpleDateFormat("yyyy/MM/dd"), null, null, null, null);
+
+    Date d = lf.parseDate("2020/02/01");
+    assertEquals("2020/02/01", lf.formatDate(d));
+
+    // i formati java.text non sono localizzabili: stesso pattern per ogni locale
+    assertEquals("2020/02/01", lf.forLocale(Locale.US).formatDate(d));
+    assertEquals("01/02/2020", fmt.forLocale(Locale.US).formatDate(d));
+  }
+
+  @Test
+  public void testLegacyNotConverted()
+     throws Exception
+  {
+    Date d = new Date(1580558645050L);
+
+    // millisecondi: S non ha lo stesso significato in DateTimeFormatter
+    SimpleDateFormat msf = new SimpleDateFormat("HH:mm:ss.S", Locale.ITALY);
+    DefaultRigelFormatter lf = DefaultRigelFormatter.fromFormats(Locale.ITALY,
+       null, msf, null, null, null);
+    assertEquals(msf.format(d), lf.formatTime(d));
+
+    // locale diverso da quello del formattatore
+    SimpleDateFormat usf = new SimpleDateFormat("dd MMM yyyy", Locale.US);
+    lf = DefaultRigelFormatter.fromFormats(Locale.ITALY, usf, null, null, null, null);
+    assertEquals(usf.format(d), lf.formatDate(d));
+
+    // formato non lenient: le date fuori intervallo restano un errore
+    SimpleDateFormat strict = new SimpleDateFormat("dd/MM/yyyy", Locale.ITALY);
+    strict.setLenient(false);
+    lf = DefaultRigelFormatter.fromFormats(Locale.ITALY, strict, null, null, null, null);
+    try
+    {
+      lf.parseDate("31/02/2020");
+      fail("data fuori intervallo accettata");
+    }
+    catch(ParseException ex)
+    {
+    }
+  }
+
+  @Test
+  public void testConcurrentFormatting()
+     throws Exception
+  {
+    List<Campione> lsCampioni = campioni();
+    ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS);
+    CountDownLatch start = new CountDownLatch(1);
+    ArrayList<Future<Integer>> lsFuture = new ArrayList<>();
+
+    try
+    {
+      for(int t = 0; t < NUM_THREADS; t++)
+      {
+        final int offset = t * 37;
+        lsFuture.add(executor.submit(() ->
+        {
+          int errori = 0;
+          start.await();
+
+          for(int r = 0; r < NUM_ROUNDS; r++)
+          {
+            for(int i = 0; i < lsCampioni.size(); i++)
+            {
+              // ogni thread percorre i campioni da un punto diverso
+              Campione c = lsCampioni.get((i + offset) % lsCampioni.size());
+
+              if(!c.sData.equals(fmt.formatDate(c.data)))
+                errori++;
+              if(!c.sOra.equals(fmt.formatTime(c.data)))
+                errori++;
+              if(!c.sDataOra.equals(fmt.formatDateTime(c.data)))
+                errori++;
+              if(!c.sNumero.equals(fmt.formatNumber(c.numero)))
+                errori++;
+              if(!c.sDataOra.equals(fmt.formatDateTime(fmt.parseDateTime(c.sDataOra))))
+                errori++;
+              if(fmt.parseNumber(c.sNumero).doubleValue() != NumberFormat.getInstance(Locale.ITALY).parse(c.sNumero).doubleValue())
+                errori++;
+            }
+          }
+
+          return errori;
+        }));
+      }
+
+      start.countDown();
+
+      for(Future<Integer> f : lsFuture)
+        assertEquals(Integer.valueOf(0), f.get(60, TimeUnit.SECONDS));
+    }
+    finally
+    {
+      executor.shutdownNow();
+    }
+  }
+}
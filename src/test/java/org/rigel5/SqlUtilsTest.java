@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2026 Nicola De Nisco
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.rigel5;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Test per il tokenizzatore SQL di SqlUtils.extractTables().
+ *
+ * @author Nicola De Nisco
+ */
+public class SqlUtilsTest
+{
+  private static Set<String> tabelle(String... nomi)
+  {
+    return new HashSet<>(Arrays.asList(nomi));
+  }
+
+  @Test
+  public void testSimple()
+  {
+    assertEquals(tabelle("ANAG_CLIENTI"),
+       SqlUtils.extractTables("SELECT idcli,ragsoc FROM anag_clienti WHERE idcli IS NOT NULL ORDER BY ragsoc"));
+    assertEquals(tabelle("ANAG_ARTICOLI", "LISTINI"),
+       SqlUtils.extractTables("SELECT * FROM anag_articoli a JOIN listini AS l ON a.idart=l.idart"));
+    assertEquals(tabelle("A", "B", "C"),
+       SqlUtils.extractTables("SELECT * FROM a x, b AS y, c WHERE x.id=y.id"));
+    assertEquals(tabelle("ORDINI"),
+       SqlUtils.extractTables("UPDATE ordini SET stato=1 WHERE id=2"));
+    assertEquals(tabelle("ORDINI"),
+       SqlUtils.extractTables("DELETE FROM ordini WHERE id=2"));
+    assertEquals(tabelle("ORDINI"),
+       SqlUtils.extractTables("INSERT INTO ordini(id,stato) VALUES(1,2)"));
+    assertTrue(SqlUtils.extractTables(null).isEmpty());
+    assertTrue(SqlUtils.extractTables("").isEmpty());
+  }
+
+  @Test
+  public void testQuotedIdentifiers()
+  {
+    assertEquals(tabelle("PUBLIC.ANAG_CLIENTI", "ANAG_CLIENTI"),
+       SqlUtils.extractTables("SELECT * FROM \"public\".\"Anag_Clienti\" c WHERE c.id=1"));
+    assertEquals(tabelle("ORDINI"),
+       SqlUtils.extractTables("SELECT * FROM `ordini`"));
+    assertEquals(tabelle("DBO.ORDINI", "ORDINI"),
+       SqlUtils.extractTables("SELECT * FROM [dbo].[ordini] WHERE x=1"));
+  }
+
+  @Test
+  public void testStringLiterals()
+  {
+    // i nomi dentro i letterali non sono tabelle
+    assertEquals(tabelle("NOTE"),
+       SqlUtils.extractTables("SELECT * FROM note WHERE testo='vedi FROM fatture' AND x='l''ordine'"));
+  }
+
+  @Test
+  public void testComments()
+  {
+    assertEquals(tabelle("ORDINI"),
+       SqlUtils.extractTables("SELECT * FROM /* tabella principale */ ordini"));
+    assertEquals(tabelle("ORDINI", "RIGHE"),
+       SqlUtils.extractTables("SELECT * FROM ordini -- JOIN fatture\n JOIN righe ON ordini.id=righe.idord"));
+    assertEquals(tabelle("ORDINI"),
+       SqlUtils.extractTables("SELECT * FROM ordini /* JOIN fatture */ WHERE id=1"));
+  }
+
+  @Test
+  public void testSubqueries()
+  {
+    assertEquals(tabelle("ORDINI", "CLIENTI"),
+       SqlUtils.extractTables("SELECT * FROM (SELECT idcli FROM ordini) o JOIN clienti c ON o.idcli=c.idcli"));
+    assertEquals(tabelle("ARTICOLI", "LISTINI"),
+       SqlUtils.extractTables("SELECT * FROM articoli WHERE idart IN (SELECT idart FROM listini WHERE prezzo>0)"));
+    assertEquals(tabelle("A", "B"),
+       SqlUtils.extractTables("SELECT x FROM a UNION SELECT x FROM b"));
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2026 Nicola De Nisco
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.rigel5.glue;
+
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.rigel5.table.FiltroListe;
+import org.rigel5.table.KeysetInfo;
+import org.rigel5.table.RigelColumnDescriptor;
+import org.rigel5.table.html.hTable;
+import org.rigel5.table.html.wrapper.HtmlWrapperBase;
+import org.rigel5.table.sql.html.SqlPager;
+import org.rigel5.table.sql.html.SqlTableModel;
+import org.rigel5.table.sql.html.SqlWrapperListaHtml;
+
+/**
+ * Test per SharedWrapperPool: lo stato lasciato da una sessione
+ * non deve essere visibile alla sessione successiva.
+ *
+ * @author Nicola De Nisco
+ */
+public class SharedWrapperPoolTest
+{
+  private static final String KEY = "test/Clienti";
+
+  /**
+   * Paginatore con accesso allo stato interno.
+   */
+  public static class TestPager extends SqlPager
+  {
+    /**
+     * Simula la navigazione di una sessione: pagina, filtro e posizione keyset.
+     */
+    public void naviga(int pagina)
+    {
+      filtro = FILTRO_MACHERA;
+      cSelezione = new FiltroListe();
+      start = pagina * limit;
+      keyset.save(start, limit, cSelezione, "codice ASC", new Object[]
+      {
+        "A"
+      }, new Object[]
+      {
+        "Z"
+      });
+    }
+
+    public int getSeekSuccessiva()
+    {
+      return keyset.getSeek(start + limit, limit, cSelezione, "codice ASC");
+    }
+  }
+
+  private SharedWrapperPool pool;
+  private SqlWrapperListaHtml wl;
+  private TestPager pager;
+
+  @Before
+  public void setUp()
+     throws Exception
+  {
+    pool = new SharedWrapperPool();
+    wl = new SqlWrapperListaHtml();
+    pager = new TestPager();
+
+    SqlTableModel tm = (SqlTableModel) wl.getPtm();
+    tm.addColumn("Codice", "codice", RigelColumnDescriptor.PDT_STRING, 10);
+    tm.addColumn("Descrizione", "descrizione", RigelColumnDescriptor.PDT_STRING, 40);
+
+    hTable tbl = new hTable();
+    tbl.setModel(tm);
+    pager.setHTable(tbl);
+
+    wl.setTbl(tbl);
+    wl.setPager(pager);
+  }
+
+  private void assertStatoIniziale()
+  {
+    assertEquals(0, pager.start);
+    assertEquals(0, pager.getCurrFiltro());
+    assertNull(pager.getCSelezione());
+    assertEquals(KeysetInfo.SEEK_NONE, pager.getSeekSuccessiva());
+
+    for(int i = 0; i < wl.getPtm().getColumnCount(); i++)
+    {
+      RigelColumnDescriptor cd = wl.getPtm().getColumn(i);
+      assertEquals(0, cd.getFiltroSort());
+      assertEquals(0, cd.getFiltroTipo());
+      assertNull(cd.getFiltroValore());
+    }
+  }
+
+  @Test
+  public void testTwoSessions()
+  {
+    // prima sessione: naviga alla terza pagina con ordinamento e filtro su colonna
+    pool.release(KEY, wl);
+    HtmlWrapperBase sessioneA = pool.borrow(KEY);
+    assertSame(wl, sessioneA);
+
+    pager.naviga(2);
+    RigelColumnDescriptor cd = wl.getPtm().getColumn(0);
+    cd.setFiltroSort(1);
+    cd.setFiltroTipo(1);
+    cd.setFiltroValore("ROSSI");
+    assertEquals(KeysetInfo.SEEK_NEXT, pager.getSeekSuccessiva());
+
+    pool.release(KEY, sessioneA);
+    assertEquals(1, pool.getIdleCount(KEY));
+
+    // seconda sessione: stessa istanza, nessuno stato della prima
+    HtmlWrapperBase sessioneB = pool.borrow(KEY);
+    assertSame(wl, sessioneB);
+    assertEquals(0, pool.getIdleCount(KEY));
+    assertStatoIniziale();
+  }
+
+  @Test
+  public void testResetOnBorrow()
+  {
+    pool.release(KEY, wl);
+
+    // stato modificato mentre la lista era nel pool
+    pager.naviga(5);
+    wl.getPtm().getColumn(1).setFiltroSort(2);
+
+    assertSame(wl, pool.borrow(KEY));
+    assertStatoIniziale();
+  }
+
+  @Test
+  public void testResetOnRelease()
+  {
+    pager.naviga(3);
+    wl.getPtm().getColumn(0).setFiltroValore("X");
+
+    pool.release(KEY, wl);
+    assertStatoIniziale();
+  }
+}
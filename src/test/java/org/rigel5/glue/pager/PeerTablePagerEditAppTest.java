@@ -0,0 +1,433 @@
+/*
+ * Copyright (C) 2026 Nicola De Nisco
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.rigel5.glue.pager;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import org.apache.torque.Torque;
+import org.apache.torque.TorqueException;
+import org.apache.torque.adapter.IDMethod;
+import org.apache.torque.map.ColumnMap;
+import org.apache.torque.map.TableMap;
+import org.apache.torque.om.ObjectKey;
+import org.apache.torque.om.Persistent;
+import org.apache.torque.util.ColumnValues;
+import org.apache.torque.util.JdbcTypedValue;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.rigel5.db.torque.PeerBatchSaver;
+import org.rigel5.glue.PeerObjectSaver;
+import org.rigel5.table.peer.html.PeerWrapperEditHtml;
+
+/**
+ * Test per il salvataggio cumulativo di PeerTablePagerEditApp:
+ * con un gestore che accoda gli oggetti N righe modificate devono
+ * produrre una sola executeBatch(); un gestore senza supporto batch
+ * deve invece ricevere ogni riga, per non saltare i suoi controlli.
+ *
+ * @author Nicola De Nisco
+ */
+public class PeerTablePagerEditAppTest
+{
+  private static final int NUM_RIGHE = 25;
+
+  /**
+   * Oggetto con la stessa forma di quelli generati da Torque.
+   */
+  public static class TestRiga implements Persistent
+  {
+    private int id;
+    private String descrizione;
+    private boolean isNew = true, modified = true;
+
+    public TestRiga(int id, String descrizione)
+    {
+      this.id = id;
+      this.descrizione = descrizione;
+    }
+
+    public int getId()
+    {
+      return id;
+    }
+
+    public String getDescrizione()
+    {
+      return descrizione;
+    }
+
+    @Override
+    public void save()
+       throws Exception
+    {
+      throw new UnsupportedOperationException("Salvataggio diretto non atteso.");
+    }
+
+    @Override
+    public void save(String dbName)
+       throws Exception
+    {
+      throw new UnsupportedOperationException("Salvataggio diretto non atteso.");
+    }
+
+    @Override
+    public void save(Connection con)
+       throws Exception
+    {
+      throw new UnsupportedOperationException("Salvataggio diretto non atteso.");
+    }
+
+    @Override
+    public ObjectKey<?> getPrimaryKey()
+    {
+      return null;
+    }
+
+    @Override
+    public void setPrimaryKey(ObjectKey<?> key)
+       throws TorqueException
+    {
+    }
+
+    @Override
+    public void setPrimaryKey(String key)
+       throws TorqueException
+    {
+    }
+
+    @Override
+    public boolean isModified()
+    {
+      return modified;
+    }
+
+    @Override
+    public boolean isNew()
+    {
+      return isNew;
+    }
+
+    @Override
+    public void setNew(boolean b)
+    {
+      isNew = b;
+    }
+
+    @Override
+    public void setModified(boolean m)
+    {
+      modified = m;
+    }
+  }
+
+  /**
+   * Peer di TestRiga (trovato da PeerBatchSaver per nome).
+   */
+  public static class TestRigaPeer
+  {
+    private static final TableMap tableMap;
+    private static final ColumnMap ID, DESCRIZIONE;
+
+    static
+    {
+      tableMap = new TableMap("test_righe", Torque.getOrCreateDatabase("test").getDatabaseMap());
+      tableMap.setPrimaryKeyMethod(IDMethod.NO_ID_METHOD);
+      ID = new ColumnMap("id", tableMap);
+      ID.setPrimaryKey(true);
+      ID.setType(0);
+      tableMap.addColumn(ID);
+      DESCRIZIONE = new ColumnMap("descrizione", tableMap);
+      DESCRIZIONE.setType("");
+      tableMap.addColumn(DESCRIZIONE);
+    }
+
+    public static TableMap getTableMap()
+    {
+      return tableMap;
+    }
+
+    public static ColumnValues buildColumnValues(TestRiga obj)
+    {
+      ColumnValues cv = new ColumnValues();
+      cv.put(ID, new JdbcTypedValue(obj.getId(), Types.INTEGER));
+      cv.put(DESCRIZIONE, new JdbcTypedValue(obj.getDescrizione(), Types.VARCHAR));
+      return cv;
+    }
+  }
+
+  /**
+   * Gestore di salvataggio che conta le chiamate.
+   */
+  public static class CountingSaver implements PeerObjectSaver
+  {
+    public int numSalva = 0;
+
+    @Override
+    public void init(Class objectClass, Class peerClass)
+       throws Exception
+    {
+    }
+
+    @Override
+    public void setUserInfo(int idUser, boolean isAdmin)
+       throws Exception
+    {
+    }
+
+    @Override
+    public void salva(Persistent obj)
+       throws Exception
+    {
+      numSalva++;
+    }
+
+    @Override
+    public void salva(Persistent obj, int statoRecNew)
+       throws Exception
+    {
+      numSalva++;
+    }
+
+    @Override
+    public void salva(Persistent obj, Connection dbCon, int statoRecNew)
+       throws Exception
+    {
+      numSalva++;
+    }
+
+    @Override
+    public void salva(Persistent obj, int userID, int statoRecNew, int writeLevel)
+       throws Exception
+    {
+      numSalva++;
+    }
+
+    @Override
+    public void salva(Persistent obj, Connection dbCon, int userID, int statoRecNew, int writeLevel)
+       throws Exception
+    {
+      numSalva++;
+    }
+
+    @Override
+    public void salvaDiretto(Persistent obj, Connection dbCon, int userID, int statoRecNew)
+       throws Exception
+    {
+      numSalva++;
+    }
+
+    @Override
+    public void clearNewObject(Persistent obj)
+       throws Exception
+    {
+    }
+  }
+
+  /**
+   * Gestore di salvataggio che accoda gli oggetti al batch.
+   */
+  public static class BatchSaver extends CountingSaver
+  {
+    public int numBatch = 0;
+
+    @Override
+    public void salva(Persistent obj, Connection dbCon, int statoRecNew, PeerBatchSaver batch)
+       throws Exception
+    {
+      numBatch++;
+      if(!batch.add(obj))
+        salva(obj, dbCon, statoRecNew);
+    }
+  }
+
+  private int numPrepare, numAddBatch, numExecuteBatch, numExecuteUpdate;
+  private int numPending, batchResult;
+  private Connection con;
+  private PeerTablePagerEditApp pager;
+  private List<TestRiga> righe;
+
+  @Before
+  public void setUp()
+     throws Exception
+  {
+    numPrepare = numAddBatch = numExecuteBatch = numExecuteUpdate = numPending = 0;
+    batchResult = 1;
+
+    PreparedStatement ps = (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+       new Class[]
+       {
+         PreparedStatement.class
+       }, (proxy, method, args) ->
+    {
+      switch(method.getName())
+      {
+        case "addBatch":
+          numAddBatch++;
+          numPending++;
+          return null;
+        case "executeBatch":
+          numExecuteBatch++;
+          int[] counts = new int[numPending];
+          Arrays.fill(counts, batchResult);
+          numPending = 0;
+          return counts;
+        case "executeUpdate":
+          numExecuteUpdate++;
+          return 1;
+      }
+      return null;
+    });
+
+    con = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+       new Class[]
+       {
+         Connection.class
+       }, (proxy, method, args) ->
+    {
+      if(method.getName().equals("prepareStatement"))
+      {
+        numPrepare++;
+        return ps;
+      }
+      if(method.getReturnType() == boolean.class)
+        return false;
+      return null;
+    });
+
+    pager = new PeerTablePagerEditApp();
+    pager.wl = new PeerWrapperEditHtml();
+
+    righe = new ArrayList<>();
+    for(int i = 0; i < NUM_RIGHE; i++)
+      righe.add(new TestRiga(i + 1, "riga " + i));
+  }
+
+  private void salvaRighe()
+     throws Exception
+  {
+    PeerBatchSaver batch = new PeerBatchSaver(con);
+    HashMap param = new HashMap();
+
+    for(int i = 0; i < righe.size(); i++)
+      pager.saveObject(con, righe.get(i), null, i, null, param, null, 0, batch);
+
+    batch.flush();
+  }
+
+  private void verificaBatch()
+  {
+    assertEquals(1, numPrepare);
+    assertEquals(NUM_RIGHE, numAddBatch);
+    assertEquals(1, numExecuteBatch);
+    assertEquals(0, numExecuteUpdate);
+
+    for(TestRiga r : righe)
+    {
+      assertFalse(r.isNew());
+      assertFalse(r.isModified());
+    }
+  }
+
+  @Test
+  public void testSaverWithoutBatch()
+     throws Exception
+  {
+    CountingSaver saver = new CountingSaver();
+    pager.pos = saver;
+    pager.posBatch = PeerTablePagerEditApp.isBatchSaver(saver);
+    assertFalse(pager.posBatch);
+
+    salvaRighe();
+
+    // nessun accodamento diretto: ogni riga passa dal gestore
+    assertEquals(NUM_RIGHE, saver.numSalva);
+    assertEquals(0, numPrepare);
+    assertEquals(0, numAddBatch);
+    assertEquals(0, numExecuteBatch);
+  }
+
+  @Test
+  public void testSaverWithBatch()
+     throws Exception
+  {
+    BatchSaver saver = new BatchSaver();
+    pager.pos = saver;
+    pager.posBatch = PeerTablePagerEditApp.isBatchSaver(saver);
+    assertTrue(pager.posBatch);
+
+    salvaRighe();
+
+    verificaBatch();
+    assertEquals(NUM_RIGHE, saver.numBatch);
+    assertEquals(0, saver.numSalva);
+  }
+
+  @Test
+  public void testUpdateNotFound()
+     throws Exception
+  {
+    BatchSaver saver = new BatchSaver();
+    pager.pos = saver;
+    pager.posBatch = true;
+
+    // update che non trova il record: non deve risultare salvato
+    batchResult = 0;
+    for(TestRiga r : righe)
+      r.setNew(false);
+
+    try
+    {
+      salvaRighe();
+      fail("Update senza record aggiornati accettato.");
+    }
+    catch(TorqueException ex)
+    {
+      // atteso
+    }
+
+    assertTrue(righe.get(0).isModified());
+  }
+
+  @Test
+  public void testFlushOrder()
+     throws Exception
+  {
+    PeerBatchSaver batch = new PeerBatchSaver(con);
+    batch.setMaxBatch(2);
+
+    // insert e update sono gruppi diversi: il riempimento di uno esegue anche l'altro
+    TestRiga upd = new TestRiga(100, "update");
+    upd.setNew(false);
+    assertTrue(batch.add(upd));
+    assertTrue(batch.add(righe.get(0)));
+    assertEquals(0, numExecuteBatch);
+    assertTrue(batch.add(righe.get(1)));
+    assertEquals(2, numExecuteBatch);
+    assertFalse(upd.isModified());
+
+    batch.flush();
+    assertEquals(2, numExecuteBatch);
+  }
+}
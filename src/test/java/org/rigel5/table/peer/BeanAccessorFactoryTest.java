@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2026 Nicola De Nisco
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.rigel5.table.peer;
+
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test per BeanAccessorFactory: gli accessori generati devono applicare
+ * le stesse conversioni e sollevare le stesse eccezioni di Method.invoke.
+ *
+ * @author Nicola De Nisco
+ */
+public class BeanAccessorFactoryTest
+{
+  public static class Bean
+  {
+    private long quantita;
+    private double prezzo;
+    private int numero;
+    private String descrizione;
+
+    public long getQuantita()
+    {
+      return quantita;
+    }
+
+    public void setQuantita(long quantita)
+    {
+      this.quantita = quantita;
+    }
+
+    public double getPrezzo()
+    {
+      return prezzo;
+    }
+
+    public void setPrezzo(double prezzo)
+    {
+      this.prezzo = prezzo;
+    }
+
+    public int getNumero()
+    {
+      return numero;
+    }
+
+    public void setNumero(int numero)
+    {
+      if(numero < 0)
+        throw new IllegalStateException("negativo");
+
+      this.numero = numero;
+    }
+
+    public String getDescrizione()
+    {
+      return descrizione;
+    }
+
+    public void setDescrizione(String descrizione)
+    {
+      this.descrizione = descrizione;
+    }
+  }
+
+  private Bean bean;
+
+  @Before
+  public void setUp()
+     throws Exception
+  {
+    bean = new Bean();
+  }
+
+  private BiConsumer<Object, Object> setter(String nome, Class<?> tipo)
+     throws Exception
+  {
+    BiConsumer<Object, Object> rv = BeanAccessorFactory.makeSetter(Bean.class.getMethod(nome, tipo));
+    assertNotNull(rv);
+    return rv;
+  }
+
+  @Test
+  public void testExactType()
+     throws Exception
+  {
+    setter("setQuantita", long.class).accept(bean, 10L);
+    setter("setPrezzo", double.class).accept(bean, 1.5);
+    setter("setDescrizione", String.class).accept(bean, "abc");
+
+    assertEquals(10L, bean.getQuantita());
+    assertEquals(1.5, bean.getPrezzo(), 0.0);
+    assertEquals("abc", bean.getDescrizione());
+
+    setter("setDescrizione", String.class).accept(bean, null);
+    assertNull(bean.getDescrizione());
+  }
+
+  @Test
+  public void testWidening()
+     throws Exception
+  {
+    setter("setQuantita", long.class).accept(bean, 10);
+    assertEquals(10L, bean.getQuantita());
+
+    setter("setQuantita", long.class).accept(bean, (short) 3);
+    assertEquals(3L, bean.getQuantita());
+
+    setter("setPrezzo", double.class).accept(bean, 2.5f);
+    assertEquals(2.5, bean.getPrezzo(), 0.0);
+
+    setter("setPrezzo", double.class).accept(bean, 7);
+    assertEquals(7.0, bean.getPrezzo(), 0.0);
+
+    setter("setNumero", int.class).accept(bean, 'A');
+    assertEquals(65, bean.getNumero());
+  }
+
+  @Test
+  public void testNullPrimitive()
+     throws Exception
+  {
+    try
+    {
+      setter("setQuantita", long.class).accept(bean, null);
+      fail("IllegalArgumentException attesa");
+    }
+    catch(IllegalArgumentException e)
+    {
+    }
+  }
+
+  @Test
+  public void testWrongType()
+     throws Exception
+  {
+    // restringimento: non consentito nemmeno dalla reflection
+    try
+    {
+      setter("setNumero", int.class).accept(bean, 10L);
+      fail("IllegalArgumentException attesa");
+    }
+    catch(IllegalArgumentException e)
+    {
+    }
+
+    try
+    {
+      setter("setDescrizione", String.class).accept(bean, 10);
+      fail("IllegalArgumentException attesa");
+    }
+    catch(IllegalArgumentException e)
+    {
+    }
+  }
+
+  @Test
+  public void testSetterException()
+     throws Exception
+  {
+    // l'eccezione del setter arriva senza InvocationTargetException su entrambi i percorsi
+    try
+    {
+      setter("setNumero", int.class).accept(bean, -1);
+      fail("IllegalStateException attesa");
+    }
+    catch(IllegalStateException e)
+    {
+    }
+
+    try
+    {
+      setter("setNumero", int.class).accept(bean, (byte) -1);
+      fail("IllegalStateException attesa");
+    }
+    catch(IllegalStateException e)
+    {
+    }
+  }
+
+  @Test
+  public void testGetter()
+     throws Exception
+  {
+    bean.setQuantita(42L);
+    Function<Object, Object> fun = BeanAccessorFactory.makeGetter(Bean.class.getMethod("getQuantita"));
+    assertNotNull(fun);
+    assertEquals(42L, fun.apply(bean));
+  }
+}
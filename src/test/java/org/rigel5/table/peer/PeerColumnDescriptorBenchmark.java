@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2026 Nicola De Nisco
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.rigel5.table.peer;
+
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Confronto fra accesso alle proprietà con reflection e con gli
+ * accessori generati da BeanAccessorFactory.
+ * Non fa parte dei test: va eseguito esplicitamente con
+ * <code>
+ *  mvn test-compile exec:java -Dexec.classpathScope=test
+ *     -Dexec.mainClass=org.rigel5.table.peer.PeerColumnDescriptorBenchmark
+ * </code>
+ *
+ * @author Nicola De Nisco
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PeerColumnDescriptorBenchmark
+{
+  /**
+   * Bean con la stessa forma di quelli generati da Torque
+   * (proprietà primitive, stringhe e date con getter/setter).
+   */
+  public static class BaseAnagClienti
+  {
+    private int idcli = 0;
+    private String ragsoc = null;
+    private Date ultModif = null;
+    private boolean modified = false;
+
+    public int getIdcli()
+    {
+      return idcli;
+    }
+
+    public void setIdcli(int v)
+    {
+      if(this.idcli != v)
+      {
+        this.idcli = v;
+        modified = true;
+      }
+    }
+
+    public String getRagsoc()
+    {
+      return ragsoc;
+    }
+
+    public void setRagsoc(String v)
+    {
+      this.ragsoc = v;
+      modified = true;
+    }
+
+    public Date getUltModif()
+    {
+      return ultModif;
+    }
+
+    public void setUltModif(Date v)
+    {
+      this.ultModif = v;
+      modified = true;
+    }
+
+    public boolean isModified()
+    {
+      return modified;
+    }
+  }
+
+  private BaseAnagClienti bean;
+  private Method getIdcli, setIdcli, getRagsoc;
+  private PeerColumnDescriptor cdIdcli, cdRagsoc;
+  private Integer valIdcli = 12345;
+
+  @Setup
+  public void setUp()
+     throws Exception
+  {
+    bean = new BaseAnagClienti();
+    bean.setIdcli(1);
+    bean.setRagsoc("Rossi S.p.A.");
+
+    getIdcli = BaseAnagClienti.class.getMethod("getIdcli");
+    setIdcli = BaseAnagClienti.class.getMethod("setIdcli", int.class);
+    getRagsoc = BaseAnagClienti.class.getMethod("getRagsoc");
+
+    cdIdcli = new PeerColumnDescriptor("Codice", "idcli", 10, true);
+    cdRagsoc = new PeerColumnDescriptor("Ragione sociale", "ragsoc", 40, true);
+
+    for(PropertyDescriptor pd : Introspector.getBeanInfo(BaseAnagClienti.class).getPropertyDescriptors())
+    {
+      if(pd.getName().equals("idcli"))
+        cdIdcli.setPropDescr(pd);
+      if(pd.getName().equals("ragsoc"))
+        cdRagsoc.setPropDescr(pd);
+    }
+
+    if(cdIdcli.getterFun == null || cdIdcli.setterFun == null)
+      throw new IllegalStateException("Generated accessors not available.");
+  }
+
+  @Benchmark
+  public Object reflectionGetInt()
+     throws Exception
+  {
+    return getIdcli.invoke(bean, (Object[]) null);
+  }
+
+  @Benchmark
+  public Object accessorGetInt()
+     throws Exception
+  {
+    return cdIdcli.getValue(bean);
+  }
+
+  @Benchmark
+  public Object reflectionGetString()
+     throws Exception
+  {
+    return getRagsoc.invoke(bean, (Object[]) null);
+  }
+
+  @Benchmark
+  public Object accessorGetString()
+     throws Exception
+  {
+    return cdRagsoc.getValue(bean);
+  }
+
+  @Benchmark
+  public BaseAnagClienti reflectionSetInt()
+     throws Exception
+  {
+    setIdcli.invoke(bean, valIdcli);
+    return bean;
+  }
+
+  @Benchmark
+  public BaseAnagClienti accessorSetInt()
+     throws Exception
+  {
+    cdIdcli.setValue(bean, valIdcli);
+    return bean;
+  }
+
+  public static void main(String[] args)
+     throws Exception
+  {
+    new Runner(new OptionsBuilder()
+       .include(PeerColumnDescriptorBenchmark.class.getSimpleName())
+       .build()).run();
+  }
+}
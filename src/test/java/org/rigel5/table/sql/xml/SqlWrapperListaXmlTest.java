@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2026 Nicola De Nisco
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.rigel5.table.sql.xml;
+
+import java.math.BigDecimal;
+import java.sql.Types;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Test per il confronto delle chiavi nell'export raggruppato a cursore.
+ *
+ * @author Nicola De Nisco
+ */
+public class SqlWrapperListaXmlTest
+{
+  @Test
+  public void testTextKeysNotStreamed()
+  {
+    // 'ABC', 'abc' e 'ABC ' sono lo stesso gruppo con una collation
+    // case insensitive o con CHAR: il confronto Java non è affidabile
+    assertFalse(SqlWrapperListaXml.isExactKeyType(Types.VARCHAR));
+    assertFalse(SqlWrapperListaXml.isExactKeyType(Types.CHAR));
+    assertFalse(SqlWrapperListaXml.isExactKeyType(Types.NVARCHAR));
+    assertFalse(SqlWrapperListaXml.isExactKeyType(Types.LONGVARCHAR));
+    assertFalse(SqlWrapperListaXml.isExactKeyType(Types.OTHER));
+  }
+
+  @Test
+  public void testExactKeys()
+  {
+    assertTrue(SqlWrapperListaXml.isExactKeyType(Types.INTEGER));
+    assertTrue(SqlWrapperListaXml.isExactKeyType(Types.NUMERIC));
+    assertTrue(SqlWrapperListaXml.isExactKeyType(Types.DATE));
+    assertTrue(SqlWrapperListaXml.isExactKeyType(Types.TIMESTAMP));
+  }
+
+  @Test
+  public void testNormalizeKeyValue()
+  {
+    assertEquals("1", SqlWrapperListaXml.normalizeKeyValue(new BigDecimal("1.00")));
+    assertEquals("1", SqlWrapperListaXml.normalizeKeyValue(1));
+    assertEquals("1", SqlWrapperListaXml.normalizeKeyValue(1L));
+    assertEquals("100", SqlWrapperListaXml.normalizeKeyValue(new BigDecimal("1E+2")));
+    assertEquals(SqlWrapperListaXml.normalizeKeyValue(new java.sql.Date(86400000L)),
+       SqlWrapperListaXml.normalizeKeyValue(new java.util.Date(86400000L)));
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2026 Nicola De Nisco
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.rigel5.table.xml;
+
+import java.io.StringWriter;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Test per la neutralizzazione delle formule in csvTable.
+ *
+ * @author Nicola De Nisco
+ */
+public class csvTableTest
+{
+  @Test
+  public void testEscapeFormula()
+  {
+    assertEquals("'=HYPERLINK(\"http://x\")", csvTable.escapeFormula("=HYPERLINK(\"http://x\")"));
+    assertEquals("'+1+cmd|' /C calc'!A0", csvTable.escapeFormula("+1+cmd|' /C calc'!A0"));
+    assertEquals("'-2+3", csvTable.escapeFormula("-2+3"));
+    assertEquals("'@SUM(A1:A2)", csvTable.escapeFormula("@SUM(A1:A2)"));
+    assertEquals("'\tx", csvTable.escapeFormula("\tx"));
+  }
+
+  @Test
+  public void testPlainValues()
+  {
+    assertNull(csvTable.escapeFormula(null));
+    assertEquals("", csvTable.escapeFormula(""));
+    assertEquals("Rossi", csvTable.escapeFormula("Rossi"));
+    assertEquals("a=b", csvTable.escapeFormula("a=b"));
+    assertEquals("-12,50", csvTable.escapeFormula("-12,50"));
+    assertEquals("+39", csvTable.escapeFormula("+39"));
+    assertEquals("-1.5e3", csvTable.escapeFormula("-1.5e3"));
+  }
+
+  @Test
+  public void testWriteRow()
+     throws Exception
+  {
+    StringWriter sw = new StringWriter();
+    csvTable t = new csvTable(sw);
+    t.writeBegin();
+    t.writeRow(0, new String[]
+    {
+      "=1+1", "ok"
+    });
+    t.writeEnd();
+    assertEquals("'=1+1,ok\r\n", sw.toString());
+
+    sw = new StringWriter();
+    t = new csvTable(sw);
+    t.setEscapeFormulas(false);
+    t.writeBegin();
+    t.writeRow(0, new String[]
+    {
+      "=1+1", "ok"
+    });
+    t.writeEnd();
+    assertEquals("=1+1,ok\r\n", sw.toString());
+  }
+}